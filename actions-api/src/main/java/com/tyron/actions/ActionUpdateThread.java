@@ -0,0 +1,23 @@
+package com.tyron.actions;
+
+/**
+ * The thread on which {@link AnAction#update(AnActionEvent)} is called.
+ *
+ * @see AnAction#getActionUpdateThread()
+ */
+public enum ActionUpdateThread {
+
+    /**
+     * The update is called on the UI thread before the menu is shown. Use this for actions
+     * that access views or other state that may only be touched on the UI thread.
+     */
+    EDT,
+
+    /**
+     * The update is called on a background thread and the action is added to the menu once
+     * its update completes. The update may only read data from the {@link AnActionEvent}, it
+     * is skipped and canceled if it takes longer than the time given to each action, see
+     * {@link AnActionEvent#checkCanceled()}.
+     */
+    BGT
+}
@@ -104,7 +104,8 @@ public abstract class AnAction {
      * when your action state depends on the selection you can check for the
      * selection and change the state accordingly.)
      *
-     * This method can be called frequently and on UI thread.
+     * This method can be called frequently and on UI thread, see
+     * {@link #getActionUpdateThread()}.
      * This means that this method is supposed to work really fast,
      * no work should be done at this phase. For example checking values such as editor
      * selection is fine but working with the file system such as reading/writing to a file is not.
@@ -118,6 +119,20 @@ public abstract class AnAction {
 
     }
 
+    /**
+     * Returns the thread on which {@link #update(AnActionEvent)} is called when filling a menu.
+     * Actions whose update inspects the source code, such as finding the tree under the cursor,
+     * should return {@link ActionUpdateThread#BGT} so that they do not delay showing the menu.
+     * Values that are expensive to compute and used by several actions should be put lazily
+     * in the {@link DataContext}, see {@link DataContext#putLazyData}.
+     *
+     * @return the thread to update this action on, the UI thread by default
+     */
+    @NonNull
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.EDT;
+    }
+
     /**
      * Implement this method to handle when this action has been clicked or pressed.
      *
@@ -6,6 +6,8 @@ import androidx.annotation.RestrictTo;
 
 import org.jetbrains.kotlin.com.intellij.openapi.util.Key;
 
+import java.util.concurrent.CancellationException;
+
 /**
  * Container for information necessary to execute or update an {@link AnAction}
  *
@@ -19,6 +21,7 @@ public class AnActionEvent implements PlaceProvider {
     private Presentation mPresentation;
     private final boolean mIsContextMenuAction;
     private final boolean mIsActionToolbar;
+    private volatile boolean mCanceled;
 
     public AnActionEvent(@NonNull DataContext context,
                          @NonNull String place,
@@ -97,6 +100,32 @@ public class AnActionEvent implements PlaceProvider {
         return mDataContext;
     }
 
+    /**
+     * Cancels the update this event was created for. Background updates are never interrupted,
+     * the update is expected to stop by itself once it calls {@link #checkCanceled()}.
+     */
+    @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
+    public void cancel() {
+        mCanceled = true;
+    }
+
+    public boolean isCanceled() {
+        return mCanceled;
+    }
+
+    /**
+     * Throws a {@link CancellationException} if the update of this event has been canceled,
+     * such as when it took longer than the time given to it. Updates that run on a background
+     * thread should call this between steps that take a while.
+     *
+     * @see ActionUpdateThread#BGT
+     */
+    public void checkCanceled() {
+        if (mCanceled) {
+            throw new CancellationException();
+        }
+    }
+
     @RestrictTo(RestrictTo.Scope.LIBRARY_GROUP)
     public <T> void injectData(Key<T> key, T value) {
         mDataContext.putData(key, value);
@@ -8,9 +8,14 @@ import org.jetbrains.annotations.Nullable;
 import org.jetbrains.kotlin.com.intellij.openapi.util.Key;
 import org.jetbrains.kotlin.com.intellij.openapi.util.UserDataHolderBase;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
 public class DataContext extends ContextWrapper {
 
     private final UserDataHolderBase mUserDataHolder;
+    private final Map<Key<?>, LazyValue<?>> mLazyData = new ConcurrentHashMap<>();
 
     public static DataContext wrap(Context context) {
         if (context instanceof DataContext) {
@@ -27,10 +32,46 @@ public class DataContext extends ContextWrapper {
 
     @Nullable
     public <T> T getData(@NotNull Key<T> key) {
+        LazyValue<?> lazyValue = mLazyData.get(key);
+        if (lazyValue != null) {
+            //noinspection unchecked
+            return (T) lazyValue.get();
+        }
         return mUserDataHolder.getUserData(key);
     }
 
     public <T> void putData(@NotNull Key<T> key, @Nullable T t) {
+        mLazyData.remove(key);
         mUserDataHolder.putUserData(key, t);
     }
+
+    /**
+     * Puts a value that is computed the first time it is requested, and shared by every
+     * action that requests it afterwards. Use this for data that is expensive to compute and
+     * not needed by every action, such as the tree under the cursor.
+     *
+     * @param key the key of the data
+     * @param supplier computes the data, it may be called on a background thread
+     */
+    public <T> void putLazyData(@NotNull Key<T> key, @NotNull Supplier<T> supplier) {
+        mUserDataHolder.putUserData(key, null);
+        mLazyData.put(key, new LazyValue<>(supplier));
+    }
+
+    private static class LazyValue<T> {
+        private Supplier<T> mSupplier;
+        private T mValue;
+
+        LazyValue(Supplier<T> supplier) {
+            mSupplier = supplier;
+        }
+
+        synchronized T get() {
+            if (mSupplier != null) {
+                mValue = mSupplier.get();
+                mSupplier = null;
+            }
+            return mValue;
+        }
+    }
 }
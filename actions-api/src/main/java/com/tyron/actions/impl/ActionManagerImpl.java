@@ -3,6 +3,8 @@ package com.tyron.actions.impl;
 import android.content.ClipData;
 import android.content.ClipboardManager;
 import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -15,23 +17,50 @@ import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.tyron.actions.ActionGroup;
 import com.tyron.actions.ActionManager;
 import com.tyron.actions.AnAction;
+import com.tyron.actions.ActionUpdateThread;
 import com.tyron.actions.AnActionEvent;
 import com.tyron.actions.CommonDataKeys;
 import com.tyron.actions.DataContext;
 import com.tyron.actions.Presentation;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class ActionManagerImpl extends ActionManager {
 
+    private static final String TAG = "ActionManager";
+
+    /**
+     * The time given to the update of each background action, actions that take longer are
+     * left out of the menu.
+     */
+    private static final long BACKGROUND_UPDATE_TIMEOUT_MS = 500;
+
     private final Map<String, AnAction> mIdToAction = new LinkedHashMap<>();
     private final Map<Object, String> mActionToId = new HashMap<>();
 
+    private final ExecutorService mUpdateExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ActionUpdater");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * The last invocation that filled each menu, so that the results of background updates
+     * are dropped if the menu has been filled again since.
+     */
+    private final Map<Menu, Object> mMenuInvocations = new WeakHashMap<>();
+
     @Override
     public void fillMenu(DataContext context,
                          Menu menu,
@@ -44,7 +73,22 @@ public class ActionManagerImpl extends ActionManager {
             menu.setGroupDividerEnabled(true);
         }
 
+        Object invocation = new Object();
+        mMenuInvocations.put(menu, invocation);
+
+        List<BackgroundUpdate> backgroundUpdates = new ArrayList<>();
+        int order = 0;
         for (AnAction value : mIdToAction.values()) {
+            order++;
+
+            if (value.getActionUpdateThread() == ActionUpdateThread.BGT && !isGroup(value)) {
+                // the template presentation may still be in use by a previous invocation
+                AnActionEvent event =
+                        new AnActionEvent(context, place, value.getTemplatePresentation().clone(),
+                                          isContext, isToolbar);
+                backgroundUpdates.add(new BackgroundUpdate(value, event, order));
+                continue;
+            }
 
             AnActionEvent event =
                     new AnActionEvent(context, place, value.getTemplatePresentation(), isContext,
@@ -55,23 +99,75 @@ public class ActionManagerImpl extends ActionManager {
             value.update(event);
 
             if (event.getPresentation().isVisible()) {
-                fillMenu(menu, value, event);
+                fillMenu(menu, value, event, order);
             }
         }
+
+        if (!backgroundUpdates.isEmpty()) {
+            mUpdateExecutor.execute(() -> updateInBackground(menu, invocation, backgroundUpdates));
+        }
     }
 
+    /**
+     * Updates the given actions on the update executor, then adds the visible ones to the menu
+     * on the UI thread. The updates run concurrently, so that a slow action only delays the
+     * actions after it by the time it is given.
+     */
+    private void updateInBackground(Menu menu, Object invocation, List<BackgroundUpdate> updates) {
+        List<Future<?>> futures = new ArrayList<>(updates.size());
+        for (BackgroundUpdate update : updates) {
+            futures.add(mUpdateExecutor.submit(() -> update.action.update(update.event)));
+        }
+
+        List<BackgroundUpdate> visible = new ArrayList<>();
+        for (int i = 0; i < updates.size(); i++) {
+            BackgroundUpdate update = updates.get(i);
+            Future<?> future = futures.get(i);
+            try {
+                future.get(BACKGROUND_UPDATE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                // interrupting the update could leave the compiler or a lazy value of the data
+                // context it is computing in a broken state, it stops on its next check instead
+                update.event.cancel();
+                Log.w(TAG, "Update of " + getId(update.action) + " took longer than " +
+                           BACKGROUND_UPDATE_TIMEOUT_MS + "ms, skipping it.");
+                continue;
+            } catch (ExecutionException e) {
+                Log.e(TAG, "Failed to update " + getId(update.action), e.getCause());
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (update.event.getPresentation().isVisible()) {
+                visible.add(update);
+            }
+        }
+
+        if (visible.isEmpty()) {
+            return;
+        }
+        mMainHandler.post(() -> {
+            if (mMenuInvocations.get(menu) != invocation) {
+                return;
+            }
+            for (BackgroundUpdate update : visible) {
+                fillMenu(menu, update.action, update.event, update.order);
+            }
+        });
+    }
 
-    private void fillMenu(Menu menu, AnAction action, AnActionEvent event) {
+    private void fillMenu(Menu menu, AnAction action, AnActionEvent event, int order) {
         Presentation presentation = event.getPresentation();
 
         MenuItem menuItem;
         if (isGroup(action)) {
             ActionGroup actionGroup = (ActionGroup) action;
             if (!actionGroup.isPopup()) {
-                fillMenu(View.generateViewId(), menu, actionGroup, event);
+                fillMenu(View.generateViewId(), menu, actionGroup, event, order);
                 return;
             }
-            SubMenu subMenu = menu.addSubMenu(presentation.getText());
+            SubMenu subMenu = menu.addSubMenu(Menu.NONE, Menu.NONE, order, presentation.getText());
             menuItem = subMenu.getItem();
 
             AnAction[] children = actionGroup.getChildren(event);
@@ -89,7 +185,7 @@ public class ActionManagerImpl extends ActionManager {
                 }
             }
         } else {
-            menuItem = menu.add(presentation.getText());
+            menuItem = menu.add(Menu.NONE, Menu.NONE, order, presentation.getText());
         }
 
         menuItem.setEnabled(presentation.isEnabled());
@@ -103,7 +199,7 @@ public class ActionManagerImpl extends ActionManager {
         menuItem.setOnMenuItemClickListener(item -> performAction(action, event));
     }
 
-    private void fillMenu(int id, Menu menu, ActionGroup group, AnActionEvent event) {
+    private void fillMenu(int id, Menu menu, ActionGroup group, AnActionEvent event, int order) {
         AnAction[] children = group.getChildren(event);
         if (children == null) {
             return;
@@ -113,7 +209,7 @@ public class ActionManagerImpl extends ActionManager {
             event.setPresentation(child.getTemplatePresentation());
             child.update(event);
             if (event.getPresentation().isVisible()) {
-                MenuItem add = menu.add(id, Menu.NONE, Menu.NONE, event.getPresentation().getText());
+                MenuItem add = menu.add(id, Menu.NONE, order, event.getPresentation().getText());
                 add.setEnabled(event.getPresentation().isEnabled());
                 add.setIcon(event.getPresentation().getIcon());
                 add.setOnMenuItemClickListener(item -> performAction(child, event));
@@ -129,7 +225,7 @@ public class ActionManagerImpl extends ActionManager {
         if (isGroup(action)) {
             ActionGroup group = (ActionGroup) action;
             if (!group.isPopup()) {
-                fillMenu(View.generateViewId(), subMenu, group, event);
+                fillMenu(View.generateViewId(), subMenu, group, event, Menu.NONE);
             }
 
             SubMenu subSubMenu = subMenu.addSubMenu(presentation.getText());
@@ -229,4 +325,16 @@ public class ActionManagerImpl extends ActionManager {
     private boolean isGroup(AnAction action) {
         return action instanceof ActionGroup;
     }
+
+    private static class BackgroundUpdate {
+        final AnAction action;
+        final AnActionEvent event;
+        final int order;
+
+        BackgroundUpdate(AnAction action, AnActionEvent event, int order) {
+            this.action = action;
+            this.event = event;
+            this.order = order;
+        }
+    }
 }
@@ -27,6 +27,7 @@ import com.tyron.code.ui.editor.action.text.TextActionGroup;
 import com.tyron.code.ui.file.action.ImportFileActionGroup;
 import com.tyron.code.ui.file.action.NewFileActionGroup;
 import com.tyron.code.ui.file.action.file.DeleteFileAction;
+import com.tyron.code.ui.file.action.java.FormatJavaFilesAction;
 import com.tyron.code.ui.main.action.compile.CompileActionGroup;
 import com.tyron.code.ui.main.action.debug.DebugActionGroup;
 import com.tyron.code.ui.main.action.other.FormatAction;
@@ -169,6 +170,7 @@ public class ApplicationLoader extends Application {
             // file manager actions
             manager.registerAction(NewFileActionGroup.ID, new NewFileActionGroup());
             manager.registerAction(DeleteFileAction.ID, new DeleteFileAction());
+            manager.registerAction(FormatJavaFilesAction.ID, new FormatJavaFilesAction());
             if(Build.VERSION.SDK_INT<Build.VERSION_CODES.R) {
                 manager.registerAction(ImportFileActionGroup.ID,new ImportFileActionGroup());
             }
@@ -0,0 +1,145 @@
+package com.tyron.code.ai.context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.code.ai.model.ChatMessage;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Builds the prompt sent to the model so that it fits in a fixed token budget.
+ * <p>
+ * The instructions and the user message are always included. The remaining budget is shared
+ * between the conversation history (newest first), the most relevant source snippets
+ * (best score first) and the project structure summary, in that order of priority.
+ * Tokens are estimated from the character count, which is close enough for budgeting.
+ */
+public class ContextPacker {
+
+    private static final int CHARS_PER_TOKEN = 4;
+
+    /**
+     * Share of the remaining budget that the conversation history may use
+     */
+    private static final double HISTORY_SHARE = 0.3;
+
+    /**
+     * Share of the remaining budget that the project structure may use
+     */
+    private static final double STRUCTURE_SHARE = 0.15;
+
+    private final int tokenBudget;
+
+    public ContextPacker(int tokenBudget) {
+        this.tokenBudget = tokenBudget;
+    }
+
+    public int getTokenBudget() {
+        return tokenBudget;
+    }
+
+    public static int estimateTokens(CharSequence text) {
+        return (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    @NonNull
+    public String pack(@NonNull String preamble,
+                       @Nullable String structure,
+                       @Nullable File projectRoot,
+                       @NonNull List<SourceIndex.Snippet> snippets,
+                       @NonNull List<ChatMessage> history,
+                       @NonNull String instructions,
+                       @NonNull String userMessage) {
+        String request = "User: " + userMessage + "\nAssistant: ";
+        int remaining = tokenBudget
+                        - estimateTokens(preamble)
+                        - estimateTokens(instructions)
+                        - estimateTokens(request);
+
+        // history, newest messages are kept first
+        int historyBudget = (int) (Math.max(0, remaining) * HISTORY_SHARE);
+        List<String> historyLines = new ArrayList<>();
+        for (int i = history.size() - 1; i >= 0; i--) {
+            ChatMessage message = history.get(i);
+            String line = (message.isUser() ? "User: " : "Assistant: ") + message.getMessage() + "\n";
+            int cost = estimateTokens(line);
+            if (cost > historyBudget) {
+                break;
+            }
+            historyBudget -= cost;
+            remaining -= cost;
+            historyLines.add(line);
+        }
+        Collections.reverse(historyLines);
+
+        int structureBudget = (int) (Math.max(0, remaining) * STRUCTURE_SHARE);
+        String structureSection = null;
+        if (structure != null && !structure.isEmpty() && structureBudget > 0) {
+            structureSection = truncateLines(structure, structureBudget * CHARS_PER_TOKEN);
+        }
+        if (structureSection != null) {
+            remaining -= estimateTokens(structureSection);
+        }
+
+        List<String> snippetSections = new ArrayList<>();
+        for (SourceIndex.Snippet snippet : snippets) {
+            String section = "// " + relativePath(projectRoot, snippet.getFile())
+                             + " (line " + snippet.getStartLine() + ")\n"
+                             + snippet.getText();
+            int cost = estimateTokens(section);
+            if (cost > remaining) {
+                continue;
+            }
+            remaining -= cost;
+            snippetSections.add(section);
+        }
+
+        StringBuilder prompt = new StringBuilder();
+        prompt.append(preamble);
+        if (structureSection != null) {
+            prompt.append("Current Project Structure:\n");
+            prompt.append(structureSection);
+            prompt.append("\n\n");
+        }
+        if (!snippetSections.isEmpty()) {
+            prompt.append("Relevant Project Sources:\n```\n");
+            for (String section : snippetSections) {
+                prompt.append(section).append('\n');
+            }
+            prompt.append("```\n\n");
+        }
+        for (String line : historyLines) {
+            prompt.append(line);
+        }
+        prompt.append(instructions);
+        prompt.append(request);
+        return prompt.toString();
+    }
+
+    private static String truncateLines(String text, int maxChars) {
+        if (text.length() <= maxChars) {
+            return text;
+        }
+        int end = text.lastIndexOf('\n', maxChars);
+        if (end <= 0) {
+            return "";
+        }
+        return text.substring(0, end + 1) + "…\n";
+    }
+
+    private static String relativePath(@Nullable File root, File file) {
+        if (root == null) {
+            return file.getName();
+        }
+        String rootPath = root.getAbsolutePath();
+        String path = file.getAbsolutePath();
+        if (path.startsWith(rootPath + File.separator)) {
+            return path.substring(rootPath.length() + 1);
+        }
+        return path;
+    }
+}
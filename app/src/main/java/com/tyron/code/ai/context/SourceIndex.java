@@ -0,0 +1,311 @@
+package com.tyron.code.ai.context;
+
+import androidx.annotation.NonNull;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * An in-memory BM25 index over the source files of a project, used to pick the snippets that
+ * are the most relevant to a message sent to the AI assistant.
+ * <p>
+ * Files are split into chunks of {@link #CHUNK_LINES} lines. Terms are identifier-aware:
+ * {@code getProjectStructure} is indexed as itself and as {@code get}, {@code project} and
+ * {@code structure} so that both exact identifiers and natural language queries match.
+ * <p>
+ * The index is updated one file at a time through {@link #update(File)} and
+ * {@link #remove(File)}, a query never walks the file system.
+ */
+public class SourceIndex {
+
+    static final int CHUNK_LINES = 40;
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * Files larger than this are usually generated and are not worth sending to the model
+     */
+    private static final long MAX_FILE_SIZE = 512 * 1024;
+
+    public static class Snippet {
+        private final File file;
+        private final int startLine;
+        private final String text;
+        private final double score;
+
+        Snippet(File file, int startLine, String text, double score) {
+            this.file = file;
+            this.startLine = startLine;
+            this.text = text;
+            this.score = score;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return The 1-based line in the file where this snippet starts
+         */
+        public int getStartLine() {
+            return startLine;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public double getScore() {
+            return score;
+        }
+    }
+
+    private static class Chunk {
+        final File file;
+        final int startLine;
+        final String text;
+        final Map<String, Integer> termFrequencies;
+        final int length;
+
+        Chunk(File file, int startLine, String text, Map<String, Integer> termFrequencies,
+              int length) {
+            this.file = file;
+            this.startLine = startLine;
+            this.text = text;
+            this.termFrequencies = termFrequencies;
+            this.length = length;
+        }
+    }
+
+    private final Map<File, List<Chunk>> chunksByFile = new HashMap<>();
+    private final Map<File, Long> lastModified = new HashMap<>();
+    private final Map<String, Set<Chunk>> postings = new HashMap<>();
+    private long totalLength;
+    private int chunkCount;
+
+    /**
+     * Indexes all the given files, files that are already indexed and have not been
+     * modified since are skipped.
+     */
+    public void addAll(Collection<File> files) {
+        for (File file : files) {
+            update(file);
+        }
+    }
+
+    /**
+     * Re-indexes the given file if it has changed since it was last indexed.
+     */
+    public synchronized void update(@NonNull File file) {
+        Long previous = lastModified.get(file);
+        if (previous != null && previous == file.lastModified()) {
+            return;
+        }
+        remove(file);
+
+        if (!file.isFile() || file.length() > MAX_FILE_SIZE) {
+            return;
+        }
+        String contents;
+        try {
+            contents = FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return;
+        }
+        update(file, contents);
+        lastModified.put(file, file.lastModified());
+    }
+
+    /**
+     * Indexes the given contents for the file, replacing any previous entry.
+     */
+    public synchronized void update(@NonNull File file, @NonNull String contents) {
+        remove(file);
+
+        // the file name is part of every chunk so a query for a class name
+        // matches the whole class, not only its declaration
+        List<String> nameTerms = tokenize(file.getName());
+
+        String[] lines = contents.split("\n", -1);
+        List<Chunk> chunks = new ArrayList<>((lines.length / CHUNK_LINES) + 1);
+        for (int start = 0; start < lines.length; start += CHUNK_LINES) {
+            int end = Math.min(lines.length, start + CHUNK_LINES);
+            StringBuilder text = new StringBuilder();
+            for (int i = start; i < end; i++) {
+                text.append(lines[i]).append('\n');
+            }
+
+            List<String> terms = tokenize(text);
+            if (terms.isEmpty()) {
+                continue;
+            }
+            terms.addAll(nameTerms);
+
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String term : terms) {
+                frequencies.merge(term, 1, Integer::sum);
+            }
+            Chunk chunk = new Chunk(file, start + 1, text.toString(), frequencies, terms.size());
+            chunks.add(chunk);
+
+            for (String term : frequencies.keySet()) {
+                postings.computeIfAbsent(term, k -> new HashSet<>()).add(chunk);
+            }
+            totalLength += chunk.length;
+            chunkCount++;
+        }
+        chunksByFile.put(file, chunks);
+    }
+
+    public synchronized void remove(@NonNull File file) {
+        lastModified.remove(file);
+        List<Chunk> chunks = chunksByFile.remove(file);
+        if (chunks == null) {
+            return;
+        }
+        for (Chunk chunk : chunks) {
+            for (String term : chunk.termFrequencies.keySet()) {
+                Set<Chunk> set = postings.get(term);
+                if (set != null) {
+                    set.remove(chunk);
+                    if (set.isEmpty()) {
+                        postings.remove(term);
+                    }
+                }
+            }
+            totalLength -= chunk.length;
+            chunkCount--;
+        }
+    }
+
+    /**
+     * Re-checks the modification time of every indexed file, used when files may have
+     * been changed without going through {@link #update(File)}.
+     */
+    public synchronized void refresh() {
+        for (File file : new ArrayList<>(chunksByFile.keySet())) {
+            if (file.exists()) {
+                update(file);
+            } else {
+                remove(file);
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return chunksByFile.size();
+    }
+
+    /**
+     * @return The chunks with the highest BM25 score for the query, best first
+     */
+    @NonNull
+    public synchronized List<Snippet> search(@NonNull String query, int limit) {
+        if (chunkCount == 0 || limit <= 0) {
+            return Collections.emptyList();
+        }
+        Set<String> queryTerms = new HashSet<>(tokenize(query));
+        double averageLength = (double) totalLength / chunkCount;
+
+        Map<Chunk, Double> scores = new HashMap<>();
+        for (String term : queryTerms) {
+            Set<Chunk> matches = postings.get(term);
+            if (matches == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (chunkCount - matches.size() + 0.5) / (matches.size() + 0.5));
+            for (Chunk chunk : matches) {
+                int tf = chunk.termFrequencies.get(term);
+                double norm = tf + K1 * (1 - B + B * chunk.length / averageLength);
+                scores.merge(chunk, idf * tf * (K1 + 1) / norm, Double::sum);
+            }
+        }
+
+        PriorityQueue<Map.Entry<Chunk, Double>> best =
+                new PriorityQueue<>(limit + 1, Map.Entry.comparingByValue());
+        for (Map.Entry<Chunk, Double> entry : scores.entrySet()) {
+            best.add(entry);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Snippet> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Map.Entry<Chunk, Double> entry = best.poll();
+            Chunk chunk = entry.getKey();
+            result.add(new Snippet(chunk.file, chunk.startLine, chunk.text, entry.getValue()));
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Splits the text into lower case terms. Identifiers are emitted as a whole and, when
+     * they are made of several camel case or snake case words, as each of those words.
+     */
+    static List<String> tokenize(CharSequence text) {
+        List<String> terms = new ArrayList<>();
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            if (!Character.isJavaIdentifierPart(text.charAt(i))) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < length && Character.isJavaIdentifierPart(text.charAt(i))) {
+                i++;
+            }
+            addIdentifier(terms, text.subSequence(start, i).toString());
+        }
+        return terms;
+    }
+
+    private static void addIdentifier(List<String> terms, String identifier) {
+        if (identifier.length() < 2 || Character.isDigit(identifier.charAt(0))) {
+            return;
+        }
+        terms.add(identifier.toLowerCase());
+
+        int partCount = 0;
+        int partStart = 0;
+        List<String> parts = new ArrayList<>();
+        for (int i = 1; i <= identifier.length(); i++) {
+            boolean boundary = i == identifier.length();
+            if (!boundary) {
+                char c = identifier.charAt(i);
+                char prev = identifier.charAt(i - 1);
+                boundary = c == '_' || c == '$'
+                           || (Character.isUpperCase(c) && Character.isLowerCase(prev))
+                           || (Character.isUpperCase(c) && i + 1 < identifier.length()
+                               && Character.isLowerCase(identifier.charAt(i + 1))
+                               && Character.isUpperCase(prev));
+            }
+            if (boundary) {
+                String part = identifier.substring(partStart, i).replace("_", "").replace("$", "");
+                if (part.length() >= 2) {
+                    parts.add(part.toLowerCase());
+                }
+                partCount++;
+                partStart = i;
+            }
+        }
+        if (partCount > 1) {
+            terms.addAll(parts);
+        }
+    }
+}
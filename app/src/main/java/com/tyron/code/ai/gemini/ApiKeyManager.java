@@ -7,7 +7,9 @@ public class ApiKeyManager {
     private static final String PREFS_NAME = "gemini_ai_prefs";
     private static final String KEY_API_KEY = "api_key";
     private static final String KEY_MODEL = "selected_model";
+    private static final String KEY_CONTEXT_TOKEN_BUDGET = "context_token_budget";
     private static final String DEFAULT_MODEL = "gemini-1.5-flash";
+    private static final int DEFAULT_CONTEXT_TOKEN_BUDGET = 8000;
     
     private final SharedPreferences prefs;
     
@@ -36,6 +38,17 @@ public class ApiKeyManager {
         return prefs.getString(KEY_MODEL, DEFAULT_MODEL);
     }
     
+    /**
+     * The maximum number of tokens the prompt built for each message may use
+     */
+    public int getContextTokenBudget() {
+        return prefs.getInt(KEY_CONTEXT_TOKEN_BUDGET, DEFAULT_CONTEXT_TOKEN_BUDGET);
+    }
+    
+    public void saveContextTokenBudget(int budget) {
+        prefs.edit().putInt(KEY_CONTEXT_TOKEN_BUDGET, budget).apply();
+    }
+    
     public void clearApiKey() {
         prefs.edit().remove(KEY_API_KEY).apply();
     }
@@ -10,23 +10,62 @@ import com.google.ai.client.generativeai.type.GenerateContentResponse;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.api.KotlinModule;
+import com.tyron.builder.project.api.Module;
+import com.tyron.code.ApplicationLoader;
+import com.tyron.code.ai.context.ContextPacker;
+import com.tyron.code.ai.context.SourceIndex;
 import com.tyron.code.ai.model.ChatMessage;
 import com.tyron.code.ai.operations.FileOperationsManager;
+import com.tyron.code.event.FileCreatedEvent;
+import com.tyron.code.event.FileDeletedEvent;
+import com.tyron.code.event.SubscriptionReceipt;
+import com.tyron.code.ui.main.action.project.SaveEvent;
+import com.tyron.code.ui.project.ProjectManager;
+
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
 public class GeminiApiClient {
     private static final String TAG = "GeminiApiClient";
+    
+    /**
+     * Number of snippets requested from the index, the packer drops
+     * the ones that do not fit in the token budget
+     */
+    private static final int MAX_SNIPPETS = 24;
+    
+    private static final String PREAMBLE =
+            "You are an AI coding assistant integrated into CodeAssist Android IDE. " +
+            "You can help with code generation, debugging, refactoring, and file operations.\n\n";
+    
+    private static final String FILE_OPERATION_INSTRUCTIONS =
+            "\nFile Operation Commands (use these in your response):\n" +
+            "- [CREATE_FILE:path/to/file.java] - Create a new file\n" +
+            "- [WRITE_FILE:path/to/file.java]content[/WRITE_FILE] - Write content to file\n" +
+            "- [READ_FILE:path/to/file.java] - Read file content\n" +
+            "- [DELETE_FILE:path/to/file.java] - Delete a file\n" +
+            "- [CREATE_DIR:path/to/directory] - Create a directory\n" +
+            "- [LIST_FILES:path/to/directory] - List files in directory\n\n";
+    
     private final Context context;
     private final ApiKeyManager apiKeyManager;
     private GenerativeModelFutures model;
     private final List<ChatMessage> conversationHistory;
     private final Executor executor;
     private FileOperationsManager fileOpsManager;
+    private SourceIndex sourceIndex;
+    private final List<SubscriptionReceipt<?>> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean sourcesStale;
     
     public interface ResponseCallback {
         void onSuccess(String response);
@@ -36,13 +75,78 @@ public class GeminiApiClient {
     public GeminiApiClient(Context context) {
         this.context = context;
         this.apiKeyManager = new ApiKeyManager(context);
-        this.conversationHistory = new ArrayList<>();
+        this.conversationHistory = new CopyOnWriteArrayList<>();
         this.executor = Executors.newSingleThreadExecutor();
         initializeModel();
     }
     
     public void setProjectRoot(File projectRoot) {
         this.fileOpsManager = new FileOperationsManager(projectRoot);
+        
+        unsubscribe();
+        SourceIndex index = new SourceIndex();
+        this.sourceIndex = index;
+        executor.execute(() -> indexProject(projectRoot, index));
+    }
+    
+    /**
+     * Fills the index from the file maps of the modules of the opened project and keeps it
+     * up to date from then on, files are never re-read unless they have changed.
+     */
+    private void indexProject(File projectRoot, SourceIndex index) {
+        Project project = ProjectManager.getInstance().getCurrentProject();
+        if (project == null || !project.getRootFile().equals(projectRoot)) {
+            return;
+        }
+        
+        for (Module module : project.getModules()) {
+            if (module instanceof JavaModule) {
+                index.addAll(((JavaModule) module).getJavaFiles().values());
+            }
+            if (module instanceof KotlinModule) {
+                index.addAll(((KotlinModule) module).getKotlinFiles().values());
+            }
+        }
+        
+        subscriptions.add(project.getEventManager().subscribeEvent(FileCreatedEvent.class,
+                (event, unsubscribe) -> {
+                    fileOpsManager.invalidateStructure();
+                    File file = event.getFile();
+                    if (isSourceFile(file)) {
+                        executor.execute(() -> index.update(file));
+                    }
+                }));
+        subscriptions.add(project.getEventManager().subscribeEvent(FileDeletedEvent.class,
+                (event, unsubscribe) -> {
+                    fileOpsManager.invalidateStructure();
+                    File file = event.getDeletedFile();
+                    if (isSourceFile(file)) {
+                        executor.execute(() -> index.remove(file));
+                    } else {
+                        // a deleted directory may have contained indexed files
+                        sourcesStale = true;
+                    }
+                }));
+        subscriptions.add(ApplicationLoader.getInstance().getEventManager()
+                .subscribeEvent(SaveEvent.class, (event, unsubscribe) -> {
+                    for (File file : event.getSavedFiles()) {
+                        if (isSourceFile(file)) {
+                            executor.execute(() -> index.update(file));
+                        }
+                    }
+                }));
+    }
+    
+    private void unsubscribe() {
+        for (SubscriptionReceipt<?> subscription : subscriptions) {
+            subscription.unsubscribe();
+        }
+        subscriptions.clear();
+    }
+    
+    private static boolean isSourceFile(File file) {
+        String name = file.getName();
+        return name.endsWith(".java") || name.endsWith(".kt");
     }
     
     private void initializeModel() {
@@ -68,16 +172,85 @@ public class GeminiApiClient {
             return;
         }
         
-        // Add user message to history
-        conversationHistory.add(new ChatMessage(userMessage, true, System.currentTimeMillis()));
-        
-        // Build context with file operations capability
-        String enhancedPrompt = buildEnhancedPrompt(userMessage);
-        
-        Content content = new Content.Builder()
-                .addText(enhancedPrompt)
-                .build();
+        // Build context with file operations capability, off the caller's thread
+        // since it may need to query the source index
+        executor.execute(() -> {
+            String enhancedPrompt = buildEnhancedPrompt(userMessage);
+            
+            // Add user message to history
+            conversationHistory.add(new ChatMessage(userMessage, true, System.currentTimeMillis()));
+            
+            Content content = new Content.Builder()
+                    .addText(enhancedPrompt)
+                    .build();
+            
+            generate(content, callback);
+        });
+    }
+    
+    /**
+     * Like {@link #sendMessage(String, ResponseCallback)} but renders the response as it is
+     * generated. File operations run as soon as their command is complete instead of after
+     * the whole response has been received.
+     */
+    public void sendMessageStreaming(String userMessage, StreamingResponseHandler.Callback callback) {
+        if (model == null) {
+            callback.onError("API key not configured. Please set your Gemini API key in settings.");
+            return;
+        }
         
+        executor.execute(() -> {
+            String enhancedPrompt = buildEnhancedPrompt(userMessage);
+            conversationHistory.add(new ChatMessage(userMessage, true, System.currentTimeMillis()));
+            
+            Content content = new Content.Builder()
+                    .addText(enhancedPrompt)
+                    .build();
+            
+            StreamingResponseHandler handler = new StreamingResponseHandler(fileOpsManager,
+                    this::onFileChanged, new StreamingResponseHandler.Callback() {
+                @Override
+                public void onPartialResponse(String text) {
+                    callback.onPartialResponse(text);
+                }
+                
+                @Override
+                public void onComplete(String response) {
+                    conversationHistory.add(new ChatMessage(response, false, System.currentTimeMillis()));
+                    callback.onComplete(response);
+                }
+                
+                @Override
+                public void onError(String error) {
+                    callback.onError(error);
+                }
+            });
+            model.generateContentStream(content).subscribe(new Subscriber<GenerateContentResponse>() {
+                @Override
+                public void onSubscribe(Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+                
+                @Override
+                public void onNext(GenerateContentResponse response) {
+                    handler.onChunk(response.getText());
+                }
+                
+                @Override
+                public void onError(Throwable t) {
+                    Log.e(TAG, "Error streaming content", t);
+                    handler.onError(t);
+                }
+                
+                @Override
+                public void onComplete() {
+                    handler.onComplete();
+                }
+            });
+        });
+    }
+    
+    private void generate(Content content, ResponseCallback callback) {
         ListenableFuture<GenerateContentResponse> response = model.generateContent(content);
         
         Futures.addCallback(response, new FutureCallback<GenerateContentResponse>() {
@@ -103,136 +276,51 @@ public class GeminiApiClient {
     }
     
     private String buildEnhancedPrompt(String userMessage) {
-        StringBuilder prompt = new StringBuilder();
-        
-        // Add system context
-        prompt.append("You are an AI coding assistant integrated into CodeAssist Android IDE. ");
-        prompt.append("You can help with code generation, debugging, refactoring, and file operations.\n\n");
+        String structure = null;
+        File projectRoot = null;
+        List<SourceIndex.Snippet> snippets = new ArrayList<>();
         
         // Add project context if available
         if (fileOpsManager != null) {
-            prompt.append("Current Project Structure:\n");
-            prompt.append(fileOpsManager.getProjectStructure());
-            prompt.append("\n\n");
+            projectRoot = fileOpsManager.getProjectRoot();
+            structure = fileOpsManager.getProjectStructure();
         }
-        
-        // Add conversation context (last 5 messages)
-        int startIdx = Math.max(0, conversationHistory.size() - 5);
-        for (int i = startIdx; i < conversationHistory.size(); i++) {
-            ChatMessage msg = conversationHistory.get(i);
-            prompt.append(msg.isUser() ? "User: " : "Assistant: ");
-            prompt.append(msg.getMessage()).append("\n");
+        SourceIndex index = sourceIndex;
+        if (index != null) {
+            if (sourcesStale) {
+                sourcesStale = false;
+                index.refresh();
+            }
+            snippets = index.search(userMessage, MAX_SNIPPETS);
         }
         
-        // Add file operation instructions
-        prompt.append("\nFile Operation Commands (use these in your response):\n");
-        prompt.append("- [CREATE_FILE:path/to/file.java] - Create a new file\n");
-        prompt.append("- [WRITE_FILE:path/to/file.java]content[/WRITE_FILE] - Write content to file\n");
-        prompt.append("- [READ_FILE:path/to/file.java] - Read file content\n");
-        prompt.append("- [DELETE_FILE:path/to/file.java] - Delete a file\n");
-        prompt.append("- [CREATE_DIR:path/to/directory] - Create a directory\n");
-        prompt.append("- [LIST_FILES:path/to/directory] - List files in directory\n\n");
-        
-        // Add current user message
-        prompt.append("User: ").append(userMessage).append("\n");
-        prompt.append("Assistant: ");
-        
-        return prompt.toString();
+        ContextPacker packer = new ContextPacker(apiKeyManager.getContextTokenBudget());
+        return packer.pack(PREAMBLE,
+                structure,
+                projectRoot,
+                snippets,
+                conversationHistory,
+                FILE_OPERATION_INSTRUCTIONS,
+                userMessage);
     }
     
     private String processFileOperations(String response) {
         if (fileOpsManager == null) {
             return response;
         }
-        
-        StringBuilder result = new StringBuilder(response);
-        
-        try {
-            // Process CREATE_FILE
-            processCommand(result, "CREATE_FILE", (path) -> {
-                try {
-                    fileOpsManager.createFile(path);
-                    return "✓ File created: " + path;
-                } catch (Exception e) {
-                    return "✗ Failed to create file: " + e.getMessage();
-                }
-            });
-            
-            // Process CREATE_DIR
-            processCommand(result, "CREATE_DIR", (path) -> {
-                boolean success = fileOpsManager.createDirectory(path);
-                return success ? "✓ Directory created: " + path : "✗ Failed to create directory";
-            });
-            
-            // Process WRITE_FILE
-            int writeStart = result.indexOf("[WRITE_FILE:");
-            while (writeStart != -1) {
-                int pathEnd = result.indexOf("]", writeStart);
-                if (pathEnd == -1) break;
-                
-                String path = result.substring(writeStart + 12, pathEnd);
-                int contentEnd = result.indexOf("[/WRITE_FILE]", pathEnd);
-                if (contentEnd == -1) break;
-                
-                String content = result.substring(pathEnd + 1, contentEnd);
-                
-                try {
-                    fileOpsManager.writeFile(path, content);
-                    result.replace(writeStart, contentEnd + 13, "✓ File written: " + path + "\n");
-                } catch (Exception e) {
-                    result.replace(writeStart, contentEnd + 13, "✗ Failed to write file: " + e.getMessage() + "\n");
-                }
-                
-                writeStart = result.indexOf("[WRITE_FILE:", writeStart + 1);
-            }
-            
-            // Process DELETE_FILE
-            processCommand(result, "DELETE_FILE", (path) -> {
-                boolean success = fileOpsManager.delete(path);
-                return success ? "✓ Deleted: " + path : "✗ Failed to delete";
-            });
-            
-            // Process READ_FILE
-            processCommand(result, "READ_FILE", (path) -> {
-                try {
-                    String content = fileOpsManager.readFile(path);
-                    return "File content of " + path + ":\n```\n" + content + "\n```";
-                } catch (Exception e) {
-                    return "✗ Failed to read file: " + e.getMessage();
-                }
-            });
-            
-            // Process LIST_FILES
-            processCommand(result, "LIST_FILES", (path) -> {
-                List<String> files = fileOpsManager.listFiles(path);
-                return "Files in " + path + ":\n" + String.join("\n", files);
-            });
-            
-        } catch (Exception e) {
-            Log.e(TAG, "Error processing file operations", e);
-        }
-        
-        return result.toString();
+        return StreamingResponseHandler.process(fileOpsManager, this::onFileChanged, response);
     }
     
-    private void processCommand(StringBuilder text, String command, CommandProcessor processor) {
-        String marker = "[" + command + ":";
-        int start = text.indexOf(marker);
-        
-        while (start != -1) {
-            int end = text.indexOf("]", start);
-            if (end == -1) break;
-            
-            String path = text.substring(start + marker.length(), end);
-            String replacement = processor.process(path);
-            
-            text.replace(start, end + 1, replacement);
-            start = text.indexOf(marker, start + replacement.length());
+    private void onFileChanged(File file) {
+        SourceIndex index = sourceIndex;
+        if (index == null || !isSourceFile(file)) {
+            return;
+        }
+        if (file.exists()) {
+            index.update(file);
+        } else {
+            index.remove(file);
         }
-    }
-    
-    interface CommandProcessor {
-        String process(String input);
     }
     
     public List<ChatMessage> getConversationHistory() {
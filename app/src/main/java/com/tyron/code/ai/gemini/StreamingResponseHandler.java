@@ -0,0 +1,88 @@
+package com.tyron.code.ai.gemini;
+
+import androidx.annotation.Nullable;
+
+import com.tyron.code.ai.operations.FileOperationExecutor;
+import com.tyron.code.ai.operations.FileOperationParser;
+import com.tyron.code.ai.operations.FileOperationsManager;
+
+/**
+ * Consumes a model response chunk by chunk. File operations run as soon as their command is
+ * complete and the text rendered from every chunk is reported as soon as it is available.
+ * <p>
+ * Chunks must be delivered sequentially, which is what a reactive streams publisher
+ * guarantees for a single subscriber.
+ */
+public class StreamingResponseHandler {
+
+    public interface Callback {
+
+        /**
+         * @param text The text rendered since the last call, never empty. Appending every
+         *             partial response gives the response passed to {@link #onComplete(String)}
+         */
+        void onPartialResponse(String text);
+
+        /**
+         * @param response The full rendered response
+         */
+        void onComplete(String response);
+
+        void onError(String error);
+    }
+
+    private final FileOperationParser parser;
+    private final FileOperationExecutor executor;
+    private final Callback callback;
+    private boolean done;
+
+    public StreamingResponseHandler(@Nullable FileOperationsManager fileOpsManager,
+                                    @Nullable FileOperationExecutor.OnFileChangedListener listener,
+                                    Callback callback) {
+        this.executor = new FileOperationExecutor(fileOpsManager, listener);
+        this.parser = new FileOperationParser(executor);
+        this.callback = callback;
+    }
+
+    public void onChunk(@Nullable String chunk) {
+        if (done || chunk == null || chunk.isEmpty()) {
+            return;
+        }
+        parser.feed(chunk);
+        // only the new text is reported, the full response is built once on completion
+        String text = executor.takeNewOutput();
+        if (!text.isEmpty()) {
+            callback.onPartialResponse(text);
+        }
+    }
+
+    public void onComplete() {
+        if (done) {
+            return;
+        }
+        done = true;
+        parser.finish();
+        callback.onComplete(executor.getOutput());
+    }
+
+    public void onError(Throwable t) {
+        if (done) {
+            return;
+        }
+        done = true;
+        callback.onError("Error: " + t.getMessage());
+    }
+
+    /**
+     * Runs the file operations of a response that was received in full
+     */
+    public static String process(@Nullable FileOperationsManager fileOpsManager,
+                                 @Nullable FileOperationExecutor.OnFileChangedListener listener,
+                                 String response) {
+        FileOperationExecutor executor = new FileOperationExecutor(fileOpsManager, listener);
+        FileOperationParser parser = new FileOperationParser(executor);
+        parser.feed(response);
+        parser.finish();
+        return executor.getOutput();
+    }
+}
@@ -0,0 +1,130 @@
+package com.tyron.code.ai.operations;
+
+import android.util.Log;
+
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Runs the commands reported by a {@link FileOperationParser} as soon as each one is complete
+ * and builds the text shown to the user, where every command is replaced by its result.
+ */
+public class FileOperationExecutor implements FileOperationParser.Listener {
+    private static final String TAG = "FileOperationExecutor";
+
+    public interface OnFileChangedListener {
+        /**
+         * Called after a file has been created, written or deleted
+         */
+        void onFileChanged(File file);
+    }
+
+    @Nullable
+    private final FileOperationsManager fileOpsManager;
+    @Nullable
+    private final OnFileChangedListener onFileChangedListener;
+    private final StringBuilder output = new StringBuilder();
+    private int taken;
+
+    public FileOperationExecutor(@Nullable FileOperationsManager fileOpsManager,
+                                 @Nullable OnFileChangedListener onFileChangedListener) {
+        this.fileOpsManager = fileOpsManager;
+        this.onFileChangedListener = onFileChangedListener;
+    }
+
+    /**
+     * @return The text of the response so far, with the results of the executed commands
+     */
+    public String getOutput() {
+        return output.toString();
+    }
+
+    /**
+     * @return The text added to the output since the last call, empty if there is none
+     */
+    public String takeNewOutput() {
+        String text = output.substring(taken);
+        taken = output.length();
+        return text;
+    }
+
+    @Override
+    public void onText(String text) {
+        output.append(text);
+    }
+
+    @Override
+    public void onCommand(String command, String path) {
+        if (fileOpsManager == null) {
+            // no project is opened, leave the command as the model wrote it
+            output.append('[').append(command).append(':').append(path).append(']');
+            return;
+        }
+
+        try {
+            output.append(execute(command, path));
+        } catch (Exception e) {
+            Log.e(TAG, "Error processing file operation " + command, e);
+        }
+    }
+
+    private String execute(String command, String path) {
+        switch (command) {
+            case FileOperationParser.CREATE_FILE:
+                try {
+                    fileOpsManager.createFile(path);
+                    notifyFileChanged(path);
+                    return "✓ File created: " + path;
+                } catch (Exception e) {
+                    return "✗ Failed to create file: " + e.getMessage();
+                }
+            case FileOperationParser.CREATE_DIR: {
+                boolean success = fileOpsManager.createDirectory(path);
+                return success ? "✓ Directory created: " + path : "✗ Failed to create directory";
+            }
+            case FileOperationParser.DELETE_FILE: {
+                boolean success = fileOpsManager.delete(path);
+                notifyFileChanged(path);
+                return success ? "✓ Deleted: " + path : "✗ Failed to delete";
+            }
+            case FileOperationParser.READ_FILE:
+                try {
+                    String content = fileOpsManager.readFile(path);
+                    return "File content of " + path + ":\n```\n" + content + "\n```";
+                } catch (Exception e) {
+                    return "✗ Failed to read file: " + e.getMessage();
+                }
+            case FileOperationParser.LIST_FILES: {
+                List<String> files = fileOpsManager.listFiles(path);
+                return "Files in " + path + ":\n" + String.join("\n", files);
+            }
+            default:
+                return "";
+        }
+    }
+
+    @Override
+    public void onWriteFile(String path, String content) {
+        if (fileOpsManager == null) {
+            output.append('[').append(FileOperationParser.WRITE_FILE).append(':').append(path)
+                    .append(']').append(content).append("[/WRITE_FILE]");
+            return;
+        }
+
+        try {
+            fileOpsManager.writeFile(path, content);
+            notifyFileChanged(path);
+            output.append("✓ File written: ").append(path).append("\n");
+        } catch (Exception e) {
+            output.append("✗ Failed to write file: ").append(e.getMessage()).append("\n");
+        }
+    }
+
+    private void notifyFileChanged(String path) {
+        if (onFileChangedListener != null && fileOpsManager != null) {
+            onFileChangedListener.onFileChanged(new File(fileOpsManager.getProjectRoot(), path));
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.tyron.code.ai.operations;
+
+/**
+ * Single pass, incremental parser for the file operation commands embedded in a model response.
+ * <p>
+ * The response can be fed in chunks of any size as it is streamed, a command split across
+ * chunks is held back until it is complete. Each character is looked at once so parsing
+ * is linear in the length of the response.
+ * <p>
+ * Recognized commands are {@code [CREATE_FILE:path]}, {@code [READ_FILE:path]},
+ * {@code [DELETE_FILE:path]}, {@code [CREATE_DIR:path]}, {@code [LIST_FILES:path]} and
+ * {@code [WRITE_FILE:path]content[/WRITE_FILE]}. Anything else is passed through as text.
+ */
+public class FileOperationParser {
+
+    public static final String CREATE_FILE = "CREATE_FILE";
+    public static final String WRITE_FILE = "WRITE_FILE";
+    public static final String READ_FILE = "READ_FILE";
+    public static final String DELETE_FILE = "DELETE_FILE";
+    public static final String CREATE_DIR = "CREATE_DIR";
+    public static final String LIST_FILES = "LIST_FILES";
+
+    private static final String[] COMMANDS = {
+            CREATE_FILE, WRITE_FILE, READ_FILE, DELETE_FILE, CREATE_DIR, LIST_FILES
+    };
+
+    private static final String WRITE_FILE_END = "[/WRITE_FILE]";
+
+    /**
+     * Longest path accepted in a command, a longer one means the bracket was not a command
+     */
+    private static final int MAX_ARGUMENT_LENGTH = 1024;
+
+    public interface Listener {
+
+        /**
+         * Called with text that is not part of any command
+         */
+        void onText(String text);
+
+        /**
+         * Called when a single tag command such as {@code [CREATE_FILE:path]} is complete
+         */
+        void onCommand(String command, String argument);
+
+        /**
+         * Called as soon as the closing {@code [/WRITE_FILE]} of a write command is read
+         */
+        void onWriteFile(String path, String content);
+    }
+
+    private enum State {
+        TEXT,
+        TAG_NAME,
+        TAG_ARGUMENT,
+        WRITE_CONTENT
+    }
+
+    private final Listener listener;
+
+    private State state = State.TEXT;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder tag = new StringBuilder();
+    private final StringBuilder content = new StringBuilder();
+    private String command;
+    private String writePath;
+    private int endMatched;
+
+    public FileOperationParser(Listener listener) {
+        this.listener = listener;
+    }
+
+    public void feed(CharSequence chunk) {
+        for (int i = 0; i < chunk.length(); i++) {
+            accept(chunk.charAt(i));
+        }
+        flushText();
+    }
+
+    /**
+     * Called when the response is complete, an unterminated command is passed through as text.
+     */
+    public void finish() {
+        switch (state) {
+            case TAG_NAME:
+            case TAG_ARGUMENT:
+                text.append(tag);
+                break;
+            case WRITE_CONTENT:
+                text.append('[').append(WRITE_FILE).append(':').append(writePath).append(']');
+                text.append(content);
+                text.append(WRITE_FILE_END, 0, endMatched);
+                break;
+        }
+        reset();
+        flushText();
+    }
+
+    private void accept(char c) {
+        switch (state) {
+            case TEXT:
+                if (c == '[') {
+                    tag.append(c);
+                    state = State.TAG_NAME;
+                } else {
+                    text.append(c);
+                }
+                break;
+            case TAG_NAME:
+                acceptTagName(c);
+                break;
+            case TAG_ARGUMENT:
+                acceptTagArgument(c);
+                break;
+            case WRITE_CONTENT:
+                acceptWriteContent(c);
+                break;
+        }
+    }
+
+    private void acceptTagName(char c) {
+        if (c == ':') {
+            String name = tag.substring(1);
+            for (String candidate : COMMANDS) {
+                if (candidate.equals(name)) {
+                    command = candidate;
+                    tag.append(c);
+                    state = State.TAG_ARGUMENT;
+                    return;
+                }
+            }
+        } else if (isCommandPrefix(tag, c)) {
+            tag.append(c);
+            return;
+        }
+        abandonTag(c);
+    }
+
+    private void acceptTagArgument(char c) {
+        if (c == ']') {
+            String argument = tag.substring(command.length() + 2);
+            tag.setLength(0);
+            flushText();
+            if (WRITE_FILE.equals(command)) {
+                writePath = argument;
+                state = State.WRITE_CONTENT;
+            } else {
+                listener.onCommand(command, argument);
+                reset();
+            }
+        } else if (c == '\n' || tag.length() > MAX_ARGUMENT_LENGTH) {
+            abandonTag(c);
+        } else {
+            tag.append(c);
+        }
+    }
+
+    private void acceptWriteContent(char c) {
+        if (c == WRITE_FILE_END.charAt(endMatched)) {
+            endMatched++;
+            if (endMatched == WRITE_FILE_END.length()) {
+                listener.onWriteFile(writePath, content.toString());
+                reset();
+            }
+            return;
+        }
+        if (endMatched > 0) {
+            // the closing marker starts with the only '[' in it, so a partial match
+            // can only restart at the current character
+            content.append(WRITE_FILE_END, 0, endMatched);
+            endMatched = 0;
+            if (c == WRITE_FILE_END.charAt(0)) {
+                endMatched = 1;
+                return;
+            }
+        }
+        content.append(c);
+    }
+
+    /**
+     * The buffered tag turned out not to be a command, it is passed through as text and
+     * the current character is handled again since it may start a new tag.
+     */
+    private void abandonTag(char c) {
+        text.append(tag);
+        tag.setLength(0);
+        reset();
+        accept(c);
+    }
+
+    private static boolean isCommandPrefix(CharSequence tag, char next) {
+        int length = tag.length() - 1;
+        for (String candidate : COMMANDS) {
+            if (candidate.length() > length
+                && candidate.charAt(length) == next
+                && candidate.regionMatches(0, tag.toString(), 1, length)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void reset() {
+        state = State.TEXT;
+        tag.setLength(0);
+        content.setLength(0);
+        command = null;
+        writePath = null;
+        endMatched = 0;
+    }
+
+    private void flushText() {
+        if (text.length() > 0) {
+            listener.onText(text.toString());
+            text.setLength(0);
+        }
+    }
+}
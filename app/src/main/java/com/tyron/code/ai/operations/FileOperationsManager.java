@@ -19,6 +19,7 @@ import java.util.stream.Stream;
 public class FileOperationsManager {
     private static final String TAG = "FileOperationsManager";
     private final File projectRoot;
+    private volatile String cachedStructure;
     
     public FileOperationsManager(File projectRoot) {
         this.projectRoot = projectRoot;
@@ -56,9 +57,13 @@ public class FileOperationsManager {
             }
         }
         
+        boolean existed = file.exists();
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
             writer.write(content);
         }
+        if (!existed) {
+            invalidateStructure();
+        }
         Log.d(TAG, "File written: " + relativePath);
     }
     
@@ -76,6 +81,9 @@ public class FileOperationsManager {
         }
         
         boolean created = file.createNewFile();
+        if (created) {
+            invalidateStructure();
+        }
         Log.d(TAG, "File created: " + relativePath + " - " + created);
         return created;
     }
@@ -86,6 +94,9 @@ public class FileOperationsManager {
     public boolean createDirectory(String relativePath) {
         File dir = new File(projectRoot, relativePath);
         boolean created = dir.mkdirs();
+        if (created) {
+            invalidateStructure();
+        }
         Log.d(TAG, "Directory created: " + relativePath + " - " + created);
         return created;
     }
@@ -96,6 +107,7 @@ public class FileOperationsManager {
     public boolean delete(String relativePath) {
         File file = new File(projectRoot, relativePath);
         boolean deleted = deleteRecursive(file);
+        invalidateStructure();
         Log.d(TAG, "Deleted: " + relativePath + " - " + deleted);
         return deleted;
     }
@@ -154,17 +166,33 @@ public class FileOperationsManager {
         }
         
         boolean renamed = oldFile.renameTo(newFile);
+        if (renamed) {
+            invalidateStructure();
+        }
         Log.d(TAG, "Renamed: " + oldPath + " -> " + newPath + " - " + renamed);
         return renamed;
     }
     
     /**
-     * Get project structure as string
+     * Get project structure as string, the project is only walked again after
+     * {@link #invalidateStructure()}
      */
     public String getProjectStructure() {
-        StringBuilder structure = new StringBuilder();
-        buildStructure(projectRoot, "", structure, 0, 3);
-        return structure.toString();
+        String structure = cachedStructure;
+        if (structure == null) {
+            StringBuilder sb = new StringBuilder();
+            buildStructure(projectRoot, "", sb, 0, 3);
+            structure = sb.toString();
+            cachedStructure = structure;
+        }
+        return structure;
+    }
+    
+    /**
+     * Discards the cached project structure, called when files are created or deleted
+     */
+    public void invalidateStructure() {
+        cachedStructure = null;
     }
     
     private void buildStructure(File dir, String prefix, StringBuilder sb, int depth, int maxDepth) {
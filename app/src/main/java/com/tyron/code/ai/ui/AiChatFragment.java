@@ -26,6 +26,7 @@ import com.google.android.material.textfield.TextInputEditText;
 import com.tyron.code.R;
 import com.tyron.code.ai.gemini.ApiKeyManager;
 import com.tyron.code.ai.gemini.GeminiApiClient;
+import com.tyron.code.ai.gemini.StreamingResponseHandler;
 import com.tyron.code.ai.model.ChatMessage;
 
 import java.io.File;
@@ -137,23 +138,41 @@ public class AiChatFragment extends Fragment {
         progressBar.setVisibility(View.VISIBLE);
         sendButton.setEnabled(false);
         
-        // Send to Gemini
-        geminiClient.sendMessage(message, new GeminiApiClient.ResponseCallback() {
+        // Send to Gemini, the response is rendered as it is generated
+        geminiClient.sendMessageStreaming(message, new StreamingResponseHandler.Callback() {
+            private final StringBuilder streamed = new StringBuilder();
+            private boolean started;
+            
+            @Override
+            public void onPartialResponse(String text) {
+                requireActivity().runOnUiThread(() -> {
+                    streamed.append(text);
+                    showResponse(streamed.toString());
+                });
+            }
+            
             @Override
-            public void onSuccess(String response) {
+            public void onComplete(String response) {
                 requireActivity().runOnUiThread(() -> {
                     progressBar.setVisibility(View.GONE);
                     sendButton.setEnabled(true);
                     
-                    // Add AI response to chat
-                    ChatMessage aiMessage = new ChatMessage(response, false, System.currentTimeMillis());
-                    chatAdapter.addMessage(aiMessage);
-                    chatRecyclerView.scrollToPosition(chatAdapter.getItemCount() - 1);
-                    
+                    showResponse(response);
                     updateEmptyState();
                 });
             }
             
+            private void showResponse(String response) {
+                ChatMessage aiMessage = new ChatMessage(response, false, System.currentTimeMillis());
+                if (started) {
+                    chatAdapter.updateLastMessage(aiMessage);
+                } else {
+                    started = true;
+                    chatAdapter.addMessage(aiMessage);
+                }
+                chatRecyclerView.scrollToPosition(chatAdapter.getItemCount() - 1);
+            }
+            
             @Override
             public void onError(String error) {
                 requireActivity().runOnUiThread(() -> {
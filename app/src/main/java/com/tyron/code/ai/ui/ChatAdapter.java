@@ -55,6 +55,18 @@ public class ChatAdapter extends RecyclerView.Adapter<ChatAdapter.MessageViewHol
         notifyItemInserted(messages.size() - 1);
     }
     
+    /**
+     * Replaces the last message, used to render a response while it is being streamed
+     */
+    public void updateLastMessage(ChatMessage message) {
+        if (messages.isEmpty()) {
+            addMessage(message);
+            return;
+        }
+        messages.set(messages.size() - 1, message);
+        notifyItemChanged(messages.size() - 1);
+    }
+    
     public void clearMessages() {
         messages.clear();
         notifyDataSetChanged();
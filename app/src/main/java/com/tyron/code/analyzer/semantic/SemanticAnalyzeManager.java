@@ -0,0 +1,437 @@
+package com.tyron.code.analyzer.semantic;
+
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.tyron.code.language.HighlightUtil;
+import com.tyron.editor.CharPosition;
+import com.tyron.editor.Editor;
+
+import org.eclipse.tm4e.core.theme.FontStyle;
+import org.eclipse.tm4e.core.theme.IRawTheme;
+import org.eclipse.tm4e.core.theme.Theme;
+import org.eclipse.tm4e.core.theme.ThemeTrieElementRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import io.github.rosemoe.sora.lang.analysis.AnalyzeManager;
+import io.github.rosemoe.sora.lang.analysis.StyleReceiver;
+import io.github.rosemoe.sora.lang.brackets.BracketsProvider;
+import io.github.rosemoe.sora.lang.diagnostic.DiagnosticsContainer;
+import io.github.rosemoe.sora.lang.styling.Span;
+import io.github.rosemoe.sora.lang.styling.Spans;
+import io.github.rosemoe.sora.lang.styling.Styles;
+import io.github.rosemoe.sora.lang.styling.TextStyle;
+import io.github.rosemoe.sora.text.ContentReference;
+import io.github.rosemoe.sora.widget.schemes.EditorColorScheme;
+import io.github.rosemoe.sora2.BuildConfig;
+
+/**
+ * An {@link AnalyzeManager} that draws semantic tokens on top of the styles of another
+ * analyze manager, usually a text mate analyzer.
+ *
+ * The tokens are kept in a {@link SemanticTokenStore} and are shifted as the user types, the
+ * lines re-tokenized by the delegate after an edit get the shifted tokens again until
+ * new tokens are set through {@link #setTokens(int, int, int, List)}.
+ *
+ * The styles of the delegate are only modified by its analyzer thread. Tokens computed on other
+ * threads are posted to the main thread which draws them on a copy of the styles shown by the
+ * editor and publishes the copy, the tokens are drawn on the styles of the delegate the next
+ * time it sends them.
+ */
+public class SemanticAnalyzeManager implements AnalyzeManager {
+
+    private static final String TAG = "SemanticAnalyzeManager";
+
+    /**
+     * Text mate color ids are offset by this value, see TextMateColorScheme
+     */
+    private static final int TEXTMATE_COLOR_OFFSET = 255;
+
+    private final Editor mEditor;
+    private final AnalyzeManager mDelegate;
+    private final Theme mTheme;
+    private final Map<TokenType, ThemeTrieElementRule> mRules = new HashMap<>();
+    private final SemanticTokenStore mTokens = new SemanticTokenStore();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    private volatile StyleReceiver mReceiver;
+    private Styles mDelegateStyles;
+    private Styles mLastStyles;
+    /**
+     * Whether tokens have been drawn on a copy but not on the styles of the delegate.
+     */
+    private boolean mDelegateStylesOutdated;
+
+    public SemanticAnalyzeManager(Editor editor, AnalyzeManager delegate, IRawTheme theme) {
+        mEditor = editor;
+        mDelegate = delegate;
+        mTheme = Theme.createFromRawTheme(theme);
+    }
+
+    /**
+     * @return The modification count to pass to {@link #setTokens(int, int, int, List)}, it
+     * must be retrieved before the contents used to compute the tokens are read.
+     */
+    public int getModificationCount() {
+        return mTokens.getModificationCount();
+    }
+
+    /**
+     * Replaces the semantic tokens within the given range, they are drawn on the main thread.
+     *
+     * @return false if the text has been edited since the modification count was retrieved,
+     * the tokens are discarded in this case.
+     */
+    public boolean setTokens(int modificationCount,
+                             int start,
+                             int end,
+                             @NonNull List<SemanticToken> tokens) {
+        if (!mTokens.replace(modificationCount, start, end, tokens)) {
+            return false;
+        }
+        mMainHandler.post(() -> applyTokens(modificationCount, start, end));
+        return true;
+    }
+
+    /**
+     * Draws the tokens within the given range on a copy of the last published styles. Edits
+     * happen on the main thread, so the range is still valid if the modification count has not
+     * changed. Otherwise the tokens are drawn again once the delegate re-tokenizes the edited
+     * lines.
+     */
+    private void applyTokens(int modificationCount, int start, int end) {
+        Styles styles;
+        synchronized (this) {
+            if (mLastStyles == null || mTokens.getModificationCount() != modificationCount) {
+                return;
+            }
+            styles = copy(mLastStyles);
+            apply(styles, mTokens.getTokens(start, end));
+            mLastStyles = styles;
+            mDelegateStylesOutdated = true;
+        }
+        StyleReceiver receiver = mReceiver;
+        if (receiver != null) {
+            receiver.setStyles(this, styles);
+        }
+    }
+
+    @Override
+    public void setReceiver(@Nullable StyleReceiver receiver) {
+        mReceiver = receiver;
+        mDelegate.setReceiver(receiver == null ? null : new SemanticStyleReceiver(receiver));
+    }
+
+    @Override
+    public void reset(@NonNull ContentReference content, @NonNull Bundle extraArguments) {
+        mTokens.clear();
+        mDelegate.reset(content, extraArguments);
+    }
+
+    @Override
+    public void insert(io.github.rosemoe.sora.text.CharPosition start,
+                       io.github.rosemoe.sora.text.CharPosition end,
+                       CharSequence insertedContent) {
+        // the delegate may send its styles right away, shift the tokens before that
+        mTokens.insert(start.index, end.index - start.index);
+        mDelegate.insert(start, end, insertedContent);
+    }
+
+    @Override
+    public void delete(io.github.rosemoe.sora.text.CharPosition start,
+                       io.github.rosemoe.sora.text.CharPosition end,
+                       CharSequence deletedContent) {
+        mTokens.delete(start.index, end.index);
+        mDelegate.delete(start, end, deletedContent);
+    }
+
+    @Override
+    public void rerun() {
+        mDelegate.rerun();
+    }
+
+    @Override
+    public void destroy() {
+        mReceiver = null;
+        mMainHandler.removeCallbacksAndMessages(null);
+        mTokens.clear();
+        mDelegate.destroy();
+    }
+
+    private synchronized void onStylesChanged(@NonNull Styles styles) {
+        boolean outdated = styles != mDelegateStyles || mDelegateStylesOutdated;
+        mDelegateStyles = styles;
+        mLastStyles = styles;
+        mDelegateStylesOutdated = false;
+        if (outdated) {
+            apply(styles, mTokens.getTokens(0, Integer.MAX_VALUE));
+            return;
+        }
+
+        // the delegate re-tokenizes whole lines
+        int[] dirty = mTokens.getDirtyRange();
+        if (dirty == null) {
+            return;
+        }
+        try {
+            CharPosition start = mEditor.getCharPosition(dirty[0]);
+            CharPosition end = mEditor.getCharPosition(dirty[1]);
+            int startIndex = mEditor.getCharIndex(start.getLine(), 0);
+            int endIndex = end.getLine() + 1 < mEditor.getContent().getLineCount()
+                    ? mEditor.getCharIndex(end.getLine() + 1, 0)
+                    : Integer.MAX_VALUE;
+            apply(styles, mTokens.getTokens(startIndex, endIndex));
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            // the text has been edited in the meantime, the tokens are applied again
+            // on the next update
+        }
+    }
+
+    private static Styles copy(Styles styles) {
+        Styles copy = new Styles(new CopiedSpans(styles.getSpans()));
+        copy.blocks = styles.blocks;
+        copy.setSuppressSwitch(styles.getSuppressSwitch());
+        return copy;
+    }
+
+    private void apply(Styles styles, List<SemanticToken> tokens) {
+        for (SemanticToken token : tokens) {
+            long style = getStyle(token);
+            if (style == 0) {
+                continue;
+            }
+            try {
+                CharPosition position = mEditor.getCharPosition(token.getOffset());
+                int line = position.getLine();
+                int column = position.getColumn();
+                HighlightUtil.replaceSpan(styles, Span.obtain(column, style), line, column, line,
+                        column + token.getLength());
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                if (BuildConfig.DEBUG) {
+                    Log.d(TAG, "Failed to apply token " + token, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The text style of the token in the current theme, or 0 if the theme does not have
+     * a color for it
+     */
+    private long getStyle(SemanticToken token) {
+        ThemeTrieElementRule rule = getRule(token.getTokenType());
+        if (rule == null) {
+            return 0;
+        }
+        boolean bold = rule.fontStyle != FontStyle.NotSet && (rule.fontStyle & FontStyle.Bold) != 0;
+        boolean italic = rule.fontStyle != FontStyle.NotSet && (rule.fontStyle & FontStyle.Italic) != 0;
+        if ((token.getTokenModifiers() & SemanticToken.MODIFIER_STATIC) != 0) {
+            italic = true;
+        }
+        return TextStyle.makeStyle(rule.foreground + TEXTMATE_COLOR_OFFSET, 0, bold, italic, false);
+    }
+
+    @Nullable
+    private ThemeTrieElementRule getRule(TokenType type) {
+        if (type == null) {
+            return null;
+        }
+        synchronized (mRules) {
+            if (mRules.containsKey(type)) {
+                return mRules.get(type);
+            }
+            ThemeTrieElementRule rule = match(type.getScope());
+            if (rule == null && type.getFallbackScopes() != null) {
+                for (String scope : type.getFallbackScopes()) {
+                    rule = match(scope);
+                    if (rule != null) {
+                        break;
+                    }
+                }
+            }
+            mRules.put(type, rule);
+            return rule;
+        }
+    }
+
+    @Nullable
+    private ThemeTrieElementRule match(String scope) {
+        for (ThemeTrieElementRule rule : mTheme.match(scope)) {
+            // a depth of 0 is the default rule of the theme, the scope did not match
+            if (rule.scopeDepth > 0 && rule.parentScopes == null && rule.foreground != 0) {
+                return rule;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Spans that share the lines of other spans. {@link HighlightUtil} modifies the spans it
+     * reads, so a line is copied the first time it is read through
+     * {@link Spans.Reader#getSpansOnLine(int)}.
+     *
+     * Like the spans of the delegate, they are not adjusted on edits, the delegate sends
+     * its styles again once it has re-tokenized the edited lines.
+     */
+    private static class CopiedSpans implements Spans {
+
+        private final List<List<Span>> mLines;
+        private final Set<List<Span>> mCopiedLines =
+                Collections.newSetFromMap(new IdentityHashMap<>());
+
+        CopiedSpans(Spans source) {
+            if (source instanceof CopiedSpans) {
+                mLines = new ArrayList<>(((CopiedSpans) source).mLines);
+                return;
+            }
+            int lineCount = source.getLineCount();
+            mLines = new ArrayList<>(lineCount);
+            Spans.Reader reader = source.read();
+            for (int line = 0; line < lineCount; line++) {
+                mLines.add(reader.getSpansOnLine(line));
+            }
+        }
+
+        @Override
+        public void adjustOnDelete(io.github.rosemoe.sora.text.CharPosition start,
+                                   io.github.rosemoe.sora.text.CharPosition end) {
+
+        }
+
+        @Override
+        public void adjustOnInsert(io.github.rosemoe.sora.text.CharPosition start,
+                                   io.github.rosemoe.sora.text.CharPosition end) {
+
+        }
+
+        @Override
+        public int getLineCount() {
+            return mLines.size();
+        }
+
+        @Override
+        public Reader read() {
+            return new ReaderImpl();
+        }
+
+        @Override
+        public Modifier modify() {
+            return new ModifierImpl();
+        }
+
+        @Override
+        public boolean supportsModify() {
+            return true;
+        }
+
+        private static List<Span> emptyLine() {
+            List<Span> spans = new ArrayList<>();
+            spans.add(Span.obtain(0, EditorColorScheme.TEXT_NORMAL));
+            return spans;
+        }
+
+        private class ReaderImpl implements Spans.Reader {
+
+            private List<Span> mLine;
+
+            @Override
+            public void moveToLine(int line) {
+                mLine = line >= 0 && line < mLines.size() ? mLines.get(line) : null;
+            }
+
+            @Override
+            public int getSpanCount() {
+                return mLine == null ? 1 : mLine.size();
+            }
+
+            @Override
+            public Span getSpanAt(int index) {
+                return mLine == null
+                        ? Span.obtain(0, EditorColorScheme.TEXT_NORMAL)
+                        : mLine.get(index);
+            }
+
+            @Override
+            public List<Span> getSpansOnLine(int line) {
+                if (line < 0 || line >= mLines.size()) {
+                    return emptyLine();
+                }
+                List<Span> spans = mLines.get(line);
+                if (!mCopiedLines.contains(spans)) {
+                    List<Span> copy = new ArrayList<>(spans.size());
+                    for (Span span : spans) {
+                        copy.add(span.copy());
+                    }
+                    mLines.set(line, copy);
+                    mCopiedLines.add(copy);
+                    spans = copy;
+                }
+                return Collections.unmodifiableList(spans);
+            }
+        }
+
+        private class ModifierImpl implements Spans.Modifier {
+
+            @Override
+            public void setSpansOnLine(int line, List<Span> spans) {
+                while (mLines.size() <= line) {
+                    mLines.add(emptyLine());
+                }
+                mLines.set(line, spans);
+                mCopiedLines.add(spans);
+            }
+
+            @Override
+            public void addLineAt(int line, List<Span> spans) {
+                mLines.add(line, spans);
+                mCopiedLines.add(spans);
+            }
+
+            @Override
+            public void deleteLineAt(int line) {
+                mCopiedLines.remove(mLines.remove(line));
+            }
+        }
+    }
+
+    private class SemanticStyleReceiver implements StyleReceiver {
+
+        private final StyleReceiver mTarget;
+
+        private SemanticStyleReceiver(StyleReceiver target) {
+            mTarget = target;
+        }
+
+        @Override
+        public void setStyles(@NonNull AnalyzeManager sourceManager, @Nullable Styles styles) {
+            if (styles != null) {
+                onStylesChanged(styles);
+            }
+            mTarget.setStyles(SemanticAnalyzeManager.this, styles);
+        }
+
+        @Override
+        public void setDiagnostics(@NonNull AnalyzeManager sourceManager,
+                                   @Nullable DiagnosticsContainer diagnostics) {
+            mTarget.setDiagnostics(SemanticAnalyzeManager.this, diagnostics);
+        }
+
+        @Override
+        public void updateBracketProvider(@NonNull AnalyzeManager sourceManager,
+                                          @Nullable BracketsProvider provider) {
+            mTarget.updateBracketProvider(SemanticAnalyzeManager.this, provider);
+        }
+    }
+}
@@ -1,22 +1,121 @@
 package com.tyron.code.analyzer.semantic;
 
+import androidx.annotation.NonNull;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
 import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.SourcePositions;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.TreePathScanner;
+import com.sun.source.util.Trees;
+import com.sun.tools.javac.code.Symbol;
+import com.sun.tools.javac.tree.JCTree;
+import com.sun.tools.javac.tree.TreeInfo;
+import com.tyron.code.language.java.JavaTokenTypes;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.tools.Diagnostic;
+
+/**
+ * Computes the semantic tokens of an attributed compilation unit.
+ *
+ * Only the trees that overlap the requested range are visited so the visible part of a file
+ * can be highlighted first without walking the whole tree.
+ *
+ * The highlighter only reads the symbols the compiler attached to the tree, it never attributes
+ * so it can walk the tree after the parse lock of the compilation has been released. The
+ * contents are copied when it is created, create it while the compilation unit is up to date.
+ */
 public class SemanticHighlighter extends TreePathScanner<Void, Void> {
 
     private final AtomicBoolean mCancelFlag = new AtomicBoolean(false);
 
+    private final SourcePositions mPositions;
+    private final CompilationUnitTree mUnit;
+    private final String mContents;
+
+    private long mStart;
+    private long mEnd;
+    private List<SemanticToken> mTokens;
+
+    public SemanticHighlighter(Trees trees, CompilationUnitTree unit) {
+        mPositions = trees.getSourcePositions();
+        mUnit = unit;
+        mContents = getContents(unit);
+    }
+
+    private static String getContents(CompilationUnitTree unit) {
+        try {
+            return unit.getSourceFile().getCharContent(true).toString();
+        } catch (IOException e) {
+            // the names cannot be matched against the contents, no token is added
+            return "";
+        }
+    }
+
     public void cancel() {
         mCancelFlag.set(true);
     }
 
+    public boolean isCancelled() {
+        return mCancelFlag.get();
+    }
+
+    /**
+     * Computes the tokens whose offsets are within the given range.
+     *
+     * @param start the start offset, inclusive
+     * @param end   the end offset, exclusive
+     * @return the tokens sorted by offset, empty if this highlighter has been cancelled
+     */
+    @NonNull
+    public List<SemanticToken> highlight(int start, int end) {
+        mStart = start;
+        mEnd = end;
+        mTokens = new ArrayList<>();
+        scan(new TreePath(mUnit), null);
+
+        List<SemanticToken> tokens = mTokens;
+        mTokens = null;
+        if (isCancelled()) {
+            return Collections.emptyList();
+        }
+        tokens.sort(Comparator.comparingInt(SemanticToken::getOffset));
+
+        // generated constructors share the position of their class
+        List<SemanticToken> result = new ArrayList<>(tokens.size());
+        for (SemanticToken token : tokens) {
+            if (result.isEmpty() || result.get(result.size() - 1).getOffset() != token.getOffset()) {
+                result.add(token);
+            }
+        }
+        return result;
+    }
+
     @Override
     public Void scan(Tree tree, Void unused) {
-        if (mCancelFlag.get()) {
+        if (mCancelFlag.get() || tree == null) {
+            return null;
+        }
+        long start = mPositions.getStartPosition(mUnit, tree);
+        long end = mPositions.getEndPosition(mUnit, tree);
+        if (start != Diagnostic.NOPOS && start >= mEnd) {
+            return null;
+        }
+        if (end != Diagnostic.NOPOS && end < mStart) {
             return null;
         }
         return super.scan(tree, unused);
@@ -45,4 +144,102 @@ public class SemanticHighlighter extends TreePathScanner<Void, Void> {
         }
         return super.reduce(unused, r1);
     }
+
+    @Override
+    public Void visitClass(ClassTree tree, Void unused) {
+        // the position of a class points to its modifiers, find the name before its body
+        String name = tree.getSimpleName().toString();
+        int pos = ((JCTree) tree).pos;
+        if (!name.isEmpty() && pos >= 0 && pos < mContents.length()) {
+            int body = mContents.indexOf('{', pos);
+            int index = mContents.indexOf(name, pos);
+            if (index != -1 && (body == -1 || index < body)) {
+                addToken(index, name);
+            }
+        }
+        return super.visitClass(tree, unused);
+    }
+
+    @Override
+    public Void visitMethod(MethodTree tree, Void unused) {
+        Symbol element = getSymbol();
+        CharSequence name = tree.getName();
+        if (element != null && element.isConstructor()) {
+            name = element.getEnclosingElement().getSimpleName();
+        }
+        addToken(((JCTree) tree).pos, name, element);
+        return super.visitMethod(tree, unused);
+    }
+
+    @Override
+    public Void visitVariable(VariableTree tree, Void unused) {
+        addToken(((JCTree) tree).pos, tree.getName());
+        return super.visitVariable(tree, unused);
+    }
+
+    @Override
+    public Void visitIdentifier(IdentifierTree tree, Void unused) {
+        addToken(mPositions.getStartPosition(mUnit, tree), tree.getName());
+        return super.visitIdentifier(tree, unused);
+    }
+
+    @Override
+    public Void visitMemberSelect(MemberSelectTree tree, Void unused) {
+        super.visitMemberSelect(tree, unused);
+
+        long end = mPositions.getEndPosition(mUnit, tree);
+        if (end != Diagnostic.NOPOS) {
+            CharSequence name = tree.getIdentifier();
+            addToken(end - name.length(), name);
+        }
+        return null;
+    }
+
+    private void addToken(long offset, CharSequence name) {
+        if (!isInRange(offset, name)) {
+            return;
+        }
+        addToken(offset, name, getSymbol());
+    }
+
+    private Symbol getSymbol() {
+        return TreeInfo.symbolFor((JCTree) getCurrentPath().getLeaf());
+    }
+
+    private void addToken(long offset, CharSequence name, Symbol element) {
+        if (!isInRange(offset, name)) {
+            return;
+        }
+        TokenType type = JavaTokenTypes.getApplicableType(element);
+        if (type == null) {
+            return;
+        }
+        // implicit trees such as default constructors and super() calls point to
+        // a position that does not contain their name
+        String string = name.toString();
+        if (!mContents.startsWith(string, (int) offset)) {
+            return;
+        }
+        int modifiers = 0;
+        // the kind of a class symbol completes it, only variables and methods are checked
+        boolean member = (element instanceof Symbol.VarSymbol
+                          && element.getKind() == ElementKind.FIELD)
+                         || (element instanceof Symbol.MethodSymbol
+                             && element.getKind() == ElementKind.METHOD);
+        if (member && element.getModifiers().contains(Modifier.STATIC)) {
+            modifiers |= SemanticToken.MODIFIER_STATIC;
+        }
+        mTokens.add(new SemanticToken((int) offset, string.length(), type, modifiers));
+    }
+
+    private boolean isInRange(long offset, CharSequence name) {
+        if (offset < mStart || offset >= mEnd) {
+            return false;
+        }
+        if (name.length() == 0) {
+            return false;
+        }
+        String string = name.toString();
+        return !"this".equals(string) && !"super".equals(string) && !"class".equals(string);
+    }
 }
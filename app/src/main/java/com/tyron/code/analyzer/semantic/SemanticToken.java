@@ -3,6 +3,12 @@ package com.tyron.code.analyzer.semantic;
 import androidx.annotation.NonNull;
 
 public class SemanticToken {
+
+    /**
+     * Modifier for tokens that refer to a static member
+     */
+    public static final int MODIFIER_STATIC = 1;
+
     private final TokenType tokenType;
     private final int tokenModifiers;
     private final int offset;
@@ -0,0 +1,294 @@
+package com.tyron.code.analyzer.semantic;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Holds the semantic tokens of a file sorted by their offset.
+ *
+ * The offsets are shifted as the text is edited so the tokens of the previous analysis can
+ * still be shown until the file is analyzed again. Tokens touched by an edit are dropped since
+ * the identifier they belong to has changed. Every edit increments the modification count, new
+ * tokens are only accepted if they were computed for the current modification count.
+ *
+ * The tokens are stored in a gap buffer whose gap is moved to the edited offset. Tokens after
+ * the gap store their offset relative to a shared delta, so an edit only moves the tokens
+ * between the previous edit and this one instead of shifting every token after it.
+ */
+public class SemanticTokenStore {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[] mOffsets = new int[0];
+    private int[] mLengths = new int[0];
+    private int[] mModifiers = new int[0];
+    private TokenType[] mTypes = new TokenType[0];
+
+    /**
+     * Tokens in {@code [0, mGapStart)} store their offset, tokens in
+     * {@code [mGapEnd, capacity)} store their offset minus {@link #mDelta}
+     */
+    private int mGapStart;
+    private int mGapEnd;
+    private int mDelta;
+
+    private int mModificationCount;
+
+    private int mDirtyStart = -1;
+    private int mDirtyEnd = -1;
+
+    public synchronized int getModificationCount() {
+        return mModificationCount;
+    }
+
+    public synchronized int size() {
+        return mGapStart + mOffsets.length - mGapEnd;
+    }
+
+    public synchronized void clear() {
+        mModificationCount++;
+        mGapStart = 0;
+        mGapEnd = mOffsets.length;
+        mDelta = 0;
+        mDirtyStart = -1;
+        mDirtyEnd = -1;
+    }
+
+    /**
+     * Called when text has been inserted
+     *
+     * @param index  the index where the text was inserted
+     * @param length the length of the inserted text
+     */
+    public synchronized void insert(int index, int length) {
+        mModificationCount++;
+        if (length <= 0) {
+            return;
+        }
+        moveGap(lowerBound(index));
+        // tokens ending at or containing the index, and tokens starting at it are dropped
+        while (mGapStart > 0 && mOffsets[mGapStart - 1] + mLengths[mGapStart - 1] >= index) {
+            mGapStart--;
+        }
+        while (mGapEnd < mOffsets.length && mOffsets[mGapEnd] + mDelta <= index) {
+            mGapEnd++;
+        }
+        mDelta += length;
+
+        if (mDirtyStart != -1) {
+            mDirtyStart = mDirtyStart > index ? mDirtyStart + length : mDirtyStart;
+            mDirtyEnd = mDirtyEnd >= index ? mDirtyEnd + length : mDirtyEnd;
+        }
+        markDirty(index, index + length);
+    }
+
+    /**
+     * Called when text has been deleted
+     *
+     * @param start the start index of the deleted text
+     * @param end   the end index of the deleted text, exclusive
+     */
+    public synchronized void delete(int start, int end) {
+        mModificationCount++;
+        int length = end - start;
+        if (length <= 0) {
+            return;
+        }
+        moveGap(lowerBound(start));
+        while (mGapStart > 0 && mOffsets[mGapStart - 1] + mLengths[mGapStart - 1] >= start) {
+            mGapStart--;
+        }
+        while (mGapEnd < mOffsets.length && mOffsets[mGapEnd] + mDelta <= end) {
+            mGapEnd++;
+        }
+        mDelta -= length;
+
+        if (mDirtyStart != -1) {
+            mDirtyStart = shiftOnDelete(mDirtyStart, start, end);
+            mDirtyEnd = shiftOnDelete(mDirtyEnd, start, end);
+        }
+        markDirty(start, start);
+    }
+
+    private static int shiftOnDelete(int index, int start, int end) {
+        if (index <= start) {
+            return index;
+        }
+        if (index >= end) {
+            return index - (end - start);
+        }
+        return start;
+    }
+
+    private void markDirty(int start, int end) {
+        if (mDirtyStart == -1) {
+            mDirtyStart = start;
+            mDirtyEnd = end;
+        } else {
+            mDirtyStart = Math.min(mDirtyStart, start);
+            mDirtyEnd = Math.max(mDirtyEnd, end);
+        }
+    }
+
+    /**
+     * @return The range of text that has been edited since tokens were last replaced as a
+     * {@code [start, end]} pair, or null if nothing has been edited.
+     */
+    @Nullable
+    public synchronized int[] getDirtyRange() {
+        if (mDirtyStart == -1) {
+            return null;
+        }
+        return new int[]{mDirtyStart, mDirtyEnd};
+    }
+
+    /**
+     * Replaces the tokens whose offsets are within the given range.
+     *
+     * @param modificationCount the modification count at the time the tokens were computed
+     * @param start             the start offset of the range, inclusive
+     * @param end               the end offset of the range, exclusive
+     * @param tokens            the new tokens, all of them must be within the range
+     * @return false if the text has been edited since the tokens were computed, in which case
+     * the tokens are not replaced.
+     */
+    public synchronized boolean replace(int modificationCount,
+                                        int start,
+                                        int end,
+                                        @NonNull List<SemanticToken> tokens) {
+        if (modificationCount != mModificationCount) {
+            return false;
+        }
+        List<SemanticToken> sorted = new ArrayList<>(tokens);
+        sorted.sort(Comparator.comparingInt(SemanticToken::getOffset));
+
+        int before = lowerBound(start);
+        int after = lowerBound(end);
+        moveGap(before);
+        mGapEnd += after - before;
+        ensureGap(sorted.size());
+
+        for (SemanticToken token : sorted) {
+            mOffsets[mGapStart] = token.getOffset();
+            mLengths[mGapStart] = token.getLength();
+            mModifiers[mGapStart] = token.getTokenModifiers();
+            mTypes[mGapStart] = token.getTokenType();
+            mGapStart++;
+        }
+
+        mDirtyStart = -1;
+        mDirtyEnd = -1;
+        return true;
+    }
+
+    /**
+     * @return The tokens whose offsets are within the given range
+     */
+    @NonNull
+    public synchronized List<SemanticToken> getTokens(int start, int end) {
+        int from = lowerBound(start);
+        int to = lowerBound(end);
+        List<SemanticToken> tokens = new ArrayList<>(Math.max(0, to - from));
+        for (int i = from; i < to; i++) {
+            int index = toPhysical(i);
+            tokens.add(new SemanticToken(offsetAt(index), mLengths[index], mTypes[index],
+                    mModifiers[index]));
+        }
+        return tokens;
+    }
+
+    private int toPhysical(int index) {
+        return index < mGapStart ? index : index + mGapEnd - mGapStart;
+    }
+
+    private int offsetAt(int physicalIndex) {
+        return physicalIndex < mGapStart
+                ? mOffsets[physicalIndex]
+                : mOffsets[physicalIndex] + mDelta;
+    }
+
+    /**
+     * Moves the gap so that it starts at the given token index
+     */
+    private void moveGap(int index) {
+        if (index < mGapStart) {
+            int count = mGapStart - index;
+            int to = mGapEnd - count;
+            // the ranges may overlap, copy from the end
+            for (int i = count - 1; i >= 0; i--) {
+                move(index + i, to + i, -mDelta);
+            }
+            mGapStart = index;
+            mGapEnd = to;
+        } else if (index > mGapStart) {
+            int count = index - mGapStart;
+            for (int i = 0; i < count; i++) {
+                move(mGapEnd + i, mGapStart + i, mDelta);
+            }
+            mGapStart += count;
+            mGapEnd += count;
+        }
+    }
+
+    private void move(int from, int to, int delta) {
+        mOffsets[to] = mOffsets[from] + delta;
+        mLengths[to] = mLengths[from];
+        mModifiers[to] = mModifiers[from];
+        mTypes[to] = mTypes[from];
+    }
+
+    /**
+     * Grows the arrays so that the gap can hold at least the given number of tokens
+     */
+    private void ensureGap(int count) {
+        if (mGapEnd - mGapStart >= count) {
+            return;
+        }
+        int size = mGapStart + mOffsets.length - mGapEnd;
+        int capacity = Math.max(INITIAL_CAPACITY, Math.max(mOffsets.length * 2, size + count));
+        int after = mOffsets.length - mGapEnd;
+        int gapEnd = capacity - after;
+
+        int[] offsets = new int[capacity];
+        int[] lengths = new int[capacity];
+        int[] modifiers = new int[capacity];
+        TokenType[] types = new TokenType[capacity];
+
+        System.arraycopy(mOffsets, 0, offsets, 0, mGapStart);
+        System.arraycopy(mLengths, 0, lengths, 0, mGapStart);
+        System.arraycopy(mModifiers, 0, modifiers, 0, mGapStart);
+        System.arraycopy(mTypes, 0, types, 0, mGapStart);
+
+        System.arraycopy(mOffsets, mGapEnd, offsets, gapEnd, after);
+        System.arraycopy(mLengths, mGapEnd, lengths, gapEnd, after);
+        System.arraycopy(mModifiers, mGapEnd, modifiers, gapEnd, after);
+        System.arraycopy(mTypes, mGapEnd, types, gapEnd, after);
+
+        mOffsets = offsets;
+        mLengths = lengths;
+        mModifiers = modifiers;
+        mTypes = types;
+        mGapEnd = gapEnd;
+    }
+
+    /**
+     * @return the index of the first token whose offset is greater than or equal to the offset
+     */
+    private int lowerBound(int offset) {
+        int low = 0;
+        int high = size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (offsetAt(toPhysical(mid)) < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
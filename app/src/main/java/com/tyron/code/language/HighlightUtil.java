@@ -50,14 +50,14 @@ public class HighlightUtil {
                         span.renderer = newSpan.renderer;
                     } else {
                         //regionStartInSpan > span.column
-                        if (regionEndInSpan == spanEnd - 1) {
+                        if (regionEndInSpan == spanEnd) {
                             increment = 2;
                             io.github.rosemoe.sora.lang.styling.Span nSpan = span.copy();
                             nSpan.column = regionStartInSpan;
+                            nSpan.underlineColor = newSpan.underlineColor;
+                            nSpan.style = newSpan.style;
+                            nSpan.renderer = newSpan.renderer;
                             spans.add(i + 1, nSpan);
-                            span.underlineColor = newSpan.underlineColor;
-                            span.style = newSpan.style;
-                            span.renderer = newSpan.renderer;
                         } else {
                             increment = 3;
                             io.github.rosemoe.sora.lang.styling.Span span1 = span.copy();
@@ -0,0 +1,288 @@
+package com.tyron.code.language;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+
+import io.github.rosemoe.sora.lang.diagnostic.DiagnosticRegion;
+import io.github.rosemoe.sora.lang.diagnostic.DiagnosticsContainer;
+
+/**
+ * A {@link DiagnosticsContainer} that keeps the diagnostics in a treap ordered by their start
+ * offset, so that shifting them on edits does not depend on the number of diagnostics in the
+ * file.
+ *
+ * Diagnostics after an edit are shifted lazily by storing the offset on the root of the
+ * subtree that contains them, only the diagnostics that overlap the edited range are updated
+ * right away. Each node also tracks the largest end offset in its subtree so that queries for
+ * the visible region only visit the diagnostics that overlap it.
+ *
+ * The offsets of a {@link DiagnosticRegion} are only brought up to date when it is returned
+ * from {@link #queryInRegion(List, int, int)}.
+ */
+public class IntervalDiagnosticsContainer extends DiagnosticsContainer {
+
+    private final Random mRandom = new Random();
+    private final boolean mShiftEnabled;
+    private Node mRoot;
+
+    public IntervalDiagnosticsContainer() {
+        this(true);
+    }
+
+    public IntervalDiagnosticsContainer(boolean shiftEnabled) {
+        mShiftEnabled = shiftEnabled;
+    }
+
+    @Override
+    public synchronized void addDiagnostics(Collection<DiagnosticRegion> diagnostics) {
+        for (DiagnosticRegion diagnostic : diagnostics) {
+            addDiagnostic(diagnostic);
+        }
+    }
+
+    @Override
+    public synchronized void addDiagnostic(DiagnosticRegion diagnostic) {
+        Node node = new Node(diagnostic, mRandom.nextInt());
+        Node[] split = split(mRoot, node.start);
+        mRoot = merge(merge(split[0], node), split[1]);
+    }
+
+    @Override
+    public synchronized void queryInRegion(List<DiagnosticRegion> result,
+                                           int startIndex,
+                                           int endIndex) {
+        query(mRoot, result, startIndex, endIndex);
+    }
+
+    private static void query(Node node, List<DiagnosticRegion> result, int start, int end) {
+        if (node == null || node.maxEnd < start) {
+            return;
+        }
+        push(node);
+        query(node.left, result, start, end);
+        if (node.start > end) {
+            // every node on the right starts after this one
+            return;
+        }
+        if (node.end >= start) {
+            node.region.startIndex = node.start;
+            node.region.endIndex = node.end;
+            result.add(node.region);
+        }
+        query(node.right, result, start, end);
+    }
+
+    @Override
+    public synchronized void shiftOnInsert(int insertStart, int insertEnd) {
+        if (!mShiftEnabled) {
+            return;
+        }
+        int length = insertEnd - insertStart;
+        if (length <= 0) {
+            return;
+        }
+        Node[] split = split(mRoot, insertStart);
+        // diagnostics that start before the insertion but contain it grow
+        extendEnds(split[0], insertStart, length);
+        shift(split[1], length);
+        mRoot = merge(split[0], split[1]);
+    }
+
+    private static void extendEnds(Node node, int index, int length) {
+        if (node == null || node.maxEnd <= index) {
+            return;
+        }
+        push(node);
+        if (node.end > index) {
+            node.end += length;
+        }
+        extendEnds(node.left, index, length);
+        extendEnds(node.right, index, length);
+        update(node);
+    }
+
+    @Override
+    public synchronized void shiftOnDelete(int deleteStart, int deleteEnd) {
+        if (!mShiftEnabled) {
+            return;
+        }
+        int length = deleteEnd - deleteStart;
+        if (length <= 0) {
+            return;
+        }
+        Node[] split = split(mRoot, deleteStart);
+        Node before = split[0];
+        split = split(split[1], deleteEnd);
+        Node deleted = split[0];
+        Node after = split[1];
+
+        clampEnds(before, deleteStart, deleteEnd);
+
+        // diagnostics that start inside the deleted range now start at its start, the ones
+        // that were completely deleted are removed
+        List<Node> nodes = new ArrayList<>();
+        collect(deleted, nodes);
+        Node middle = null;
+        for (Node node : nodes) {
+            boolean empty = node.start == node.end;
+            node.start = deleteStart;
+            node.end = map(node.end, deleteStart, deleteEnd);
+            if (node.start == node.end && !empty) {
+                continue;
+            }
+            node.left = null;
+            node.right = null;
+            update(node);
+            middle = merge(middle, node);
+        }
+
+        shift(after, -length);
+        mRoot = merge(merge(before, middle), after);
+    }
+
+    private static void clampEnds(Node node, int deleteStart, int deleteEnd) {
+        if (node == null || node.maxEnd <= deleteStart) {
+            return;
+        }
+        push(node);
+        if (node.end > deleteStart) {
+            node.end = map(node.end, deleteStart, deleteEnd);
+        }
+        clampEnds(node.left, deleteStart, deleteEnd);
+        clampEnds(node.right, deleteStart, deleteEnd);
+        update(node);
+    }
+
+    private static int map(int index, int deleteStart, int deleteEnd) {
+        if (index <= deleteStart) {
+            return index;
+        }
+        if (index >= deleteEnd) {
+            return index - (deleteEnd - deleteStart);
+        }
+        return deleteStart;
+    }
+
+    private static void collect(Node node, List<Node> result) {
+        if (node == null) {
+            return;
+        }
+        push(node);
+        collect(node.left, result);
+        result.add(node);
+        collect(node.right, result);
+    }
+
+    @Override
+    public synchronized void reset() {
+        mRoot = null;
+    }
+
+    private static void shift(Node node, int delta) {
+        if (node == null) {
+            return;
+        }
+        node.start += delta;
+        node.end += delta;
+        node.maxEnd += delta;
+        node.pending += delta;
+    }
+
+    private static void push(Node node) {
+        if (node.pending != 0) {
+            shift(node.left, node.pending);
+            shift(node.right, node.pending);
+            node.pending = 0;
+        }
+    }
+
+    private static void update(Node node) {
+        int maxEnd = node.end;
+        if (node.left != null) {
+            maxEnd = Math.max(maxEnd, node.left.maxEnd);
+        }
+        if (node.right != null) {
+            maxEnd = Math.max(maxEnd, node.right.maxEnd);
+        }
+        node.maxEnd = maxEnd;
+    }
+
+    /**
+     * Splits the tree into the nodes that start before the offset and the ones that start at or
+     * after it.
+     */
+    @NonNull
+    private static Node[] split(Node node, int offset) {
+        if (node == null) {
+            return new Node[2];
+        }
+        push(node);
+        if (node.start < offset) {
+            Node[] split = split(node.right, offset);
+            node.right = split[0];
+            update(node);
+            split[0] = node;
+            return split;
+        } else {
+            Node[] split = split(node.left, offset);
+            node.left = split[1];
+            update(node);
+            split[1] = node;
+            return split;
+        }
+    }
+
+    /**
+     * Merges two trees, every node of the left tree must not start after the nodes of the
+     * right tree.
+     */
+    private static Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            push(left);
+            left.right = merge(left.right, right);
+            update(left);
+            return left;
+        } else {
+            push(right);
+            right.left = merge(left, right.left);
+            update(right);
+            return right;
+        }
+    }
+
+    private static class Node {
+
+        final DiagnosticRegion region;
+        final int priority;
+
+        int start;
+        int end;
+        int maxEnd;
+
+        /**
+         * Offset that has been applied to this node but not yet to its children
+         */
+        int pending;
+
+        Node left;
+        Node right;
+
+        Node(DiagnosticRegion region, int priority) {
+            this.region = region;
+            this.priority = priority;
+            start = region.startIndex;
+            end = region.endIndex;
+            maxEnd = end;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.tyron.code.language.java;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.googlejavaformat.java.Formatter;
+import com.google.googlejavaformat.java.FormatterException;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.FileManager;
+import com.tyron.builder.project.api.Module;
+import com.tyron.completion.progress.ProgressManager;
+
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import kotlin.io.FileWalkDirection;
+import kotlin.io.FilesKt;
+
+/**
+ * Formats and organizes the imports of many java files at once using google-java-format.
+ *
+ * The files are formatted on a bounded pool of workers that share a single {@link Formatter}.
+ * The hash of the contents of a file is remembered after it has been formatted, so a file that
+ * has not been modified since is skipped without being parsed again. Only the files whose
+ * contents change are written, files that are opened in the editor are updated through their
+ * snapshot instead of the disk.
+ */
+public class JavaBatchFormatter {
+
+    private static final String TAG = "JavaBatchFormatter";
+
+    private static final int MAX_WORKERS = 4;
+
+    private static JavaBatchFormatter sInstance;
+
+    public static synchronized JavaBatchFormatter getInstance() {
+        if (sInstance == null) {
+            sInstance = new JavaBatchFormatter();
+        }
+        return sInstance;
+    }
+
+    /**
+     * @return The java files in the directory, or the file itself if it is a java file
+     */
+    @NonNull
+    public static List<File> collectJavaFiles(@NonNull File root) {
+        List<File> files = new ArrayList<>();
+        FilesKt.walk(root, FileWalkDirection.TOP_DOWN).iterator().forEachRemaining(file -> {
+            if (file.isFile() && file.getName().endsWith(".java")) {
+                files.add(file);
+            }
+        });
+        return files;
+    }
+
+    private final Formatter mFormatter = new Formatter();
+    private final HashFunction mHashFunction = Hashing.murmur3_128();
+
+    /**
+     * The hash of the contents of each file after it was last formatted
+     */
+    private final Map<File, HashCode> mFormattedHashes = new ConcurrentHashMap<>();
+
+    @VisibleForTesting
+    JavaBatchFormatter() {
+
+    }
+
+    /**
+     * Formats the files, blocking until all of them are done.
+     *
+     * @param project the project the files belong to, used to find the opened files
+     * @param files   the java files to format
+     */
+    @NonNull
+    public Result format(@Nullable Project project, @NonNull Collection<File> files) {
+        Result result = new Result();
+        if (files.isEmpty()) {
+            return result;
+        }
+
+        int workers = Math.max(1, Math.min(MAX_WORKERS,
+                Math.min(files.size(), Runtime.getRuntime().availableProcessors())));
+        ExecutorService executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>(files.size());
+            for (File file : files) {
+                tasks.add(() -> {
+                    formatFile(project, file, result);
+                    return null;
+                });
+            }
+            for (Future<Void> future : executor.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    Log.w(TAG, "Failed to format a file", e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executor.shutdownNow();
+        }
+        return result;
+    }
+
+    private void formatFile(@Nullable Project project, File file, Result result) {
+        FileManager fileManager = getFileManager(project, file);
+        boolean opened = fileManager != null && fileManager.isOpened(file);
+
+        String contents;
+        try {
+            contents = getContents(fileManager, opened, file);
+        } catch (IOException e) {
+            result.addFailure(file, e.getMessage());
+            return;
+        }
+
+        HashCode hash = mHashFunction.hashString(contents, StandardCharsets.UTF_8);
+        if (hash.equals(mFormattedHashes.get(file))) {
+            result.mSkipped.incrementAndGet();
+            return;
+        }
+
+        String formatted;
+        try {
+            formatted = mFormatter.formatSourceAndFixImports(contents);
+        } catch (FormatterException e) {
+            result.addFailure(file, e.getMessage());
+            return;
+        }
+
+        if (formatted.equals(contents)) {
+            mFormattedHashes.put(file, hash);
+            result.mUnchanged.incrementAndGet();
+            return;
+        }
+
+        HashCode formattedHash = mHashFunction.hashString(formatted, StandardCharsets.UTF_8);
+        if (opened) {
+            // the snapshot can only be changed on the main thread, the hash is recorded once
+            // it has been so that a file that was closed in between is formatted again
+            ProgressManager.getInstance().runLater(() -> {
+                if (!fileManager.isOpened(file)) {
+                    return;
+                }
+                // the file may have been edited while it was formatted, the edits are kept
+                // and the file is formatted again on the next run
+                Optional<CharSequence> current = fileManager.getFileContent(file);
+                if (!current.isPresent() || !hash.equals(mHashFunction.hashString(
+                        current.get().toString(), StandardCharsets.UTF_8))) {
+                    return;
+                }
+                fileManager.setSnapshotContent(file, formatted);
+                mFormattedHashes.put(file, formattedHash);
+            });
+        } else {
+            try {
+                FileUtils.writeStringToFile(file, formatted, StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                result.addFailure(file, e.getMessage());
+                return;
+            }
+            mFormattedHashes.put(file, formattedHash);
+        }
+        result.mFormatted.incrementAndGet();
+    }
+
+    @NonNull
+    private static String getContents(@Nullable FileManager fileManager,
+                                      boolean opened,
+                                      File file) throws IOException {
+        if (opened) {
+            Optional<CharSequence> content = fileManager.getFileContent(file);
+            if (content.isPresent()) {
+                return content.get().toString();
+            }
+        }
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+
+    @Nullable
+    private static FileManager getFileManager(@Nullable Project project, File file) {
+        if (project == null) {
+            return null;
+        }
+        Module module = project.getModule(file);
+        if (module == null) {
+            return null;
+        }
+        return module.getFileManager();
+    }
+
+    public static class Result {
+
+        private final AtomicInteger mFormatted = new AtomicInteger();
+        private final AtomicInteger mUnchanged = new AtomicInteger();
+        private final AtomicInteger mSkipped = new AtomicInteger();
+        private final List<String> mFailures = Collections.synchronizedList(new ArrayList<>());
+
+        private void addFailure(File file, String message) {
+            mFailures.add(file.getName() + ": " + message);
+        }
+
+        /**
+         * @return The number of files whose contents have been changed
+         */
+        public int getFormatted() {
+            return mFormatted.get();
+        }
+
+        /**
+         * @return The number of files that were already formatted
+         */
+        public int getUnchanged() {
+            return mUnchanged.get() + mSkipped.get();
+        }
+
+        /**
+         * @return The number of files that were not parsed because they have not been
+         * modified since they were last formatted
+         */
+        public int getSkipped() {
+            return mSkipped.get();
+        }
+
+        /**
+         * @return The messages of the files that could not be formatted
+         */
+        @NonNull
+        public List<String> getFailures() {
+            return mFailures;
+        }
+    }
+}
@@ -8,14 +8,19 @@ import androidx.annotation.Nullable;
 
 import com.sun.tools.javac.util.JCDiagnostic;
 import com.tyron.builder.project.Project;
+import com.tyron.code.analyzer.semantic.SemanticAnalyzeManager;
+import com.tyron.code.analyzer.semantic.SemanticHighlighter;
+import com.tyron.code.analyzer.semantic.SemanticToken;
 import com.tyron.code.language.CompletionItemWrapper;
 import com.tyron.code.language.EditorFormatter;
 import com.tyron.code.language.LanguageManager;
 import com.tyron.completion.CompletionParameters;
 import com.tyron.completion.java.JavaCompletionProvider;
 import com.tyron.completion.java.compiler.services.NBLog;
+import com.tyron.completion.java.diagnostics.JavaProblemsService;
 import com.tyron.completion.java.parse.CompilationInfo;
 import com.tyron.completion.model.CompletionList;
+import com.tyron.completion.progress.ProgressManager;
 import com.tyron.editor.Editor;
 import com.tyron.language.api.CodeAssistLanguage;
 
@@ -45,6 +50,7 @@ import io.github.rosemoe.sora.lang.format.AsyncFormatter;
 import io.github.rosemoe.sora.lang.format.Formatter;
 import io.github.rosemoe.sora.lang.smartEnter.NewlineHandleResult;
 import io.github.rosemoe.sora.lang.smartEnter.NewlineHandler;
+import io.github.rosemoe.sora.langs.textmate.TextMateColorScheme;
 import io.github.rosemoe.sora.langs.textmate.TextMateLanguage;
 import io.github.rosemoe.sora.text.CharPosition;
 import io.github.rosemoe.sora.text.Content;
@@ -52,6 +58,7 @@ import io.github.rosemoe.sora.text.ContentReference;
 import io.github.rosemoe.sora.text.TextRange;
 import io.github.rosemoe.sora.text.TextUtils;
 import io.github.rosemoe.sora.util.MyCharacter;
+import io.github.rosemoe.sora.widget.CodeEditor;
 import io.github.rosemoe.sora.widget.SymbolPairMatch;
 
 public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLanguage {
@@ -64,6 +71,8 @@ public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLangu
 
     private final Editor editor;
     private final TextMateLanguage delegate;
+    private final SemanticAnalyzeManager analyzeManager;
+    private volatile SemanticHighlighter highlighter;
     private final Formatter formatter = new AsyncFormatter() {
         @Nullable
         @Override
@@ -91,6 +100,8 @@ public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLangu
     public JavaLanguage(Editor editor) {
         this.editor = editor;
         delegate = LanguageManager.createTextMateLanguage(GRAMMAR_NAME, LANGUAGE_PATH, CONFIG_PATH, editor);
+        analyzeManager = new SemanticAnalyzeManager(editor, delegate.getAnalyzeManager(),
+                ((TextMateColorScheme) ((CodeEditor) editor).getColorScheme()).getRawTheme());
     }
 
 
@@ -131,7 +142,7 @@ public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLangu
     @NonNull
     @Override
     public AnalyzeManager getAnalyzeManager() {
-        return delegate.getAnalyzeManager();
+        return analyzeManager;
     }
 
     @Override
@@ -212,6 +223,10 @@ public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLangu
 
     @Override
     public void destroy() {
+        SemanticHighlighter current = highlighter;
+        if (current != null) {
+            current.cancel();
+        }
         delegate.destroy();
     }
 
@@ -225,6 +240,12 @@ public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLangu
         if (compilationInfo == null) {
             return;
         }
+        SemanticHighlighter previous = highlighter;
+        if (previous != null) {
+            previous.cancel();
+        }
+        // retrieved before the contents are parsed, tokens of outdated contents are discarded
+        int modificationCount = analyzeManager.getModificationCount();
         JavaFileObject fileObject = new SimpleJavaFileObject(editor.getCurrentFile().toURI(),
                 JavaFileObject.Kind.SOURCE) {
             @Override
@@ -233,12 +254,74 @@ public class JavaLanguage  implements Language, EditorFormatter, CodeAssistLangu
             }
         };
         try {
-            compilationInfo.update(fileObject);
+            File currentFile = editor.getCurrentFile();
+            JavaProblemsService problemsService =
+                    JavaProblemsService.get(project, project.getModule(currentFile));
+            compilationInfo.update(fileObject, 300, unit -> {
+                if (unit != null) {
+                    // the tree is walked once the parse lock has been released
+                    SemanticHighlighter current =
+                            new SemanticHighlighter(compilationInfo.getTrees(), unit);
+                    highlighter = current;
+                    ProgressManager.getInstance().runNonCancelableAsync(() ->
+                            highlight(current, modificationCount));
+                    if (problemsService != null) {
+                        problemsService.fileChanged(currentFile, unit);
+                    }
+                }
+            });
         } catch (Throwable t) {
             LOGGER.error("Failed to update compilation unit", t);
         }
     }
 
+    /**
+     * Computes the semantic tokens of the visible lines first, then the rest of the file.
+     * Stops as soon as the highlighter is cancelled by the next edit.
+     */
+    private void highlight(SemanticHighlighter current, int modificationCount) {
+        if (current.isCancelled()) {
+            return;
+        }
+
+        int start;
+        int end;
+        try {
+            CodeEditor codeEditor = (CodeEditor) editor;
+            int lastLine = codeEditor.getLastVisibleLine() + 1;
+            start = editor.getCharIndex(codeEditor.getFirstVisibleLine(), 0);
+            end = lastLine < editor.getContent().getLineCount()
+                    ? editor.getCharIndex(lastLine, 0)
+                    : Integer.MAX_VALUE;
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            start = 0;
+            end = Integer.MAX_VALUE;
+        }
+
+        try {
+            List<SemanticToken> visible = current.highlight(start, end);
+            if (current.isCancelled()
+                || !analyzeManager.setTokens(modificationCount, start, end, visible)) {
+                return;
+            }
+            if (start > 0) {
+                List<SemanticToken> before = current.highlight(0, start);
+                if (current.isCancelled()
+                    || !analyzeManager.setTokens(modificationCount, 0, start, before)) {
+                    return;
+                }
+            }
+            if (end != Integer.MAX_VALUE) {
+                List<SemanticToken> after = current.highlight(end, Integer.MAX_VALUE);
+                if (!current.isCancelled()) {
+                    analyzeManager.setTokens(modificationCount, end, Integer.MAX_VALUE, after);
+                }
+            }
+        } catch (Throwable t) {
+            LOGGER.error("Failed to compute semantic tokens", t);
+        }
+    }
+
     class TwoIndentHandler implements NewlineHandler {
 
         @Override
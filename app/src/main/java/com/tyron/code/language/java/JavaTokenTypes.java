@@ -5,6 +5,7 @@ import com.tyron.code.analyzer.semantic.TokenType;
 import javax.lang.model.element.Element;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.VariableElement;
+import com.sun.tools.javac.code.Flags;
 import com.sun.tools.javac.code.Symbol;
 
 public class JavaTokenTypes {
@@ -23,6 +24,11 @@ public class JavaTokenTypes {
         if (element == null) {
             return null;
         }
+        if (element instanceof Symbol.ClassSymbol) {
+            // the kind of a class symbol completes it, read its flags as they are
+            long flags = ((Symbol.ClassSymbol) element).flags_field;
+            return (flags & Flags.ANNOTATION) != 0 ? ANNOTATION : CLASS;
+        }
 
         switch (element.getKind()) {
             case LOCAL_VARIABLE:
@@ -44,7 +50,14 @@ public class JavaTokenTypes {
                 }
                 return FIELD;
             case CLASS:
+            case INTERFACE:
+            case ENUM:
                 return CLASS;
+            case ENUM_CONSTANT:
+                return CONSTANT;
+            case EXCEPTION_PARAMETER:
+            case RESOURCE_VARIABLE:
+                return VARIABLE;
             case CONSTRUCTOR:
                 return CONSTRUCTOR;
             case PARAMETER:
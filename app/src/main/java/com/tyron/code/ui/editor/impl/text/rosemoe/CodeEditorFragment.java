@@ -63,7 +63,7 @@ import com.tyron.common.util.AndroidUtilities;
 import com.tyron.completion.java.util.DiagnosticUtil;
 import com.tyron.completion.java.util.JavaDataContextUtil;
 import com.tyron.completion.progress.ProgressManager;
-import com.tyron.editor.CharPosition;
+import com.tyron.editor.util.ContentReconciler;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.vfs2.FileContent;
@@ -497,15 +497,14 @@ public class CodeEditorFragment extends Fragment implements Savable,
         if (mCurrentFile.equals(file)) {
             if (mEditor != null) {
                 if (!mEditor.getText().toString().contentEquals(contents)) {
-                    Cursor cursor = mEditor.getCursor();
-                    int left = cursor.getLeft();
-                    mEditor.setText(contents);
-
-                    if (left > contents.length()) {
-                        left = contents.length();
+                    // only apply the lines that changed so the cursor, undo history and
+                    // analysis of the rest of the file are kept
+                    mEditor.beginBatchEdit();
+                    try {
+                        ContentReconciler.reconcile(mEditor.getContent(), contents);
+                    } finally {
+                        mEditor.endBatchEdit();
                     }
-                    CharPosition position = mEditor.getCharPosition(left);
-                    mEditor.setSelection(position.getLine(), position.getColumn());
                 }
             }
         }
@@ -781,7 +780,7 @@ public class CodeEditorFragment extends Fragment implements Savable,
 
         if (currentProject != null && mLanguage instanceof JavaLanguage) {
             JavaDataContextUtil.addEditorKeys(dataContext, currentProject, mCurrentFile,
-                    mEditor.getCursor().getLeft());
+                    mEditor.getCursor().getLeft(), mEditor.getCursor().getRight());
         }
         return dataContext;
     }
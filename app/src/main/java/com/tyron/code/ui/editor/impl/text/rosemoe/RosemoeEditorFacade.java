@@ -13,6 +13,7 @@ import android.widget.FrameLayout;
 import androidx.appcompat.widget.ForwardingListener;
 import androidx.core.content.res.ResourcesCompat;
 
+import com.google.common.collect.ImmutableList;
 import com.tyron.actions.ActionManager;
 import com.tyron.actions.ActionPlaces;
 import com.tyron.actions.CommonDataKeys;
@@ -24,6 +25,7 @@ import com.tyron.code.ApplicationLoader;
 import com.tyron.code.R;
 import com.tyron.code.event.EventManager;
 import com.tyron.code.event.PerformShortcutEvent;
+import com.tyron.code.language.IntervalDiagnosticsContainer;
 import com.tyron.code.language.LanguageManager;
 import com.tyron.code.language.java.JavaLanguage;
 import com.tyron.code.ui.editor.CodeAssistCompletionAdapter;
@@ -49,9 +51,8 @@ import java.io.File;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.ServiceLoader;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.tools.Diagnostic;
 
@@ -73,6 +74,12 @@ public class RosemoeEditorFacade {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(RosemoeEditorFacade.class);
 
+    /**
+     * Providers are discovered once, the service loader scans the class path on every call
+     */
+    private static final List<DiagnosticProvider> DIAGNOSTIC_PROVIDERS =
+            ImmutableList.copyOf(ServiceLoader.load(DiagnosticProvider.class));
+
     private final FileEditor fileEditor;
     private final Content content;
     private final FrameLayout container;
@@ -80,6 +87,12 @@ public class RosemoeEditorFacade {
 
     private View.OnTouchListener dragToOpenListener;
 
+    /**
+     * Incremented on every content change, a background update that started before the
+     * latest change is superseded and its results are discarded
+     */
+    private final AtomicInteger contentVersion = new AtomicInteger();
+
     RosemoeEditorFacade(RosemoeCodeEditor rosemoeCodeEditor,
                         Context context,
                         Content content,
@@ -106,8 +119,9 @@ public class RosemoeEditorFacade {
      * Background updates
      *
      * @param content the current content when the update is called
+     * @param version the content version when the update was scheduled
      */
-    private void onContentChange(Content content) {
+    private void onContentChange(Content content, int version) {
         Language language = editor.getEditorLanguage();
         File currentFile = editor.getCurrentFile();
         Project project = editor.getProject();
@@ -123,30 +137,49 @@ public class RosemoeEditorFacade {
             ((CodeAssistLanguage) language).onContentChange(currentFile, content);
         }
 
-        Objects.requireNonNull(editor.getDiagnostics()).reset();
-
-        ServiceLoader<DiagnosticProvider> providers = ServiceLoader.load(DiagnosticProvider.class);
-        for (DiagnosticProvider provider : providers) {
+        List<DiagnosticRegion> regions = new ArrayList<>();
+        for (DiagnosticProvider provider : DIAGNOSTIC_PROVIDERS) {
+            if (isSuperseded(version)) {
+                return;
+            }
             List<? extends Diagnostic<?>> diagnostics =
                     provider.getDiagnostics(module, currentFile);
-            Function<Diagnostic.Kind, Short> severitySupplier = it -> {
-                switch (it) {
-                    case ERROR:
-                        return DiagnosticRegion.SEVERITY_ERROR;
-                    case MANDATORY_WARNING:
-                    case WARNING:
-                        return DiagnosticRegion.SEVERITY_WARNING;
-                    default:
-                    case OTHER:
-                    case NOTE:
-                        return DiagnosticRegion.SEVERITY_NONE;
-                }
-            };
-            diagnostics.stream()
-                    .map(it -> new DiagnosticRegion((int) it.getStartPosition(),
-                            (int) it.getEndPosition(),
-                            severitySupplier.apply(it.getKind())))
-                    .forEach(Objects.requireNonNull(editor.getDiagnostics())::addDiagnostic);
+            for (Diagnostic<?> diagnostic : diagnostics) {
+                regions.add(new DiagnosticRegion((int) diagnostic.getStartPosition(),
+                        (int) diagnostic.getEndPosition(),
+                        getSeverity(diagnostic.getKind())));
+            }
+        }
+        if (isSuperseded(version)) {
+            return;
+        }
+
+        // built here so the main thread only has to swap the containers
+        DiagnosticsContainer container = new IntervalDiagnosticsContainer();
+        container.addDiagnostics(regions);
+        ProgressManager.getInstance().runLater(() -> {
+            if (isSuperseded(version)) {
+                return;
+            }
+            editor.setDiagnostics(container);
+        });
+    }
+
+    private boolean isSuperseded(int version) {
+        return contentVersion.get() != version;
+    }
+
+    private static short getSeverity(Diagnostic.Kind kind) {
+        switch (kind) {
+            case ERROR:
+                return DiagnosticRegion.SEVERITY_ERROR;
+            case MANDATORY_WARNING:
+            case WARNING:
+                return DiagnosticRegion.SEVERITY_WARNING;
+            default:
+            case OTHER:
+            case NOTE:
+                return DiagnosticRegion.SEVERITY_NONE;
         }
     }
 
@@ -165,7 +198,7 @@ public class RosemoeEditorFacade {
         bundle.putBoolean("bg", true);
         editor.setText(content, bundle);
         editor.setHighlightBracketPair(false);
-        editor.setDiagnostics(new DiagnosticsContainer());
+        editor.setDiagnostics(new IntervalDiagnosticsContainer());
         editor.setTypefaceText(ResourcesCompat.getFont(editor.getContext(),
                 R.font.jetbrains_mono_regular));
 
@@ -248,16 +281,21 @@ public class RosemoeEditorFacade {
                 }
             }
         });
-        editor.subscribeEvent(ContentChangeEvent.class,
-                (event, unsubscribe) -> ProgressManager.getInstance()
-                        .runNonCancelableAsync(() -> DebouncerStore.DEFAULT.registerOrGetDebouncer(
-                                "contentChange").debounce(300, () -> {
-                            try {
-                                onContentChange(editor.getContent());
-                            } catch (Throwable t) {
-                                LOGGER.error("Error in onContentChange", t);
-                            }
-                        })));
+        // content change events are dispatched on the main thread, the debouncer then
+        // runs the update on its own thread
+        editor.subscribeEvent(ContentChangeEvent.class, (event, unsubscribe) -> {
+            int version = contentVersion.incrementAndGet();
+            DebouncerStore.DEFAULT.registerOrGetDebouncer("contentChange").debounce(300, () -> {
+                if (isSuperseded(version)) {
+                    return;
+                }
+                try {
+                    onContentChange(editor.getContent(), version);
+                } catch (Throwable t) {
+                    LOGGER.error("Error in onContentChange", t);
+                }
+            });
+        });
     }
 
     /**
@@ -299,7 +337,8 @@ public class RosemoeEditorFacade {
             JavaDataContextUtil.addEditorKeys(dataContext,
                     currentProject,
                     editor.getCurrentFile(),
-                    editor.getCursor().getLeft());
+                    editor.getCursor().getLeft(),
+                    editor.getCursor().getRight());
         }
         return dataContext;
     }
@@ -0,0 +1,71 @@
+package com.tyron.code.ui.file.action.java;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.actions.AnActionEvent;
+import com.tyron.actions.CommonDataKeys;
+import com.tyron.builder.project.Project;
+import com.tyron.code.R;
+import com.tyron.code.language.java.JavaBatchFormatter;
+import com.tyron.code.ui.file.action.FileAction;
+import com.tyron.code.ui.file.tree.TreeFileManagerFragment;
+import com.tyron.code.ui.project.ProjectManager;
+import com.tyron.common.util.AndroidUtilities;
+import com.tyron.completion.progress.ProgressManager;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Formats and optimizes the imports of every java file in the selected directory.
+ */
+public class FormatJavaFilesAction extends FileAction {
+
+    public static final String ID = "fileManagerFormatJavaFilesAction";
+
+    @Override
+    public String getTitle(Context context) {
+        return context.getString(R.string.menu_format_java_files);
+    }
+
+    @Override
+    public boolean isApplicable(File file) {
+        return file.isDirectory() || file.getName().endsWith(".java");
+    }
+
+    @Override
+    public void actionPerformed(@NonNull AnActionEvent e) {
+        TreeFileManagerFragment fragment =
+                (TreeFileManagerFragment) e.getRequiredData(CommonDataKeys.FRAGMENT);
+        File root = e.getRequiredData(CommonDataKeys.FILE);
+        Project project = ProjectManager.getInstance().getCurrentProject();
+
+        ProgressManager.getInstance().runNonCancelableAsync(() -> {
+            List<File> files = JavaBatchFormatter.collectJavaFiles(root);
+            JavaBatchFormatter.Result result =
+                    JavaBatchFormatter.getInstance().format(project, files);
+
+            ProgressManager.getInstance().runLater(() -> {
+                if (fragment.isDetached() || fragment.getContext() == null) {
+                    return;
+                }
+                StringBuilder message = new StringBuilder(
+                        fragment.getString(R.string.format_java_files_result,
+                                result.getFormatted(), result.getUnchanged()));
+                List<String> failures = result.getFailures();
+                if (!failures.isEmpty()) {
+                    message.append("\n\n")
+                            .append(fragment.getString(R.string.format_java_files_failed,
+                                    failures.size()));
+                    for (String failure : failures) {
+                        message.append('\n').append(failure);
+                    }
+                }
+                AndroidUtilities.showSimpleAlert(fragment.requireContext(),
+                        R.string.menu_format_java_files, message.toString());
+            });
+        });
+    }
+}
@@ -35,6 +35,7 @@ import com.tyron.code.ui.file.event.RefreshRootEvent;
 import com.tyron.code.util.ApkInstaller;
 import com.tyron.code.util.EventManagerUtilsKt;
 import com.tyron.code.util.UiUtilsKt;
+import com.tyron.completion.java.diagnostics.JavaProblemsChangedEvent;
 import com.tyron.completion.progress.ProgressManager;
 import com.tyron.ui.treeview.TreeNode;
 import com.tyron.ui.treeview.TreeView;
@@ -126,6 +127,15 @@ public class TreeFileManagerFragment extends Fragment {
             }
         });
 
+        // rebind the files to show their error badges
+        EventManagerUtilsKt.subscribeEvent(eventManager, getViewLifecycleOwner(), JavaProblemsChangedEvent.class, (event, unsubscribe) ->
+                ProgressManager.getInstance().runLater(() -> {
+                    if (getActivity() == null) {
+                        return;
+                    }
+                    treeView.updateTreeView();
+                }));
+
         treeView.setAdapter(new TreeFileNodeViewFactory(new TreeFileNodeListener() {
             @Override
             public void onNodeToggled(TreeNode<TreeFile> treeNode, boolean expanded) {
@@ -3,12 +3,16 @@ package com.tyron.code.ui.file.tree.binder
 import android.view.View
 import android.widget.ImageView
 import android.widget.TextView
+import com.google.android.material.color.MaterialColors
 import com.tyron.code.R
+import com.tyron.code.ui.project.ProjectManager
+import com.tyron.completion.java.diagnostics.JavaProblemsService
 import com.tyron.ui.treeview.TreeNode
 import com.tyron.ui.treeview.base.BaseNodeViewBinder
 import com.tyron.code.ui.file.tree.model.TreeFile
 import com.tyron.code.util.dp
 import com.tyron.code.util.setMargins
+import java.io.File
 
 class TreeFileNodeViewBinder(
     itemView: View,
@@ -18,6 +22,8 @@ class TreeFileNodeViewBinder(
 
     private lateinit var viewHolder: ViewHolder
 
+    private val defaultTextColors = itemView.findViewById<TextView>(R.id.name).textColors
+
     override fun bindView(treeNode: TreeNode<TreeFile>) {
         viewHolder = ViewHolder(itemView)
 
@@ -34,12 +40,30 @@ class TreeFileNodeViewBinder(
         val file = treeNode.content.file
 
         viewHolder.dirName.text = file.name
+        if (hasErrors(file)) {
+            viewHolder.dirName.setTextColor(MaterialColors.getColor(itemView, R.attr.colorError))
+        } else {
+            viewHolder.dirName.setTextColor(defaultTextColors)
+        }
 
         with(viewHolder.icon) {
             setImageDrawable(treeNode.content.getIcon(context))
         }
     }
 
+    private fun hasErrors(file: File): Boolean {
+        val project = ProjectManager.getInstance().currentProject ?: return false
+        if (file.isDirectory) {
+            return project.modules.any {
+                JavaProblemsService.get(project, it)?.hasErrorsIn(file) == true
+            }
+        }
+        if (!file.name.endsWith(".java")) {
+            return false
+        }
+        return JavaProblemsService.get(project, project.getModule(file))?.hasErrors(file) == true
+    }
+
     override fun onNodeToggled(treeNode: TreeNode<TreeFile>, expand: Boolean) {
         viewHolder.arrow.animate()
             .rotation(if (expand) 90F else 0F)
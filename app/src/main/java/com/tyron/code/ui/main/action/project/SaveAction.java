@@ -19,10 +19,12 @@ import com.tyron.code.ui.editor.Savable;
 import com.tyron.code.ui.main.MainFragment;
 import com.tyron.code.ui.main.MainViewModel;
 import com.tyron.completion.progress.ProgressManager;
+import com.tyron.editor.Content;
 import com.tyron.fileeditor.api.FileDocumentManager;
 import com.tyron.fileeditor.api.FileEditor;
 
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.vfs2.FileObject;
 
 import java.io.File;
 import java.io.IOException;
@@ -67,8 +69,16 @@ public class SaveAction extends AnAction {
     }
 
     public static void doSave() {
-        FileDocumentManager.getInstance().saveAllContents();
+        FileDocumentManager documentManager = FileDocumentManager.getInstance();
+        List<File> savedFiles = new ArrayList<>();
+        for (Content content : documentManager.getUnsavedContents()) {
+            FileObject file = documentManager.getFile(content);
+            if (file != null) {
+                savedFiles.add(file.getPath().toFile());
+            }
+        }
+        documentManager.saveAllContents();
         EventManager eventManager = ApplicationLoader.getInstance().getEventManager();
-        eventManager.dispatchEvent(new SaveEvent());
+        eventManager.dispatchEvent(new SaveEvent(savedFiles));
     }
 }
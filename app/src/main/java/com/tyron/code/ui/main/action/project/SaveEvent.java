@@ -1,7 +1,25 @@
 package com.tyron.code.ui.main.action.project;
 
+import androidx.annotation.NonNull;
+
 import com.tyron.code.event.Event;
 
+import java.io.File;
+import java.util.List;
+
 public class SaveEvent extends Event {
 
+    private final List<File> savedFiles;
+
+    public SaveEvent(@NonNull List<File> savedFiles) {
+        this.savedFiles = savedFiles;
+    }
+
+    /**
+     * @return the files whose unsaved contents have been written to disk
+     */
+    @NonNull
+    public List<File> getSavedFiles() {
+        return savedFiles;
+    }
 }
@@ -0,0 +1,339 @@
+package com.tyron.code.ui.project;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.tyron.builder.model.CodeAssistAndroidLibrary;
+import com.tyron.builder.model.CodeAssistLibrary;
+import com.tyron.builder.project.api.AndroidContentRoot;
+import com.tyron.builder.project.api.ContentRoot;
+import com.tyron.builder.project.impl.AndroidModuleImpl;
+import com.tyron.common.logging.IdeLog;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Persists the modules built from the gradle model in a compact binary form so that reopening
+ * a project whose build scripts have not changed does not need to connect to gradle.
+ * <p>
+ * An entry is keyed by a fingerprint of {@code settings.gradle}, {@code gradle.properties},
+ * the build script of the root project and every module, and the resolved dependency artifacts
+ * of every module. The entry is outdated as soon as any of those change, it can still be used
+ * while the project is synced again.
+ */
+public class ModelCache {
+
+    private static final Logger LOG = IdeLog.getCurrentLogger(ModelCache.class);
+
+    private static final int MAGIC = 0x43414d43;
+    private static final int VERSION = 1;
+
+    private static final byte LIBRARY_JAR = 0;
+    private static final byte LIBRARY_ANDROID = 1;
+
+    private static final List<String> ROOT_BUILD_FILES = Arrays.asList(
+            "settings.gradle",
+            "settings.gradle.kts",
+            "build.gradle",
+            "build.gradle.kts",
+            "gradle.properties",
+            "gradle/libs.versions.toml"
+    );
+
+    private static final List<String> MODULE_BUILD_FILES = Arrays.asList(
+            "build.gradle",
+            "build.gradle.kts",
+            "gradle.properties"
+    );
+
+    private final File rootDir;
+    private final File cacheFile;
+
+    public ModelCache(File rootDir) {
+        this.rootDir = rootDir;
+        this.cacheFile = new File(rootDir, "build/.codeassist/model.bin");
+    }
+
+    /**
+     * The modules saved by the last sync.
+     */
+    public static class Entry {
+
+        private final List<AndroidModuleImpl> modules;
+        private final boolean upToDate;
+
+        Entry(List<AndroidModuleImpl> modules, boolean upToDate) {
+            this.modules = modules;
+            this.upToDate = upToDate;
+        }
+
+        public List<AndroidModuleImpl> getModules() {
+            return modules;
+        }
+
+        /**
+         * @return false if the build scripts or dependencies have changed since the entry
+         * was written, the project needs to be synced again.
+         */
+        public boolean isUpToDate() {
+            return upToDate;
+        }
+    }
+
+    /**
+     * Restores the modules saved by the last sync.
+     *
+     * @return The cached entry, or null if there is none or it cannot be read.
+     */
+    @Nullable
+    public Entry load() {
+        if (!cacheFile.isFile()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(cacheFile)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                return null;
+            }
+            String fingerprint = in.readUTF();
+
+            int moduleCount = in.readInt();
+            List<AndroidModuleImpl> modules = new ArrayList<>(moduleCount);
+            for (int i = 0; i < moduleCount; i++) {
+                modules.add(readModule(in));
+            }
+
+            return new Entry(modules, fingerprint.equals(computeFingerprint(modules)));
+        } catch (IOException | RuntimeException e) {
+            LOG.warning("Failed to read cached model: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Writes the given modules along with the current fingerprint of the build scripts.
+     */
+    public void save(@NonNull Collection<AndroidModuleImpl> modules) {
+        File parent = cacheFile.getParentFile();
+        if (parent != null && !parent.exists() && !parent.mkdirs()) {
+            return;
+        }
+
+        File tempFile = new File(parent, cacheFile.getName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(tempFile)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeUTF(computeFingerprint(modules));
+            out.writeInt(modules.size());
+            for (AndroidModuleImpl module : modules) {
+                writeModule(out, module);
+            }
+        } catch (IOException e) {
+            LOG.warning("Failed to write cached model: " + e.getMessage());
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+
+        // replace the previous entry in one step so a partially written file is never read
+        if (!tempFile.renameTo(cacheFile)) {
+            //noinspection ResultOfMethodCallIgnored
+            cacheFile.delete();
+            if (!tempFile.renameTo(cacheFile)) {
+                //noinspection ResultOfMethodCallIgnored
+                tempFile.delete();
+            }
+        }
+    }
+
+    public void invalidate() {
+        //noinspection ResultOfMethodCallIgnored
+        cacheFile.delete();
+    }
+
+    private String computeFingerprint(Collection<AndroidModuleImpl> modules) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (String path : ROOT_BUILD_FILES) {
+            hashContents(hasher, new File(rootDir, path));
+        }
+        for (AndroidModuleImpl module : modules) {
+            hasher.putUnencodedChars(module.getName());
+            for (String path : MODULE_BUILD_FILES) {
+                hashContents(hasher, new File(module.getRootFile(), path));
+            }
+            // artifacts are only stamped, they are much larger than build scripts
+            // and are never modified in place by gradle
+            for (CodeAssistLibrary library : module.getCodeAssistLibraries()) {
+                if (library instanceof CodeAssistAndroidLibrary) {
+                    for (File jar : ((CodeAssistAndroidLibrary) library).getCompileJarFiles()) {
+                        hashStamp(hasher, jar);
+                    }
+                    hashStamp(hasher, ((CodeAssistAndroidLibrary) library).getResFolder());
+                } else {
+                    hashStamp(hasher, library.getSourceFile());
+                }
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void hashContents(Hasher hasher, File file) throws IOException {
+        hasher.putUnencodedChars(file.getPath());
+        if (file.isFile()) {
+            hasher.putBytes(Files.toByteArray(file));
+        } else {
+            hasher.putInt(-1);
+        }
+    }
+
+    private static void hashStamp(Hasher hasher, @Nullable File file) {
+        if (file == null) {
+            hasher.putInt(-1);
+            return;
+        }
+        hasher.putUnencodedChars(file.getPath());
+        hasher.putBoolean(file.exists());
+        hasher.putLong(file.length());
+        hasher.putLong(file.lastModified());
+    }
+
+    private static void writeModule(DataOutputStream out, AndroidModuleImpl module) throws IOException {
+        writeFile(out, module.getRootFile());
+        writeString(out, module.getName());
+        writeString(out, module.getNamespace());
+        writeString(out, module.getPackageName());
+
+        List<AndroidContentRoot> contentRoots = new ArrayList<>();
+        for (ContentRoot contentRoot : module.getContentRoots()) {
+            if (contentRoot instanceof AndroidContentRoot) {
+                contentRoots.add((AndroidContentRoot) contentRoot);
+            }
+        }
+        out.writeInt(contentRoots.size());
+        for (AndroidContentRoot contentRoot : contentRoots) {
+            writeFile(out, contentRoot.getRootDirectory());
+            writeFiles(out, contentRoot.getJavaDirectories());
+            writeFiles(out, contentRoot.getResourceDirectories());
+        }
+
+        List<CodeAssistLibrary> libraries = module.getCodeAssistLibraries();
+        out.writeInt(libraries.size());
+        for (CodeAssistLibrary library : libraries) {
+            if (library instanceof CodeAssistAndroidLibrary) {
+                CodeAssistAndroidLibrary androidLibrary = (CodeAssistAndroidLibrary) library;
+                out.writeByte(LIBRARY_ANDROID);
+                writeString(out, androidLibrary.getDeclaration());
+                writeFiles(out, androidLibrary.getCompileJarFiles());
+                writeFile(out, androidLibrary.getPublicResources());
+                writeFile(out, androidLibrary.getSymbolFile());
+                writeFile(out, androidLibrary.getResStaticLibrary());
+                writeFile(out, androidLibrary.getResFolder());
+            } else {
+                out.writeByte(LIBRARY_JAR);
+                writeString(out, library.getDeclaration());
+                writeFile(out, library.getSourceFile());
+            }
+        }
+    }
+
+    private static AndroidModuleImpl readModule(DataInputStream in) throws IOException {
+        AndroidModuleImpl module = new AndroidModuleImpl(readFile(in));
+        module.setName(readString(in));
+        module.setNamespace(readString(in));
+        module.setPackageName(readString(in));
+
+        int contentRootCount = in.readInt();
+        for (int i = 0; i < contentRootCount; i++) {
+            AndroidContentRoot contentRoot = new AndroidContentRoot(readFile(in));
+            contentRoot.setJavaDirectories(readFiles(in));
+            contentRoot.setResourceDirectories(readFiles(in));
+            module.addContentRoot(contentRoot);
+        }
+
+        int libraryCount = in.readInt();
+        for (int i = 0; i < libraryCount; i++) {
+            byte type = in.readByte();
+            if (type == LIBRARY_ANDROID) {
+                CodeAssistAndroidLibrary library = new CodeAssistAndroidLibrary();
+                library.setDeclaration(readString(in));
+                library.setSourceFile(null);
+                library.setCompileJarFiles(readFiles(in));
+                library.setPublicResources(readFile(in));
+                library.setSymbolFile(readFile(in));
+                library.setResStaticLibrary(readFile(in));
+                library.setResFolder(readFile(in));
+                module.addLibrary(library);
+            } else if (type == LIBRARY_JAR) {
+                String declaration = readString(in);
+                CodeAssistLibrary library = CodeAssistLibrary.forJar(readFile(in));
+                library.setDeclaration(declaration);
+                module.addLibrary(library);
+            } else {
+                throw new IOException("Unknown library type " + type);
+            }
+        }
+        return module;
+    }
+
+    private static void writeString(DataOutputStream out, @Nullable String string) throws IOException {
+        out.writeBoolean(string != null);
+        if (string != null) {
+            out.writeUTF(string);
+        }
+    }
+
+    @Nullable
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static void writeFile(DataOutputStream out, @Nullable File file) throws IOException {
+        writeString(out, file == null ? null : file.getAbsolutePath());
+    }
+
+    @Nullable
+    private static File readFile(DataInputStream in) throws IOException {
+        String path = readString(in);
+        return path == null ? null : new File(path);
+    }
+
+    private static void writeFiles(DataOutputStream out, @Nullable Collection<File> files) throws IOException {
+        if (files == null) {
+            out.writeInt(0);
+            return;
+        }
+        out.writeInt(files.size());
+        for (File file : files) {
+            writeFile(out, file);
+        }
+    }
+
+    private static List<File> readFiles(DataInputStream in) throws IOException {
+        int size = in.readInt();
+        if (size == 0) {
+            return Collections.emptyList();
+        }
+        List<File> files = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            files.add(readFile(in));
+        }
+        return files;
+    }
+}
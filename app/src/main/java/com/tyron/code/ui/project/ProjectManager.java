@@ -28,6 +28,7 @@ import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.builder.project.api.JavaModule;
 import com.tyron.builder.project.api.Module;
 import com.tyron.builder.project.impl.AndroidModuleImpl;
+import com.tyron.code.ApplicationLoader;
 import com.tyron.code.event.FileCreatedEvent;
 import com.tyron.code.event.FileDeletedEvent;
 import com.tyron.code.gradle.util.GradleLaunchUtil;
@@ -37,15 +38,19 @@ import com.tyron.code.util.ProjectUtils;
 import com.tyron.common.logging.IdeLog;
 import com.tyron.common.util.DebouncerStore;
 import com.tyron.completion.java.compiler.Parser;
+import com.tyron.completion.java.diagnostics.JavaProblemsChangedEvent;
+import com.tyron.completion.java.diagnostics.JavaProblemsService;
 import com.tyron.completion.java.parse.CompilationInfo;
 import com.tyron.completion.java.provider.CompletionEngine;
 import com.tyron.completion.java.provider.PruneMethodBodies;
 import com.tyron.completion.progress.ProgressManager;
 import com.tyron.completion.xml.task.InjectResourcesTask;
+import com.tyron.completion.xml.v2.events.ResourceDelta;
 import com.tyron.completion.xml.v2.events.XmlReparsedEvent;
 import com.tyron.completion.xml.v2.events.XmlResourceChangeEvent;
 import com.tyron.completion.xml.v2.project.ResourceRepositoryManager;
 import com.tyron.kotlin.completion.KotlinEnvironment;
+import com.tyron.viewbinding.task.InjectViewBindingTask;
 
 import org.apache.commons.io.FileUtils;
 import org.gradle.tooling.BuildActionExecuter;
@@ -59,6 +64,7 @@ import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashSet;
 import java.util.LinkedList;
@@ -166,8 +172,18 @@ public class ProjectManager {
         mCurrentProject.getEventManager().subscribeEvent(FileCreatedEvent.class, (event, u) -> {
             modifiedEventConsumer.accept(event.getFile());
         });
+        // the file tree is not bound to a project, forward the changes to it
+        mCurrentProject.getEventManager().subscribeEvent(JavaProblemsChangedEvent.class,
+                (event, unsubscribe) -> ApplicationLoader.getInstance()
+                        .getEventManager()
+                        .dispatchEvent(event));
         mCurrentProject.getEventManager().subscribeEvent(XmlReparsedEvent.class,
-                (event, unsubscribe) -> DebouncerStore.DEFAULT.registerOrGetDebouncer("ResourceInjector").debounce(300, () -> ProgressManager.getInstance().runNonCancelableAsync(() -> {
+                (event, unsubscribe) -> {
+                    ResourceDelta delta = event.getDelta();
+                    if (delta != null && !delta.affectsRClass()) {
+                        return;
+                    }
+                    DebouncerStore.DEFAULT.registerOrGetDebouncer("ResourceInjector").debounce(300, () -> ProgressManager.getInstance().runNonCancelableAsync(() -> {
                     File file = event.getFile();
                     Module module;
                     if (file == null) {
@@ -182,12 +198,84 @@ public class ProjectManager {
                             IdeLog.getLogger().severe(e.getMessage());
                         }
                     }
-                })));
+                    }));
+                });
+        // only the bindings of the layouts that have changed since the last injection are
+        // generated, so the changed files are recorded before debouncing
+        mCurrentProject.getEventManager().subscribeEvent(XmlReparsedEvent.class,
+                (event, unsubscribe) -> {
+                    ResourceDelta delta = event.getDelta();
+                    if (delta != null && !delta.affectsIdsOrLayouts()) {
+                        return;
+                    }
+                    File file = event.getFile();
+                    Module module;
+                    if (file == null) {
+                        module = mCurrentProject.getModuleByName(":app");
+                    } else {
+                        module = mCurrentProject.getModule(file);
+                    }
+                    if (!(module instanceof AndroidModule)) {
+                        return;
+                    }
+                    AndroidModule androidModule = (AndroidModule) module;
+                    InjectViewBindingTask.invalidate(androidModule, file);
+                    DebouncerStore.DEFAULT.registerOrGetDebouncer("ViewBindingInjector")
+                            .debounce(300, () -> ProgressManager.getInstance()
+                                    .runNonCancelableAsync(() -> InjectViewBindingTask.inject(
+                                            mCurrentProject, androidModule)));
+                });
 
         // the following will extract the jar files if it does not exist
         BuildModule.getAndroidJar();
         BuildModule.getLambdaStubs();
 
+        // reuse the model from the last sync, if the build scripts or resolved dependencies
+        // have changed since then it is used until the project has been synced again
+        ModelCache modelCache = new ModelCache(mCurrentProject.getRootFile());
+        ModelCache.Entry cachedEntry = modelCache.load();
+        if (cachedEntry != null) {
+            boolean restored = false;
+            try {
+                mListener.onTaskStarted("Restoring cached model");
+                mCurrentProject.clear();
+                for (AndroidModuleImpl module : cachedEntry.getModules()) {
+                    mCurrentProject.addModule(module);
+                    indexModule(module);
+                }
+                indexResources(project, mListener);
+                restored = true;
+            } catch (Throwable t) {
+                logger.warning("Failed to restore cached model: " + t.getMessage());
+                modelCache.invalidate();
+            }
+
+            if (restored) {
+                onProjectOpened(project, mListener);
+                if (!cachedEntry.isUpToDate()) {
+                    ProgressManager.getInstance().runNonCancelableAsync(() -> {
+                        // another project may have been opened in the meantime
+                        if (mCurrentProject == project
+                            && syncModel(project, modelCache, mListener)) {
+                            onProjectOpened(project, mListener);
+                        }
+                    });
+                }
+                return;
+            }
+        }
+
+        if (syncModel(project, modelCache, mListener)) {
+            onProjectOpened(project, mListener);
+        }
+    }
+
+    /**
+     * Builds the model of the project with gradle and replaces the modules of the project.
+     *
+     * @return false if the sync failed, the listener has been notified in this case
+     */
+    private boolean syncModel(Project project, ModelCache modelCache, TaskListener mListener) {
         GradleConnector gradleConnector = GradleConnector.newConnector();
         gradleConnector.forProjectDirectory(mCurrentProject.getRootFile());
         gradleConnector.useDistribution(URI.create("codeAssist"));
@@ -216,15 +304,13 @@ public class ProjectManager {
 
             // remove the previous models
             mCurrentProject.clear();
-            buildModel(appProject, project);
-
-            project.getModuleByName("app");
-            mListener.onTaskStarted("Indexing resources");
-            ResourceRepositoryManager.getProjectResources(project.getModuleByName(":app"));
+            AndroidModuleImpl appModule = buildModel(appProject);
+            project.addModule(appModule);
+            indexModule(appModule);
 
-            mListener.onTaskStarted("Inject resource classes");
-            mCurrentProject.getEventManager().dispatchEvent(new XmlReparsedEvent(null));
+            modelCache.save(Collections.singletonList(appModule));
 
+            indexResources(project, mListener);
         } catch (Throwable t) {
             Throwable throwable = t;
             if (throwable instanceof BuildException) {
@@ -236,16 +322,35 @@ public class ProjectManager {
             mListener.onComplete(mCurrentProject,
                     false,
                     Throwables.getStackTraceAsString(throwable) + "\n");
-            return;
+            return false;
         }
+        return true;
+    }
+
+    private void indexResources(Project project, TaskListener mListener) {
+        mListener.onTaskStarted("Indexing resources");
+        ResourceRepositoryManager.getProjectResources(project.getModuleByName(":app"));
+
+        mListener.onTaskStarted("Inject resource classes");
+        mCurrentProject.getEventManager().dispatchEvent(new XmlReparsedEvent(null));
+    }
 
+    private void onProjectOpened(Project project, TaskListener mListener) {
         mProjectOpenListeners.forEach(it -> it.onProjectOpen(mCurrentProject));
 
+        // find the compile errors of the whole project in the background
+        for (Module module : project.getModules()) {
+            JavaProblemsService problemsService = JavaProblemsService.get(project, module);
+            if (problemsService != null) {
+                problemsService.checkAll();
+            }
+        }
+
         mCurrentProject.setIndexing(false);
         mListener.onComplete(project, true, "Index successful");
     }
 
-    private void buildModel(ModelContainerV2.ModelInfo modelInfo, Project currentProject) throws IOException {
+    private AndroidModuleImpl buildModel(ModelContainerV2.ModelInfo modelInfo) {
         AndroidModuleImpl impl = new AndroidModuleImpl(modelInfo.getProjectDir());
 
         // de-structure model info fields
@@ -341,8 +446,7 @@ public class ProjectManager {
             }
         }
 
-        currentProject.addModule(impl);
-        indexModule(impl);
+        return impl;
     }
 
     /**
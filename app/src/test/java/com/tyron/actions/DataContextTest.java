@@ -0,0 +1,106 @@
+package com.tyron.actions;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.jetbrains.kotlin.com.intellij.openapi.util.Key;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@RunWith(RobolectricTestRunner.class)
+public class DataContextTest {
+
+    private static final Key<String> KEY = Key.create("test");
+
+    private DataContext mContext;
+
+    @Before
+    public void setup() {
+        mContext = DataContext.wrap(ApplicationProvider.getApplicationContext());
+    }
+
+    @Test
+    public void testLazyDataIsComputedOnce() {
+        AtomicInteger computed = new AtomicInteger();
+        mContext.putLazyData(KEY, () -> {
+            computed.incrementAndGet();
+            return "value";
+        });
+        assertThat(computed.get()).isEqualTo(0);
+
+        assertThat(mContext.getData(KEY)).isEqualTo("value");
+        assertThat(mContext.getData(KEY)).isEqualTo("value");
+        assertThat(computed.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testNullLazyDataIsComputedOnce() {
+        AtomicInteger computed = new AtomicInteger();
+        mContext.putLazyData(KEY, () -> {
+            computed.incrementAndGet();
+            return null;
+        });
+
+        assertThat(mContext.getData(KEY)).isNull();
+        assertThat(mContext.getData(KEY)).isNull();
+        assertThat(computed.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testLazyDataIsComputedOnceByConcurrentReaders() throws Exception {
+        AtomicInteger computed = new AtomicInteger();
+        CountDownLatch reading = new CountDownLatch(1);
+        mContext.putLazyData(KEY, () -> {
+            computed.incrementAndGet();
+            try {
+                // give the other readers the time to request the value while it is computed
+                reading.await(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return "value";
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> mContext.getData(KEY)));
+            }
+            for (Future<String> future : futures) {
+                assertThat(future.get(5, TimeUnit.SECONDS)).isEqualTo("value");
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertThat(computed.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void testPutDataReplacesLazyData() {
+        AtomicInteger computed = new AtomicInteger();
+        mContext.putLazyData(KEY, () -> {
+            computed.incrementAndGet();
+            return "lazy";
+        });
+        mContext.putData(KEY, "value");
+
+        assertThat(mContext.getData(KEY)).isEqualTo("value");
+        assertThat(computed.get()).isEqualTo(0);
+
+        mContext.putLazyData(KEY, () -> "lazy");
+        assertThat(mContext.getData(KEY)).isEqualTo("lazy");
+    }
+}
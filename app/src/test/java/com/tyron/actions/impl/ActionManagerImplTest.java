@@ -0,0 +1,156 @@
+package com.tyron.actions.impl;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.robolectric.Shadows.shadowOf;
+
+import android.content.Context;
+import android.os.Looper;
+import android.view.Menu;
+
+import androidx.annotation.NonNull;
+import androidx.appcompat.view.menu.MenuBuilder;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.tyron.actions.ActionUpdateThread;
+import com.tyron.actions.AnAction;
+import com.tyron.actions.AnActionEvent;
+import com.tyron.actions.DataContext;
+
+import org.jetbrains.kotlin.com.intellij.openapi.util.Key;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+@RunWith(RobolectricTestRunner.class)
+public class ActionManagerImplTest {
+
+    private static final String PLACE = "test";
+    private static final long TIMEOUT_MS = 5000;
+
+    private final ActionManagerImpl mManager = new ActionManagerImpl();
+
+    private DataContext mContext;
+    private Menu mMenu;
+
+    @Before
+    public void setup() {
+        Context context = ApplicationProvider.getApplicationContext();
+        mContext = DataContext.wrap(context);
+        // sorts its items by their order like the menus of the editor
+        mMenu = new MenuBuilder(context);
+    }
+
+    @Test
+    public void testBackgroundUpdatesAreAddedInOrder() throws InterruptedException {
+        mManager.registerAction("first", new TestAction("First", ActionUpdateThread.BGT, e -> {}));
+        mManager.registerAction("second", new TestAction("Second", ActionUpdateThread.EDT, e -> {}));
+        mManager.registerAction("third", new TestAction("Third", ActionUpdateThread.BGT, e -> {}));
+
+        mManager.fillMenu(mContext, mMenu, PLACE, false, false);
+        // the actions updated on the UI thread are added right away
+        assertThat(getTitles()).containsExactly("Second");
+
+        awaitMenuSize(3);
+        assertThat(getTitles()).containsExactly("First", "Second", "Third").inOrder();
+    }
+
+    @Test
+    public void testTimedOutUpdateIsCanceledAndHidden() throws InterruptedException {
+        CountDownLatch canceled = new CountDownLatch(1);
+        mManager.registerAction("slow", new TestAction("Slow", ActionUpdateThread.BGT, e -> {
+            // a cooperative update that only stops once it is canceled
+            while (true) {
+                try {
+                    e.checkCanceled();
+                } catch (CancellationException exception) {
+                    canceled.countDown();
+                    throw exception;
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+            }
+        }));
+        mManager.registerAction("fast", new TestAction("Fast", ActionUpdateThread.BGT, e -> {}));
+
+        mManager.fillMenu(mContext, mMenu, PLACE, false, false);
+
+        assertThat(canceled.await(TIMEOUT_MS, TimeUnit.MILLISECONDS)).isTrue();
+        awaitMenuSize(1);
+        assertThat(getTitles()).containsExactly("Fast");
+    }
+
+    @Test
+    public void testLazyDataIsComputedOnceForAllActions() throws InterruptedException {
+        Key<String> key = Key.create("shared");
+        AtomicInteger computed = new AtomicInteger();
+        mContext.putLazyData(key, () -> {
+            computed.incrementAndGet();
+            return "value";
+        });
+        Consumer<AnActionEvent> update =
+                e -> e.getPresentation().setVisible("value".equals(e.getData(key)));
+        for (int i = 0; i < 4; i++) {
+            mManager.registerAction("action" + i,
+                    new TestAction("Action " + i, ActionUpdateThread.BGT, update));
+        }
+
+        mManager.fillMenu(mContext, mMenu, PLACE, false, false);
+
+        awaitMenuSize(4);
+        assertThat(computed.get()).isEqualTo(1);
+    }
+
+    private void awaitMenuSize(int size) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (mMenu.size() < size && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            shadowOf(Looper.getMainLooper()).idle();
+        }
+        assertThat(mMenu.size()).isEqualTo(size);
+    }
+
+    private List<String> getTitles() {
+        List<String> titles = new ArrayList<>();
+        for (int i = 0; i < mMenu.size(); i++) {
+            titles.add(String.valueOf(mMenu.getItem(i).getTitle()));
+        }
+        return titles;
+    }
+
+    private static class TestAction extends AnAction {
+
+        private final ActionUpdateThread mUpdateThread;
+        private final Consumer<AnActionEvent> mUpdate;
+
+        TestAction(String text, ActionUpdateThread updateThread, Consumer<AnActionEvent> update) {
+            super(text);
+            mUpdateThread = updateThread;
+            mUpdate = update;
+        }
+
+        @Override
+        public void update(@NonNull AnActionEvent event) {
+            event.getPresentation().setVisible(true);
+            mUpdate.accept(event);
+        }
+
+        @NonNull
+        @Override
+        public ActionUpdateThread getActionUpdateThread() {
+            return mUpdateThread;
+        }
+
+        @Override
+        public void actionPerformed(@NonNull AnActionEvent e) {
+        }
+    }
+}
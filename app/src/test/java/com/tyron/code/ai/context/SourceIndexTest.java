@@ -0,0 +1,46 @@
+package com.tyron.code.ai.context;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+public class SourceIndexTest {
+
+    private static final File LOGIN = new File("/project/app/src/main/java/LoginActivity.java");
+    private static final File NETWORK = new File("/project/app/src/main/java/NetworkClient.java");
+
+    @Test
+    public void testTokenizeSplitsIdentifiers() {
+        List<String> terms = SourceIndex.tokenize("getProjectStructure(MAX_DEPTH) HTTPClient");
+        assertThat(terms).containsAtLeast("getprojectstructure", "get", "project", "structure",
+                "max_depth", "max", "depth", "httpclient", "http", "client");
+    }
+
+    @Test
+    public void testSearchRanksMatchingFileFirst() {
+        SourceIndex index = new SourceIndex();
+        index.update(LOGIN, "class LoginActivity {\n void onLoginClicked() { validatePassword(); }\n}");
+        index.update(NETWORK, "class NetworkClient {\n void sendRequest() {}\n}");
+
+        List<SourceIndex.Snippet> snippets = index.search("fix the password validation on login", 5);
+        assertThat(snippets).isNotEmpty();
+        assertThat(snippets.get(0).getFile()).isEqualTo(LOGIN);
+    }
+
+    @Test
+    public void testUpdateReplacesPreviousContents() {
+        SourceIndex index = new SourceIndex();
+        index.update(NETWORK, "class NetworkClient { void sendRequest() {} }");
+        index.update(NETWORK, "class NetworkClient { void uploadFile() {} }");
+
+        assertThat(index.search("sendRequest", 5)).isEmpty();
+        assertThat(index.search("upload", 5)).hasSize(1);
+
+        index.remove(NETWORK);
+        assertThat(index.size()).isEqualTo(0);
+        assertThat(index.search("upload", 5)).isEmpty();
+    }
+}
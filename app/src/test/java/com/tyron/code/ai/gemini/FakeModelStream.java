@@ -0,0 +1,37 @@
+package com.tyron.code.ai.gemini;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stands in for the streaming endpoint of the model, replays a canned response
+ * in fixed size chunks the way {@code generateContentStream} delivers it.
+ */
+class FakeModelStream {
+
+    private final List<String> chunks = new ArrayList<>();
+
+    FakeModelStream(String response, int chunkSize) {
+        for (int i = 0; i < response.length(); i += chunkSize) {
+            chunks.add(response.substring(i, Math.min(response.length(), i + chunkSize)));
+        }
+    }
+
+    List<String> getChunks() {
+        return chunks;
+    }
+
+    /**
+     * Delivers the first {@code count} chunks to the handler
+     */
+    void emit(StreamingResponseHandler handler, int count) {
+        for (int i = 0; i < count && !chunks.isEmpty(); i++) {
+            handler.onChunk(chunks.remove(0));
+        }
+    }
+
+    void emitRemaining(StreamingResponseHandler handler) {
+        emit(handler, chunks.size());
+        handler.onComplete();
+    }
+}
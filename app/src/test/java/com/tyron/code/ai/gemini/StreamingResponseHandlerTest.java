@@ -0,0 +1,128 @@
+package com.tyron.code.ai.gemini;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.code.ai.operations.FileOperationsManager;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+@RunWith(RobolectricTestRunner.class)
+public class StreamingResponseHandlerTest {
+
+    private static final String RESPONSE = "Creating the class.\n"
+            + "[WRITE_FILE:src/Main.java]public class Main {}[/WRITE_FILE]"
+            + "Now the layout.\n"
+            + "[WRITE_FILE:res/main.xml]<LinearLayout/>[/WRITE_FILE]";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static class RecordingCallback implements StreamingResponseHandler.Callback {
+        final List<String> partials = new ArrayList<>();
+        String complete;
+        String error;
+
+        @Override
+        public void onPartialResponse(String text) {
+            partials.add(text);
+        }
+
+        @Override
+        public void onComplete(String response) {
+            complete = response;
+        }
+
+        @Override
+        public void onError(String error) {
+            this.error = error;
+        }
+    }
+
+    @Test
+    public void testFilesAreWrittenAsSoonAsTheirBlockCloses() throws Exception {
+        File root = temporaryFolder.newFolder();
+        FileOperationsManager manager = new FileOperationsManager(root);
+        List<File> changed = new ArrayList<>();
+        RecordingCallback callback = new RecordingCallback();
+        StreamingResponseHandler handler = new StreamingResponseHandler(manager, changed::add, callback);
+
+        String firstBlock = RESPONSE.substring(0, RESPONSE.indexOf("Now the layout"));
+        FakeModelStream stream = new FakeModelStream(RESPONSE, 7);
+        stream.emit(handler, (firstBlock.length() + 6) / 7);
+
+        File main = new File(root, "src/Main.java");
+        File layout = new File(root, "res/main.xml");
+        assertThat(FileUtils.readFileToString(main, StandardCharsets.UTF_8))
+                .isEqualTo("public class Main {}");
+        assertThat(layout.exists()).isFalse();
+        assertThat(callback.complete).isNull();
+        assertThat(callback.partials).isNotEmpty();
+
+        stream.emitRemaining(handler);
+
+        assertThat(FileUtils.readFileToString(layout, StandardCharsets.UTF_8))
+                .isEqualTo("<LinearLayout/>");
+        assertThat(changed).containsExactly(main, layout).inOrder();
+        assertThat(callback.error).isNull();
+        assertThat(callback.complete).isEqualTo("Creating the class.\n"
+                + "✓ File written: src/Main.java\n"
+                + "Now the layout.\n"
+                + "✓ File written: res/main.xml\n");
+        assertThat(String.join("", callback.partials)).isEqualTo(callback.complete);
+    }
+
+    @Test
+    public void testStreamingMatchesNonStreamingResult() throws Exception {
+        File root = temporaryFolder.newFolder();
+        FileOperationsManager manager = new FileOperationsManager(root);
+
+        RecordingCallback callback = new RecordingCallback();
+        StreamingResponseHandler handler = new StreamingResponseHandler(manager, null, callback);
+        new FakeModelStream(RESPONSE, 3).emitRemaining(handler);
+
+        String processed = StreamingResponseHandler.process(manager, null, RESPONSE);
+        assertThat(callback.complete).isEqualTo(processed);
+    }
+
+    @Test
+    public void testPartialResponsesOnlyContainNewText() {
+        RecordingCallback callback = new RecordingCallback();
+        StreamingResponseHandler handler = new StreamingResponseHandler(null, null, callback);
+        new FakeModelStream("Plain [text] without commands", 4).emitRemaining(handler);
+
+        for (String partial : callback.partials) {
+            assertThat(partial).isNotEmpty();
+        }
+        assertThat(String.join("", callback.partials)).isEqualTo("Plain [text] without commands");
+        assertThat(callback.complete).isEqualTo("Plain [text] without commands");
+    }
+
+    @Test
+    public void testNoPartialResponseWhileWritingFile() throws Exception {
+        File root = temporaryFolder.newFolder();
+        RecordingCallback callback = new RecordingCallback();
+        StreamingResponseHandler handler = new StreamingResponseHandler(
+                new FileOperationsManager(root), null, callback);
+
+        handler.onChunk("Writing.\n[WRITE_FILE:a.txt]first");
+        assertThat(callback.partials).containsExactly("Writing.\n");
+
+        // the content of the file is not rendered
+        handler.onChunk(" line\nsecond line");
+        assertThat(callback.partials).containsExactly("Writing.\n");
+
+        handler.onChunk("[/WRITE_FILE]");
+        assertThat(callback.partials)
+                .containsExactly("Writing.\n", "✓ File written: a.txt\n").inOrder();
+    }
+}
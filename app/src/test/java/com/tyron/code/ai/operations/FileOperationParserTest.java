@@ -0,0 +1,94 @@
+package com.tyron.code.ai.operations;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileOperationParserTest {
+
+    private static final String RESPONSE = "Sure! [CREATE_DIR:app/src]\n"
+            + "[WRITE_FILE:app/src/A.java]class A { int[] a = new int[1]; }[/WRITE_FILE]"
+            + "Done [not a command] [READ_FILE:app/src/A.java]";
+
+    private static class RecordingListener implements FileOperationParser.Listener {
+        final List<String> events = new ArrayList<>();
+        final StringBuilder text = new StringBuilder();
+
+        @Override
+        public void onText(String text) {
+            this.text.append(text);
+        }
+
+        @Override
+        public void onCommand(String command, String argument) {
+            events.add(command + ":" + argument);
+            text.append("<").append(command).append(">");
+        }
+
+        @Override
+        public void onWriteFile(String path, String content) {
+            events.add("WRITE_FILE:" + path + "=" + content);
+            text.append("<WRITE_FILE>");
+        }
+    }
+
+    @Test
+    public void testParsesWholeResponse() {
+        RecordingListener listener = new RecordingListener();
+        FileOperationParser parser = new FileOperationParser(listener);
+        parser.feed(RESPONSE);
+        parser.finish();
+
+        assertThat(listener.events).containsExactly(
+                "CREATE_DIR:app/src",
+                "WRITE_FILE:app/src/A.java=class A { int[] a = new int[1]; }",
+                "READ_FILE:app/src/A.java").inOrder();
+        assertThat(listener.text.toString())
+                .isEqualTo("Sure! <CREATE_DIR>\n<WRITE_FILE>Done [not a command] <READ_FILE>");
+    }
+
+    @Test
+    public void testChunkBoundariesDoNotChangeResult() {
+        RecordingListener whole = new RecordingListener();
+        FileOperationParser wholeParser = new FileOperationParser(whole);
+        wholeParser.feed(RESPONSE);
+        wholeParser.finish();
+
+        for (int size = 1; size < 16; size++) {
+            RecordingListener chunked = new RecordingListener();
+            FileOperationParser parser = new FileOperationParser(chunked);
+            for (int i = 0; i < RESPONSE.length(); i += size) {
+                parser.feed(RESPONSE.substring(i, Math.min(RESPONSE.length(), i + size)));
+            }
+            parser.finish();
+
+            assertThat(chunked.events).isEqualTo(whole.events);
+            assertThat(chunked.text.toString()).isEqualTo(whole.text.toString());
+        }
+    }
+
+    @Test
+    public void testWriteRunsWhenBlockCloses() {
+        RecordingListener listener = new RecordingListener();
+        FileOperationParser parser = new FileOperationParser(listener);
+        parser.feed("[WRITE_FILE:a.txt]hello[/WRITE_");
+        assertThat(listener.events).isEmpty();
+
+        parser.feed("FILE] and more text");
+        assertThat(listener.events).containsExactly("WRITE_FILE:a.txt=hello");
+    }
+
+    @Test
+    public void testUnterminatedCommandIsPassedThrough() {
+        RecordingListener listener = new RecordingListener();
+        FileOperationParser parser = new FileOperationParser(listener);
+        parser.feed("text [WRITE_FILE:a.txt]partial [/WRITE");
+        parser.finish();
+
+        assertThat(listener.events).isEmpty();
+        assertThat(listener.text.toString()).isEqualTo("text [WRITE_FILE:a.txt]partial [/WRITE");
+    }
+}
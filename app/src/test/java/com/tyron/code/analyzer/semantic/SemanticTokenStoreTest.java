@@ -0,0 +1,187 @@
+package com.tyron.code.analyzer.semantic;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+public class SemanticTokenStoreTest {
+
+    private static final TokenType TYPE = TokenType.create("variable.parameter");
+
+    @Test
+    public void testInsertShiftsTokensAfterIndex() {
+        SemanticTokenStore store = new SemanticTokenStore();
+        store.replace(store.getModificationCount(), 0, Integer.MAX_VALUE,
+                tokens(0, 3, 10, 4, 20, 5));
+
+        store.insert(15, 2);
+        assertThat(offsets(store)).containsExactly(0, 10, 22).inOrder();
+
+        // touching a token drops it
+        store.insert(3, 1);
+        assertThat(offsets(store)).containsExactly(11, 23).inOrder();
+        store.insert(11, 1);
+        assertThat(offsets(store)).containsExactly(24);
+    }
+
+    @Test
+    public void testDeleteShiftsTokensAfterRange() {
+        SemanticTokenStore store = new SemanticTokenStore();
+        store.replace(store.getModificationCount(), 0, Integer.MAX_VALUE,
+                tokens(0, 3, 10, 4, 20, 5, 30, 2));
+
+        store.delete(5, 8);
+        assertThat(offsets(store)).containsExactly(0, 7, 17, 27).inOrder();
+
+        store.delete(8, 17);
+        assertThat(offsets(store)).containsExactly(0, 18).inOrder();
+    }
+
+    @Test
+    public void testTokensOfOutdatedContentsAreDiscarded() {
+        SemanticTokenStore store = new SemanticTokenStore();
+        int modificationCount = store.getModificationCount();
+        store.insert(0, 1);
+
+        assertThat(store.replace(modificationCount, 0, 10, tokens(2, 3))).isFalse();
+        assertThat(store.size()).isEqualTo(0);
+        assertThat(store.getDirtyRange()).asList().containsExactly(0, 1).inOrder();
+
+        assertThat(store.replace(store.getModificationCount(), 0, 10, tokens(2, 3))).isTrue();
+        assertThat(store.getDirtyRange()).isNull();
+    }
+
+    @Test
+    public void testReplaceKeepsTokensOutsideRange() {
+        SemanticTokenStore store = new SemanticTokenStore();
+        store.replace(store.getModificationCount(), 0, Integer.MAX_VALUE,
+                tokens(0, 3, 10, 4, 20, 5));
+        store.insert(5, 1);
+
+        store.replace(store.getModificationCount(), 5, 15, tokens(6, 2, 12, 1));
+        assertThat(offsets(store)).containsExactly(0, 6, 12, 21).inOrder();
+        assertThat(offsets(store.getTokens(6, 21))).containsExactly(6, 12).inOrder();
+    }
+
+    @Test
+    public void testRandomEditsMatchShiftingEveryToken() {
+        Random random = new Random(42);
+        SemanticTokenStore store = new SemanticTokenStore();
+        List<int[]> expected = new ArrayList<>();
+        int length = 10_000;
+
+        for (int round = 0; round < 2_000; round++) {
+            int operation = random.nextInt(10);
+            if (operation == 0) {
+                int start = random.nextInt(length);
+                int end = start + random.nextInt(length - start + 1);
+                List<SemanticToken> tokens = randomTokens(random, expected, start, end);
+                assertThat(store.replace(store.getModificationCount(), start, end, tokens))
+                        .isTrue();
+                replace(expected, start, end, tokens);
+            } else if (operation < 6) {
+                int index = random.nextInt(length + 1);
+                int count = 1 + random.nextInt(20);
+                store.insert(index, count);
+                insert(expected, index, count);
+                length += count;
+            } else if (length > 0) {
+                int start = random.nextInt(length);
+                int end = Math.min(length, start + 1 + random.nextInt(20));
+                store.delete(start, end);
+                delete(expected, start, end);
+                length -= end - start;
+            }
+
+            List<SemanticToken> actual = store.getTokens(0, Integer.MAX_VALUE);
+            assertThat(actual).hasSize(expected.size());
+            for (int i = 0; i < actual.size(); i++) {
+                assertThat(actual.get(i).getOffset()).isEqualTo(expected.get(i)[0]);
+                assertThat(actual.get(i).getLength()).isEqualTo(expected.get(i)[1]);
+            }
+        }
+    }
+
+    /**
+     * @return tokens within the range that do not overlap the tokens kept outside of it
+     */
+    private static List<SemanticToken> randomTokens(Random random, List<int[]> existing,
+                                                    int start, int end) {
+        int offset = start;
+        for (int[] token : existing) {
+            if (token[0] < start) {
+                offset = Math.max(offset, token[0] + token[1] + 1);
+            }
+        }
+        List<SemanticToken> tokens = new ArrayList<>();
+        offset += random.nextInt(5);
+        while (true) {
+            int length = 1 + random.nextInt(8);
+            if (offset + length >= end) {
+                break;
+            }
+            tokens.add(new SemanticToken(offset, length, TYPE, 0));
+            offset += length + 1 + random.nextInt(10);
+        }
+        // the store sorts the tokens it is given
+        Collections.shuffle(tokens, random);
+        return tokens;
+    }
+
+    private static void replace(List<int[]> expected, int start, int end,
+                                List<SemanticToken> tokens) {
+        expected.removeIf(token -> token[0] >= start && token[0] < end);
+        for (SemanticToken token : tokens) {
+            expected.add(new int[]{token.getOffset(), token.getLength()});
+        }
+        expected.sort((a, b) -> Integer.compare(a[0], b[0]));
+    }
+
+    private static void insert(List<int[]> expected, int index, int count) {
+        for (Iterator<int[]> iterator = expected.iterator(); iterator.hasNext(); ) {
+            int[] token = iterator.next();
+            if (token[0] > index) {
+                token[0] += count;
+            } else if (token[0] + token[1] >= index) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static void delete(List<int[]> expected, int start, int end) {
+        for (Iterator<int[]> iterator = expected.iterator(); iterator.hasNext(); ) {
+            int[] token = iterator.next();
+            if (token[0] > end) {
+                token[0] -= end - start;
+            } else if (token[0] + token[1] >= start) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static List<SemanticToken> tokens(int... offsetsAndLengths) {
+        List<SemanticToken> tokens = new ArrayList<>();
+        for (int i = 0; i < offsetsAndLengths.length; i += 2) {
+            tokens.add(new SemanticToken(offsetsAndLengths[i], offsetsAndLengths[i + 1], TYPE, 0));
+        }
+        return tokens;
+    }
+
+    private static List<Integer> offsets(SemanticTokenStore store) {
+        return offsets(store.getTokens(0, Integer.MAX_VALUE));
+    }
+
+    private static List<Integer> offsets(List<SemanticToken> tokens) {
+        List<Integer> offsets = new ArrayList<>();
+        for (SemanticToken token : tokens) {
+            offsets.add(token.getOffset());
+        }
+        return offsets;
+    }
+}
@@ -0,0 +1,167 @@
+package com.tyron.code.language;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import io.github.rosemoe.sora.lang.diagnostic.DiagnosticRegion;
+
+public class IntervalDiagnosticsContainerTest {
+
+    @Test
+    public void testQueryIncludesRegionsTouchingTheBoundaries() {
+        IntervalDiagnosticsContainer container = new IntervalDiagnosticsContainer();
+        container.addDiagnostic(region(5, 10));
+
+        assertThat(query(container, 10, 20)).containsExactly("5-10");
+        assertThat(query(container, 0, 5)).containsExactly("5-10");
+        assertThat(query(container, 6, 8)).containsExactly("5-10");
+        assertThat(query(container, 11, 20)).isEmpty();
+        assertThat(query(container, 0, 4)).isEmpty();
+    }
+
+    @Test
+    public void testQueryReturnsOverlappingRegionsInOrder() {
+        IntervalDiagnosticsContainer container = new IntervalDiagnosticsContainer();
+        container.addDiagnostics(Arrays.asList(region(30, 40), region(0, 100), region(10, 12),
+                region(50, 50), region(12, 20)));
+
+        assertThat(query(container, 12, 30))
+                .containsExactly("0-100", "10-12", "12-20", "30-40").inOrder();
+        assertThat(query(container, 41, 49)).containsExactly("0-100");
+        assertThat(query(container, 50, 50)).containsExactly("0-100", "50-50").inOrder();
+    }
+
+    @Test
+    public void testInsertShiftsRegionsAtOrAfterIndex() {
+        IntervalDiagnosticsContainer container = new IntervalDiagnosticsContainer();
+        container.addDiagnostics(Arrays.asList(region(0, 5), region(5, 10), region(20, 25)));
+
+        container.shiftOnInsert(5, 8);
+        // a region ending at the index does not grow, a region starting at it moves
+        assertThat(query(container, 0, 100)).containsExactly("0-5", "8-13", "23-28").inOrder();
+
+        container.shiftOnInsert(10, 12);
+        assertThat(query(container, 0, 100)).containsExactly("0-5", "8-15", "25-30").inOrder();
+    }
+
+    @Test
+    public void testDeleteClampsOverlappingRegions() {
+        IntervalDiagnosticsContainer container = new IntervalDiagnosticsContainer();
+        container.addDiagnostics(Arrays.asList(region(0, 6), region(6, 8), region(7, 12),
+                region(15, 20), region(9, 9)));
+
+        container.shiftOnDelete(5, 10);
+        // 6-8 was inside the deleted range and is removed, the empty region 9-9 is kept
+        assertThat(query(container, 0, 100))
+                .containsExactly("0-5", "5-5", "5-7", "10-15");
+    }
+
+    @Test
+    public void testShiftDisabled() {
+        IntervalDiagnosticsContainer container = new IntervalDiagnosticsContainer(false);
+        container.addDiagnostic(region(5, 10));
+
+        container.shiftOnInsert(0, 5);
+        container.shiftOnDelete(0, 7);
+        assertThat(query(container, 0, 100)).containsExactly("5-10");
+
+        container.reset();
+        assertThat(query(container, 0, 100)).isEmpty();
+    }
+
+    @Test
+    public void testRandomEditsMatchShiftingEveryRegion() {
+        Random random = new Random(42);
+        IntervalDiagnosticsContainer container = new IntervalDiagnosticsContainer();
+        List<int[]> expected = new ArrayList<>();
+        int length = 2_000;
+
+        for (int i = 0; i < 200; i++) {
+            int start = random.nextInt(length);
+            int end = Math.min(length, start + random.nextInt(30));
+            container.addDiagnostic(region(start, end));
+            expected.add(new int[]{start, end});
+        }
+
+        for (int round = 0; round < 1_000; round++) {
+            if (random.nextBoolean()) {
+                int index = random.nextInt(length + 1);
+                int count = 1 + random.nextInt(20);
+                container.shiftOnInsert(index, index + count);
+                insert(expected, index, count);
+                length += count;
+            } else if (length > 0) {
+                int start = random.nextInt(length);
+                int end = Math.min(length, start + 1 + random.nextInt(20));
+                container.shiftOnDelete(start, end);
+                delete(expected, start, end);
+                length -= end - start;
+            }
+
+            int queryStart = random.nextInt(length + 1);
+            int queryEnd = queryStart + random.nextInt(200);
+            List<String> expectedRegions = new ArrayList<>();
+            for (int[] region : expected) {
+                if (region[1] >= queryStart && region[0] <= queryEnd) {
+                    expectedRegions.add(region[0] + "-" + region[1]);
+                }
+            }
+            List<String> actual = query(container, queryStart, queryEnd);
+            Collections.sort(expectedRegions);
+            Collections.sort(actual);
+            assertThat(actual).isEqualTo(expectedRegions);
+        }
+    }
+
+    private static void insert(List<int[]> expected, int index, int count) {
+        for (int[] region : expected) {
+            if (region[0] >= index) {
+                region[0] += count;
+                region[1] += count;
+            } else if (region[1] > index) {
+                region[1] += count;
+            }
+        }
+    }
+
+    private static void delete(List<int[]> expected, int start, int end) {
+        for (Iterator<int[]> iterator = expected.iterator(); iterator.hasNext(); ) {
+            int[] region = iterator.next();
+            boolean empty = region[0] == region[1];
+            region[0] = map(region[0], start, end);
+            region[1] = map(region[1], start, end);
+            if (region[0] == region[1] && !empty) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private static int map(int index, int start, int end) {
+        if (index <= start) {
+            return index;
+        }
+        return index >= end ? index - (end - start) : start;
+    }
+
+    private static DiagnosticRegion region(int start, int end) {
+        return new DiagnosticRegion(start, end, DiagnosticRegion.SEVERITY_ERROR);
+    }
+
+    private static List<String> query(IntervalDiagnosticsContainer container, int start, int end) {
+        List<DiagnosticRegion> regions = new ArrayList<>();
+        container.queryInRegion(regions, start, end);
+        List<String> result = new ArrayList<>();
+        for (DiagnosticRegion region : regions) {
+            result.add(region.startIndex + "-" + region.endIndex);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,188 @@
+package com.tyron.code.language.java;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.Module;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+
+public class JavaBatchFormatterTest {
+
+    private static final String UNFORMATTED = "package test;\n" +
+            "import java.util.List;\n" +
+            "public class Main {   public void run( ) {int a=1;}\n" +
+            "}\n";
+
+    private static final String FORMATTED = "package test;\n" +
+            "\n" +
+            "public class Main {\n" +
+            "  public void run() {\n" +
+            "    int a = 1;\n" +
+            "  }\n" +
+            "}\n";
+
+    private static final long OLD_MODIFIED = 1_000_000_000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private JavaBatchFormatter mFormatter;
+
+    @Before
+    public void setup() {
+        mFormatter = new JavaBatchFormatter();
+    }
+
+    @Test
+    public void testOnlyChangedFilesAreWritten() throws IOException {
+        File unformatted = write("Main.java", UNFORMATTED);
+        File formatted = write("Other.java", FORMATTED.replace("Main", "Other"));
+
+        JavaBatchFormatter.Result result = mFormatter.format(null, Arrays.asList(unformatted, formatted));
+        assertThat(result.getFormatted()).isEqualTo(1);
+        assertThat(result.getUnchanged()).isEqualTo(1);
+        assertThat(result.getSkipped()).isEqualTo(0);
+        assertThat(result.getFailures()).isEmpty();
+
+        assertThat(read(unformatted)).isEqualTo(FORMATTED);
+        assertThat(unformatted.lastModified()).isNotEqualTo(OLD_MODIFIED);
+        // a file that is already formatted is not written
+        assertThat(formatted.lastModified()).isEqualTo(OLD_MODIFIED);
+    }
+
+    @Test
+    public void testFormattedFileIsSkipped() throws IOException {
+        File file = write("Main.java", UNFORMATTED);
+        assertThat(mFormatter.format(null, Collections.singletonList(file)).getFormatted())
+                .isEqualTo(1);
+
+        assertThat(file.setLastModified(OLD_MODIFIED)).isTrue();
+        JavaBatchFormatter.Result result = mFormatter.format(null, Collections.singletonList(file));
+        assertThat(result.getSkipped()).isEqualTo(1);
+        assertThat(result.getUnchanged()).isEqualTo(1);
+        assertThat(result.getFormatted()).isEqualTo(0);
+        assertThat(file.lastModified()).isEqualTo(OLD_MODIFIED);
+    }
+
+    @Test
+    public void testUnchangedFileIsSkipped() throws IOException {
+        File file = write("Main.java", FORMATTED);
+        JavaBatchFormatter.Result result = mFormatter.format(null, Collections.singletonList(file));
+        assertThat(result.getUnchanged()).isEqualTo(1);
+        assertThat(result.getSkipped()).isEqualTo(0);
+
+        result = mFormatter.format(null, Collections.singletonList(file));
+        assertThat(result.getSkipped()).isEqualTo(1);
+        assertThat(file.lastModified()).isEqualTo(OLD_MODIFIED);
+    }
+
+    @Test
+    public void testModifiedFileIsFormattedAgain() throws IOException {
+        File file = write("Main.java", UNFORMATTED);
+        assertThat(mFormatter.format(null, Collections.singletonList(file)).getFormatted())
+                .isEqualTo(1);
+
+        FileUtils.writeStringToFile(file, UNFORMATTED.replace("a=1", "b=2"), StandardCharsets.UTF_8);
+        JavaBatchFormatter.Result result = mFormatter.format(null, Collections.singletonList(file));
+        assertThat(result.getSkipped()).isEqualTo(0);
+        assertThat(result.getFormatted()).isEqualTo(1);
+        assertThat(read(file)).isEqualTo(FORMATTED.replace("a = 1", "b = 2"));
+    }
+
+    @Test
+    public void testInvalidFileIsReported() throws IOException {
+        File file = write("Main.java", "package test;\npublic class Main {");
+        JavaBatchFormatter.Result result = mFormatter.format(null, Collections.singletonList(file));
+        assertThat(result.getFailures()).hasSize(1);
+        assertThat(result.getFormatted()).isEqualTo(0);
+
+        // failures are not remembered
+        assertThat(mFormatter.format(null, Collections.singletonList(file)).getSkipped())
+                .isEqualTo(0);
+        assertThat(file.lastModified()).isEqualTo(OLD_MODIFIED);
+    }
+
+    @Test
+    public void testOpenedFileIsFormattedThroughItsSnapshot() throws IOException {
+        File file = write("Main.java", UNFORMATTED);
+        MockFileManager fileManager = new MockFileManager(mFolder.getRoot());
+        fileManager.openFileForSnapshot(file, UNFORMATTED);
+
+        JavaBatchFormatter.Result result =
+                mFormatter.format(project(fileManager), Collections.singletonList(file));
+        assertThat(result.getFormatted()).isEqualTo(1);
+        assertThat(fileManager.getFileContent(file).get().toString()).isEqualTo(FORMATTED);
+        assertThat(file.lastModified()).isEqualTo(OLD_MODIFIED);
+
+        // the snapshot has not changed since
+        result = mFormatter.format(project(fileManager), Collections.singletonList(file));
+        assertThat(result.getSkipped()).isEqualTo(1);
+    }
+
+    @Test
+    public void testOpenedFileEditedWhileFormattingIsKept() throws IOException {
+        String edited = UNFORMATTED.replace("a=1", "a=1;int b=2");
+        File file = write("Main.java", UNFORMATTED);
+        MockFileManager fileManager = new MockFileManager(mFolder.getRoot()) {
+            private boolean mEdited;
+
+            @Override
+            public Optional<CharSequence> getFileContent(File f) {
+                Optional<CharSequence> content = super.getFileContent(f);
+                if (!mEdited) {
+                    // typed after the formatter has read the file
+                    mEdited = true;
+                    openFileForSnapshot(f, edited);
+                }
+                return content;
+            }
+        };
+        fileManager.openFileForSnapshot(file, UNFORMATTED);
+
+        mFormatter.format(project(fileManager), Collections.singletonList(file));
+        assertThat(fileManager.getFileContent(file).get().toString()).isEqualTo(edited);
+
+        // the edited file is not skipped on the next run
+        JavaBatchFormatter.Result result =
+                mFormatter.format(project(fileManager), Collections.singletonList(file));
+        assertThat(result.getSkipped()).isEqualTo(0);
+        assertThat(result.getFormatted()).isEqualTo(1);
+        assertThat(fileManager.getFileContent(file).get().toString())
+                .isEqualTo(FORMATTED.replace("int a = 1;", "int a = 1;\n    int b = 2;"));
+    }
+
+    private Project project(MockFileManager fileManager) {
+        Module module = new MockAndroidModule(mFolder.getRoot(), fileManager);
+        return new Project(mFolder.getRoot()) {
+            @Override
+            public Module getModule(File file) {
+                return module;
+            }
+        };
+    }
+
+    private File write(String name, String contents) throws IOException {
+        File file = new File(mFolder.getRoot(), name);
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        assertThat(file.setLastModified(OLD_MODIFIED)).isTrue();
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,196 @@
+package com.tyron.code.ui.project;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.io.Files;
+import com.tyron.builder.model.CodeAssistAndroidLibrary;
+import com.tyron.builder.model.CodeAssistLibrary;
+import com.tyron.builder.project.api.AndroidContentRoot;
+import com.tyron.builder.project.api.ContentRoot;
+import com.tyron.builder.project.impl.AndroidModuleImpl;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+public class ModelCacheTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File root;
+    private File moduleRoot;
+    private File jar;
+    private File classesJar;
+    private File resFolder;
+
+    @Before
+    public void setUp() throws IOException {
+        root = temporaryFolder.newFolder("project");
+        moduleRoot = new File(root, "app");
+        write(new File(root, "settings.gradle"), "include ':app'");
+        write(new File(moduleRoot, "build.gradle"), "plugins { id 'com.android.application' }");
+
+        jar = jar(new File(temporaryFolder.getRoot(), "libs/library.jar"), "com/example/Library.class");
+        classesJar = jar(new File(temporaryFolder.getRoot(), "aar/classes.jar"), "com/example/Aar.class");
+        resFolder = new File(temporaryFolder.getRoot(), "aar/res");
+        assertThat(resFolder.mkdirs()).isTrue();
+    }
+
+    @Test
+    public void testModulesAreRestored() {
+        ModelCache cache = new ModelCache(root);
+        cache.save(Collections.singletonList(createModule()));
+
+        ModelCache.Entry entry = new ModelCache(root).load();
+        assertThat(entry).isNotNull();
+        assertThat(entry.isUpToDate()).isTrue();
+        assertThat(entry.getModules()).hasSize(1);
+
+        AndroidModuleImpl module = entry.getModules().get(0);
+        assertThat(module.getRootFile()).isEqualTo(moduleRoot);
+        assertThat(module.getName()).isEqualTo(":app");
+        assertThat(module.getNamespace()).isEqualTo("com.example");
+        assertThat(module.getPackageName()).isEqualTo("com.example.app");
+
+        assertThat(module.getContentRoots()).hasSize(1);
+        AndroidContentRoot contentRoot =
+                (AndroidContentRoot) module.getContentRoots().iterator().next();
+        assertThat(contentRoot.getRootDirectory()).isEqualTo(new File(moduleRoot, "src/main"));
+        assertThat(contentRoot.getJavaDirectories()).containsExactly(
+                new File(moduleRoot, "src/main/java"), new File(moduleRoot, "src/main/kotlin"))
+                .inOrder();
+        assertThat(contentRoot.getResourceDirectories()).containsExactly(
+                new File(moduleRoot, "src/main/res"));
+
+        List<CodeAssistLibrary> libraries = module.getCodeAssistLibraries();
+        assertThat(libraries).hasSize(2);
+        CodeAssistLibrary library = libraries.get(0);
+        assertThat(library).isNotInstanceOf(CodeAssistAndroidLibrary.class);
+        assertThat(library.getSourceFile()).isEqualTo(jar);
+        assertThat(library.getDeclaration()).isEqualTo("com.example:library:1.0");
+
+        CodeAssistAndroidLibrary androidLibrary = (CodeAssistAndroidLibrary) libraries.get(1);
+        assertThat(androidLibrary.getDeclaration()).isEqualTo("com.example:aar:1.0");
+        assertThat(androidLibrary.getCompileJarFiles()).containsExactly(classesJar);
+        assertThat(androidLibrary.getResFolder()).isEqualTo(resFolder);
+        assertThat(androidLibrary.getPublicResources()).isNull();
+        assertThat(androidLibrary.getSymbolFile()).isEqualTo(new File(resFolder, "R.txt"));
+        assertThat(androidLibrary.getResStaticLibrary()).isNull();
+    }
+
+    @Test
+    public void testChangedBuildScriptOutdatesEntry() throws IOException {
+        ModelCache cache = new ModelCache(root);
+        cache.save(Collections.singletonList(createModule()));
+
+        write(new File(moduleRoot, "build.gradle"), "plugins { id 'com.android.library' }");
+
+        ModelCache.Entry entry = cache.load();
+        assertThat(entry).isNotNull();
+        assertThat(entry.isUpToDate()).isFalse();
+        // the outdated modules are still restored, they are used until the next sync
+        assertThat(entry.getModules()).hasSize(1);
+    }
+
+    @Test
+    public void testAddedRootBuildFileOutdatesEntry() throws IOException {
+        ModelCache cache = new ModelCache(root);
+        cache.save(Collections.singletonList(createModule()));
+
+        write(new File(root, "gradle.properties"), "android.useAndroidX=true");
+
+        assertThat(cache.load().isUpToDate()).isFalse();
+    }
+
+    @Test
+    public void testChangedDependencyOutdatesEntry() throws IOException {
+        ModelCache cache = new ModelCache(root);
+        cache.save(Collections.singletonList(createModule()));
+        assertThat(cache.load().isUpToDate()).isTrue();
+
+        jar(classesJar, "com/example/Aar.class", "com/example/Other.class");
+
+        assertThat(cache.load().isUpToDate()).isFalse();
+    }
+
+    @Test
+    public void testSavingAgainUpdatesFingerprint() throws IOException {
+        ModelCache cache = new ModelCache(root);
+        cache.save(Collections.singletonList(createModule()));
+        write(new File(moduleRoot, "build.gradle"), "plugins { id 'com.android.library' }");
+        assertThat(cache.load().isUpToDate()).isFalse();
+
+        cache.save(Collections.singletonList(createModule()));
+
+        assertThat(cache.load().isUpToDate()).isTrue();
+    }
+
+    @Test
+    public void testMissingOrInvalidEntryIsNotLoaded() throws IOException {
+        ModelCache cache = new ModelCache(root);
+        assertThat(cache.load()).isNull();
+
+        cache.save(Collections.singletonList(createModule()));
+        cache.invalidate();
+        assertThat(cache.load()).isNull();
+
+        write(new File(root, "build/.codeassist/model.bin"), "not a model");
+        assertThat(cache.load()).isNull();
+    }
+
+    private AndroidModuleImpl createModule() {
+        AndroidModuleImpl module = new AndroidModuleImpl(moduleRoot);
+        module.setName(":app");
+        module.setNamespace("com.example");
+        module.setPackageName("com.example.app");
+
+        AndroidContentRoot contentRoot = new AndroidContentRoot(new File(moduleRoot, "src/main"));
+        contentRoot.setJavaDirectories(Arrays.asList(
+                new File(moduleRoot, "src/main/java"), new File(moduleRoot, "src/main/kotlin")));
+        contentRoot.setResourceDirectories(
+                Collections.singletonList(new File(moduleRoot, "src/main/res")));
+        module.addContentRoot(contentRoot);
+        // only android content roots are cached
+        module.addContentRoot(new ContentRoot(new File(moduleRoot, "src/test")));
+
+        CodeAssistLibrary library = CodeAssistLibrary.forJar(jar);
+        library.setDeclaration("com.example:library:1.0");
+        module.addLibrary(library);
+
+        CodeAssistAndroidLibrary androidLibrary = new CodeAssistAndroidLibrary();
+        androidLibrary.setDeclaration("com.example:aar:1.0");
+        androidLibrary.setCompileJarFiles(Collections.singletonList(classesJar));
+        androidLibrary.setResFolder(resFolder);
+        androidLibrary.setSymbolFile(new File(resFolder, "R.txt"));
+        module.addLibrary(androidLibrary);
+        return module;
+    }
+
+    private static void write(File file, String contents) throws IOException {
+        Files.createParentDirs(file);
+        Files.asCharSink(file, StandardCharsets.UTF_8).write(contents);
+    }
+
+    private static File jar(File file, String... entries) throws IOException {
+        Files.createParentDirs(file);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file))) {
+            for (String entry : entries) {
+                out.putNextEntry(new ZipEntry(entry));
+                out.closeEntry();
+            }
+        }
+        return file;
+    }
+}
@@ -20,6 +20,7 @@ import com.android.resources.ResourceFolderType;
 import com.android.resources.ResourceType;
 import com.android.utils.FileUtils;
 import com.android.utils.XmlUtils;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Charsets;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.ImmutableMap;
@@ -27,6 +28,8 @@ import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.MoreExecutors;
 import java.io.File;
@@ -41,6 +44,9 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.Future;
 import javax.inject.Inject;
 import org.openjdk.javax.xml.parsers.DocumentBuilder;
@@ -90,6 +96,18 @@ public class MergedResourceWriter
      */
     private final Properties mCompiledFileMap;
 
+    /**
+     * File where {@link #mMergedValuesHashes} is read from and where its contents are written.
+     */
+    @NonNull
+    private final File mMergedValuesHashesFile;
+
+    /**
+     * Maps the merged values folder names to the hash of the merged values file last submitted
+     * for compilation. Used to skip compiling merged values files that did not change.
+     */
+    private final Properties mMergedValuesHashes;
+
     private final MergedResourceWriterRequest mergeWriterRequest;
 
     @NonNull
@@ -121,6 +139,19 @@ public class MergedResourceWriter
                  */
             }
         }
+        mMergedValuesHashesFile =
+                new File(
+                        mergeWriterRequest.getTemporaryDirectory(),
+                        "merged-values-hashes.properties");
+        mMergedValuesHashes = new Properties();
+        if (mMergedValuesHashesFile.exists()) {
+            try (FileReader fr = new FileReader(mMergedValuesHashesFile)) {
+                mMergedValuesHashes.load(fr);
+            } catch (IOException e) {
+                // Without the hashes, all the merged values files are compiled again.
+                mMergedValuesHashes.clear();
+            }
+        }
     }
 
     /** Used in tools/idea. */
@@ -311,6 +342,12 @@ public class MergedResourceWriter
         } catch (IOException e) {
             throw new ConsumerException(e);
         }
+
+        try (FileWriter fw = new FileWriter(mMergedValuesHashesFile)) {
+            mMergedValuesHashes.store(fw, null);
+        } catch (IOException e) {
+            throw new ConsumerException(e);
+        }
     }
 
     private String getSourceFilePath(File inputFile) {
@@ -369,6 +406,75 @@ public class MergedResourceWriter
         }
     }
 
+    /** The merged values document of a qualifier, before it is converted to XML. */
+    private static final class ValuesDocument {
+        @NonNull private final String folderName;
+        @NonNull private final Document document;
+        @Nullable private final String publicText;
+
+        private ValuesDocument(
+                @NonNull String folderName,
+                @NonNull Document document,
+                @Nullable String publicText) {
+            this.folderName = folderName;
+            this.document = document;
+            this.publicText = publicText;
+        }
+
+        /** Only reads this document, so documents can be converted concurrently. */
+        @NonNull
+        private MergedValuesFile toMergedValuesFile(boolean recordBlame) {
+            final String content;
+            Map<SourcePosition, SourceFilePosition> blame =
+                    recordBlame ? Maps.newLinkedHashMap() : null;
+
+            if (blame != null) {
+                content = XmlUtils.toXml(document, blame);
+            } else {
+                content = XmlUtils.toXml(document);
+            }
+            return new MergedValuesFile(folderName, content, blame, publicText);
+        }
+    }
+
+    /** The content of a merged values file, built before it is written. */
+    private static final class MergedValuesFile {
+        @NonNull private final String folderName;
+        @NonNull private final String content;
+        @Nullable private final Map<SourcePosition, SourceFilePosition> blame;
+        @Nullable private final String publicText;
+
+        private MergedValuesFile(
+                @NonNull String folderName,
+                @NonNull String content,
+                @Nullable Map<SourcePosition, SourceFilePosition> blame,
+                @Nullable String publicText) {
+            this.folderName = folderName;
+            this.content = content;
+            this.blame = blame;
+            this.publicText = publicText;
+        }
+
+        /**
+         * Hashes everything that ends up in the compiled file. The blame is part of it as the
+         * compiled file records the source positions of the values.
+         */
+        @NonNull
+        private String hash(@NonNull MergedResourceWriterRequest request) {
+            Hasher hasher = Hashing.sha256().newHasher();
+            hasher.putString(content, Charsets.UTF_8);
+            hasher.putBoolean(request.getPseudoLocalesEnabled());
+            hasher.putBoolean(request.getCrunchPng());
+            if (blame != null) {
+                for (Map.Entry<SourcePosition, SourceFilePosition> entry : blame.entrySet()) {
+                    hasher.putString(entry.getKey().toString(), Charsets.UTF_8);
+                    hasher.putString(entry.getValue().toString(), Charsets.UTF_8);
+                }
+            }
+            return hasher.hash().toString();
+        }
+    }
+
     public static class FileGenerationParameters implements Serializable {
         public final ResourceMergerItem resourceItem;
         public final ResourcePreprocessor resourcePreprocessor;
@@ -451,13 +557,12 @@ public class MergedResourceWriter
         File tmpDir =
                 new File(
                         mergeWriterRequest.getTemporaryDirectory(), SdkConstants.FD_MERGED_DOT_DIR);
-        try {
-            FileUtils.cleanOutputDir(tmpDir);
-        } catch (IOException e) {
-            throw new ConsumerException(e);
-        }
+        // The merged files are kept between runs, so that the ones whose content did not change
+        // are still there when they are not written again. Removed qualifiers are deleted below.
+        FileUtils.mkdirs(tmpDir);
 
-        // now write the values files.
+        // find the values files that have to be written.
+        List<String> qualifiersToWrite = Lists.newArrayList();
         for (String key : mValuesResMap.keySet()) {
             // the key is the qualifier.
 
@@ -465,12 +570,9 @@ public class MergedResourceWriter
             // also remove it from that list anyway (to detect empty qualifiers later).
             boolean mustWriteFile = mQualifierWithDeletedValues.remove(key);
 
-            // get the list of items to write
-            List<ResourceMergerItem> items = mValuesResMap.get(key);
-
             // now check if we really have to write it
             if (!mustWriteFile) {
-                for (ResourceMergerItem item : items) {
+                for (ResourceMergerItem item : mValuesResMap.get(key)) {
                     if (item.isTouched()) {
                         mustWriteFile = true;
                         break;
@@ -479,156 +581,15 @@ public class MergedResourceWriter
             }
 
             if (mustWriteFile) {
-                /*
-                 * We will write the file to a temporary directory. If the folder name is "values",
-                 * we will write the XML file to "<tmpdir>/values/values.xml". If the folder name
-                 * is "values-XXX" we will write the XML file to
-                 * "<tmpdir/values-XXX/values-XXX.xml".
-                 *
-                 * Then, we will issue a compile operation or copy the file if aapt does not require
-                 * compilation of this file.
-                 */
-                try {
-                    String folderName = key.isEmpty() ?
-                            ResourceFolderType.VALUES.getName() :
-                            ResourceFolderType.VALUES.getName() + RES_QUALIFIER_SEP + key;
-
-                    File valuesFolder = new File(tmpDir, folderName);
-                    // Name of the file is the same as the folder as AAPT gets confused with name
-                    // collision when not normalizing folders name.
-                    File outFile = new File(valuesFolder, folderName + DOT_XML);
-
-                    FileUtils.mkdirs(valuesFolder);
-
-                    DocumentBuilder builder = mFactory.newDocumentBuilder();
-                    Document document = builder.newDocument();
-                    final String publicTag = ResourceType.PUBLIC.getName();
-                    List<Node> publicNodes = null;
-
-                    Node rootNode = document.createElement(TAG_RESOURCES);
-                    document.appendChild(rootNode);
-
-                    Collections.sort(items);
-
-                    for (ResourceMergerItem item : items) {
-                        Node nodeValue = item.getValue();
-                        if (nodeValue != null && publicTag.equals(nodeValue.getNodeName())) {
-                            if (publicNodes == null) {
-                                publicNodes = Lists.newArrayList();
-                            }
-                            publicNodes.add(nodeValue);
-                            continue;
-                        }
-
-                        // add a carriage return so that the nodes are not all on the same line.
-                        // also add an indent of 4 spaces.
-                        rootNode.appendChild(document.createTextNode("\n    "));
-
-                        ResourceFile source = item.getSourceFile();
-
-                        Node adoptedNode = NodeUtils.adoptNode(document, nodeValue);
-                        if (source != null) {
-                            if (adoptedNode.hasChildNodes()) {
-                                // Nested resources e.g. style and st types can contain comments,
-                                // so these need to be stripped.
-                                for (int i = 0; i < adoptedNode.getChildNodes().getLength(); i++) {
-                                    Node child = adoptedNode.getChildNodes().item(i);
-                                    if (child instanceof Comment) {
-                                        adoptedNode.removeChild(child);
-                                    }
-                                }
-                                // Removes empty lines and spaces from nested resource tags.
-                                adoptedNode.normalize();
-                            }
-                            XmlUtils.attachSourceFile(
-                                    adoptedNode, new SourceFile(source.getFile()));
-                        }
-                        rootNode.appendChild(adoptedNode);
-                    }
-
-                    // finish with a carriage return
-                    rootNode.appendChild(document.createTextNode("\n"));
-
-                    final String content;
-                    Map<SourcePosition, SourceFilePosition> blame =
-                            mMergingLog == null ? null : Maps.newLinkedHashMap();
-
-                    if (blame != null) {
-                        content = XmlUtils.toXml(document, blame);
-                    } else {
-                        content = XmlUtils.toXml(document);
-                    }
-
-                    Files.asCharSink(outFile, Charsets.UTF_8).write(content);
-
-                    CompileResourceRequest request =
-                            new CompileResourceRequest(
-                                    outFile,
-                                    getRootFolder(),
-                                    folderName,
-                                    null,
-                                    mergeWriterRequest.getPseudoLocalesEnabled(),
-                                    mergeWriterRequest.getCrunchPng(),
-                                    blame != null ? blame : ImmutableMap.of(),
-                                    outFile);
-                    if (!mergeWriterRequest.getModuleSourceSets().isEmpty()) {
-                        request.useRelativeSourcePath(mergeWriterRequest.getModuleSourceSets());
-                    }
-
-                    // If we are going to shrink resources, the resource shrinker needs to have the
-                    // final merged uncompiled file.
-                    if (mergeWriterRequest.getNotCompiledOutputDirectory() != null) {
-                        File typeDir =
-                                new File(
-                                        mergeWriterRequest.getNotCompiledOutputDirectory(),
-                                        folderName);
-                        FileUtils.mkdirs(typeDir);
-                        FileUtils.copyFileToDirectory(outFile, typeDir);
-                    }
-
-                    if (blame != null) {
-                        File file =
-                                mergeWriterRequest
-                                        .getResourceCompilationService()
-                                        .compileOutputFor(request);
-                        String fileSourcePath = getSourceFilePath(file);
-                        mMergingLog.logSource(new SourceFile(file), fileSourcePath, blame);
-
-                        String outFileSourcePath = getSourceFilePath(outFile);
-                        mMergingLog.logSource(new SourceFile(outFile), outFileSourcePath, blame);
-                    }
+                qualifiersToWrite.add(key);
+            }
+        }
 
-                    mergeWriterRequest.getResourceCompilationService().submitCompile(request);
-
-                    if (publicNodes != null && mergeWriterRequest.getPublicFile() != null) {
-                        // Generate public.txt:
-                        int size = publicNodes.size();
-                        StringBuilder sb = new StringBuilder(size * 80);
-                        for (Node node : publicNodes) {
-                            if (node.getNodeType() == Node.ELEMENT_NODE) {
-                                Element element = (Element) node;
-                                String name = element.getAttribute(ATTR_NAME);
-                                String type = element.getAttribute(ATTR_TYPE);
-                                if (!name.isEmpty() && !type.isEmpty()) {
-                                    String flattenedName = name.replace('.', '_');
-                                    sb.append(type).append(' ').append(flattenedName).append('\n');
-                                }
-                            }
-                        }
-                        File parentFile = mergeWriterRequest.getPublicFile().getParentFile();
-                        if (!parentFile.exists()) {
-                            boolean mkdirs = parentFile.mkdirs();
-                            if (!mkdirs) {
-                                throw new IOException("Could not create " + parentFile);
-                            }
-                        }
-                        String text = sb.toString();
-                        Files.asCharSink(mergeWriterRequest.getPublicFile(), Charsets.UTF_8)
-                                .write(text);
-                    }
-                } catch (Exception e) {
-                    throw new ConsumerException(e);
-                }
+        for (MergedValuesFile mergedValuesFile : mergeValuesFiles(qualifiersToWrite)) {
+            try {
+                writeValuesFile(tmpDir, mergedValuesFile);
+            } catch (Exception e) {
+                throw new ConsumerException(e);
             }
         }
 
@@ -637,6 +598,8 @@ public class MergedResourceWriter
             String folderName = key != null && !key.isEmpty() ?
                     ResourceFolderType.VALUES.getName() + RES_QUALIFIER_SEP + key :
                     ResourceFolderType.VALUES.getName();
+            mMergedValuesHashes.remove(folderName);
+            removeOutFile(FileUtils.join(tmpDir, folderName, folderName + DOT_XML));
 
             if (mergeWriterRequest.getNotCompiledOutputDirectory() != null) {
                 removeOutFile(
@@ -663,6 +626,256 @@ public class MergedResourceWriter
         }
     }
 
+    /**
+     * Builds the merged values file of each qualifier.
+     *
+     * <p>The items of all the qualifiers are nodes of the same document, which is not thread
+     * safe even for reads, and adopting a node removes it from that document. The documents of
+     * the qualifiers are therefore built on the calling thread, only converting them to XML runs
+     * in parallel as each task then only reads its own document.
+     */
+    @NonNull
+    private List<MergedValuesFile> mergeValuesFiles(@NonNull List<String> qualifiers)
+            throws ConsumerException {
+        List<ValuesDocument> documents = Lists.newArrayListWithCapacity(qualifiers.size());
+        try {
+            DocumentBuilder builder = mFactory.newDocumentBuilder();
+            for (String key : qualifiers) {
+                documents.add(buildValuesDocument(builder, key, mValuesResMap.get(key)));
+            }
+        } catch (Exception e) {
+            throw new ConsumerException(e);
+        }
+
+        boolean recordBlame = mMergingLog != null;
+        List<MergedValuesFile> mergedValuesFiles = Lists.newArrayList();
+        if (documents.size() <= 1) {
+            for (ValuesDocument document : documents) {
+                mergedValuesFiles.add(document.toMergedValuesFile(recordBlame));
+            }
+            return mergedValuesFiles;
+        }
+
+        List<ForkJoinTask<MergedValuesFile>> tasks = Lists.newArrayList();
+        for (ValuesDocument document : documents) {
+            tasks.add(
+                    ForkJoinPool.commonPool()
+                            .submit(() -> document.toMergedValuesFile(recordBlame)));
+        }
+        for (ForkJoinTask<MergedValuesFile> task : tasks) {
+            try {
+                mergedValuesFiles.add(task.get());
+            } catch (ExecutionException e) {
+                throw new ConsumerException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConsumerException(e);
+            }
+        }
+        return mergedValuesFiles;
+    }
+
+    /**
+     * Builds the merged values document of a qualifier by adopting the nodes of its items. This
+     * modifies the document the items come from, so it must not run concurrently.
+     */
+    @NonNull
+    private static ValuesDocument buildValuesDocument(
+            @NonNull DocumentBuilder builder,
+            @NonNull String key,
+            @NonNull List<ResourceMergerItem> items) {
+        String folderName = key.isEmpty() ?
+                ResourceFolderType.VALUES.getName() :
+                ResourceFolderType.VALUES.getName() + RES_QUALIFIER_SEP + key;
+
+        Document document = builder.newDocument();
+        final String publicTag = ResourceType.PUBLIC.getName();
+        List<Node> publicNodes = null;
+
+        Node rootNode = document.createElement(TAG_RESOURCES);
+        document.appendChild(rootNode);
+
+        Collections.sort(items);
+
+        for (ResourceMergerItem item : items) {
+            Node nodeValue = item.getValue();
+            if (nodeValue != null && publicTag.equals(nodeValue.getNodeName())) {
+                if (publicNodes == null) {
+                    publicNodes = Lists.newArrayList();
+                }
+                publicNodes.add(nodeValue);
+                continue;
+            }
+
+            // add a carriage return so that the nodes are not all on the same line.
+            // also add an indent of 4 spaces.
+            rootNode.appendChild(document.createTextNode("\n    "));
+
+            ResourceFile source = item.getSourceFile();
+
+            Node adoptedNode = NodeUtils.adoptNode(document, nodeValue);
+            if (source != null) {
+                if (adoptedNode.hasChildNodes()) {
+                    // Nested resources e.g. style and st types can contain comments,
+                    // so these need to be stripped.
+                    for (int i = 0; i < adoptedNode.getChildNodes().getLength(); i++) {
+                        Node child = adoptedNode.getChildNodes().item(i);
+                        if (child instanceof Comment) {
+                            adoptedNode.removeChild(child);
+                        }
+                    }
+                    // Removes empty lines and spaces from nested resource tags.
+                    adoptedNode.normalize();
+                }
+                XmlUtils.attachSourceFile(adoptedNode, new SourceFile(source.getFile()));
+            }
+            rootNode.appendChild(adoptedNode);
+        }
+
+        // finish with a carriage return
+        rootNode.appendChild(document.createTextNode("\n"));
+
+        String publicText = null;
+        if (publicNodes != null) {
+            // Generate public.txt:
+            int size = publicNodes.size();
+            StringBuilder sb = new StringBuilder(size * 80);
+            for (Node node : publicNodes) {
+                if (node.getNodeType() == Node.ELEMENT_NODE) {
+                    Element element = (Element) node;
+                    String name = element.getAttribute(ATTR_NAME);
+                    String type = element.getAttribute(ATTR_TYPE);
+                    if (!name.isEmpty() && !type.isEmpty()) {
+                        String flattenedName = name.replace('.', '_');
+                        sb.append(type).append(' ').append(flattenedName).append('\n');
+                    }
+                }
+            }
+            publicText = sb.toString();
+        }
+
+        return new ValuesDocument(folderName, document, publicText);
+    }
+
+    /**
+     * Whether a merged values file can be neither written nor compiled again, because the same
+     * content was compiled by a previous run and all of its outputs are still there.
+     *
+     * @param hash the hash of the merged values file
+     * @param previousHash the hash of the file compiled by the previous run, if any
+     * @param outFile the merged values file that is compiled
+     * @param compiledFile the output of the compilation of {@code outFile}
+     * @param notCompiledFile the copy of {@code outFile} kept for the resource shrinker, if any
+     */
+    @VisibleForTesting
+    static boolean isMergedValuesFileUpToDate(
+            @NonNull String hash,
+            @Nullable String previousHash,
+            @NonNull File outFile,
+            @NonNull File compiledFile,
+            @Nullable File notCompiledFile) {
+        return hash.equals(previousHash)
+                && outFile.isFile()
+                && compiledFile.isFile()
+                && (notCompiledFile == null || notCompiledFile.isFile());
+    }
+
+    /**
+     * Writes a merged values file and submits it for compilation, unless the same content was
+     * compiled by a previous run and its outputs are still there.
+     *
+     * <p>We will write the file to a temporary directory. If the folder name is "values", we will
+     * write the XML file to "<tmpdir>/values/values.xml". If the folder name is "values-XXX" we
+     * will write the XML file to "<tmpdir/values-XXX/values-XXX.xml".
+     *
+     * <p>Then, we will issue a compile operation or copy the file if aapt does not require
+     * compilation of this file.
+     */
+    private void writeValuesFile(@NonNull File tmpDir, @NonNull MergedValuesFile merged)
+            throws IOException {
+        String folderName = merged.folderName;
+        Map<SourcePosition, SourceFilePosition> blame = merged.blame;
+
+        File valuesFolder = new File(tmpDir, folderName);
+        // Name of the file is the same as the folder as AAPT gets confused with name
+        // collision when not normalizing folders name.
+        File outFile = new File(valuesFolder, folderName + DOT_XML);
+
+        CompileResourceRequest request =
+                new CompileResourceRequest(
+                        outFile,
+                        getRootFolder(),
+                        folderName,
+                        null,
+                        mergeWriterRequest.getPseudoLocalesEnabled(),
+                        mergeWriterRequest.getCrunchPng(),
+                        blame != null ? blame : ImmutableMap.of(),
+                        outFile);
+        if (!mergeWriterRequest.getModuleSourceSets().isEmpty()) {
+            request.useRelativeSourcePath(mergeWriterRequest.getModuleSourceSets());
+        }
+
+        File compiledFile =
+                mergeWriterRequest.getResourceCompilationService().compileOutputFor(request);
+        File notCompiledFile =
+                mergeWriterRequest.getNotCompiledOutputDirectory() != null
+                        ? FileUtils.join(
+                                mergeWriterRequest.getNotCompiledOutputDirectory(),
+                                folderName,
+                                folderName + DOT_XML)
+                        : null;
+
+        // Editing a single values file only changes the merged file of its own qualifier, the
+        // other qualifiers are written with the same content and do not need to be compiled again.
+        String hash = merged.hash(mergeWriterRequest);
+        boolean upToDate =
+                isMergedValuesFileUpToDate(
+                        hash,
+                        mMergedValuesHashes.getProperty(folderName),
+                        outFile,
+                        compiledFile,
+                        notCompiledFile);
+
+        if (!upToDate) {
+            FileUtils.mkdirs(valuesFolder);
+            Files.asCharSink(outFile, Charsets.UTF_8).write(merged.content);
+
+            // If we are going to shrink resources, the resource shrinker needs to have the
+            // final merged uncompiled file.
+            if (notCompiledFile != null) {
+                FileUtils.mkdirs(notCompiledFile.getParentFile());
+                FileUtils.copyFile(outFile, notCompiledFile);
+            }
+        }
+
+        if (blame != null) {
+            String fileSourcePath = getSourceFilePath(compiledFile);
+            mMergingLog.logSource(new SourceFile(compiledFile), fileSourcePath, blame);
+
+            String outFileSourcePath = getSourceFilePath(outFile);
+            mMergingLog.logSource(new SourceFile(outFile), outFileSourcePath, blame);
+        }
+
+        if (!upToDate) {
+            // Do not leave a stale output around in case the compilation fails.
+            FileUtils.deleteIfExists(compiledFile);
+            mergeWriterRequest.getResourceCompilationService().submitCompile(request);
+            mMergedValuesHashes.setProperty(folderName, hash);
+        }
+
+        if (merged.publicText != null && mergeWriterRequest.getPublicFile() != null) {
+            File parentFile = mergeWriterRequest.getPublicFile().getParentFile();
+            if (!parentFile.exists()) {
+                boolean mkdirs = parentFile.mkdirs();
+                if (!mkdirs) {
+                    throw new IOException("Could not create " + parentFile);
+                }
+            }
+            Files.asCharSink(mergeWriterRequest.getPublicFile(), Charsets.UTF_8)
+                    .write(merged.publicText);
+        }
+    }
+
     private String getSourcePath(File file) {
         return mergeWriterRequest.getModuleSourceSets().isEmpty()
                 ? file.getAbsolutePath()
@@ -334,10 +334,13 @@ public final class JvmWideVariable<T> {
      */
     private static void verifyBootstrapLoadedType(@NonNull Type type, @NonNull String variable) {
         for (Class<?> clazz : collectComponentClasses(type)) {
-            // CodeAssist changed: BootstrapClassLoader is never null
-            // it is instead an instance of java.lang.BootClassLoader
+            // CodeAssist changed: BootstrapClassLoader is never null on Android
+            // it is instead an instance of java.lang.BootClassLoader, it is still null on a JVM
+            // such as when running the unit tests
+            ClassLoader classLoader = clazz.getClassLoader();
             Verify.verify(
-                    clazz.getClassLoader().getClass().getName().startsWith("java.lang.BootClassLoader"),
+                    classLoader == null ||
+                    classLoader.getClass().getName().startsWith("java.lang.BootClassLoader"),
                     "Type %s used to define JVM-wide variable %s must be loaded"
                             + " by the bootstrap class loader but is loaded by %s",
                     clazz,
@@ -0,0 +1,224 @@
+package com.android.ide.common.resources;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.android.SdkConstants;
+import com.android.annotations.NonNull;
+import com.android.ide.common.rendering.api.ResourceNamespace;
+import com.android.ide.common.workers.ExecutorServiceAdapter;
+import com.android.utils.FileUtils;
+import com.android.utils.NullLogger;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.MoreExecutors;
+import java.io.File;
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class MergedResourceWriterTest {
+
+    private static final String[] QUALIFIERS = {"", "en", "fr", "de", "es", "it", "ja", "ko"};
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File resDir;
+    private File outDir;
+    private File tmpDir;
+
+    /** The folder names of the merged values files submitted for compilation. */
+    private final Set<String> compiled = ConcurrentHashMap.newKeySet();
+
+    private final ResourceCompilationService compilationService =
+            new ResourceCompilationService() {
+                @Override
+                public void submitCompile(@NonNull CompileResourceRequest request)
+                        throws IOException {
+                    compiled.add(request.getInputDirectoryName());
+                    CopyToOutputDirectoryResourceCompilationService.INSTANCE.submitCompile(
+                            request);
+                }
+
+                @NonNull
+                @Override
+                public File compileOutputFor(@NonNull CompileResourceRequest request) {
+                    return CopyToOutputDirectoryResourceCompilationService.INSTANCE
+                            .compileOutputFor(request);
+                }
+
+                @Override
+                public void close() {}
+            };
+
+    @Before
+    public void setUp() throws IOException {
+        resDir = temporaryFolder.newFolder("res");
+        outDir = temporaryFolder.newFolder("out");
+        tmpDir = temporaryFolder.newFolder("tmp");
+        for (String qualifier : QUALIFIERS) {
+            writeStrings(qualifier, "value");
+        }
+    }
+
+    private static String folderName(String qualifier) {
+        return qualifier.isEmpty() ? "values" : "values-" + qualifier;
+    }
+
+    private void writeStrings(String qualifier, String prefix) throws IOException {
+        StringBuilder content = new StringBuilder("<resources>\n");
+        for (int i = 0; i < 50; i++) {
+            content.append("    <string name=\"string")
+                    .append(i)
+                    .append("\">")
+                    .append(prefix)
+                    .append(' ')
+                    .append(qualifier)
+                    .append(' ')
+                    .append(i)
+                    .append("</string>\n");
+        }
+        content.append("    <!-- a comment -->\n");
+        content.append("    <style name=\"Style\">\n");
+        content.append("        <!-- stripped -->\n");
+        content.append("        <item name=\"android:textSize\">12sp</item>\n");
+        content.append("    </style>\n");
+        content.append("</resources>\n");
+
+        File file = FileUtils.join(resDir, folderName(qualifier), "strings.xml");
+        FileUtils.mkdirs(file.getParentFile());
+        Files.asCharSink(file, Charsets.UTF_8).write(content);
+    }
+
+    /** Merges the resources from scratch, reusing the temporary directory of previous merges. */
+    private void merge() throws Exception {
+        compiled.clear();
+        ResourceSet resourceSet =
+                new ResourceSet("main", ResourceNamespace.RES_AUTO, null, false, null);
+        resourceSet.addSource(resDir);
+        resourceSet.loadFromFiles(new NullLogger());
+
+        ResourceMerger merger = new ResourceMerger(0);
+        merger.addDataSet(resourceSet);
+
+        MergedResourceWriter writer =
+                new MergedResourceWriter(
+                        new MergedResourceWriterRequest(
+                                new ExecutorServiceAdapter(
+                                        MoreExecutors.newDirectExecutorService()),
+                                outDir,
+                                null,
+                                null,
+                                NoOpResourcePreprocessor.INSTANCE,
+                                compilationService,
+                                tmpDir,
+                                null,
+                                null,
+                                false,
+                                false,
+                                ImmutableMap.of()));
+        merger.mergeData(writer, false);
+    }
+
+    private File mergedFile(String qualifier) {
+        String folderName = folderName(qualifier);
+        return FileUtils.join(
+                tmpDir, SdkConstants.FD_MERGED_DOT_DIR, folderName, folderName + ".xml");
+    }
+
+    private File compiledFile(String qualifier) {
+        String folderName = folderName(qualifier);
+        return compilationService.compileOutputFor(
+                new CompileResourceRequest(mergedFile(qualifier), outDir, folderName));
+    }
+
+    private Set<String> allFolderNames() {
+        ImmutableSet.Builder<String> builder = ImmutableSet.builder();
+        for (String qualifier : QUALIFIERS) {
+            builder.add(folderName(qualifier));
+        }
+        return builder.build();
+    }
+
+    @Test
+    public void mergesEveryQualifierInParallel() throws Exception {
+        merge();
+
+        assertEquals(allFolderNames(), compiled);
+        for (String qualifier : QUALIFIERS) {
+            String content = Files.asCharSource(compiledFile(qualifier), Charsets.UTF_8).read();
+            for (int i = 0; i < 50; i++) {
+                assertTrue(
+                        content,
+                        content.contains(
+                                "<string name=\"string" + i + "\">value " + qualifier + " " + i
+                                        + "</string>"));
+            }
+            assertFalse(content, content.contains("stripped"));
+            assertTrue(content, content.contains("<item name=\"android:textSize\">12sp</item>"));
+        }
+    }
+
+    @Test
+    public void onlyChangedQualifiersAreCompiledAgain() throws Exception {
+        merge();
+        merge();
+        assertEquals(ImmutableSet.of(), compiled);
+
+        writeStrings("fr", "changed");
+        merge();
+        assertEquals(ImmutableSet.of("values-fr"), compiled);
+        String content = Files.asCharSource(compiledFile("fr"), Charsets.UTF_8).read();
+        assertTrue(content, content.contains(">changed fr 3<"));
+    }
+
+    @Test
+    public void missingOutputsAreGeneratedAgain() throws Exception {
+        merge();
+
+        FileUtils.delete(compiledFile("en"));
+        FileUtils.delete(mergedFile("de"));
+        merge();
+        assertEquals(ImmutableSet.of("values-en", "values-de"), compiled);
+        assertTrue(compiledFile("en").isFile());
+        assertTrue(mergedFile("de").isFile());
+    }
+
+    @Test
+    public void upToDateDecision() throws IOException {
+        File outFile = temporaryFolder.newFile("values.xml");
+        File compiledFile = temporaryFolder.newFile("values.arsc.flat");
+        File notCompiledFile = temporaryFolder.newFile("not-compiled.xml");
+        File missing = new File(temporaryFolder.getRoot(), "missing.xml");
+
+        assertTrue(
+                MergedResourceWriter.isMergedValuesFileUpToDate(
+                        "hash", "hash", outFile, compiledFile, null));
+        assertTrue(
+                MergedResourceWriter.isMergedValuesFileUpToDate(
+                        "hash", "hash", outFile, compiledFile, notCompiledFile));
+
+        assertFalse(
+                MergedResourceWriter.isMergedValuesFileUpToDate(
+                        "hash", null, outFile, compiledFile, null));
+        assertFalse(
+                MergedResourceWriter.isMergedValuesFileUpToDate(
+                        "hash", "other", outFile, compiledFile, null));
+        assertFalse(
+                MergedResourceWriter.isMergedValuesFileUpToDate(
+                        "hash", "hash", missing, compiledFile, null));
+        assertFalse(
+                MergedResourceWriter.isMergedValuesFileUpToDate(
+                        "hash", "hash", outFile, missing, null));
+        assertFalse(
+                MergedResourceWriter.isMergedValuesFileUpToDate(
+                        "hash", "hash", outFile, compiledFile, missing));
+    }
+}
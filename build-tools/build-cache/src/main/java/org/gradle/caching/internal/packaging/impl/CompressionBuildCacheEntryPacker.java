@@ -0,0 +1,112 @@
+package org.gradle.caching.internal.packaging.impl;
+
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses the entries of a delegate packer with a configurable {@link Compression}.
+ *
+ * Entries are unpacked according to how they were stored, regardless of the configured
+ * compression, so the compression can be changed without invalidating existing cache entries.
+ */
+public class CompressionBuildCacheEntryPacker implements BuildCacheEntryPacker {
+
+    /**
+     * The system property used to pick the {@link Compression} of new cache entries.
+     */
+    public static final String COMPRESSION_PROPERTY = "org.gradle.caching.compression";
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    public enum Compression {
+        /**
+         * GZip with the default compression level, the smallest entries.
+         */
+        GZIP(Deflater.DEFAULT_COMPRESSION),
+        /**
+         * GZip with the fastest compression level, several times faster to store than
+         * {@link #GZIP} while the entries are only slightly larger.
+         */
+        FAST(Deflater.BEST_SPEED),
+        /**
+         * No compression, for when the cache is on fast storage and the CPU is the bottleneck.
+         */
+        STORE(Deflater.NO_COMPRESSION);
+
+        private final int level;
+
+        Compression(int level) {
+            this.level = level;
+        }
+
+        public static Compression fromSystemProperty() {
+            String value = System.getProperty(COMPRESSION_PROPERTY);
+            if (value == null) {
+                return FAST;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException(String.format("Unknown build cache compression '%s' for %s, expected one of gzip, fast or store", value, COMPRESSION_PROPERTY), e);
+            }
+        }
+    }
+
+    private final BuildCacheEntryPacker delegate;
+    private final Compression compression;
+
+    public CompressionBuildCacheEntryPacker(BuildCacheEntryPacker delegate, Compression compression) {
+        this.delegate = delegate;
+        this.compression = compression;
+    }
+
+    @Override
+    public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+        if (compression == Compression.STORE) {
+            return delegate.pack(entity, snapshots, output, writeOrigin);
+        }
+        try (GZIPOutputStream gzipOutput = new LevelGZIPOutputStream(output, compression.level)) {
+            return delegate.pack(entity, snapshots, gzipOutput, writeOrigin);
+        }
+    }
+
+    @Override
+    public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+        BufferedInputStream bufferedInput = new BufferedInputStream(input, BUFFER_SIZE);
+        if (!isGZip(bufferedInput)) {
+            return delegate.unpack(entity, bufferedInput, readOrigin);
+        }
+        try (GZIPInputStream gzipInput = new GZIPInputStream(bufferedInput, BUFFER_SIZE)) {
+            return delegate.unpack(entity, gzipInput, readOrigin);
+        }
+    }
+
+    private static boolean isGZip(BufferedInputStream input) throws IOException {
+        input.mark(2);
+        int first = input.read();
+        int second = input.read();
+        input.reset();
+        return first != -1 && second != -1 && ((second << 8) | first) == GZIP_MAGIC;
+    }
+
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+        LevelGZIPOutputStream(OutputStream output, int level) throws IOException {
+            super(output, BUFFER_SIZE);
+            def.setLevel(level);
+        }
+    }
+}
@@ -43,6 +43,8 @@ import java.net.URLDecoder;
 import java.net.URLEncoder;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
@@ -52,6 +54,7 @@ import java.util.regex.Pattern;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarConstants;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.input.CloseShieldInputStream;
@@ -59,6 +62,9 @@ import org.jetbrains.annotations.Nullable;
 
 /**
  * Packages build cache entries to a POSIX TAR file.
+ *
+ * Files with the same content as a file stored earlier in the entry are stored as hard links to
+ * it, and are copied from the first unpacked file when the entry is unpacked.
  */
 public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
@@ -122,10 +128,11 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
     private long pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, TarArchiveOutputStream tarOutput) {
         AtomicLong entries = new AtomicLong();
+        Map<HashCode, String> storedContents = new HashMap<>();
         entity.visitOutputTrees((treeName, type, root) -> {
             FileSystemSnapshot treeSnapshots = snapshots.get(treeName);
             try {
-                long entryCount = packTree(treeName, type, treeSnapshots, tarOutput);
+                long entryCount = packTree(treeName, type, treeSnapshots, storedContents, tarOutput);
                 entries.addAndGet(entryCount);
             } catch (Exception ex) {
                 throw new RuntimeException(String.format("Could not pack tree '%s': %s", treeName, ex.getMessage()), ex);
@@ -134,8 +141,8 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         return entries.get();
     }
 
-    private long packTree(String name, TreeType type, FileSystemSnapshot snapshots, TarArchiveOutputStream tarOutput) {
-        PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, filePermissionAccess);
+    private long packTree(String name, TreeType type, FileSystemSnapshot snapshots, Map<HashCode, String> storedContents, TarArchiveOutputStream tarOutput) {
+        PackingVisitor packingVisitor = new PackingVisitor(tarOutput, name, type, filePermissionAccess, storedContents);
         snapshots.accept(new RelativePathTracker(), packingVisitor);
         return packingVisitor.getPackedEntryCount();
     }
@@ -162,6 +169,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         TarArchiveEntry tarEntry;
         OriginMetadata originMetadata = null;
         Map<String, FileSystemLocationSnapshot> snapshots = new HashMap<>();
+        Map<String, RegularFileSnapshot> unpackedFiles = new HashMap<>();
 
         tarEntry = tarInput.getNextTarEntry();
         AtomicLong entries = new AtomicLong();
@@ -188,7 +196,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
 
                 boolean missing = matcher.group(1) != null;
                 String childPath = matcher.group(3);
-                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, snapshots, entries);
+                tarEntry = unpackTree(treeName, tree.getType(), tree.getRoot(), tarInput, tarEntry, childPath, missing, snapshots, unpackedFiles, entries);
             }
         }
         if (originMetadata == null) {
@@ -217,7 +225,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
     }
 
     @Nullable
-    private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File treeRoot, TarArchiveInputStream input, TarArchiveEntry rootEntry, String childPath, boolean missing, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries) throws IOException {
+    private TarArchiveEntry unpackTree(String treeName, TreeType treeType, File treeRoot, TarArchiveInputStream input, TarArchiveEntry rootEntry, String childPath, boolean missing, Map<String, FileSystemLocationSnapshot> snapshots, Map<String, RegularFileSnapshot> unpackedFiles, AtomicLong entries) throws IOException {
         boolean isDirEntry = rootEntry.isDirectory();
         boolean root = Strings.isNullOrEmpty(childPath);
         if (!root) {
@@ -234,7 +242,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
             if (isDirEntry) {
                 throw new IllegalStateException("Should be a file: " + treeName);
             }
-            RegularFileSnapshot fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName());
+            RegularFileSnapshot fileSnapshot = unpackFile(input, rootEntry, treeRoot, treeRoot.getName(), unpackedFiles);
             snapshots.put(treeName, fileSnapshot);
             return input.getNextTarEntry();
         }
@@ -244,22 +252,41 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         }
         chmodUnpackedFile(rootEntry, treeRoot);
 
-        return unpackDirectoryTree(input, rootEntry, snapshots, entries, treeRoot, treeName);
+        return unpackDirectoryTree(input, rootEntry, snapshots, unpackedFiles, entries, treeRoot, treeName);
     }
 
-    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName) throws IOException {
+    private RegularFileSnapshot unpackFile(TarArchiveInputStream input, TarArchiveEntry entry, File file, String fileName, Map<String, RegularFileSnapshot> unpackedFiles) throws IOException {
+        if (entry.isLink()) {
+            return unpackLinkedFile(entry, file, fileName, unpackedFiles);
+        }
         try (CountingOutputStream output = new CountingOutputStream(new FileOutputStream(file))) {
             HashCode hash = streamHasher.hashCopy(input, output);
             chmodUnpackedFile(entry, file);
             String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
             String internedFileName = stringInterner.intern(fileName);
-            return new RegularFileSnapshot(internedAbsolutePath, internedFileName, hash, DefaultFileMetadata
+            RegularFileSnapshot snapshot = new RegularFileSnapshot(internedAbsolutePath, internedFileName, hash, DefaultFileMetadata
                     .file(output.getCount(), file.lastModified(), DIRECT));
+            unpackedFiles.put(entry.getName(), snapshot);
+            return snapshot;
+        }
+    }
+
+    private RegularFileSnapshot unpackLinkedFile(TarArchiveEntry entry, File file, String fileName, Map<String, RegularFileSnapshot> unpackedFiles) throws IOException {
+        RegularFileSnapshot source = unpackedFiles.get(entry.getLinkName());
+        if (source == null) {
+            throw new IllegalStateException("Cached entry format error, link to missing file: " + entry.getLinkName());
         }
+        // The output may be modified in place later, so the content is copied rather than linked
+        Files.copy(new File(source.getAbsolutePath()).toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        chmodUnpackedFile(entry, file);
+        String internedAbsolutePath = stringInterner.intern(file.getAbsolutePath());
+        String internedFileName = stringInterner.intern(fileName);
+        return new RegularFileSnapshot(internedAbsolutePath, internedFileName, source.getHash(), DefaultFileMetadata
+                .file(file.length(), file.lastModified(), DIRECT));
     }
 
     @Nullable
-    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, AtomicLong entries, File treeRoot, String treeName) throws IOException {
+    private TarArchiveEntry unpackDirectoryTree(TarArchiveInputStream input, TarArchiveEntry rootEntry, Map<String, FileSystemLocationSnapshot> snapshots, Map<String, RegularFileSnapshot> unpackedFiles, AtomicLong entries, File treeRoot, String treeName) throws IOException {
         RelativePathParser parser = new RelativePathParser(rootEntry.getName());
 
         DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.noSortingRequired();
@@ -283,7 +310,7 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
                 String internedName = stringInterner.intern(parser.getName());
                 builder.enterDirectory(DIRECT, internedAbsolutePath, internedName, INCLUDE_EMPTY_DIRS);
             } else {
-                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName());
+                RegularFileSnapshot fileSnapshot = unpackFile(input, entry, file, parser.getName(), unpackedFiles);
                 builder.visitLeafElement(fileSnapshot);
             }
         }
@@ -321,15 +348,17 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
         private final String treeRoot;
         private final FilePermissionAccess filePermissionAccess;
         private final TreeType type;
+        private final Map<HashCode, String> storedContents;
 
         private long packedEntryCount;
 
-        public PackingVisitor(TarArchiveOutputStream tarOutput, String treeName, TreeType type, FilePermissionAccess filePermissionAccess) {
+        public PackingVisitor(TarArchiveOutputStream tarOutput, String treeName, TreeType type, FilePermissionAccess filePermissionAccess, Map<HashCode, String> storedContents) {
             this.tarOutput = tarOutput;
             this.treePath = "tree-" + escape(treeName);
             this.treeRoot = treePath + "/";
             this.type = type;
             this.filePermissionAccess = filePermissionAccess;
+            this.storedContents = storedContents;
         }
 
         @Override
@@ -350,7 +379,13 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
                     assertCorrectType(isRoot, snapshot);
                     File file = new File(snapshot.getAbsolutePath());
                     int fileMode = filePermissionAccess.getUnixMode(file);
-                    storeFileEntry(file, targetPath, file.length(), fileMode, tarOutput);
+                    long length = file.length();
+                    String storedPath = length > 0 ? storedContents.putIfAbsent(fileSnapshot.getHash(), targetPath) : null;
+                    if (storedPath != null) {
+                        storeLinkEntry(targetPath, storedPath, fileMode, tarOutput);
+                    } else {
+                        storeFileEntry(file, targetPath, length, fileMode, tarOutput);
+                    }
                 }
 
                 @Override
@@ -412,6 +447,18 @@ public class TarBuildCacheEntryPacker implements BuildCacheEntryPacker {
             }
         }
 
+        private void storeLinkEntry(String path, String linkPath, int mode, TarArchiveOutputStream tarOutput) {
+            try {
+                TarArchiveEntry entry = new TarArchiveEntry(path, TarConstants.LF_LINK, true);
+                entry.setLinkName(linkPath);
+                entry.setMode(UnixPermissions.FILE_FLAG | mode);
+                tarOutput.putArchiveEntry(entry);
+                tarOutput.closeArchiveEntry();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
         private void storeFileEntry(File inputFile, String path, long size, int mode, TarArchiveOutputStream tarOutput) {
             try {
                 createTarEntry(path, size, UnixPermissions.FILE_FLAG | mode, tarOutput);
@@ -0,0 +1,119 @@
+package org.gradle.caching.internal.packaging.impl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginReader;
+import org.gradle.caching.internal.origin.OriginWriter;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.caching.internal.packaging.impl.CompressionBuildCacheEntryPacker.Compression;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.apache.commons.io.IOUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+
+public class CompressionBuildCacheEntryPackerTest {
+
+    private static final byte[] CONTENT = String.join("\n", Collections.nCopies(1000, "compressible content"))
+            .getBytes(StandardCharsets.UTF_8);
+
+    private final RecordingPacker delegate = new RecordingPacker();
+
+    @Test
+    public void entriesAreUnpackedWhateverTheConfiguredCompression() throws IOException {
+        for (Compression packed : Compression.values()) {
+            byte[] entry = pack(packed);
+            for (Compression configured : Compression.values()) {
+                delegate.unpacked = null;
+                new CompressionBuildCacheEntryPacker(delegate, configured)
+                        .unpack(null, new ByteArrayInputStream(entry), null);
+                assertArrayEquals(packed + " unpacked with " + configured, CONTENT, delegate.unpacked);
+            }
+        }
+    }
+
+    @Test
+    public void storedEntriesAreNotCompressed() throws IOException {
+        assertArrayEquals(CONTENT, pack(Compression.STORE));
+    }
+
+    @Test
+    public void compressedEntriesAreGZip() throws IOException {
+        for (Compression compression : new Compression[]{Compression.GZIP, Compression.FAST}) {
+            byte[] entry = pack(compression);
+            assertEquals(0x1f, entry[0] & 0xff);
+            assertEquals(0x8b, entry[1] & 0xff);
+            assertTrue(entry.length < CONTENT.length);
+        }
+    }
+
+    @Test
+    public void compressionIsReadFromSystemProperty() {
+        String previous = System.getProperty(CompressionBuildCacheEntryPacker.COMPRESSION_PROPERTY);
+        try {
+            System.clearProperty(CompressionBuildCacheEntryPacker.COMPRESSION_PROPERTY);
+            assertEquals(Compression.FAST, Compression.fromSystemProperty());
+
+            System.setProperty(CompressionBuildCacheEntryPacker.COMPRESSION_PROPERTY, " Store ");
+            assertEquals(Compression.STORE, Compression.fromSystemProperty());
+        } finally {
+            if (previous == null) {
+                System.clearProperty(CompressionBuildCacheEntryPacker.COMPRESSION_PROPERTY);
+            } else {
+                System.setProperty(CompressionBuildCacheEntryPacker.COMPRESSION_PROPERTY, previous);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownCompressionIsRejected() {
+        String previous = System.getProperty(CompressionBuildCacheEntryPacker.COMPRESSION_PROPERTY);
+        try {
+            System.setProperty(CompressionBuildCacheEntryPacker.COMPRESSION_PROPERTY, "lz4");
+            Compression.fromSystemProperty();
+        } finally {
+            if (previous == null) {
+                System.clearProperty(CompressionBuildCacheEntryPacker.COMPRESSION_PROPERTY);
+            } else {
+                System.setProperty(CompressionBuildCacheEntryPacker.COMPRESSION_PROPERTY, previous);
+            }
+        }
+    }
+
+    private byte[] pack(Compression compression) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new CompressionBuildCacheEntryPacker(delegate, compression)
+                .pack(null, Collections.emptyMap(), output, null);
+        return output.toByteArray();
+    }
+
+    /**
+     * Writes {@link #CONTENT} and records what it reads back.
+     */
+    private static class RecordingPacker implements BuildCacheEntryPacker {
+
+        private byte[] unpacked;
+
+        @Override
+        public PackResult pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots, OutputStream output, OriginWriter writeOrigin) throws IOException {
+            output.write(CONTENT);
+            return new PackResult(1);
+        }
+
+        @Override
+        public UnpackResult unpack(CacheableEntity entity, InputStream input, OriginReader readOrigin) throws IOException {
+            unpacked = IOUtils.toByteArray(input);
+            return new UnpackResult(null, 1, Collections.emptyMap());
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package org.gradle.caching.internal.packaging.impl;
+
+import static org.gradle.internal.file.FileMetadata.AccessType.DIRECT;
+import static org.gradle.internal.snapshot.DirectorySnapshotBuilder.EmptyDirectoryHandlingStrategy.INCLUDE_EMPTY_DIRS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interners;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import org.gradle.caching.internal.CacheableEntity;
+import org.gradle.caching.internal.origin.OriginMetadata;
+import org.gradle.caching.internal.packaging.BuildCacheEntryPacker;
+import org.gradle.internal.file.TreeType;
+import org.gradle.internal.file.impl.DefaultFileMetadata;
+import org.gradle.internal.hash.StreamHasher;
+import org.gradle.internal.snapshot.DirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.FileSystemLocationSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshot;
+import org.gradle.internal.snapshot.FileSystemSnapshotHierarchyVisitor;
+import org.gradle.internal.snapshot.MerkleDirectorySnapshotBuilder;
+import org.gradle.internal.snapshot.RegularFileSnapshot;
+import org.gradle.internal.snapshot.SnapshotVisitResult;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+public class TarBuildCacheEntryPackerTest {
+
+    private static final OriginMetadata ORIGIN = new OriginMetadata("build", Duration.ofSeconds(1));
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final TarBuildCacheEntryPacker packer = new TarBuildCacheEntryPacker(
+            new TestFileSystemSupport(), new TestFilePermissionAccess(), new TestStreamHasher(),
+            Interners.newStrongInterner());
+
+    @Test
+    public void duplicateFilesAreStoredAsLinks() throws IOException {
+        File output = temporaryFolder.newFolder("output");
+        write(new File(output, "a.txt"), "same");
+        write(new File(output, "c.txt"), "other");
+        write(new File(output, "sub/b.txt"), "same");
+
+        byte[] entry = pack(Entity.of("dir", TreeType.DIRECTORY, output),
+                ImmutableMap.of("dir", snapshotDirectory(output)));
+
+        Map<String, TarArchiveEntry> entries = readEntries(entry);
+        assertFalse(entries.get("tree-dir/a.txt").isLink());
+        assertFalse(entries.get("tree-dir/c.txt").isLink());
+        TarArchiveEntry link = entries.get("tree-dir/sub/b.txt");
+        assertTrue(link.isLink());
+        assertEquals("tree-dir/a.txt", link.getLinkName());
+        assertEquals(0, link.getSize());
+    }
+
+    @Test
+    public void linkedFilesAreUnpackedAsCopies() throws IOException {
+        File output = temporaryFolder.newFolder("output");
+        write(new File(output, "a.txt"), "same");
+        write(new File(output, "c.txt"), "other");
+        write(new File(output, "sub/b.txt"), "same");
+        byte[] entry = pack(Entity.of("dir", TreeType.DIRECTORY, output),
+                ImmutableMap.of("dir", snapshotDirectory(output)));
+
+        File restored = new File(temporaryFolder.getRoot(), "restored");
+        BuildCacheEntryPacker.UnpackResult result = unpack(Entity.of("dir", TreeType.DIRECTORY, restored), entry);
+
+        assertEquals(ORIGIN, result.getOriginMetadata());
+        assertEquals("same", read(new File(restored, "a.txt")));
+        assertEquals("other", read(new File(restored, "c.txt")));
+        assertEquals("same", read(new File(restored, "sub/b.txt")));
+
+        Map<String, HashCode> hashes = new HashMap<>();
+        result.getSnapshots().get("dir").accept((FileSystemSnapshotHierarchyVisitor) snapshot -> {
+            if (snapshot instanceof RegularFileSnapshot) {
+                hashes.put(snapshot.getName(), snapshot.getHash());
+            }
+            return SnapshotVisitResult.CONTINUE;
+        });
+        assertEquals(hash("same"), hashes.get("a.txt"));
+        assertEquals(hash("same"), hashes.get("b.txt"));
+        assertEquals(hash("other"), hashes.get("c.txt"));
+    }
+
+    @Test
+    public void duplicateFilesAreLinkedAcrossTrees() throws IOException {
+        File first = write(new File(temporaryFolder.getRoot(), "first.txt"), "same");
+        File second = write(new File(temporaryFolder.getRoot(), "second.txt"), "same");
+        byte[] entry = pack(
+                Entity.of("first", TreeType.FILE, first).and("second", TreeType.FILE, second),
+                ImmutableMap.of("first", snapshotFile(first), "second", snapshotFile(second)));
+
+        TarArchiveEntry link = readEntries(entry).get("tree-second");
+        assertTrue(link.isLink());
+        assertEquals("tree-first", link.getLinkName());
+
+        File restoredFirst = new File(temporaryFolder.getRoot(), "restored/first.txt");
+        File restoredSecond = new File(temporaryFolder.getRoot(), "restored/second.txt");
+        BuildCacheEntryPacker.UnpackResult result = unpack(
+                Entity.of("first", TreeType.FILE, restoredFirst).and("second", TreeType.FILE, restoredSecond),
+                entry);
+
+        assertEquals("same", read(restoredSecond));
+        assertEquals(hash("same"), result.getSnapshots().get("second").getHash());
+        assertEquals(restoredSecond.getAbsolutePath(), result.getSnapshots().get("second").getAbsolutePath());
+    }
+
+    @Test
+    public void emptyFilesAreNotLinked() throws IOException {
+        File output = temporaryFolder.newFolder("output");
+        write(new File(output, "a.txt"), "");
+        write(new File(output, "b.txt"), "");
+
+        byte[] entry = pack(Entity.of("dir", TreeType.DIRECTORY, output),
+                ImmutableMap.of("dir", snapshotDirectory(output)));
+
+        Map<String, TarArchiveEntry> entries = readEntries(entry);
+        assertFalse(entries.get("tree-dir/a.txt").isLink());
+        assertFalse(entries.get("tree-dir/b.txt").isLink());
+    }
+
+    private byte[] pack(CacheableEntity entity, Map<String, ? extends FileSystemSnapshot> snapshots) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        packer.pack(entity, snapshots, output, stream -> stream.write(
+                ORIGIN.getBuildInvocationId().getBytes(StandardCharsets.UTF_8)));
+        return output.toByteArray();
+    }
+
+    private BuildCacheEntryPacker.UnpackResult unpack(CacheableEntity entity, byte[] entry) throws IOException {
+        return packer.unpack(entity, new ByteArrayInputStream(entry), input -> {
+            assertEquals(ORIGIN.getBuildInvocationId(), new String(ByteStreams.toByteArray(input), StandardCharsets.UTF_8));
+            return ORIGIN;
+        });
+    }
+
+    private static Map<String, TarArchiveEntry> readEntries(byte[] entry) throws IOException {
+        Map<String, TarArchiveEntry> entries = new HashMap<>();
+        try (TarArchiveInputStream input = new TarArchiveInputStream(new ByteArrayInputStream(entry))) {
+            TarArchiveEntry tarEntry;
+            while ((tarEntry = input.getNextTarEntry()) != null) {
+                entries.put(tarEntry.getName(), tarEntry);
+            }
+        }
+        return entries;
+    }
+
+    private static FileSystemLocationSnapshot snapshotDirectory(File root) {
+        DirectorySnapshotBuilder builder = MerkleDirectorySnapshotBuilder.sortingRequired();
+        visitDirectory(root, builder);
+        return builder.getResult();
+    }
+
+    private static void visitDirectory(File dir, DirectorySnapshotBuilder builder) {
+        builder.enterDirectory(DIRECT, dir.getAbsolutePath(), dir.getName(), INCLUDE_EMPTY_DIRS);
+        File[] children = dir.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                if (child.isDirectory()) {
+                    visitDirectory(child, builder);
+                } else {
+                    builder.visitLeafElement(snapshotFile(child));
+                }
+            }
+        }
+        builder.leaveDirectory();
+    }
+
+    private static RegularFileSnapshot snapshotFile(File file) {
+        try {
+            return new RegularFileSnapshot(file.getAbsolutePath(), file.getName(),
+                    hash(FileUtils.readFileToString(file, StandardCharsets.UTF_8)),
+                    DefaultFileMetadata.file(file.lastModified(), file.length(), DIRECT));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static HashCode hash(String content) {
+        return Hashing.sha256().hashString(content, StandardCharsets.UTF_8);
+    }
+
+    private static File write(File file, String content) throws IOException {
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+
+    private static class Entity implements CacheableEntity {
+
+        private final Map<String, TreeType> types = new LinkedHashMap<>();
+        private final Map<String, File> roots = new HashMap<>();
+
+        static Entity of(String name, TreeType type, File root) {
+            return new Entity().and(name, type, root);
+        }
+
+        Entity and(String name, TreeType type, File root) {
+            types.put(name, type);
+            roots.put(name, root);
+            return this;
+        }
+
+        @Override
+        public String getIdentity() {
+            return "entity";
+        }
+
+        @Override
+        public Class<?> getType() {
+            return Entity.class;
+        }
+
+        @Override
+        public String getDisplayName() {
+            return "entity";
+        }
+
+        @Override
+        public void visitOutputTrees(CacheableTreeVisitor visitor) {
+            types.forEach((name, type) -> visitor.visitOutputTree(name, type, roots.get(name)));
+        }
+    }
+
+    private static class TestFileSystemSupport implements TarPackerFileSystemSupport {
+        @Override
+        public void ensureFileIsMissing(File entry) throws IOException {
+            FileUtils.forceMkdirParent(entry);
+            FileUtils.deleteQuietly(entry);
+        }
+
+        @Override
+        public void ensureDirectoryForTree(TreeType type, File root) throws IOException {
+            if (type == TreeType.DIRECTORY) {
+                FileUtils.forceMkdir(root);
+            } else {
+                FileUtils.forceMkdirParent(root);
+            }
+        }
+    }
+
+    private static class TestFilePermissionAccess implements FilePermissionAccess {
+        @Override
+        public int getUnixMode(File f) {
+            return f.isDirectory() ? 0755 : 0644;
+        }
+
+        @Override
+        public void chmod(File file, int mode) {
+        }
+    }
+
+    /**
+     * Hashes the contents the same way as {@link #hash(String)}.
+     */
+    private static class TestStreamHasher implements StreamHasher {
+        @Override
+        public HashCode hash(InputStream inputStream) {
+            try {
+                return hashCopy(inputStream, ByteStreams.nullOutputStream());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        @Override
+        public HashCode hashCopy(InputStream inputStream, OutputStream outputStream) throws IOException {
+            HashingInputStream hashingInput = new HashingInputStream(Hashing.sha256(), inputStream);
+            ByteStreams.copy(hashingInput, outputStream);
+            return hashingInput.hash();
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.tyron.builder.compiler.manifest;
 
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.compiler.BuildType;
 import com.tyron.builder.compiler.Task;
 import com.tyron.builder.compiler.manifest.ManifestMerger2.SystemProperty;
@@ -18,12 +20,18 @@ import org.w3c.dom.Document;
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ManifestMergeTask extends Task<AndroidModule> {
 
     private File mOutputFile;
+    private File mFingerprintFile;
+    private File mMergedFile;
     private File mMainManifest;
     private File[] mLibraryManifestFiles;
     private String mPackageName;
@@ -54,6 +62,11 @@ public class ManifestMergeTask extends Task<AndroidModule> {
             }
         }
 
+        mFingerprintFile = new File(getModule().getBuildDirectory(),
+                "intermediate/manifest/fingerprint");
+        mMergedFile = new File(getModule().getBuildDirectory(),
+                "intermediate/manifest/AndroidManifest.xml");
+
         mMainManifest = getModule().getManifestFile();
         if (!mMainManifest.exists()) {
             throw new IOException("Unable to find the main manifest file");
@@ -86,17 +99,32 @@ public class ManifestMergeTask extends Task<AndroidModule> {
     public void run() throws IOException, CompilationFailedException {
         ModuleSettings settings = getModule().getSettings();
 
-        ManifestMerger2.Invoker<?> invoker = ManifestMerger2.newMerger(mMainManifest,
-                getLogger(), ManifestMerger2.MergeType.APPLICATION);
-        invoker.setOverride(SystemProperty.PACKAGE, mPackageName);
-        invoker.setOverride(SystemProperty.MIN_SDK_VERSION,
+        Map<SystemProperty, String> overrides = new LinkedHashMap<>();
+        overrides.put(SystemProperty.PACKAGE, mPackageName);
+        overrides.put(SystemProperty.MIN_SDK_VERSION,
                 String.valueOf(settings.getInt(ModuleSettings.MIN_SDK_VERSION, 21)));
-        invoker.setOverride(SystemProperty.TARGET_SDK_VERSION,
+        overrides.put(SystemProperty.TARGET_SDK_VERSION,
                 String.valueOf(settings.getInt(ModuleSettings.TARGET_SDK_VERSION, 30)));
-        invoker.setOverride(SystemProperty.VERSION_CODE,
+        overrides.put(SystemProperty.VERSION_CODE,
                 String.valueOf(settings.getInt(ModuleSettings.VERSION_CODE, 1)));
-        invoker.setOverride(SystemProperty.VERSION_NAME,
+        overrides.put(SystemProperty.VERSION_NAME,
                 settings.getString(ModuleSettings.VERSION_NAME, "1.0"));
+
+        String inputsHash = hashInputs(overrides);
+        if (isUpToDate(inputsHash)) {
+            getLogger().debug("Merged manifest is up to date.");
+            // the logger injection of the last debug build may have edited the output
+            if (!FileUtils.contentEquals(mMergedFile, mOutputFile)) {
+                FileUtils.copyFile(mMergedFile, mOutputFile);
+            }
+            return;
+        }
+
+        ManifestMerger2.Invoker<?> invoker = ManifestMerger2.newMerger(mMainManifest,
+                getLogger(), ManifestMerger2.MergeType.APPLICATION);
+        for (Map.Entry<SystemProperty, String> override : overrides.entrySet()) {
+            invoker.setOverride(override.getKey(), override.getValue());
+        }
         if (mLibraryManifestFiles != null) {
             invoker.addLibraryManifests(mLibraryManifestFiles);
         }
@@ -120,15 +148,68 @@ public class ManifestMergeTask extends Task<AndroidModule> {
                         XmlFormatStyle.get(document),
                         null,
                         false);
-                FileUtils.writeStringToFile(mOutputFile,
+                FileUtils.writeStringToFile(mMergedFile,
                         contents,
                         Charset.defaultCharset());
+                FileUtils.copyFile(mMergedFile, mOutputFile);
+                writeFingerprint(inputsHash);
             }
         } catch (ManifestMerger2.MergeFailureException e) {
             throw new CompilationFailedException(e);
         }
     }
 
+    /**
+     * Hashes everything the merged manifest depends on. The library manifests are hashed in
+     * order since the order decides which declarations take priority.
+     */
+    private String hashInputs(Map<SystemProperty, String> overrides) throws IOException {
+        Hasher hasher = Hashing.sha256().newHasher();
+        for (Map.Entry<SystemProperty, String> override : overrides.entrySet()) {
+            hasher.putString(override.getKey().name(), StandardCharsets.UTF_8);
+            hasher.putString(override.getValue(), StandardCharsets.UTF_8);
+        }
+        hashFile(hasher, mMainManifest);
+        if (mLibraryManifestFiles != null) {
+            for (File library : mLibraryManifestFiles) {
+                hashFile(hasher, library);
+            }
+        }
+        return hasher.hash().toString();
+    }
+
+    private static void hashFile(Hasher hasher, File file) throws IOException {
+        hasher.putString(file.getAbsolutePath(), StandardCharsets.UTF_8);
+        byte[] contents = Files.readAllBytes(file.toPath());
+        hasher.putInt(contents.length);
+        hasher.putBytes(contents);
+    }
+
+    private static String hashOutput(File output) throws IOException {
+        return Hashing.sha256().hashBytes(Files.readAllBytes(output.toPath())).toString();
+    }
+
+    /**
+     * Returns whether the last merge had the same inputs and its result is still intact. The
+     * result is kept apart from the output since other tasks, such as the logger injection,
+     * rewrite the output in place.
+     */
+    private boolean isUpToDate(String inputsHash) throws IOException {
+        if (!mFingerprintFile.exists() || !mMergedFile.isFile() || mMergedFile.length() == 0) {
+            return false;
+        }
+        List<String> fingerprint = FileUtils.readLines(mFingerprintFile, StandardCharsets.UTF_8);
+        return fingerprint.size() == 2
+                && fingerprint.get(0).equals(inputsHash)
+                && fingerprint.get(1).equals(hashOutput(mMergedFile));
+    }
+
+    private void writeFingerprint(String inputsHash) throws IOException {
+        FileUtils.writeStringToFile(mFingerprintFile,
+                inputsHash + "\n" + hashOutput(mMergedFile),
+                StandardCharsets.UTF_8);
+    }
+
     private String getApplicationId() throws IOException {
         String packageName = getModule().getPackageName();
         if (packageName == null) {
@@ -16,6 +16,7 @@ import com.tyron.viewbinding.tool.store.ResourceBundle
 import com.tyron.viewbinding.tool.util.LoggedErrorException
 import com.tyron.viewbinding.tool.util.RelativizableFile
 import com.tyron.viewbinding.tool.writer.BaseLayoutModel
+import com.tyron.viewbinding.tool.writer.JavaFileWriter
 import com.tyron.viewbinding.tool.writer.toJavaFile
 import com.tyron.viewbinding.tool.writer.toViewBinder
 import org.apache.commons.io.FileUtils
@@ -90,19 +91,8 @@ class GenerateViewBindingTask(
         val resourceBundle = ResourceBundle(module.packageName, true)
         val resDir = module.androidResourcesDirectory
 
-        resDir.walkTopDown().filter {
-            val isXmlFile = it.isFile && it.name.endsWith(".xml")
-            val isLayoutFile = it.parentFile.name == "layout" || it.parentFile.name.startsWith("layout-")
-            val applicable = isXmlFile && isLayoutFile
-
-            applicable
-        }.forEach { file ->
-            val bundle = LayoutFileParser.parseXml(
-                RelativizableFile.fromAbsoluteFile(file),
-                module.packageName,
-                getUpToDateFileContent(module, file),
-                true
-            )
+        resDir.walkTopDown().filter(::isLayoutFile).forEach { file ->
+            val bundle = parseLayout(module, file)
             if (bundle != null) {
                 resourceBundle.addLayoutBundle(bundle, true)
             }
@@ -113,21 +103,7 @@ class GenerateViewBindingTask(
 
     private fun writeClassesToDisk(resourceBundle: ResourceBundle) {
         val writer = GradleFileWriter(outputDirectory.absolutePath)
-
-        val layoutBindings = resourceBundle.allLayoutFileBundlesInSource
-            .groupBy(ResourceBundle.LayoutFileBundle::getFileName)
-
-        layoutBindings.forEach { (_, variations) ->
-            val layoutModel = BaseLayoutModel(variations)
-            val viewBinder = layoutModel.toViewBinder()
-            val javaFile = viewBinder.toJavaFile(
-                // true  -> android.support annotations
-                // false -> androidx annotations
-                // the user must use the newer view binding library (androidx)
-                useLegacyAnnotations = false
-            )
-            writer.writeToFile(javaFile)
-        }
+        writeClasses(resourceBundle, writer)
     }
 
     private fun addToClasspath() {
@@ -142,6 +118,61 @@ class GenerateViewBindingTask(
         const val TAG = "GenerateViewBindingTask"
         const val VIEW_BINDING_GEN_DIR = "view_binding"
 
+        @JvmStatic
+        fun isLayoutFile(file: File): Boolean {
+            val isXmlFile = file.isFile && file.name.endsWith(".xml")
+            val parent = file.parentFile ?: return false
+            val isLayoutFile = parent.name == "layout" || parent.name.startsWith("layout-")
+            return isXmlFile && isLayoutFile
+        }
+
+        /**
+         * Parses a layout file using its contents in the editor if it is opened.
+         *
+         * @return The bundle the binding class is generated from, or null if the layout
+         * does not have a binding class
+         */
+        @JvmStatic
+        fun parseLayout(module: AndroidModule, file: File): ResourceBundle.LayoutFileBundle? {
+            return LayoutFileParser.parseXml(
+                RelativizableFile.fromAbsoluteFile(file),
+                module.packageName,
+                getUpToDateFileContent(module, file),
+                true
+            )
+        }
+
+        /**
+         * Generates the binding classes of the layouts in the resource bundle.
+         *
+         * @param layoutNames the names of the layouts to generate, all of them if null
+         */
+        @JvmStatic
+        @JvmOverloads
+        fun writeClasses(
+            resourceBundle: ResourceBundle,
+            writer: JavaFileWriter,
+            layoutNames: Set<String>? = null
+        ) {
+            val layoutBindings = resourceBundle.allLayoutFileBundlesInSource
+                .groupBy(ResourceBundle.LayoutFileBundle::getFileName)
+
+            layoutBindings.forEach { (name, variations) ->
+                if (layoutNames != null && name !in layoutNames) {
+                    return@forEach
+                }
+                val layoutModel = BaseLayoutModel(variations)
+                val viewBinder = layoutModel.toViewBinder()
+                val javaFile = viewBinder.toJavaFile(
+                    // true  -> android.support annotations
+                    // false -> androidx annotations
+                    // the user must use the newer view binding library (androidx)
+                    useLegacyAnnotations = false
+                )
+                writer.writeToFile(javaFile)
+            }
+        }
+
         private fun getUpToDateFileContent(module: AndroidModule, file: File): String? {
             try {
                 val fileManager = module.fileManager
@@ -58,6 +58,11 @@ public class SourceFileObject extends SimpleJavaFileObject {
 			if (fileContent.isPresent()) {
 				return replaceContents(String.valueOf(fileContent.get()));
 			}
+			// classes injected in memory are never written to the file
+			String injectedContents = mProject.getInjectedClassContents(mFile.toFile());
+			if (injectedContents != null) {
+				return replaceContents(injectedContents);
+			}
 		}
 
 		if (mContents != null) {
@@ -108,6 +113,13 @@ public class SourceFileObject extends SimpleJavaFileObject {
 	@Override
 	public long getLastModified() {
 		if (modified == null) {
+			if (mProject != null) {
+				// the contents come from the opened snapshot, see getCharContent
+				Instant snapshotModified = mProject.getFileManager().getLastModified(mFile.toFile());
+				if (snapshotModified != null) {
+					return snapshotModified.toEpochMilli();
+				}
+			}
 			try {
 				return Files.getLastModifiedTime(mFile).toMillis();
 			} catch (IOException e) {
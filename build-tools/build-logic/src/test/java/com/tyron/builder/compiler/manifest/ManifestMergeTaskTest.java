@@ -0,0 +1,115 @@
+package com.tyron.builder.compiler.manifest;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.tyron.builder.compiler.BuildType;
+import com.tyron.builder.exception.CompilationFailedException;
+import com.tyron.builder.log.ILogger;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.mock.MockFileManager;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class ManifestMergeTaskTest {
+
+    private static final String MANIFEST = "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    package=\"com.example\">\n" +
+            "    <application>\n" +
+            "        <activity android:name=\".MainActivity\" />\n" +
+            "    </application>\n" +
+            "</manifest>\n";
+
+    private static final long OLD_MODIFIED = 1_000_000_000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private Project mProject;
+    private MockAndroidModule mModule;
+    private File mMergedFile;
+    private File mOutputFile;
+
+    @Before
+    public void setup() throws IOException {
+        File root = mFolder.newFolder("app");
+        mProject = new Project(root);
+        mModule = new MockAndroidModule(root, new MockFileManager(root));
+        mModule.setPackageName("com.example");
+        FileUtils.writeStringToFile(mModule.getManifestFile(), MANIFEST, StandardCharsets.UTF_8);
+
+        mMergedFile = new File(mModule.getBuildDirectory(), "intermediate/manifest/AndroidManifest.xml");
+        mOutputFile = new File(mModule.getBuildDirectory(), "bin/AndroidManifest.xml");
+    }
+
+    @Test
+    public void testUnchangedInputsAreNotMergedAgain() throws Exception {
+        merge();
+        String merged = read(mOutputFile);
+        assertThat(merged).contains(".MainActivity");
+        assertThat(mMergedFile.setLastModified(OLD_MODIFIED)).isTrue();
+
+        merge();
+        assertThat(mMergedFile.lastModified()).isEqualTo(OLD_MODIFIED);
+        assertThat(read(mOutputFile)).isEqualTo(merged);
+    }
+
+    @Test
+    public void testChangedManifestIsMergedAgain() throws Exception {
+        merge();
+        assertThat(mMergedFile.setLastModified(OLD_MODIFIED)).isTrue();
+
+        FileUtils.writeStringToFile(mModule.getManifestFile(),
+                MANIFEST.replace(".MainActivity", ".OtherActivity"), StandardCharsets.UTF_8);
+        merge();
+        assertThat(mMergedFile.lastModified()).isNotEqualTo(OLD_MODIFIED);
+        assertThat(read(mOutputFile)).contains(".OtherActivity");
+        assertThat(read(mOutputFile)).doesNotContain(".MainActivity");
+    }
+
+    @Test
+    public void testDeletedMergedManifestIsMergedAgain() throws Exception {
+        merge();
+        String merged = read(mOutputFile);
+
+        assertThat(mMergedFile.delete()).isTrue();
+        merge();
+        assertThat(mMergedFile.exists()).isTrue();
+        assertThat(read(mMergedFile)).isEqualTo(merged);
+        assertThat(read(mOutputFile)).isEqualTo(merged);
+    }
+
+    @Test
+    public void testDeletedOrEditedOutputIsRestored() throws Exception {
+        merge();
+        String merged = read(mOutputFile);
+
+        assertThat(mOutputFile.delete()).isTrue();
+        merge();
+        assertThat(read(mOutputFile)).isEqualTo(merged);
+
+        // the logger injection of a debug build edits the output in place
+        FileUtils.writeStringToFile(mOutputFile, merged.replace("<application", "<application android:name=\"Injected\""),
+                StandardCharsets.UTF_8);
+        merge();
+        assertThat(read(mOutputFile)).isEqualTo(merged);
+    }
+
+    private void merge() throws IOException, CompilationFailedException {
+        ManifestMergeTask task = new ManifestMergeTask(mProject, mModule, ILogger.EMPTY);
+        task.prepare(BuildType.DEBUG);
+        task.run();
+    }
+
+    private static String read(File file) throws IOException {
+        return FileUtils.readFileToString(file, StandardCharsets.UTF_8);
+    }
+}
@@ -55,6 +55,7 @@ public class DefaultExecutionHistoryStore implements ExecutionHistoryStore {
         CacheDecorator inMemoryCacheDecorator = inMemoryCacheDecoratorFactory.decorator(10000, false);
         this.store = cache.get().createCache(
                 PersistentIndexedCacheParameters.of("executionHistory", String.class, serializer)
+                        .withMemoryMapping()
                         .withCacheDecorator(inMemoryCacheDecorator)
         );
     }
@@ -2,10 +2,20 @@ package org.gradle.api.internal.tasks.compile;
 
 import org.gradle.api.internal.tasks.compile.incremental.compilerapi.constants.ConstantsAnalysisResult;
 
+import javax.annotation.Nullable;
 import javax.tools.JavaCompiler;
 import java.util.Map;
 import java.util.Set;
 
 public interface IncrementalCompilationAwareJavaCompiler extends JavaCompiler {
     JavaCompiler.CompilationTask makeIncremental(JavaCompiler.CompilationTask task, Map<String, Set<String>> sourceToClassMapping, ConstantsAnalysisResult constantsAnalysisResult, CompilationSourceDirs compilationSourceDirs);
+
+    /**
+     * @return The pool of file managers that can be used with this compiler, or null if
+     * every compilation should use a new file manager
+     */
+    @Nullable
+    default JavaFileManagerPool getFileManagerPool() {
+        return null;
+    }
 }
@@ -0,0 +1,196 @@
+package org.gradle.api.internal.tasks.compile;
+
+import org.gradle.internal.concurrent.CompositeStoppable;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+
+/**
+ * Keeps the standard file managers of a compiler open between compilations.
+ *
+ * A file manager opens and indexes every jar of the class path and the boot class path the
+ * first time it is searched, which dominates the time taken to compile a few changed
+ * sources. A file manager is only handed out again for a compilation with the same options,
+ * since javac sets its locations from the options, and only if none of the jars it may have
+ * opened were modified since it was last used. Directories are listed by javac on every
+ * search so they are not fingerprinted.
+ *
+ * A file manager is not thread safe, it is removed from the pool while it is in use.
+ */
+public class JavaFileManagerPool {
+
+    /**
+     * Number of idle file managers that are kept open, each holds the indexes of its jars
+     */
+    private static final int MAX_IDLE = 4;
+
+    private final Map<Key, Entry> idle = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+            if (size() > MAX_IDLE) {
+                eldest.getValue().close();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    /**
+     * Returns an open file manager for a compilation, the returned lease must be closed once
+     * the compilation has finished to return the file manager to the pool.
+     *
+     * @param options the compiler options of the compilation, including its class paths
+     * @param jars    the files on the class paths, boot class path and processor path
+     */
+    public Lease acquire(JavaCompiler compiler, Charset charset, List<String> options, Collection<File> jars) {
+        Key key = new Key(charset, options);
+        Map<File, Fingerprint> fingerprints = fingerprint(jars);
+
+        Entry entry;
+        synchronized (this) {
+            entry = idle.remove(key);
+        }
+        if (entry != null && !entry.fingerprints.equals(fingerprints)) {
+            entry.close();
+            entry = null;
+        }
+        if (entry == null) {
+            entry = new Entry(compiler.getStandardFileManager(null, null, charset), fingerprints);
+        }
+        return new Lease(key, entry);
+    }
+
+    private synchronized void release(Key key, Entry entry) {
+        Entry previous = idle.put(key, entry);
+        if (previous != null && previous != entry) {
+            // two compilations with the same options ran at the same time
+            previous.close();
+        }
+    }
+
+    private static Map<File, Fingerprint> fingerprint(Collection<File> jars) {
+        Map<File, Fingerprint> fingerprints = new HashMap<>();
+        for (File jar : jars) {
+            if (jar.isFile()) {
+                fingerprints.put(jar, new Fingerprint(jar.length(), jar.lastModified()));
+            }
+        }
+        return fingerprints;
+    }
+
+    public class Lease implements Closeable {
+        private final Key key;
+        private final Entry entry;
+        private boolean discard;
+
+        private Lease(Key key, Entry entry) {
+            this.key = key;
+            this.entry = entry;
+        }
+
+        public StandardJavaFileManager getFileManager() {
+            return entry.fileManager;
+        }
+
+        /**
+         * The file manager is closed instead of being returned to the pool
+         */
+        public void discard() {
+            discard = true;
+        }
+
+        @Override
+        public void close() {
+            if (discard) {
+                entry.close();
+                return;
+            }
+            try {
+                entry.fileManager.flush();
+            } catch (Exception e) {
+                entry.close();
+                return;
+            }
+            release(key, entry);
+        }
+    }
+
+    private static class Entry {
+        private final StandardJavaFileManager fileManager;
+        private final Map<File, Fingerprint> fingerprints;
+
+        private Entry(StandardJavaFileManager fileManager, Map<File, Fingerprint> fingerprints) {
+            this.fileManager = fileManager;
+            this.fingerprints = fingerprints;
+        }
+
+        private void close() {
+            CompositeStoppable.stoppable(fileManager).stop();
+        }
+    }
+
+    private static class Key {
+        private final Charset charset;
+        private final List<String> options;
+
+        private Key(Charset charset, List<String> options) {
+            this.charset = charset;
+            this.options = new ArrayList<>(options);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Key key = (Key) o;
+            return Objects.equals(charset, key.charset) && options.equals(key.options);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(charset, options);
+        }
+    }
+
+    private static class Fingerprint {
+        private final long length;
+        private final long lastModified;
+
+        private Fingerprint(long length, long lastModified) {
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) o;
+            return length == that.length && lastModified == that.lastModified;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(length, lastModified);
+        }
+    }
+}
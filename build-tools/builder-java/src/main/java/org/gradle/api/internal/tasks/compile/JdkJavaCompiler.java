@@ -11,8 +11,11 @@ import org.gradle.language.base.internal.compile.Compiler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
+import java.io.File;
 import java.io.Serializable;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
@@ -51,7 +54,22 @@ public class JdkJavaCompiler implements Compiler<JavaCompileSpec>, Serializable
         JavaCompiler compiler = javaHomeBasedJavaCompilerFactory.create();
         MinimalJavaCompileOptions compileOptions = spec.getCompileOptions();
         Charset charset = compileOptions.getEncoding() != null ? Charset.forName(compileOptions.getEncoding()) : null;
-        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, charset);
+
+        // reuse a file manager that already has the jars of the class path opened if possible
+        JavaFileManagerPool pool = compiler instanceof IncrementalCompilationAwareJavaCompiler
+                ? ((IncrementalCompilationAwareJavaCompiler) compiler).getFileManagerPool()
+                : null;
+        StandardJavaFileManager standardFileManager;
+        Closeable fileManagerCloseable;
+        if (pool != null) {
+            JavaFileManagerPool.Lease lease = pool.acquire(compiler, charset, options, getClasspathFiles(spec));
+            standardFileManager = lease.getFileManager();
+            fileManagerCloseable = lease;
+        } else {
+            standardFileManager = compiler.getStandardFileManager(null, null, charset);
+            fileManagerCloseable = standardFileManager;
+        }
+
         Iterable<? extends JavaFileObject> compilationUnits = standardFileManager.getJavaFileObjectsFromFiles(spec.getSourceFiles());
         boolean hasEmptySourcepaths = JavaVersion.current().isJava9Compatible() && emptySourcepathIn(options);
         JavaFileManager fileManager = GradleStandardJavaFileManager
@@ -63,10 +81,26 @@ public class JdkJavaCompiler implements Compiler<JavaCompileSpec>, Serializable
         }
         Set<AnnotationProcessorDeclaration> annotationProcessors = spec.getEffectiveAnnotationProcessors();
         task = new AnnotationProcessingCompileTask(task, annotationProcessors, spec.getAnnotationProcessorPath(), result.getAnnotationProcessingResult());
-        task = new ResourceCleaningCompilationTask(task, fileManager);
+        task = new ResourceCleaningCompilationTask(task, fileManagerCloseable);
         return task;
     }
 
+    /**
+     * The files that the file manager may open during the compilation
+     */
+    private static List<File> getClasspathFiles(JavaCompileSpec spec) {
+        List<File> files = new ArrayList<>(spec.getCompileClasspath());
+        files.addAll(spec.getModulePath());
+        files.addAll(spec.getAnnotationProcessorPath());
+        String bootClasspath = spec.getCompileOptions().getBootClasspath();
+        if (bootClasspath != null && !bootClasspath.isEmpty()) {
+            for (String path : bootClasspath.split(File.pathSeparator)) {
+                files.add(new File(path));
+            }
+        }
+        return files;
+    }
+
     private static boolean emptySourcepathIn(List<String> options) {
         Iterator<String> optionsIter = options.iterator();
         while (optionsIter.hasNext()) {
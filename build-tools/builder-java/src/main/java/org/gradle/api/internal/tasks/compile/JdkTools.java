@@ -50,6 +50,10 @@ public class JdkTools {
 
     private Class<JavaCompiler.CompilationTask> incrementalCompileTaskClass;
 
+    // file managers are bound to the javac classes of the isolated loader, so they are
+    // shared by the compilers of this instance only
+    private final JavaFileManagerPool fileManagerPool = new JavaFileManagerPool();
+
     JdkTools(Jvm jvm, List<File> compilerPlugins) {
         DefaultClassLoaderFactory defaultClassLoaderFactory = new DefaultClassLoaderFactory();
         JavaVersion javaVersion = jvm.getJavaVersion();
@@ -162,6 +166,11 @@ public class JdkTools {
                 (BiConsumer<String, String>) constantsAnalysisResult::addPrivateDependent
             );
         }
+
+        @Override
+        public JavaFileManagerPool getFileManagerPool() {
+            return fileManagerPool;
+        }
     }
 
     private void ensureCompilerTask() {
@@ -43,7 +43,10 @@ class ResourceCleaningCompilationTask implements JavaCompiler.CompilationTask {
             return delegate.call();
         } finally {
             CompositeStoppable.stoppable(fileManager).stop();
-            cleanupZipCache();
+            // a pooled file manager is still using the archives in the cache
+            if (!(fileManager instanceof JavaFileManagerPool.Lease)) {
+                cleanupZipCache();
+            }
         }
     }
 
@@ -22,7 +22,7 @@ import org.gradle.api.internal.tasks.compile.processing.AnnotationProcessorDecla
 import org.gradle.api.tasks.WorkResult;
 import org.gradle.language.base.internal.compile.Compiler;
 
-
+import javax.annotation.Nullable;
 import java.io.File;
 import java.util.Collections;
 import java.util.HashMap;
@@ -57,7 +57,14 @@ class IncrementalResultStoringCompiler<T extends JavaCompileSpec> implements Com
     }
 
     private void storeResult(JavaCompileSpec spec, WorkResult result) {
-        ClassSetAnalysisData outputSnapshot = classpathSnapshotter.analyzeOutputFolder(spec.getDestinationDir());
+        ClassSetAnalysisData outputSnapshot;
+        if (result instanceof IncrementalCompilationResult) {
+            IncrementalCompilationResult incrementalResult = (IncrementalCompilationResult) result;
+            ClassSetAnalysisData previousOutputSnapshot = incrementalResult.getPreviousCompilationData().getOutputSnapshot();
+            outputSnapshot = classpathSnapshotter.analyzeOutputFolder(spec.getDestinationDir(), previousOutputSnapshot, getCompiledClasses(spec, incrementalResult));
+        } else {
+            outputSnapshot = classpathSnapshotter.analyzeOutputFolder(spec.getDestinationDir());
+        }
         ClassSetAnalysisData classpathSnapshot = classpathSnapshotter.getClasspathSnapshot(Iterables.concat(spec.getCompileClasspath(), spec.getModulePath()));
         AnnotationProcessingData annotationProcessingData = getAnnotationProcessingData(spec, result);
         CompilerApiData compilerApiData = getCompilerApiData(spec, result);
@@ -67,6 +74,22 @@ class IncrementalResultStoringCompiler<T extends JavaCompileSpec> implements Com
         previousCompilationAccess.writePreviousCompilationData(data, previousCompilationDataFile);
     }
 
+    /**
+     * Returns the classes whose class files may have been deleted or written by the incremental compilation, or null if that is not known.
+     * It is not known when annotation processors ran, since they can generate classes anywhere.
+     */
+    @Nullable
+    private static Set<String> getCompiledClasses(JavaCompileSpec spec, IncrementalCompilationResult result) {
+        if (!spec.getEffectiveAnnotationProcessors().isEmpty() || !(result.getCompilerResult() instanceof ApiCompilerResult)) {
+            return null;
+        }
+        Set<String> compiledClasses = new HashSet<>(result.getRecompilationSpec().getClassesToCompile());
+        for (Set<String> sourceClasses : ((ApiCompilerResult) result.getCompilerResult()).getSourceClassesMapping().values()) {
+            compiledClasses.addAll(sourceClasses);
+        }
+        return compiledClasses;
+    }
+
     private CompilerApiData getCompilerApiData(JavaCompileSpec spec, WorkResult result) {
         if (spec.getCompileOptions().supportsCompilerApi()) {
             CompilerApiData previousCompilerApiData = null;
@@ -64,7 +64,14 @@ class SelectiveCompiler<T extends JavaCompileSpec> implements Compiler<T> {
         Timer clock = Time.startTimer();
         CurrentCompilation currentCompilation = new CurrentCompilation(spec, classpathSnapshotter);
 
-        PreviousCompilationData previousCompilationData = previousCompilationAccess.readPreviousCompilationData(previousCompilationDataFile);
+        PreviousCompilationData previousCompilationData;
+        try {
+            previousCompilationData = previousCompilationAccess.readPreviousCompilationData(previousCompilationDataFile);
+        } catch (IllegalStateException e) {
+            LOG.info("Full recompilation is required because the previous compilation result could not be read.");
+            LOG.debug("Could not read previous compilation result", e);
+            return rebuildAllCompiler.execute(spec);
+        }
         PreviousCompilation previousCompilation = new PreviousCompilation(previousCompilationData);
         RecompilationSpec recompilationSpec = recompilationSpecProvider.provideRecompilationSpec(currentCompilation, previousCompilation);
 
@@ -33,14 +33,16 @@ public class UserHomeScopedCompileCaches implements GeneralCompileCaches, Closea
                 "jarAnalysis",
                 new HashCodeSerializer(),
                 new ClassSetAnalysisData.Serializer(() -> new HierarchicalNameSerializer(interner))
-        ).withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(20000, true));
+        ).withMemoryMapping()
+                .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(20000, true));
         this.classpathEntrySnapshotCache = new MinimalPersistentCache<>(cache.createCache(jarCacheParameters));
 
         PersistentIndexedCacheParameters<HashCode, ClassAnalysis> classCacheParameters = PersistentIndexedCacheParameters.of(
                 "classAnalysis",
                 new HashCodeSerializer(),
                 new ClassAnalysis.Serializer(interner)
-        ).withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(400000, true));
+        ).withMemoryMapping()
+                .withCacheDecorator(inMemoryCacheDecoratorFactory.decorator(400000, true));
         this.classAnalysisCache = new MinimalPersistentCache<>(cache.createCache(classCacheParameters));
     }
 
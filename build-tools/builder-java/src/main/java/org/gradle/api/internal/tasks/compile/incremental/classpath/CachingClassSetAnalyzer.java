@@ -5,7 +5,9 @@ import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisDa
 import org.gradle.cache.Cache;
 import org.gradle.internal.vfs.FileSystemAccess;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Collection;
 
 public class CachingClassSetAnalyzer implements ClassSetAnalyzer {
 
@@ -33,5 +35,10 @@ public class CachingClassSetAnalyzer implements ClassSetAnalyzer {
     public ClassSetAnalysisData analyzeOutputFolder(File outputFolder) {
         return delegate.analyzeOutputFolder(outputFolder);
     }
+
+    @Override
+    public ClassSetAnalysisData updateOutputFolderAnalysis(File outputFolder, ClassSetAnalysisData previous, @Nullable Collection<String> compiledClasses) {
+        return delegate.updateOutputFolderAnalysis(outputFolder, previous, compiledClasses);
+    }
 }
 
@@ -2,10 +2,19 @@ package org.gradle.api.internal.tasks.compile.incremental.classpath;
 
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
 
+import javax.annotation.Nullable;
 import java.io.File;
+import java.util.Collection;
 
 public interface ClassSetAnalyzer {
     ClassSetAnalysisData analyzeClasspathEntry(File classpathEntry);
     ClassSetAnalysisData analyzeOutputFolder(File outputFolder);
+
+    /**
+     * Analyzes the output folder of a compilation, reusing the analysis of the previous compilation for the classes that did not change.
+     *
+     * @param compiledClasses the top level classes whose class files the compilation may have written or deleted, or null if any class file may have changed
+     */
+    ClassSetAnalysisData updateOutputFolderAnalysis(File outputFolder, ClassSetAnalysisData previous, @Nullable Collection<String> compiledClasses);
 }
 
@@ -11,14 +11,23 @@ import org.gradle.api.internal.tasks.compile.incremental.analyzer.ClassDependenc
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassAnalysis;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassDependentsAccumulator;
 import org.gradle.api.internal.tasks.compile.incremental.deps.ClassSetAnalysisData;
+import org.gradle.api.tasks.util.PatternSet;
 
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 public class DefaultClassSetAnalyzer implements ClassSetAnalyzer {
     private static final Logger LOGGER = LoggerFactory.getLogger(DefaultClassSetAnalyzer.class);
@@ -44,8 +53,73 @@ public class DefaultClassSetAnalyzer implements ClassSetAnalyzer {
         return analyze(outputFolder, false);
     }
 
+    @Override
+    public ClassSetAnalysisData updateOutputFolderAnalysis(File outputFolder, ClassSetAnalysisData previous, @Nullable Collection<String> compiledClasses) {
+        if (!previous.isUpdatable() || !outputFolder.isDirectory()) {
+            return analyzeOutputFolder(outputFolder);
+        }
+        try {
+            ChangedClassesVisitor visitor = new ChangedClassesVisitor(previous);
+            Set<String> removedClasses;
+            if (compiledClasses == null) {
+                fileOperations.fileTree(outputFolder).visit(visitor);
+                removedClasses = new HashSet<>(previous.getClassNames());
+            } else {
+                if (!compiledClasses.isEmpty()) {
+                    fileOperations.fileTree(outputFolder).matching(classFilesOf(compiledClasses)).visit(visitor);
+                }
+                removedClasses = previousClassesOf(compiledClasses, previous);
+            }
+            removedClasses.removeAll(visitor.seenClasses);
+            ClassSetAnalysisData updated = previous.update(removedClasses, visitor.changedClasses, visitor.changedClassHashes);
+            if (updated != null) {
+                LOGGER.debug("Updated the class analysis of {} for {} changed and {} removed classes", outputFolder, visitor.changedClasses.size(), removedClasses.size());
+                return updated;
+            }
+        } catch (Exception e) {
+            if (LOGGER.isDebugEnabled()) {
+                LOGGER.debug("Could not update the class analysis of " + outputFolder + ", analyzing all classes", e);
+            }
+        }
+        return analyzeOutputFolder(outputFolder);
+    }
+
+    /**
+     * Matches the class files of the given classes and of the classes nested in them.
+     */
+    private PatternSet classFilesOf(Collection<String> classes) {
+        PatternSet classFiles = fileOperations.patternSet();
+        for (String className : classes) {
+            String path = className.replace('.', '/');
+            classFiles.include(path + ".class", path + "$*.class");
+        }
+        return classFiles;
+    }
+
+    /**
+     * Returns the classes of the previous analysis that are one of the given classes or nested in one of them.
+     */
+    private static Set<String> previousClassesOf(Collection<String> classes, ClassSetAnalysisData previous) {
+        Set<String> topLevelClasses = classes instanceof Set ? (Set<String>) classes : new HashSet<>(classes);
+        Set<String> previousClasses = new HashSet<>();
+        for (String className : previous.getClassNames()) {
+            int nestingSeparator = className.indexOf('$');
+            while (true) {
+                if (topLevelClasses.contains(nestingSeparator == -1 ? className : className.substring(0, nestingSeparator))) {
+                    previousClasses.add(className);
+                    break;
+                }
+                if (nestingSeparator == -1) {
+                    break;
+                }
+                nestingSeparator = className.indexOf('$', nestingSeparator + 1);
+            }
+        }
+        return previousClasses;
+    }
+
     private ClassSetAnalysisData analyze(File classSet, boolean abiOnly) {
-        final ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
+        final ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator(!abiOnly);
         try {
             visit(classSet, accumulator, abiOnly);
         } catch (Exception e) {
@@ -110,6 +184,42 @@ public class DefaultClassSetAnalyzer implements ClassSetAnalyzer {
         protected abstract HashCode getHashCode(FileVisitDetails fileDetails);
     }
 
+    /**
+     * Analyzes only the classes of an output folder whose hash differs from the previous analysis.
+     */
+    private class ChangedClassesVisitor implements FileVisitor {
+        private final ClassSetAnalysisData previous;
+        private final Set<String> seenClasses = new HashSet<>();
+        private final List<ClassAnalysis> changedClasses = new ArrayList<>();
+        private final Map<String, HashCode> changedClassHashes = new HashMap<>();
+
+        ChangedClassesVisitor(ClassSetAnalysisData previous) {
+            this.previous = previous;
+        }
+
+        @Override
+        public void visitDir(FileVisitDetails dirDetails) {
+        }
+
+        @Override
+        public void visitFile(FileVisitDetails fileDetails) {
+            String path = fileDetails.getRelativePath().getPathString();
+            if (!path.endsWith(".class")) {
+                return;
+            }
+            String className = path.substring(0, path.length() - ".class".length()).replace('/', '.');
+            HashCode classFileHash = fileHasher.hash(fileDetails.getFile(), fileDetails.getSize(), fileDetails.getLastModified());
+            if (classFileHash.equals(previous.getClassHash(className))) {
+                seenClasses.add(className);
+                return;
+            }
+            ClassAnalysis analysis = analyzer.getClassAnalysis(classFileHash, fileDetails);
+            seenClasses.add(analysis.getClassName());
+            changedClasses.add(analysis);
+            changedClassHashes.put(analysis.getClassName(), classFileHash);
+        }
+    }
+
     private class JarEntryVisitor extends EntryVisitor {
 
         public JarEntryVisitor(ClassDependentsAccumulator accumulator, boolean abiOnly) {
@@ -20,8 +20,20 @@ public class ClassDependentsAccumulator {
     private final Map<String, Set<String>> accessibleDependents = new HashMap<>();
     private final ImmutableMap.Builder<String, IntSet> classesToConstants = ImmutableMap.builder();
     private final Map<String, HashCode> seenClasses = new HashMap<>();
+    private final Map<String, Set<String>> classDependencies;
     private String fullRebuildCause;
 
+    public ClassDependentsAccumulator() {
+        this(false);
+    }
+
+    /**
+     * @param recordDependencies whether to also keep the dependencies of each class, so that the resulting class set can be updated incrementally
+     */
+    public ClassDependentsAccumulator(boolean recordDependencies) {
+        this.classDependencies = recordDependencies ? new HashMap<>() : null;
+    }
+
     public void addClass(ClassAnalysis classAnalysis, HashCode hashCode) {
         addClass(classAnalysis.getClassName(), hashCode, classAnalysis.getDependencyToAllReason(), classAnalysis.getPrivateClassDependencies(), classAnalysis.getAccessibleClassDependencies(), classAnalysis.getConstants());
     }
@@ -41,16 +53,26 @@ public class ClassDependentsAccumulator {
             privateDependents.remove(className);
             accessibleDependents.remove(className);
         }
+        Set<String> dependencies = classDependencies == null ? null : new HashSet<>();
         for (String dependency : privateClassDependencies) {
             if (!dependency.equals(className) && !dependenciesToAll.containsKey(dependency)) {
                 addDependency(privateDependents, dependency, className);
+                if (dependencies != null) {
+                    dependencies.add(dependency);
+                }
             }
         }
         for (String dependency : accessibleClassDependencies) {
             if (!dependency.equals(className) && !dependenciesToAll.containsKey(dependency)) {
                 addDependency(accessibleDependents, dependency, className);
+                if (dependencies != null) {
+                    dependencies.add(dependency);
+                }
             }
         }
+        if (dependencies != null && !dependencies.isEmpty()) {
+            classDependencies.put(className, dependencies);
+        }
     }
 
     private Set<String> rememberClass(Map<String, Set<String>> dependents, String className) {
@@ -102,7 +124,8 @@ public class ClassDependentsAccumulator {
 
     public ClassSetAnalysisData getAnalysis() {
         if (fullRebuildCause == null) {
-            return new ClassSetAnalysisData(ImmutableMap.copyOf(seenClasses), getDependentsMap(), getClassesToConstants(), null);
+            ClassSetAnalysisData analysis = new ClassSetAnalysisData(ImmutableMap.copyOf(seenClasses), getDependentsMap(), getClassesToConstants(), null);
+            return classDependencies == null ? analysis : analysis.withClassDependencies(classDependencies);
         } else {
             return new ClassSetAnalysisData(ImmutableMap.of(), ImmutableMap.of(), ImmutableMap.of(), fullRebuildCause);
         }
@@ -19,7 +19,9 @@ import org.gradle.api.internal.tasks.compile.incremental.compilerapi.deps.Depend
 import org.gradle.api.internal.tasks.compile.incremental.serialization.HierarchicalNameSerializer;
 import org.gradle.internal.serialize.IntSetSerializer;
 
+import javax.annotation.Nullable;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Deque;
@@ -39,6 +41,8 @@ import it.unimi.dsi.fastutil.ints.IntSets;
  * Contains a reverse dependency view, so we can determine which classes in this set are affected by a change to a class inside or outside this set.
  * Contains information about the accessible, inlineable constants in each class, since these require full recompilation of dependents if changed.
  * If analysis failed for any reason, that reason is captured and triggers full rebuilds if this class set is used.
+ * The class set of a compilation output also contains the forward dependency view, so it can be updated for the classes that changed without
+ * analyzing the other classes again, see {@link #update(Collection, Collection, Map)}.
  *
  * @see ClassSetAnalysis for the logic that calculates transitive dependencies.
  */
@@ -84,16 +88,143 @@ public class ClassSetAnalysisData {
     private final Map<String, DependentsSet> dependents;
     private final Map<String, IntSet> classesToConstants;
     private final String fullRebuildCause;
+    @Nullable
+    private final Map<String, Set<String>> classDependencies;
 
     public ClassSetAnalysisData() {
         this(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap(), null);
     }
 
     public ClassSetAnalysisData(Map<String, HashCode> classHashes, Map<String, DependentsSet> dependents, Map<String, IntSet> classesToConstants, String fullRebuildCause) {
+        this(classHashes, dependents, classesToConstants, fullRebuildCause, null);
+    }
+
+    private ClassSetAnalysisData(Map<String, HashCode> classHashes, Map<String, DependentsSet> dependents, Map<String, IntSet> classesToConstants, String fullRebuildCause, @Nullable Map<String, Set<String>> classDependencies) {
         this.classHashes = classHashes;
         this.dependents = dependents;
         this.classesToConstants = classesToConstants;
         this.fullRebuildCause = fullRebuildCause;
+        this.classDependencies = classDependencies;
+    }
+
+    /**
+     * Returns a copy of this class set that also knows which classes each class depends on. This is the forward view of {@link #dependents},
+     * not counting the dependencies to classes that are a dependency to all others.
+     */
+    public ClassSetAnalysisData withClassDependencies(Map<String, ? extends Set<String>> classDependencies) {
+        ImmutableMap.Builder<String, Set<String>> builder = ImmutableMap.builderWithExpectedSize(classDependencies.size());
+        for (Map.Entry<String, ? extends Set<String>> entry : classDependencies.entrySet()) {
+            builder.put(entry.getKey(), ImmutableSet.copyOf(entry.getValue()));
+        }
+        return new ClassSetAnalysisData(classHashes, dependents, classesToConstants, fullRebuildCause, builder.build());
+    }
+
+    /**
+     * Whether this class set can be {@link #update(Collection, Collection, Map) updated} instead of being analyzed again.
+     */
+    public boolean isUpdatable() {
+        return classDependencies != null && fullRebuildCause == null;
+    }
+
+    @Nullable
+    public HashCode getClassHash(String className) {
+        return classHashes.get(className);
+    }
+
+    public Set<String> getClassNames() {
+        return classHashes.keySet();
+    }
+
+    /**
+     * Returns this class set with the given classes removed and the given classes added or replaced. Only the entries of the classes
+     * involved and of their dependencies are touched, the others are shared with this class set, so this takes time proportional to the
+     * change rather than to the size of the class set.
+     *
+     * Returns null if this class set is not {@link #isUpdatable() updatable} or if a class involved is a dependency to all others,
+     * since the dependents of such a class are not tracked. The class set then has to be analyzed from scratch.
+     */
+    @Nullable
+    public ClassSetAnalysisData update(Collection<String> removedClasses, Collection<ClassAnalysis> addedClasses, Map<String, HashCode> addedClassHashes) {
+        if (!isUpdatable()) {
+            return null;
+        }
+        List<String> outdatedClasses = new ArrayList<>(removedClasses);
+        for (ClassAnalysis added : addedClasses) {
+            if (added.getDependencyToAllReason() != null) {
+                return null;
+            }
+            outdatedClasses.add(added.getClassName());
+        }
+        for (String outdated : outdatedClasses) {
+            if (isDependencyToAll(outdated)) {
+                return null;
+            }
+        }
+
+        Map<String, HashCode> classHashes = OverlayMap.on(this.classHashes);
+        Map<String, IntSet> classesToConstants = OverlayMap.on(this.classesToConstants);
+        Map<String, Set<String>> classDependencies = OverlayMap.on(this.classDependencies);
+        Map<String, MutableDependents> changedDependents = new HashMap<>();
+
+        for (String outdated : outdatedClasses) {
+            classHashes.remove(outdated);
+            classesToConstants.remove(outdated);
+            Set<String> dependencies = classDependencies.remove(outdated);
+            if (dependencies != null) {
+                for (String dependency : dependencies) {
+                    if (!isDependencyToAll(dependency)) {
+                        changedDependents.computeIfAbsent(dependency, this::mutableDependents).remove(outdated);
+                    }
+                }
+            }
+        }
+
+        for (ClassAnalysis added : addedClasses) {
+            String className = added.getClassName();
+            classHashes.put(className, addedClassHashes.get(className));
+            if (!added.getConstants().isEmpty()) {
+                classesToConstants.put(className, added.getConstants());
+            }
+            ImmutableSet.Builder<String> dependencies = ImmutableSet.builder();
+            for (String dependency : added.getPrivateClassDependencies()) {
+                if (!dependency.equals(className) && !isDependencyToAll(dependency)) {
+                    changedDependents.computeIfAbsent(dependency, this::mutableDependents).privateDependents.add(className);
+                    dependencies.add(dependency);
+                }
+            }
+            for (String dependency : added.getAccessibleClassDependencies()) {
+                if (!dependency.equals(className) && !isDependencyToAll(dependency)) {
+                    changedDependents.computeIfAbsent(dependency, this::mutableDependents).accessibleDependents.add(className);
+                    dependencies.add(dependency);
+                }
+            }
+            Set<String> builtDependencies = dependencies.build();
+            if (!builtDependencies.isEmpty()) {
+                classDependencies.put(className, builtDependencies);
+            }
+        }
+
+        Map<String, DependentsSet> dependents = OverlayMap.on(this.dependents);
+        for (Map.Entry<String, MutableDependents> entry : changedDependents.entrySet()) {
+            MutableDependents changed = entry.getValue();
+            if (changed.privateDependents.isEmpty() && changed.accessibleDependents.isEmpty()) {
+                dependents.remove(entry.getKey());
+            } else {
+                dependents.put(entry.getKey(), DependentsSet.dependentClasses(changed.privateDependents, changed.accessibleDependents));
+            }
+        }
+
+        return new ClassSetAnalysisData(classHashes, dependents, classesToConstants, null, classDependencies);
+    }
+
+    private boolean isDependencyToAll(String className) {
+        DependentsSet dependentsSet = dependents.get(className);
+        return dependentsSet != null && dependentsSet.isDependencyToAll();
+    }
+
+    private MutableDependents mutableDependents(String className) {
+        DependentsSet dependentsSet = dependents.get(className);
+        return dependentsSet == null ? new MutableDependents() : new MutableDependents(dependentsSet);
     }
 
     /**
@@ -260,6 +391,26 @@ public class ClassSetAnalysisData {
         return integers;
     }
 
+    private static class MutableDependents {
+        private final Set<String> privateDependents;
+        private final Set<String> accessibleDependents;
+
+        MutableDependents() {
+            this.privateDependents = new HashSet<>();
+            this.accessibleDependents = new HashSet<>();
+        }
+
+        MutableDependents(DependentsSet dependentsSet) {
+            this.privateDependents = new HashSet<>(dependentsSet.getPrivateDependentClasses());
+            this.accessibleDependents = new HashSet<>(dependentsSet.getAccessibleDependentClasses());
+        }
+
+        void remove(String className) {
+            privateDependents.remove(className);
+            accessibleDependents.remove(className);
+        }
+    }
+
     public static class Serializer extends AbstractSerializer<ClassSetAnalysisData> {
 
         private final Supplier<HierarchicalNameSerializer> classNameSerializerSupplier;
@@ -325,5 +476,44 @@ public class ClassSetAnalysisData {
             }
             encoder.writeNullableString(value.fullRebuildCause);
         }
+
+        /**
+         * Reads the class dependencies written by {@link #writeClassDependencies(Encoder, ClassSetAnalysisData)} into the given class set.
+         * They are kept out of {@link #read(Decoder)} since only the output of a compilation needs them.
+         */
+        public ClassSetAnalysisData readClassDependencies(Decoder decoder, ClassSetAnalysisData value) throws Exception {
+            if (!decoder.readBoolean()) {
+                return value;
+            }
+            HierarchicalNameSerializer hierarchicalNameSerializer = classNameSerializerSupplier.get();
+            int count = decoder.readSmallInt();
+            Map<String, Set<String>> classDependencies = new HashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                String className = hierarchicalNameSerializer.read(decoder);
+                int dependencyCount = decoder.readSmallInt();
+                Set<String> dependencies = new HashSet<>(dependencyCount);
+                for (int j = 0; j < dependencyCount; j++) {
+                    dependencies.add(hierarchicalNameSerializer.read(decoder));
+                }
+                classDependencies.put(className, dependencies);
+            }
+            return value.withClassDependencies(classDependencies);
+        }
+
+        public void writeClassDependencies(Encoder encoder, ClassSetAnalysisData value) throws Exception {
+            encoder.writeBoolean(value.classDependencies != null);
+            if (value.classDependencies == null) {
+                return;
+            }
+            HierarchicalNameSerializer hierarchicalNameSerializer = classNameSerializerSupplier.get();
+            encoder.writeSmallInt(value.classDependencies.size());
+            for (Map.Entry<String, Set<String>> entry : value.classDependencies.entrySet()) {
+                hierarchicalNameSerializer.write(encoder, entry.getKey());
+                encoder.writeSmallInt(entry.getValue().size());
+                for (String dependency : entry.getValue()) {
+                    hierarchicalNameSerializer.write(encoder, dependency);
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,114 @@
+package org.gradle.api.internal.tasks.compile.incremental.deps;
+
+import com.google.common.collect.Iterators;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * A map that shares the entries of a base map and only stores the entries that differ from it. This allows updating a large map in
+ * time proportional to the change. The base map must not change while this map is in use.
+ *
+ * Overlaying an overlay map copies its changes on top of the same base map, so lookups never go through more than one level.
+ */
+class OverlayMap<K, V> extends AbstractMap<K, V> {
+    private final Map<K, V> base;
+    private final Map<K, V> changed;
+    private final Set<K> removed;
+    private int size;
+
+    static <K, V> OverlayMap<K, V> on(Map<K, V> map) {
+        if (map instanceof OverlayMap) {
+            OverlayMap<K, V> overlay = (OverlayMap<K, V>) map;
+            return new OverlayMap<>(overlay.base, new HashMap<>(overlay.changed), new HashSet<>(overlay.removed), overlay.size);
+        }
+        return new OverlayMap<>(map, new HashMap<>(), new HashSet<>(), map.size());
+    }
+
+    private OverlayMap(Map<K, V> base, Map<K, V> changed, Set<K> removed, int size) {
+        this.base = base;
+        this.changed = changed;
+        this.removed = removed;
+        this.size = size;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    @SuppressWarnings("SuspiciousMethodCalls")
+    public boolean containsKey(Object key) {
+        return changed.containsKey(key) || !removed.contains(key) && base.containsKey(key);
+    }
+
+    @Override
+    @SuppressWarnings("SuspiciousMethodCalls")
+    public V get(Object key) {
+        V value = changed.get(key);
+        if (value != null || removed.contains(key)) {
+            return value;
+        }
+        return base.get(key);
+    }
+
+    @Override
+    public V put(K key, V value) {
+        Objects.requireNonNull(value);
+        V previous = get(key);
+        if (previous == null) {
+            size++;
+        }
+        removed.remove(key);
+        changed.put(key, value);
+        return previous;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        V previous = get(key);
+        if (previous != null) {
+            size--;
+            changed.remove(key);
+            if (base.containsKey(key)) {
+                removed.add((K) key);
+            }
+        }
+        return previous;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public int size() {
+                return size;
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                if (!(o instanceof Entry)) {
+                    return false;
+                }
+                Entry<?, ?> entry = (Entry<?, ?>) o;
+                V value = get(entry.getKey());
+                return value != null && value.equals(entry.getValue());
+            }
+
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                Iterator<Entry<K, V>> unchanged = Iterators.filter(base.entrySet().iterator(),
+                        entry -> !changed.containsKey(entry.getKey()) && !removed.contains(entry.getKey()));
+                return Iterators.unmodifiableIterator(Iterators.concat(unchanged, changed.entrySet().iterator()));
+            }
+        };
+    }
+}
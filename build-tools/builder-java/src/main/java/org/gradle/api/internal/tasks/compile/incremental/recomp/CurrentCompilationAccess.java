@@ -17,6 +17,7 @@ import org.slf4j.LoggerFactory;
 import javax.annotation.Nullable;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Objects;
 import java.util.stream.Collectors;
@@ -40,6 +41,20 @@ public class CurrentCompilationAccess {
         return snapshot;
     }
 
+    /**
+     * Like {@link #analyzeOutputFolder(File)}, but only analyzes the classes that changed since the given previous analysis.
+     * If the compiled classes are known, only their class files are looked at.
+     */
+    public ClassSetAnalysisData analyzeOutputFolder(File outputFolder, @Nullable ClassSetAnalysisData previous, @Nullable Collection<String> compiledClasses) {
+        if (previous == null) {
+            return analyzeOutputFolder(outputFolder);
+        }
+        Timer clock = Time.startTimer();
+        ClassSetAnalysisData snapshot = classSetAnalyzer.updateOutputFolderAnalysis(outputFolder, previous, compiledClasses);
+        LOG.info("Class dependency analysis for incremental compilation took {}.", clock.getElapsed());
+        return snapshot;
+    }
+
 
     public ClassSetAnalysisData getClasspathSnapshot(final Iterable<File> entries) {
         if (classpathSnapshot == null) {
@@ -60,6 +60,7 @@ public class PreviousCompilationData {
             AnnotationProcessingData annotationProcessingData = annotationProcessingDataSerializer.read(decoder);
             ClassSetAnalysisData classpathSnapshot = analysisSerializer.read(decoder);
             CompilerApiData compilerApiData = compilerApiDataSerializer.read(decoder);
+            outputSnapshot = analysisSerializer.readClassDependencies(decoder, outputSnapshot);
             return new PreviousCompilationData(outputSnapshot, annotationProcessingData, classpathSnapshot, compilerApiData);
         }
 
@@ -75,6 +76,7 @@ public class PreviousCompilationData {
             annotationProcessingDataSerializer.write(encoder, value.annotationProcessingData);
             analysisSerializer.write(encoder, value.classpathSnapshot);
             compilerApiDataSerializer.write(encoder, value.compilerApiData);
+            analysisSerializer.writeClassDependencies(encoder, value.outputSnapshot);
         }
     }
 }
@@ -0,0 +1,185 @@
+package org.gradle.api.internal.tasks.compile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+public class JavaFileManagerPoolTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    private final JavaFileManagerPool pool = new JavaFileManagerPool();
+
+    private File emptyClasspath;
+
+    @Before
+    public void setUp() throws IOException {
+        emptyClasspath = temporaryFolder.newFolder("empty");
+    }
+
+    @Test
+    public void fileManagerIsReusedForSameOptions() throws IOException {
+        List<String> options = options(temporaryFolder.newFolder("out"), emptyClasspath);
+
+        StandardJavaFileManager first = compile(options, Collections.emptyList(),
+                source("A", "class A {}"));
+        StandardJavaFileManager second = compile(options, Collections.emptyList(),
+                source("B", "class B {}"));
+        assertSame(first, second);
+
+        List<String> otherOptions = options(temporaryFolder.newFolder("other"), emptyClasspath);
+        StandardJavaFileManager other = compile(otherOptions, Collections.emptyList(),
+                source("C", "class C {}"));
+        assertNotSame(first, other);
+    }
+
+    @Test
+    public void sourcesOfPreviousCompilationAreNotVisible() throws IOException {
+        File out = temporaryFolder.newFolder("out");
+        List<String> options = options(out, emptyClasspath);
+
+        StandardJavaFileManager first = compile(options, Collections.emptyList(),
+                source("A", "class A {}"));
+        assertTrue(new File(out, "A.class").isFile());
+
+        // A is neither a source nor on the class path of the second compilation
+        try (JavaFileManagerPool.Lease lease = pool.acquire(compiler, StandardCharsets.UTF_8,
+                options, Collections.emptyList())) {
+            assertSame(first, lease.getFileManager());
+            assertFalse(call(lease, options, source("B", "class B { A a; }")));
+        }
+        assertFalse(new File(out, "B.class").exists());
+    }
+
+    @Test
+    public void outputLocationIsNotShared() throws IOException {
+        File firstOut = temporaryFolder.newFolder("first");
+        File secondOut = temporaryFolder.newFolder("second");
+        List<String> firstOptions = options(firstOut, emptyClasspath);
+        List<String> secondOptions = options(secondOut, emptyClasspath);
+
+        compile(firstOptions, Collections.emptyList(), source("A", "class A {}"));
+        compile(secondOptions, Collections.emptyList(), source("B", "class B {}"));
+
+        assertEquals(Collections.singletonList("A.class"), list(firstOut));
+        assertEquals(Collections.singletonList("B.class"), list(secondOut));
+
+        try (JavaFileManagerPool.Lease lease = pool.acquire(compiler, StandardCharsets.UTF_8,
+                firstOptions, Collections.emptyList())) {
+            assertEquals(Collections.singletonList(firstOut),
+                    list(lease.getFileManager().getLocation(StandardLocation.CLASS_OUTPUT)));
+        }
+    }
+
+    @Test
+    public void classpathOfPreviousCompilationIsNotVisible() throws IOException {
+        File lib = jar("lib.jar", source("Lib", "public class Lib {}"));
+        List<File> jars = Collections.singletonList(lib);
+
+        compile(options(temporaryFolder.newFolder("out"), lib), jars,
+                source("A", "class A { Lib lib; }"));
+
+        List<String> options = options(temporaryFolder.newFolder("other"), emptyClasspath);
+        try (JavaFileManagerPool.Lease lease = pool.acquire(compiler, StandardCharsets.UTF_8,
+                options, Collections.emptyList())) {
+            assertFalse(call(lease, options, source("B", "class B { Lib lib; }")));
+        }
+    }
+
+    @Test
+    public void modifiedJarIsOpenedAgain() throws IOException {
+        File lib = jar("lib.jar", source("Lib", "public class Lib {}"));
+        List<File> jars = Collections.singletonList(lib);
+        List<String> options = options(temporaryFolder.newFolder("out"), lib);
+
+        StandardJavaFileManager first = compile(options, jars, source("A", "class A { Lib lib; }"));
+
+        jar("lib.jar", source("Lib", "public class Lib { public static void added() {} }"));
+        StandardJavaFileManager second = compile(options, jars,
+                source("B", "class B { void b() { Lib.added(); } }"));
+        assertNotSame(first, second);
+    }
+
+    private StandardJavaFileManager compile(List<String> options, List<File> jars, File source) {
+        try (JavaFileManagerPool.Lease lease = pool.acquire(compiler, StandardCharsets.UTF_8,
+                options, jars)) {
+            assertTrue("Failed to compile " + source, call(lease, options, source));
+            return lease.getFileManager();
+        }
+    }
+
+    private boolean call(JavaFileManagerPool.Lease lease, List<String> options, File source) {
+        StandardJavaFileManager fileManager = lease.getFileManager();
+        Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjects(source);
+        // diagnostics of the expected failures are not printed
+        return compiler.getTask(new StringWriter(), fileManager, diagnostic -> {},
+                options, null, units).call();
+    }
+
+    private static List<String> options(File out, File classpath) {
+        return Arrays.asList("-d", out.getPath(), "-classpath", classpath.getPath(),
+                "-sourcepath", "", "-proc:none");
+    }
+
+    private File source(String name, String contents) throws IOException {
+        File dir = temporaryFolder.newFolder();
+        File file = new File(dir, name + ".java");
+        Files.write(file.toPath(), contents.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    private File jar(String name, File source) throws IOException {
+        File classes = temporaryFolder.newFolder();
+        assertEquals(0, compiler.run(null, null, null, "-d", classes.getPath(), source.getPath()));
+
+        File jar = new File(temporaryFolder.getRoot(), name);
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+            for (File file : classes.listFiles()) {
+                out.putNextEntry(new ZipEntry(file.getName()));
+                Files.copy(file.toPath(), out);
+                out.closeEntry();
+            }
+        }
+        return jar;
+    }
+
+    private static List<String> list(File dir) {
+        String[] names = dir.list();
+        Arrays.sort(names);
+        return Arrays.asList(names);
+    }
+
+    private static List<File> list(Iterable<? extends File> files) {
+        List<File> result = new ArrayList<>();
+        files.forEach(result::add);
+        return result;
+    }
+}
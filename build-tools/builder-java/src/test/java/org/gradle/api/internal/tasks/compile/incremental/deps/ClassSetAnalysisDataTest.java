@@ -0,0 +1,201 @@
+package org.gradle.api.internal.tasks.compile.incremental.deps;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.HashCode;
+import org.gradle.api.internal.tasks.compile.incremental.compilerapi.deps.DependentsSet;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import it.unimi.dsi.fastutil.ints.IntSets;
+
+public class ClassSetAnalysisDataTest {
+
+    private static final List<String> EXTERNAL_CLASSES = ImmutableList.of("java.lang.Object", "java.lang.String", "java.util.List");
+
+    private final Random random = new Random(42);
+    private int nextHash;
+
+    @Test
+    public void updateMatchesFullAnalysis() {
+        Map<String, ClassAnalysis> classes = new LinkedHashMap<>();
+        Map<String, HashCode> hashes = new HashMap<>();
+        Set<String> allNames = new HashSet<>(EXTERNAL_CLASSES);
+        for (int i = 0; i < 200; i++) {
+            String name = "com.example.Class" + i;
+            allNames.add(name);
+            classes.put(name, null);
+        }
+        for (String name : new ArrayList<>(classes.keySet())) {
+            classes.put(name, randomClass(name, classes.keySet()));
+            hashes.put(name, newHash());
+        }
+
+        ClassSetAnalysisData data = analyze(classes, hashes);
+        assertTrue(data.isUpdatable());
+
+        int nextClass = classes.size();
+        for (int round = 0; round < 20; round++) {
+            List<String> names = new ArrayList<>(classes.keySet());
+            Set<String> removed = new HashSet<>();
+            List<ClassAnalysis> added = new ArrayList<>();
+            Map<String, HashCode> addedHashes = new HashMap<>();
+
+            for (int i = 0; i < 5; i++) {
+                removed.add(names.get(random.nextInt(names.size())));
+            }
+            for (int i = 0; i < 10; i++) {
+                String name = random.nextInt(3) == 0
+                        ? "com.example.Class" + nextClass++
+                        : names.get(random.nextInt(names.size()));
+                if (removed.contains(name) || addedHashes.containsKey(name)) {
+                    continue;
+                }
+                allNames.add(name);
+                ClassAnalysis analysis = randomClass(name, classes.keySet());
+                HashCode hash = newHash();
+                added.add(analysis);
+                addedHashes.put(name, hash);
+            }
+
+            for (String name : removed) {
+                classes.remove(name);
+                hashes.remove(name);
+            }
+            for (ClassAnalysis analysis : added) {
+                classes.put(analysis.getClassName(), analysis);
+                hashes.put(analysis.getClassName(), addedHashes.get(analysis.getClassName()));
+            }
+
+            data = data.update(removed, added, addedHashes);
+            assertNotNull(data);
+            assertSameAnalysis(analyze(classes, hashes), data, allNames);
+        }
+    }
+
+    @Test
+    public void updateWithoutChangesKeepsAnalysis() {
+        Map<String, ClassAnalysis> classes = new LinkedHashMap<>();
+        classes.put("a.A", new ClassAnalysis("a.A", ImmutableSet.of("a.B"), ImmutableSet.of("a.C"), null, constants(1)));
+        classes.put("a.B", new ClassAnalysis("a.B", ImmutableSet.of(), ImmutableSet.of("a.C"), null, IntSets.EMPTY_SET));
+        classes.put("a.C", new ClassAnalysis("a.C", ImmutableSet.of(), ImmutableSet.of(), null, IntSets.EMPTY_SET));
+        Map<String, HashCode> hashes = ImmutableMap.of("a.A", newHash(), "a.B", newHash(), "a.C", newHash());
+
+        ClassSetAnalysisData data = analyze(classes, hashes);
+        ClassSetAnalysisData updated = data.update(Collections.emptySet(), Collections.emptyList(), Collections.emptyMap());
+        assertNotNull(updated);
+        assertSameAnalysis(data, updated, classes.keySet());
+        assertEquals(ImmutableSet.of("a.A", "a.B"), updated.getDependents("a.C").getAccessibleDependentClasses());
+        assertEquals(ImmutableSet.of("a.A"), updated.getDependents("a.B").getPrivateDependentClasses());
+    }
+
+    @Test
+    public void fullAnalysisIsNeededWhenAClassBecomesADependencyToAll() {
+        ClassSetAnalysisData data = analyze(
+                ImmutableMap.of("a.A", new ClassAnalysis("a.A", ImmutableSet.of(), ImmutableSet.of("a.B"), null, IntSets.EMPTY_SET)),
+                ImmutableMap.of("a.A", newHash()));
+
+        ClassAnalysis dependencyToAll = new ClassAnalysis("a.B", ImmutableSet.of(), ImmutableSet.of(), "source retention annotation", IntSets.EMPTY_SET);
+        assertNull(data.update(Collections.emptySet(), ImmutableList.of(dependencyToAll), ImmutableMap.of("a.B", newHash())));
+    }
+
+    @Test
+    public void fullAnalysisIsNeededWhenADependencyToAllChanges() {
+        Map<String, ClassAnalysis> classes = new LinkedHashMap<>();
+        classes.put("a.Annotation", new ClassAnalysis("a.Annotation", ImmutableSet.of(), ImmutableSet.of(), "source retention annotation", IntSets.EMPTY_SET));
+        classes.put("a.A", new ClassAnalysis("a.A", ImmutableSet.of(), ImmutableSet.of("a.Annotation"), null, IntSets.EMPTY_SET));
+        ClassSetAnalysisData data = analyze(classes, ImmutableMap.of("a.Annotation", newHash(), "a.A", newHash()));
+
+        assertNull(data.update(ImmutableSet.of("a.Annotation"), Collections.emptyList(), Collections.emptyMap()));
+        ClassAnalysis changed = new ClassAnalysis("a.Annotation", ImmutableSet.of(), ImmutableSet.of(), null, IntSets.EMPTY_SET);
+        assertNull(data.update(Collections.emptySet(), ImmutableList.of(changed), ImmutableMap.of("a.Annotation", newHash())));
+
+        // classes depending on it can still be updated
+        ClassAnalysis dependent = new ClassAnalysis("a.A", ImmutableSet.of("a.Annotation"), ImmutableSet.of(), null, IntSets.EMPTY_SET);
+        ClassSetAnalysisData updated = data.update(Collections.emptySet(), ImmutableList.of(dependent), ImmutableMap.of("a.A", newHash()));
+        assertNotNull(updated);
+        assertTrue(updated.getDependents("a.Annotation").isDependencyToAll());
+    }
+
+    @Test
+    public void fullAnalysisIsNeededWithoutClassDependencies() {
+        ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator();
+        accumulator.addClass(new ClassAnalysis("a.A", ImmutableSet.of(), ImmutableSet.of(), null, IntSets.EMPTY_SET), newHash());
+        ClassSetAnalysisData withoutDependencies = accumulator.getAnalysis();
+
+        assertFalse(withoutDependencies.isUpdatable());
+        assertNull(withoutDependencies.update(ImmutableSet.of("a.A"), Collections.emptyList(), Collections.emptyMap()));
+        assertFalse(new ClassSetAnalysisData().isUpdatable());
+
+        ClassDependentsAccumulator failed = new ClassDependentsAccumulator(true);
+        failed.fullRebuildNeeded("broken class file");
+        assertFalse(failed.getAnalysis().isUpdatable());
+    }
+
+    private ClassAnalysis randomClass(String name, Set<String> classNames) {
+        List<String> candidates = new ArrayList<>(classNames);
+        candidates.addAll(EXTERNAL_CLASSES);
+        Set<String> privateDependencies = new HashSet<>();
+        Set<String> accessibleDependencies = new HashSet<>();
+        int count = random.nextInt(6);
+        for (int i = 0; i < count; i++) {
+            String dependency = candidates.get(random.nextInt(candidates.size()));
+            if (random.nextBoolean()) {
+                privateDependencies.add(dependency);
+            } else {
+                accessibleDependencies.add(dependency);
+            }
+        }
+        IntSet constants = random.nextInt(4) == 0 ? constants(random.nextInt(100)) : IntSets.EMPTY_SET;
+        return new ClassAnalysis(name, privateDependencies, accessibleDependencies, null, constants);
+    }
+
+    private static IntSet constants(int... values) {
+        return new IntOpenHashSet(values);
+    }
+
+    private HashCode newHash() {
+        return HashCode.fromInt(nextHash++);
+    }
+
+    private static ClassSetAnalysisData analyze(Map<String, ClassAnalysis> classes, Map<String, HashCode> hashes) {
+        ClassDependentsAccumulator accumulator = new ClassDependentsAccumulator(true);
+        for (ClassAnalysis analysis : classes.values()) {
+            accumulator.addClass(analysis, hashes.get(analysis.getClassName()));
+        }
+        return accumulator.getAnalysis();
+    }
+
+    private static void assertSameAnalysis(ClassSetAnalysisData expected, ClassSetAnalysisData actual, Set<String> names) {
+        assertEquals(expected.getClassNames(), actual.getClassNames());
+        for (String name : names) {
+            assertEquals(name, expected.getClassHash(name), actual.getClassHash(name));
+            assertEquals(name, expected.getConstants(name), actual.getConstants(name));
+            DependentsSet expectedDependents = expected.getDependents(name);
+            DependentsSet actualDependents = actual.getDependents(name);
+            assertEquals(name, expectedDependents.isDependencyToAll(), actualDependents.isDependencyToAll());
+            if (!expectedDependents.isDependencyToAll()) {
+                assertEquals(name, expectedDependents.getPrivateDependentClasses(), actualDependents.getPrivateDependentClasses());
+                assertEquals(name, expectedDependents.getAccessibleDependentClasses(), actualDependents.getAccessibleDependentClasses());
+            }
+        }
+    }
+}
@@ -0,0 +1,455 @@
+package org.gradle.cache.internal.btree;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A block store that accesses the cache file through a memory mapping instead of seeking and
+ * reading the file for every block, which saves several system calls per lookup.
+ *
+ * The blocks are laid out exactly like {@link FileBackedBlockStore}, so a cache file can be
+ * opened by either store. Writes go to the mapping and are in the page cache as soon as they
+ * are made, so they survive the process crashing without flushing every update. The file is
+ * grown in large steps to avoid remapping it for every new block and truncated back to the end
+ * of the last block when the store is closed. If the process dies before that, the trailing
+ * zeros are truncated the next time the store is opened.
+ */
+public class MappedFileBlockStore implements BlockStore {
+    private static final int MIN_MAPPED_SIZE = 1024 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 64 * 1024;
+
+    private final File cacheFile;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private boolean readOnly;
+    private MappedByteBuffer mapped;
+    private long mappedSize;
+    private long nextBlock;
+    private Factory factory;
+    private long currentFileSize;
+    private final BlockOutput output = new BlockOutput();
+
+    public MappedFileBlockStore(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    @Override
+    public String toString() {
+        return "cache '" + cacheFile + "'";
+    }
+
+    @Override
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            cacheFile.getParentFile().mkdirs();
+            openRandomAccessFile();
+            channel = file.getChannel();
+            currentFileSize = file.length();
+            if (currentFileSize > 0) {
+                long endOfBlocks = findEndOfBlocks(currentFileSize);
+                if (endOfBlocks < currentFileSize) {
+                    if (!readOnly) {
+                        file.setLength(endOfBlocks);
+                    }
+                    currentFileSize = endOfBlocks;
+                }
+            }
+            nextBlock = currentFileSize;
+            mappedSize = 0;
+            mapped = null;
+            if (readOnly) {
+                if (currentFileSize > 0) {
+                    mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, checkMappable(currentFileSize));
+                    mappedSize = currentFileSize;
+                }
+            } else {
+                ensureMapped(Math.max(currentFileSize, MIN_MAPPED_SIZE));
+            }
+            if (currentFileSize == 0) {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void openRandomAccessFile() throws FileNotFoundException {
+        try {
+            file = new RandomAccessFile(cacheFile, "rw");
+            readOnly = false;
+        } catch (FileNotFoundException e) {
+            file = new RandomAccessFile(cacheFile, "r");
+            readOnly = true;
+        }
+    }
+
+    /**
+     * Finds the end of the last block, which is before the end of the file if the store was not
+     * closed and the file still has the zeros it was grown with. The blocks are only walked in
+     * that case, and the file is kept as is if there is a gap of zeros between two blocks.
+     */
+    private long findEndOfBlocks(long fileSize) throws IOException {
+        long lastNonZero = findLastNonZeroByte(fileSize);
+        if (lastNonZero == fileSize - 1) {
+            return fileSize;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(BlockImpl.HEADER_SIZE);
+        long pos = 0;
+        while (pos <= lastNonZero) {
+            header.clear();
+            while (header.hasRemaining()) {
+                if (channel.read(header, pos + header.position()) < 0) {
+                    return fileSize;
+                }
+            }
+            byte type = header.get(0);
+            int payloadSize = header.getInt(1);
+            if (type == 0 || payloadSize < 0) {
+                return fileSize;
+            }
+            pos += BlockImpl.HEADER_SIZE + BlockImpl.TAIL_SIZE + payloadSize;
+        }
+        return Math.min(pos, fileSize);
+    }
+
+    /**
+     * @return The position of the last byte of the file that is not zero, or -1 if there is none
+     */
+    private long findLastNonZeroByte(long fileSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long end = fileSize;
+        while (end > 0) {
+            long start = Math.max(0, end - SCAN_BUFFER_SIZE);
+            buffer.clear();
+            buffer.limit((int) (end - start));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    return end - 1;
+                }
+            }
+            for (int i = buffer.limit() - 1; i >= 0; i--) {
+                if (buffer.get(i) != 0) {
+                    return start + i;
+                }
+            }
+            end = start;
+        }
+        return -1;
+    }
+
+    private static long checkMappable(long size) {
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalStateException("Cache file is too large to be memory mapped: " + size + " bytes");
+        }
+        return size;
+    }
+
+    /**
+     * Makes sure the mapping covers at least the given size, growing the file if needed.
+     */
+    private void ensureMapped(long size) throws IOException {
+        if (size <= mappedSize) {
+            return;
+        }
+        if (readOnly) {
+            throw new IOException("Cannot write to read-only " + this);
+        }
+        long newSize = Math.max(size, Math.min(Math.max(mappedSize * 2, MIN_MAPPED_SIZE), Integer.MAX_VALUE));
+        checkMappable(newSize);
+        if (file.length() < newSize) {
+            file.setLength(newSize);
+        }
+        mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, newSize);
+        mappedSize = newSize;
+    }
+
+    @Override
+    public void close() {
+        try {
+            mapped = null;
+            mappedSize = 0;
+            if (!readOnly) {
+                truncatePadding();
+            }
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void truncatePadding() {
+        try {
+            if (file.length() > currentFileSize) {
+                file.setLength(currentFileSize);
+            }
+        } catch (IOException e) {
+            // Some platforms do not allow truncating a file that is still mapped, until the
+            // mapping is garbage collected. The trailing zeros are harmless, keep them.
+        }
+    }
+
+    @Override
+    public void clear() {
+        try {
+            mapped = null;
+            mappedSize = 0;
+            file.setLength(0);
+            currentFileSize = 0;
+            ensureMapped(MIN_MAPPED_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+    }
+
+    @Override
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    @Override
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    @Override
+    public void flush() {
+        // Every write is already visible through the page cache
+    }
+
+    @Override
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(BlockPointer.pos(0), payloadType);
+    }
+
+    @Override
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private long alloc(long length) {
+        long pos = nextBlock;
+        nextBlock += length;
+        return pos;
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 1 + INT_SIZE; // type, payload size
+        private static final int TAIL_SIZE = INT_SIZE;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = BlockPointer.pos(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        @Override
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = getPayload().getSize();
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+
+            BlockPayload payload = getPayload();
+            DataOutputStream outputStream = output.start();
+
+            // Write header
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+            long finalSize = pos + HEADER_SIZE + TAIL_SIZE + payloadSize;
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write count
+            int bytesWritten = output.size();
+            outputStream.writeInt(bytesWritten);
+            outputStream.flush();
+
+            ensureMapped(Math.max(finalSize, pos + output.size()));
+            ByteBuffer target = mapped.duplicate();
+            target.position((int) pos);
+            output.writeTo(target);
+
+            // Pad
+            if (currentFileSize < finalSize) {
+                currentFileSize = finalSize;
+            }
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= currentFileSize) {
+                throw blockCorruptedException();
+            }
+
+            ByteBuffer source = mapped.duplicate();
+            source.limit((int) currentFileSize);
+            source.position((int) pos);
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = source.get();
+            if (type != payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = source.getInt();
+            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > currentFileSize) {
+                throw blockCorruptedException();
+            }
+            try {
+                payload.read(new DataInputStream(new ByteBufferInputStream(source)));
+            } catch (EOFException e) {
+                throw blockCorruptedException();
+            }
+
+            // Read and verify count
+            long actualCount = source.position() - pos;
+            long count = source.getInt();
+            if (actualCount != count) {
+                throw blockCorruptedException();
+            }
+        }
+
+        @Override
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    /**
+     * Collects a block before it is copied to the mapping in one go.
+     */
+    private static class BlockOutput extends ByteArrayOutputStream {
+        private final DataOutputStream dataOutput = new DataOutputStream(this);
+
+        BlockOutput() {
+            super(4096);
+        }
+
+        DataOutputStream start() {
+            reset();
+            return dataOutput;
+        }
+
+        void writeTo(ByteBuffer target) {
+            target.put(buf, 0, count);
+        }
+    }
+
+    /**
+     * Reads from the current position of a buffer, advancing it.
+     */
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
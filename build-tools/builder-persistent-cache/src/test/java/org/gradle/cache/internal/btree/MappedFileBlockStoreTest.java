@@ -0,0 +1,84 @@
+package org.gradle.cache.internal.btree;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.gradle.internal.serialize.BaseSerializerFactory;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+
+public class MappedFileBlockStoreTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private BTreePersistentIndexedCache<String, String> open(File cacheFile) {
+        return new BTreePersistentIndexedCache<>(cacheFile, BaseSerializerFactory.STRING_SERIALIZER,
+                BaseSerializerFactory.STRING_SERIALIZER, (short) 16, 32, true);
+    }
+
+    private static void putEntries(BTreePersistentIndexedCache<String, String> cache, int from, int to) {
+        for (int i = from; i < to; i++) {
+            cache.put("key" + i, "value" + i);
+        }
+    }
+
+    private static void assertEntries(BTreePersistentIndexedCache<String, String> cache, int to) {
+        for (int i = 0; i < to; i++) {
+            assertEquals("value" + i, cache.get("key" + i));
+        }
+    }
+
+    @Test
+    public void closeTruncatesPadding() throws Exception {
+        File cacheFile = new File(temporaryFolder.newFolder(), "cache.bin");
+        BTreePersistentIndexedCache<String, String> cache = open(cacheFile);
+        putEntries(cache, 0, 100);
+        long paddedLength = cacheFile.length();
+        cache.close();
+
+        assertTrue(cacheFile.length() < paddedLength);
+        cache = open(cacheFile);
+        assertEntries(cache, 100);
+        cache.close();
+    }
+
+    @Test
+    public void reopenAfterUncleanShutdownTruncatesPadding() throws Exception {
+        File cacheFile = new File(temporaryFolder.newFolder(), "cache.bin");
+        BTreePersistentIndexedCache<String, String> cache = open(cacheFile);
+        putEntries(cache, 0, 100);
+        long paddedLength = cacheFile.length();
+        // The store is never closed, as if the process was killed.
+
+        cache = open(cacheFile);
+        assertEntries(cache, 100);
+        cache.close();
+        assertTrue(cacheFile.length() < paddedLength);
+
+        cache = open(cacheFile);
+        assertEntries(cache, 100);
+        cache.close();
+    }
+
+    @Test
+    public void fileDoesNotGrowAcrossUncleanShutdowns() throws Exception {
+        File cacheFile = new File(temporaryFolder.newFolder(), "cache.bin");
+        BTreePersistentIndexedCache<String, String> cache = open(cacheFile);
+        long paddedLength = cacheFile.length();
+
+        long length = 0;
+        for (int i = 0; i < 5; i++) {
+            putEntries(cache, i * 20, (i + 1) * 20);
+            // Reopened without closing, new blocks go after the previous ones, not the padding.
+            cache = open(cacheFile);
+            assertEntries(cache, (i + 1) * 20);
+            assertTrue(cacheFile.length() <= paddedLength);
+        }
+        cache.close();
+        assertTrue(cacheFile.length() < paddedLength);
+    }
+}
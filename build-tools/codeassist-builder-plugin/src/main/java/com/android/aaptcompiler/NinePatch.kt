@@ -0,0 +1,524 @@
+package com.android.aaptcompiler
+
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+/** Colors in the format 0xAARRGGBB, the way 9-patch expects it. */
+private const val COLOR_OPAQUE_WHITE = 0xffffffff.toInt()
+private const val COLOR_OPAQUE_BLACK = 0xff000000.toInt()
+private const val COLOR_OPAQUE_RED = 0xffff0000.toInt()
+
+/** Black marks stretch regions on the top and left borders, padding on the bottom and right. */
+private const val PRIMARY_COLOR = COLOR_OPAQUE_BLACK
+
+/** Red marks optical (layout) bounds on the bottom and right borders. */
+private const val SECONDARY_COLOR = COLOR_OPAQUE_RED
+
+/** Special region colors of Res_png_9patch. */
+private const val NO_COLOR = 0x00000001
+private const val TRANSPARENT_COLOR = 0x00000000
+
+/** Size of the Res_png_9patch header that precedes the divs and colors. */
+private const val RES_PNG_9PATCH_HEADER_SIZE = 32
+
+/**
+ * A range of pixels, [start] inclusive and [end] exclusive, not counting the 1px border.
+ */
+data class Range(val start: Int, var end: Int)
+
+data class Bounds(var left: Int = 0, var top: Int = 0, var right: Int = 0, var bottom: Int = 0) {
+  fun nonZero() = left != 0 || top != 0 || right != 0 || bottom != 0
+}
+
+/**
+ * The 9-patch information extracted from the 1px border of a *.9.png image, ported from
+ * aapt2's NinePatch.cpp so that the serialized chunks are identical.
+ *
+ * Use [NinePatch.create] to parse an [Image] that still has its border.
+ */
+class NinePatch private constructor() {
+
+  /** Horizontal regions marked with black pixels on the top border. */
+  val horizontalStretchRegions = mutableListOf<Range>()
+
+  /** Vertical regions marked with black pixels on the left border. */
+  val verticalStretchRegions = mutableListOf<Range>()
+
+  /** Content padding from the black pixels of the bottom and right borders. */
+  val padding = Bounds()
+
+  /** Optical bounds from the red pixels of the bottom and right borders. */
+  val layoutBounds = Bounds()
+
+  /** The insets of the rounded rectangle that the opaque content of the image describes. */
+  val outline = Bounds()
+  var outlineRadius = 0f
+    private set
+  var outlineAlpha = 0
+    private set
+
+  /** The color of each region, or one of the special NO_COLOR or TRANSPARENT_COLOR values. */
+  val regionColors = mutableListOf<Int>()
+
+  /** The Res_png_9patch structure stored in the npTc chunk. */
+  fun serializeBase(): ByteArray {
+    val numXDivs = horizontalStretchRegions.size * 2
+    val numYDivs = verticalStretchRegions.size * 2
+    val size = RES_PNG_9PATCH_HEADER_SIZE + (numXDivs + numYDivs + regionColors.size) * 4
+    val buffer = ByteBuffer.allocate(size)
+
+    // wasDeserialized and the counts are single bytes. The offsets are left in device (little
+    // endian) order by Res_png_9patch::deviceToFile(), everything else is in file order.
+    buffer.put(0)
+    buffer.put(numXDivs.toByte())
+    buffer.put(numYDivs.toByte())
+    buffer.put(regionColors.size.toByte())
+    buffer.order(ByteOrder.LITTLE_ENDIAN)
+    val xDivsOffset = RES_PNG_9PATCH_HEADER_SIZE
+    val yDivsOffset = xDivsOffset + numXDivs * 4
+    val colorsOffset = yDivsOffset + numYDivs * 4
+    buffer.putInt(xDivsOffset)
+    buffer.putInt(yDivsOffset)
+    buffer.order(ByteOrder.BIG_ENDIAN)
+    buffer.putInt(padding.left)
+    buffer.putInt(padding.right)
+    buffer.putInt(padding.top)
+    buffer.putInt(padding.bottom)
+    buffer.order(ByteOrder.LITTLE_ENDIAN)
+    buffer.putInt(colorsOffset)
+    buffer.order(ByteOrder.BIG_ENDIAN)
+    for (range in horizontalStretchRegions) {
+      buffer.putInt(range.start)
+      buffer.putInt(range.end)
+    }
+    for (range in verticalStretchRegions) {
+      buffer.putInt(range.start)
+      buffer.putInt(range.end)
+    }
+    regionColors.forEach { buffer.putInt(it) }
+    return buffer.array()
+  }
+
+  /** The optical bounds stored in the npLb chunk, in device order like aapt2. */
+  fun serializeLayoutBounds(): ByteArray {
+    val buffer = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN)
+    buffer.putInt(layoutBounds.left)
+    buffer.putInt(layoutBounds.top)
+    buffer.putInt(layoutBounds.right)
+    buffer.putInt(layoutBounds.bottom)
+    return buffer.array()
+  }
+
+  /** The outline stored in the npOl chunk, in device order like aapt2. */
+  fun serializeRoundedRectOutline(): ByteArray {
+    val buffer = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN)
+    buffer.putInt(outline.left)
+    buffer.putInt(outline.top)
+    buffer.putInt(outline.right)
+    buffer.putInt(outline.bottom)
+    buffer.putFloat(outlineRadius)
+    buffer.putInt(outlineAlpha)
+    return buffer.array()
+  }
+
+  companion object {
+
+    /**
+     * Parses the 9-patch information from the border of the image.
+     *
+     * @param image the RGBA image including its 1px border
+     * @throws IllegalStateException if the border is malformed
+     */
+    fun create(image: Image): NinePatch {
+      val width = image.width
+      val height = image.height
+      check(width >= 3 && height >= 3) {
+        "image must be at least 3x3 (1x1 image with 1 pixel border)"
+      }
+
+      val colorValidator = when {
+        getAlpha(image.getColor(0, 0)) == 0 -> ColorValidator { getAlpha(it) == 0 }
+        image.getColor(0, 0) == COLOR_OPAQUE_WHITE -> ColorValidator { it == COLOR_OPAQUE_WHITE }
+        else -> error("top-left corner pixel must be either opaque white or transparent")
+      }
+
+      val ninePatch = NinePatch()
+      val unexpectedRanges = mutableListOf<Range>()
+
+      fillRanges(
+        horizontalLine(image, 0, 0, width),
+        colorValidator,
+        ninePatch.horizontalStretchRegions,
+        unexpectedRanges)
+      check(unexpectedRanges.isEmpty()) {
+        "found unexpected optical bounds (red pixel) on top border at " +
+            "x=${unexpectedRanges[0].start + 1}"
+      }
+
+      fillRanges(
+        verticalLine(image, 0, 0, height),
+        colorValidator,
+        ninePatch.verticalStretchRegions,
+        unexpectedRanges)
+      check(unexpectedRanges.isEmpty()) {
+        "found unexpected optical bounds (red pixel) on left border at " +
+            "y=${unexpectedRanges[0].start + 1}"
+      }
+
+      val horizontalPadding = mutableListOf<Range>()
+      val horizontalLayoutBounds = mutableListOf<Range>()
+      fillRanges(
+        horizontalLine(image, 0, height - 1, width),
+        colorValidator,
+        horizontalPadding,
+        horizontalLayoutBounds)
+      populateBounds(
+        horizontalPadding,
+        horizontalLayoutBounds,
+        ninePatch.horizontalStretchRegions,
+        width - 2,
+        "bottom") { paddingStart, paddingEnd, layoutStart, layoutEnd ->
+        ninePatch.padding.left = paddingStart
+        ninePatch.padding.right = paddingEnd
+        ninePatch.layoutBounds.left = layoutStart
+        ninePatch.layoutBounds.right = layoutEnd
+      }
+
+      val verticalPadding = mutableListOf<Range>()
+      val verticalLayoutBounds = mutableListOf<Range>()
+      fillRanges(
+        verticalLine(image, width - 1, 0, height),
+        colorValidator,
+        verticalPadding,
+        verticalLayoutBounds)
+      populateBounds(
+        verticalPadding,
+        verticalLayoutBounds,
+        ninePatch.verticalStretchRegions,
+        height - 2,
+        "right") { paddingStart, paddingEnd, layoutStart, layoutEnd ->
+        ninePatch.padding.top = paddingStart
+        ninePatch.padding.bottom = paddingEnd
+        ninePatch.layoutBounds.top = layoutStart
+        ninePatch.layoutBounds.bottom = layoutEnd
+      }
+
+      // Fill the region colors of the 9-patch.
+      val numRows = calculateSegmentCount(ninePatch.horizontalStretchRegions, width - 2)
+      val numCols = calculateSegmentCount(ninePatch.verticalStretchRegions, height - 2)
+      check(numRows.toLong() * numCols.toLong() <= 0x7f) { "too many regions in 9-patch" }
+      calculateRegionColors(
+        image,
+        ninePatch.horizontalStretchRegions,
+        ninePatch.verticalStretchRegions,
+        width - 2,
+        height - 2,
+        ninePatch.regionColors)
+
+      // Compute the outline based on opacity.
+
+      // Find left and right extent of 9-patch content on center row.
+      findOutlineInsets(horizontalLine(image, 1, height / 2, width - 2)) { start, end ->
+        ninePatch.outline.left = start
+        ninePatch.outline.right = end
+      }
+      // Find top and bottom extent of 9-patch content on center column.
+      findOutlineInsets(verticalLine(image, width / 2, 1, height - 2)) { start, end ->
+        ninePatch.outline.top = start
+        ninePatch.outline.bottom = end
+      }
+
+      val outline = ninePatch.outline
+      val outlineWidth = (width - 2) - outline.left - outline.right
+      val outlineHeight = (height - 2) - outline.top - outline.bottom
+
+      // Find the largest alpha value within the outline area.
+      val outlineMidRow = horizontalLine(
+        image, 1 + outline.left, 1 + outline.top + (outlineHeight / 2), outlineWidth)
+      val outlineMidCol = verticalLine(
+        image, 1 + outline.left + (outlineWidth / 2), 1 + outline.top, outlineHeight)
+      ninePatch.outlineAlpha = maxOf(findMaxAlpha(outlineMidRow), findMaxAlpha(outlineMidCol))
+
+      // Assuming the image is a round rect, compute the radius by marching diagonally from the
+      // top left corner towards the center.
+      val diagonal = ImageLine(minOf(outlineWidth, outlineHeight)) {
+        image.getColor(1 + outline.left + it, 1 + outline.top + it)
+      }
+      var topLeft = 0
+      findOutlineInsets(diagonal) { start, _ -> topLeft = start }
+
+      // Determine source radius based upon inset:
+      //     sqrt(r^2 + r^2) = sqrt(i^2 + i^2) + r
+      //     sqrt(2) * r = sqrt(2) * i + r
+      //     (sqrt(2) - 1) * r = sqrt(2) * i
+      //     r = sqrt(2) / (sqrt(2) - 1) * i
+      ninePatch.outlineRadius = 3.4142f * topLeft
+      return ninePatch
+    }
+  }
+}
+
+private fun getAlpha(color: Int) = color ushr 24
+
+/**
+ * A 9-patch image may use a transparent color or an opaque white color as neutral, based on the
+ * pixel at (0,0). Either is fine, but it must be consistent throughout the border.
+ */
+private fun interface ColorValidator {
+  fun isNeutralColor(color: Int): Boolean
+
+  fun isValidColor(color: Int) =
+    color == PRIMARY_COLOR || color == SECONDARY_COLOR || isNeutralColor(color)
+}
+
+/** A row, column or diagonal of pixels of an image. */
+private class ImageLine(val length: Int, val getColor: (Int) -> Int)
+
+private fun horizontalLine(image: Image, xOffset: Int, yOffset: Int, length: Int) =
+  ImageLine(length) { image.getColor(xOffset + it, yOffset) }
+
+private fun verticalLine(image: Image, xOffset: Int, yOffset: Int, length: Int) =
+  ImageLine(length) { image.getColor(xOffset, yOffset + it) }
+
+/**
+ * Walks a border line and records the ranges of primary and secondary colors, excluding the
+ * first and last pixels which are corners.
+ */
+private fun fillRanges(
+  line: ImageLine,
+  colorValidator: ColorValidator,
+  primaryRanges: MutableList<Range>,
+  secondaryRanges: MutableList<Range>
+) {
+  val length = line.length
+  var lastColor = COLOR_OPAQUE_WHITE
+  for (idx in 1 until length - 1) {
+    val color = line.getColor(idx)
+    check(colorValidator.isValidColor(color)) { "found an invalid color" }
+
+    if (color != lastColor) {
+      // We are ending a range. Which range?
+      // note: encode the x offset without the final 1 pixel border.
+      if (lastColor == PRIMARY_COLOR) {
+        primaryRanges.last().end = idx - 1
+      } else if (lastColor == SECONDARY_COLOR) {
+        secondaryRanges.last().end = idx - 1
+      }
+
+      // We are starting a range. Which range?
+      // note: encode the x offset without the final 1 pixel border.
+      if (color == PRIMARY_COLOR) {
+        primaryRanges.add(Range(idx - 1, length - 2))
+      } else if (color == SECONDARY_COLOR) {
+        secondaryRanges.add(Range(idx - 1, length - 2))
+      }
+      lastColor = color
+    }
+  }
+}
+
+private fun populateBounds(
+  padding: List<Range>,
+  layoutBounds: List<Range>,
+  stretchRegions: List<Range>,
+  length: Int,
+  edgeName: String,
+  result: (paddingStart: Int, paddingEnd: Int, layoutStart: Int, layoutEnd: Int) -> Unit
+) {
+  check(padding.size <= 1) { "too many padding sections on $edgeName border" }
+
+  var paddingStart = 0
+  var paddingEnd = 0
+  if (padding.isNotEmpty()) {
+    paddingStart = padding.first().start
+    paddingEnd = length - padding.first().end
+  } else if (stretchRegions.isNotEmpty()) {
+    // No padding was defined. Compute the padding from the first and last stretch regions.
+    paddingStart = stretchRegions.first().start
+    paddingEnd = length - stretchRegions.last().end
+  }
+
+  check(layoutBounds.size <= 2) { "too many layout bounds sections on $edgeName border" }
+
+  var layoutStart = 0
+  var layoutEnd = 0
+  if (layoutBounds.isNotEmpty()) {
+    val range = layoutBounds.first()
+    // If there is only one layout bound segment, it might not start at 0, but then it should
+    // end at length.
+    check(range.start == 0 || range.end == length) {
+      "layout bounds on $edgeName border must start at edge"
+    }
+    layoutStart = range.end
+
+    if (layoutBounds.size >= 2) {
+      val last = layoutBounds.last()
+      check(last.end == length) { "layout bounds on $edgeName border must start at edge" }
+      layoutEnd = length - last.start
+    }
+  }
+  result(paddingStart, paddingEnd, layoutStart, layoutEnd)
+}
+
+private fun calculateSegmentCount(stretchRegions: List<Range>, length: Int): Int {
+  if (stretchRegions.isEmpty()) {
+    return 0
+  }
+
+  val startIsFixed = stretchRegions.first().start != 0
+  val endIsFixed = stretchRegions.last().end != length
+  val modifier = when {
+    startIsFixed && endIsFixed -> 1
+    !startIsFixed && !endIsFixed -> -1
+    else -> 0
+  }
+  return stretchRegions.size * 2 + modifier
+}
+
+private fun getRegionColor(image: Image, region: Bounds): Int {
+  // Sample the first pixel to compare against.
+  val expectedColor = image.getColor(region.left, region.top)
+  for (y in region.top until region.bottom) {
+    for (x in region.left until region.right) {
+      val color = image.getColor(x, y)
+      if (getAlpha(color) == 0) {
+        // The color is transparent. If the expected color is not transparent, NO_COLOR.
+        if (getAlpha(expectedColor) != 0) {
+          return NO_COLOR
+        }
+      } else if (color != expectedColor) {
+        return NO_COLOR
+      }
+    }
+  }
+
+  if (getAlpha(expectedColor) == 0) {
+    return TRANSPARENT_COLOR
+  }
+  return expectedColor
+}
+
+/**
+ * Computes the color of each 9-patch section. If the whole section is transparent it gets the
+ * special TRANSPARENT color, if the whole section is the same color it is assigned that color,
+ * otherwise it gets the special NO_COLOR color.
+ *
+ * The image contains the 1px border but the stretch regions, [width] and [height] exclude it,
+ * so the bounds are offset by 1 each time the image is accessed.
+ */
+private fun calculateRegionColors(
+  image: Image,
+  horizontalStretchRegions: List<Range>,
+  verticalStretchRegions: List<Range>,
+  width: Int,
+  height: Int,
+  outColors: MutableList<Int>
+) {
+  var nextTop = 0
+  val bounds = Bounds()
+  val rowIter = verticalStretchRegions.iterator()
+  var row = if (rowIter.hasNext()) rowIter.next() else null
+  while (nextTop != height) {
+    if (row != null) {
+      if (nextTop != row.start) {
+        // This is a fixed segment.
+        bounds.top = nextTop + 1
+        bounds.bottom = row.start + 1
+        nextTop = row.start
+      } else {
+        // This is a stretchy segment.
+        bounds.top = row.start + 1
+        bounds.bottom = row.end + 1
+        nextTop = row.end
+        row = if (rowIter.hasNext()) rowIter.next() else null
+      }
+    } else {
+      // This is the end, fixed section.
+      bounds.top = nextTop + 1
+      bounds.bottom = height + 1
+      nextTop = height
+    }
+
+    var nextLeft = 0
+    val colIter = horizontalStretchRegions.iterator()
+    var col = if (colIter.hasNext()) colIter.next() else null
+    while (nextLeft != width) {
+      if (col != null) {
+        if (nextLeft != col.start) {
+          // This is a fixed segment.
+          bounds.left = nextLeft + 1
+          bounds.right = col.start + 1
+          nextLeft = col.start
+        } else {
+          // This is a stretchy segment.
+          bounds.left = col.start + 1
+          bounds.right = col.end + 1
+          nextLeft = col.end
+          col = if (colIter.hasNext()) colIter.next() else null
+        }
+      } else {
+        // This is the end, fixed section.
+        bounds.left = nextLeft + 1
+        bounds.right = width + 1
+        nextLeft = width
+      }
+      outColors.add(getRegionColor(image, bounds))
+    }
+  }
+}
+
+/**
+ * Calculates the insets of a line of pixels based on where the largest alpha value begins, on
+ * both sides.
+ */
+private fun findOutlineInsets(line: ImageLine, result: (start: Int, end: Int) -> Unit) {
+  var start = 0
+  var end = 0
+
+  val length = line.length
+  if (length < 3) {
+    result(start, end)
+    return
+  }
+
+  // If the length is odd, we want both sides to process the center pixel, so we use two
+  // different midpoints (to account for < and <= in the different loops).
+  val mid2 = length / 2
+  val mid1 = mid2 + (length % 2)
+
+  var maxAlpha = 0
+  var i = 0
+  while (i < mid1 && maxAlpha != 0xff) {
+    val alpha = getAlpha(line.getColor(i))
+    if (alpha > maxAlpha) {
+      maxAlpha = alpha
+      start = i
+    }
+    i++
+  }
+
+  maxAlpha = 0
+  i = length - 1
+  while (i >= mid2 && maxAlpha != 0xff) {
+    val alpha = getAlpha(line.getColor(i))
+    if (alpha > maxAlpha) {
+      maxAlpha = alpha
+      end = length - (i + 1)
+    }
+    i--
+  }
+  result(start, end)
+}
+
+private fun findMaxAlpha(line: ImageLine): Int {
+  var maxAlpha = 0
+  var idx = 0
+  while (idx < line.length && maxAlpha != 0xff) {
+    val alpha = getAlpha(line.getColor(idx))
+    if (alpha > maxAlpha) {
+      maxAlpha = alpha
+    }
+    idx++
+  }
+  return maxAlpha
+}
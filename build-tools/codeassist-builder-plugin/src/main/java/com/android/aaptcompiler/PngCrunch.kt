@@ -0,0 +1,716 @@
+package com.android.aaptcompiler
+
+import java.io.ByteArrayOutputStream
+import java.io.DataOutputStream
+import java.nio.ByteBuffer
+import java.util.zip.CRC32
+import java.util.zip.DataFormatException
+import java.util.zip.Deflater
+import java.util.zip.Inflater
+
+private val PNG_SIGNATURE =
+  byteArrayOf(0x89.toByte(), 0x50, 0x4e, 0x47, 0x0d, 0x0a, 0x1a, 0x0a)
+
+private const val CHUNK_IHDR = "IHDR"
+private const val CHUNK_PLTE = "PLTE"
+private const val CHUNK_TRNS = "tRNS"
+private const val CHUNK_IDAT = "IDAT"
+private const val CHUNK_IEND = "IEND"
+private const val CHUNK_SRGB = "sRGB"
+
+/** Chunks that are kept when the original PNG is used instead of the crunched one. */
+private val ALLOWED_CHUNKS =
+  setOf(CHUNK_IHDR, CHUNK_IDAT, CHUNK_IEND, CHUNK_PLTE, CHUNK_TRNS, CHUNK_SRGB)
+
+/** 9-patch chunks, read by the framework's NinePatch decoder. */
+private const val CHUNK_NINE_PATCH = "npTc"
+private const val CHUNK_LAYOUT_BOUNDS = "npLb"
+private const val CHUNK_OUTLINE = "npOl"
+
+private const val COLOR_TYPE_GRAY = 0
+private const val COLOR_TYPE_RGB = 2
+private const val COLOR_TYPE_PALETTE = 3
+private const val COLOR_TYPE_GRAY_ALPHA = 4
+private const val COLOR_TYPE_RGBA = 6
+
+private const val FILTER_NONE = 0
+private const val FILTER_SUB = 1
+private const val FILTER_UP = 2
+private const val FILTER_AVG = 3
+private const val FILTER_PAETH = 4
+
+/**
+ * The cost of using a palette instead of the full colors, to favour the full colors when the
+ * sizes are close as decoding them is faster. Same value as aapt2.
+ */
+private const val PALETTE_OVERHEAD_CONSTANT = 1024 * 10
+
+/** Size of the IDAT chunks written by libpng. */
+private const val IDAT_CHUNK_SIZE = 8192
+
+/** The (x, y, xStep, yStep) of the seven Adam7 passes. */
+private val ADAM7_PASSES = arrayOf(
+  intArrayOf(0, 0, 8, 8),
+  intArrayOf(4, 0, 8, 8),
+  intArrayOf(0, 4, 4, 8),
+  intArrayOf(2, 0, 4, 4),
+  intArrayOf(0, 2, 2, 4),
+  intArrayOf(1, 0, 2, 2),
+  intArrayOf(0, 1, 1, 2))
+
+/**
+ * A decoded image, with every pixel in the format 0xAARRGGBB.
+ */
+class Image(val width: Int, val height: Int, val pixels: IntArray) {
+
+  fun getColor(x: Int, y: Int) = pixels[y * width + x]
+
+  /** Returns a copy of the image without its 1px border, as used by 9-patch images. */
+  fun stripBorder(): Image {
+    val newWidth = width - 2
+    val newHeight = height - 2
+    val newPixels = IntArray(newWidth * newHeight)
+    for (y in 0 until newHeight) {
+      System.arraycopy(pixels, (y + 1) * width + 1, newPixels, y * newWidth, newWidth)
+    }
+    return Image(newWidth, newHeight, newPixels)
+  }
+}
+
+private class PngChunk(val type: String, val data: ByteArray, val raw: ByteArray)
+
+private fun readChunks(content: ByteArray): List<PngChunk> {
+  check(content.size >= PNG_SIGNATURE.size &&
+      PNG_SIGNATURE.indices.all { content[it] == PNG_SIGNATURE[it] }) {
+    "file does not start with PNG signature"
+  }
+
+  val chunks = mutableListOf<PngChunk>()
+  val buffer = ByteBuffer.wrap(content)
+  buffer.position(PNG_SIGNATURE.size)
+  while (buffer.hasRemaining()) {
+    check(buffer.remaining() >= 12) { "not enough space for a PNG chunk" }
+    val start = buffer.position()
+    val length = buffer.int
+    check(length >= 0 && length.toLong() + 4 <= buffer.remaining()) {
+      "PNG chunk length exceeds file size"
+    }
+    val typeBytes = ByteArray(4)
+    buffer.get(typeBytes)
+    val type = String(typeBytes, Charsets.US_ASCII)
+    val data = ByteArray(length)
+    buffer.get(data)
+    val crc = buffer.int
+
+    // Ancillary chunks have a lowercase first letter and are dropped anyway.
+    if (Character.isUpperCase(type[0])) {
+      val checksum = CRC32()
+      checksum.update(typeBytes)
+      checksum.update(data)
+      check(checksum.value.toInt() == crc) { "CRC mismatch in PNG chunk $type" }
+    }
+    chunks.add(PngChunk(type, data, content.copyOfRange(start, buffer.position())))
+    if (type == CHUNK_IEND) {
+      break
+    }
+  }
+  return chunks
+}
+
+/**
+ * Removes the chunks of a PNG that are not needed at runtime, such as text and gamma chunks.
+ * This is what ends up in the APK when crunching does not make the image smaller.
+ *
+ * @throws IllegalStateException if the content is not a valid PNG
+ */
+fun filterPngChunks(content: ByteArray): ByteArray {
+  val output = ByteArrayOutputStream(content.size)
+  output.write(PNG_SIGNATURE)
+  for (chunk in readChunks(content)) {
+    if (chunk.type in ALLOWED_CHUNKS) {
+      output.write(chunk.raw)
+    }
+  }
+  return output.toByteArray()
+}
+
+/**
+ * Decodes a PNG to 8 bit RGBA, the same way aapt2 configures libpng: palettes and tRNS are
+ * expanded to RGBA, grayscale is expanded to RGB and 16 bit channels are stripped to 8 bits.
+ *
+ * @throws IllegalStateException if the content is not a valid PNG
+ */
+fun readPng(content: ByteArray): Image {
+  val chunks = readChunks(content)
+  val header = chunks.firstOrNull()
+  check(header != null && header.type == CHUNK_IHDR && header.data.size == 13) {
+    "PNG does not start with an IHDR chunk"
+  }
+  val ihdr = ByteBuffer.wrap(header.data)
+  val width = ihdr.int
+  val height = ihdr.int
+  val bitDepth = ihdr.get().toInt() and 0xff
+  val colorType = ihdr.get().toInt() and 0xff
+  ihdr.get() // compression method, deflate is the only one defined
+  ihdr.get() // filter method, adaptive filtering is the only one defined
+  val interlace = ihdr.get().toInt()
+  check(width > 0 && height > 0) { "invalid PNG dimensions ${width}x$height" }
+
+  val channels = when (colorType) {
+    COLOR_TYPE_GRAY, COLOR_TYPE_PALETTE -> 1
+    COLOR_TYPE_GRAY_ALPHA -> 2
+    COLOR_TYPE_RGB -> 3
+    COLOR_TYPE_RGBA -> 4
+    else -> error("unsupported PNG color type $colorType")
+  }
+  check(bitDepth in intArrayOf(1, 2, 4, 8, 16) && (channels == 1 || bitDepth >= 8)) {
+    "unsupported PNG bit depth $bitDepth for color type $colorType"
+  }
+
+  val palette = chunks.firstOrNull { it.type == CHUNK_PLTE }?.data ?: ByteArray(0)
+  check(colorType != COLOR_TYPE_PALETTE || palette.isNotEmpty()) { "missing PNG palette" }
+  val transparency = chunks.firstOrNull { it.type == CHUNK_TRNS }?.data
+
+  val compressed = ByteArrayOutputStream()
+  chunks.filter { it.type == CHUNK_IDAT }.forEach { compressed.write(it.data) }
+  val inflated = inflate(compressed.toByteArray())
+
+  val decoder = PixelDecoder(bitDepth, colorType, channels, palette, transparency)
+  val pixels = IntArray(width * height)
+  var offset = 0
+  if (interlace == 0) {
+    offset = decoder.decodePass(inflated, offset, width, height) { x, y, color ->
+      pixels[y * width + x] = color
+    }
+  } else {
+    for ((startX, startY, stepX, stepY) in ADAM7_PASSES) {
+      val passWidth = (width - startX + stepX - 1) / stepX
+      val passHeight = (height - startY + stepY - 1) / stepY
+      if (passWidth <= 0 || passHeight <= 0) {
+        continue
+      }
+      offset = decoder.decodePass(inflated, offset, passWidth, passHeight) { x, y, color ->
+        pixels[(startY + y * stepY) * width + startX + x * stepX] = color
+      }
+    }
+  }
+  return Image(width, height, pixels)
+}
+
+private fun inflate(data: ByteArray): ByteArray {
+  val inflater = Inflater()
+  try {
+    inflater.setInput(data)
+    val output = ByteArrayOutputStream(data.size * 4)
+    val buffer = ByteArray(8192)
+    while (!inflater.finished()) {
+      val count = inflater.inflate(buffer)
+      if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+        break
+      }
+      output.write(buffer, 0, count)
+    }
+    return output.toByteArray()
+  } catch (e: DataFormatException) {
+    error("corrupt PNG image data: ${e.message}")
+  } finally {
+    inflater.end()
+  }
+}
+
+private class PixelDecoder(
+  val bitDepth: Int,
+  val colorType: Int,
+  val channels: Int,
+  val palette: ByteArray,
+  val transparency: ByteArray?
+) {
+  private val bitsPerPixel = channels * bitDepth
+  private val bytesPerPixel = maxOf(1, bitsPerPixel / 8)
+
+  /** The transparent gray or RGB value of the tRNS chunk, at the original bit depth. */
+  private val transparentSamples: IntArray? = transparency?.let { trns ->
+    val count = when (colorType) {
+      COLOR_TYPE_GRAY -> 1
+      COLOR_TYPE_RGB -> 3
+      else -> return@let null
+    }
+    if (trns.size < count * 2) {
+      return@let null
+    }
+    IntArray(count) { ((trns[it * 2].toInt() and 0xff) shl 8) or (trns[it * 2 + 1].toInt() and 0xff) }
+  }
+
+  /**
+   * Unfilters and decodes [height] rows of [width] pixels starting at [offset].
+   *
+   * @return the offset after the last row
+   */
+  fun decodePass(
+    data: ByteArray,
+    offset: Int,
+    width: Int,
+    height: Int,
+    setPixel: (x: Int, y: Int, color: Int) -> Unit
+  ): Int {
+    val rowBytes = ((width.toLong() * bitsPerPixel + 7) / 8).toInt()
+    var position = offset
+    var previous = ByteArray(rowBytes)
+    var current = ByteArray(rowBytes)
+    val samples = IntArray(channels)
+    for (y in 0 until height) {
+      check(position + 1 + rowBytes <= data.size) { "not enough PNG image data" }
+      val filter = data[position].toInt()
+      System.arraycopy(data, position + 1, current, 0, rowBytes)
+      position += 1 + rowBytes
+      unfilter(filter, current, previous, bytesPerPixel)
+
+      for (x in 0 until width) {
+        for (c in 0 until channels) {
+          samples[c] = readSample(current, x * channels + c)
+        }
+        setPixel(x, y, toColor(samples))
+      }
+      val tmp = previous
+      previous = current
+      current = tmp
+    }
+    return position
+  }
+
+  private fun readSample(row: ByteArray, index: Int): Int {
+    return when (bitDepth) {
+      16 -> ((row[index * 2].toInt() and 0xff) shl 8) or (row[index * 2 + 1].toInt() and 0xff)
+      8 -> row[index].toInt() and 0xff
+      else -> {
+        val bit = index * bitDepth
+        val shift = 8 - bitDepth - (bit % 8)
+        ((row[bit / 8].toInt() and 0xff) shr shift) and ((1 shl bitDepth) - 1)
+      }
+    }
+  }
+
+  /** Scales a sample to 8 bits, the high byte is kept for 16 bit samples like png_set_strip_16. */
+  private fun scale(sample: Int) = when (bitDepth) {
+    16 -> sample shr 8
+    8 -> sample
+    4 -> sample * 0x11
+    2 -> sample * 0x55
+    else -> sample * 0xff
+  }
+
+  private fun toColor(samples: IntArray): Int {
+    val red: Int
+    val green: Int
+    val blue: Int
+    val alpha: Int
+    when (colorType) {
+      COLOR_TYPE_PALETTE -> {
+        val index = samples[0]
+        if (index * 3 + 2 < palette.size) {
+          red = palette[index * 3].toInt() and 0xff
+          green = palette[index * 3 + 1].toInt() and 0xff
+          blue = palette[index * 3 + 2].toInt() and 0xff
+        } else {
+          red = 0
+          green = 0
+          blue = 0
+        }
+        alpha = if (transparency != null && index < transparency.size) {
+          transparency[index].toInt() and 0xff
+        } else {
+          0xff
+        }
+      }
+      COLOR_TYPE_GRAY -> {
+        red = scale(samples[0])
+        green = red
+        blue = red
+        alpha = if (transparentSamples?.get(0) == samples[0]) 0 else 0xff
+      }
+      COLOR_TYPE_GRAY_ALPHA -> {
+        red = scale(samples[0])
+        green = red
+        blue = red
+        alpha = scale(samples[1])
+      }
+      COLOR_TYPE_RGB -> {
+        red = scale(samples[0])
+        green = scale(samples[1])
+        blue = scale(samples[2])
+        val transparent = transparentSamples
+        alpha = if (transparent != null && transparent[0] == samples[0] &&
+          transparent[1] == samples[1] && transparent[2] == samples[2]) 0 else 0xff
+      }
+      else -> {
+        red = scale(samples[0])
+        green = scale(samples[1])
+        blue = scale(samples[2])
+        alpha = scale(samples[3])
+      }
+    }
+    return (alpha shl 24) or (red shl 16) or (green shl 8) or blue
+  }
+}
+
+private fun unfilter(filter: Int, row: ByteArray, previous: ByteArray, bpp: Int) {
+  when (filter) {
+    FILTER_NONE -> {}
+    FILTER_SUB -> for (i in bpp until row.size) {
+      row[i] = (row[i] + row[i - bpp]).toByte()
+    }
+    FILTER_UP -> for (i in row.indices) {
+      row[i] = (row[i] + previous[i]).toByte()
+    }
+    FILTER_AVG -> for (i in row.indices) {
+      val left = if (i >= bpp) row[i - bpp].toInt() and 0xff else 0
+      val up = previous[i].toInt() and 0xff
+      row[i] = (row[i] + ((left + up) shr 1)).toByte()
+    }
+    FILTER_PAETH -> for (i in row.indices) {
+      val left = if (i >= bpp) row[i - bpp].toInt() and 0xff else 0
+      val up = previous[i].toInt() and 0xff
+      val upLeft = if (i >= bpp) previous[i - bpp].toInt() and 0xff else 0
+      row[i] = (row[i] + paeth(left, up, upLeft)).toByte()
+    }
+    else -> error("unknown PNG filter type $filter")
+  }
+}
+
+private fun paeth(left: Int, up: Int, upLeft: Int): Int {
+  val p = left + up - upLeft
+  val pa = Math.abs(p - left)
+  val pb = Math.abs(p - up)
+  val pc = Math.abs(p - upLeft)
+  return when {
+    pa <= pb && pa <= pc -> left
+    pb <= pc -> up
+    else -> upLeft
+  }
+}
+
+/**
+ * Encodes the image the way aapt2 crunches PNGs: fully transparent pixels lose their color, the
+ * smallest of the palette, grayscale and RGB color types is picked and the image data is
+ * compressed with the best zlib compression. The 9-patch chunks are written if [ninePatch] is
+ * set, in which case a palette is never used.
+ */
+fun writePng(image: Image, ninePatch: NinePatch?): ByteArray {
+  val width = image.width
+  val height = image.height
+  val pixels = IntArray(image.pixels.size)
+
+  // The palette keeps the order in which colors are first seen, aapt2 uses the iteration order
+  // of a hash map so the palette indices may differ, but not the size of the image.
+  val colorPalette = LinkedHashSet<Int>()
+  val alphaPalette = LinkedHashSet<Int>()
+  var isGrayscale = true
+  var isOpaque = true
+  var isPalette = true
+  for (i in pixels.indices) {
+    var color = image.pixels[i]
+    val alpha = color ushr 24
+    if (alpha == 0) {
+      color = 0
+    }
+    pixels[i] = color
+
+    val red = (color shr 16) and 0xff
+    val green = (color shr 8) and 0xff
+    val blue = color and 0xff
+    if (red != green || red != blue) {
+      isGrayscale = false
+    }
+    if (alpha != 0xff) {
+      isOpaque = false
+    }
+    if (isPalette && colorPalette.add(color)) {
+      if (colorPalette.size > 256) {
+        isPalette = false
+      } else if (alpha != 0xff) {
+        alphaPalette.add(color)
+      }
+    }
+  }
+
+  val colorType = pickColorType(
+    width,
+    height,
+    isGrayscale,
+    isOpaque,
+    ninePatch == null && isPalette,
+    colorPalette.size,
+    alphaPalette.size)
+
+  val output = ByteArrayOutputStream()
+  output.write(PNG_SIGNATURE)
+
+  val ihdr = ByteBuffer.allocate(13)
+  ihdr.putInt(width)
+  ihdr.putInt(height)
+  ihdr.put(8)
+  ihdr.put(colorType.toByte())
+  ihdr.put(0)
+  ihdr.put(0)
+  ihdr.put(0)
+  writeChunk(output, CHUNK_IHDR, ihdr.array())
+
+  // Colors with alpha get the lowest indices so that the tRNS chunk is as short as possible.
+  var paletteIndices: Map<Int, Int> = emptyMap()
+  if (colorType == COLOR_TYPE_PALETTE) {
+    val ordered = alphaPalette.toList() + colorPalette.filter { it !in alphaPalette }
+    paletteIndices = ordered.withIndex().associate { it.value to it.index }
+    val plte = ByteArray(ordered.size * 3)
+    ordered.forEachIndexed { index, color ->
+      plte[index * 3] = (color shr 16).toByte()
+      plte[index * 3 + 1] = (color shr 8).toByte()
+      plte[index * 3 + 2] = color.toByte()
+    }
+    writeChunk(output, CHUNK_PLTE, plte)
+    if (alphaPalette.isNotEmpty()) {
+      writeChunk(output, CHUNK_TRNS, ByteArray(alphaPalette.size) {
+        (ordered[it] ushr 24).toByte()
+      })
+    }
+  }
+
+  if (ninePatch != null) {
+    writeChunk(output, CHUNK_OUTLINE, ninePatch.serializeRoundedRectOutline())
+    if (ninePatch.layoutBounds.nonZero()) {
+      writeChunk(output, CHUNK_LAYOUT_BOUNDS, ninePatch.serializeLayoutBounds())
+    }
+    writeChunk(output, CHUNK_NINE_PATCH, ninePatch.serializeBase())
+  }
+
+  val bytesPerPixel = when (colorType) {
+    COLOR_TYPE_GRAY, COLOR_TYPE_PALETTE -> 1
+    COLOR_TYPE_GRAY_ALPHA -> 2
+    COLOR_TYPE_RGB -> 3
+    else -> 4
+  }
+  val rowBytes = width * bytesPerPixel
+  val rows = Array(height) { y ->
+    val row = ByteArray(rowBytes)
+    for (x in 0 until width) {
+      val color = pixels[y * width + x]
+      val offset = x * bytesPerPixel
+      when (colorType) {
+        COLOR_TYPE_PALETTE -> row[offset] = paletteIndices.getValue(color).toByte()
+        COLOR_TYPE_GRAY -> row[offset] = color.toByte()
+        COLOR_TYPE_GRAY_ALPHA -> {
+          row[offset] = color.toByte()
+          row[offset + 1] = (color ushr 24).toByte()
+        }
+        else -> {
+          row[offset] = (color shr 16).toByte()
+          row[offset + 1] = (color shr 8).toByte()
+          row[offset + 2] = color.toByte()
+          if (colorType == COLOR_TYPE_RGBA) {
+            row[offset + 3] = (color ushr 24).toByte()
+          }
+        }
+      }
+    }
+    row
+  }
+
+  // Like libpng, palette images are not filtered and the filters of the other images are
+  // picked per row, in which case the zlib strategy is tuned for filtered data.
+  val useFilters = colorType != COLOR_TYPE_PALETTE
+  val filtered = filterRows(rows, bytesPerPixel, width, height, useFilters)
+  val compressed = deflate(filtered, useFilters)
+  optimizeCmf(compressed, filtered.size)
+
+  var offset = 0
+  while (offset < compressed.size) {
+    val length = minOf(IDAT_CHUNK_SIZE, compressed.size - offset)
+    writeChunk(output, CHUNK_IDAT, compressed.copyOfRange(offset, offset + length))
+    offset += length
+  }
+  writeChunk(output, CHUNK_IEND, ByteArray(0))
+  return output.toByteArray()
+}
+
+private fun pickColorType(
+  width: Int,
+  height: Int,
+  isGrayscale: Boolean,
+  isOpaque: Boolean,
+  canUsePalette: Boolean,
+  paletteSize: Int,
+  alphaPaletteSize: Int
+): Int {
+  val pixelCount = width.toLong() * height
+  val paletteChunkSize = 16L + paletteSize * 3
+  val alphaChunkSize = 16L + alphaPaletteSize
+  val paletteDataSize = 16L + pixelCount
+
+  if (isGrayscale) {
+    if (isOpaque) {
+      return COLOR_TYPE_GRAY
+    }
+    if (canUsePalette) {
+      val grayAlphaDataSize = 16L + 2 * pixelCount
+      if (grayAlphaDataSize >
+        paletteChunkSize + alphaChunkSize + paletteDataSize + PALETTE_OVERHEAD_CONSTANT) {
+        return COLOR_TYPE_PALETTE
+      }
+    }
+    return COLOR_TYPE_GRAY_ALPHA
+  }
+
+  if (canUsePalette) {
+    if (isOpaque) {
+      val colorDataSize = 16L + 3 * pixelCount
+      if (colorDataSize > paletteChunkSize + paletteDataSize + PALETTE_OVERHEAD_CONSTANT) {
+        return COLOR_TYPE_PALETTE
+      }
+    } else {
+      val colorAlphaDataSize = 16L + 4 * pixelCount
+      if (colorAlphaDataSize >
+        paletteChunkSize + alphaChunkSize + paletteDataSize + PALETTE_OVERHEAD_CONSTANT) {
+        return COLOR_TYPE_PALETTE
+      }
+    }
+  }
+  return if (isOpaque) COLOR_TYPE_RGB else COLOR_TYPE_RGBA
+}
+
+/**
+ * Prefixes every row with its filter type. When filtering, each row uses the filter with the
+ * smallest sum of absolute differences, which is the heuristic of libpng.
+ */
+private fun filterRows(
+  rows: Array<ByteArray>,
+  bpp: Int,
+  width: Int,
+  height: Int,
+  useFilters: Boolean
+): ByteArray {
+  val rowBytes = if (rows.isEmpty()) 0 else rows[0].size
+  val output = ByteArray(height * (rowBytes + 1))
+  if (!useFilters) {
+    rows.forEachIndexed { y, row ->
+      System.arraycopy(row, 0, output, y * (rowBytes + 1) + 1, rowBytes)
+    }
+    return output
+  }
+
+  // libpng drops the filters that cannot help a single row or column image.
+  val filters = mutableListOf(FILTER_NONE, FILTER_SUB, FILTER_UP, FILTER_AVG, FILTER_PAETH)
+  if (height == 1) {
+    filters.removeAll(listOf(FILTER_UP, FILTER_AVG, FILTER_PAETH))
+  }
+  if (width == 1) {
+    filters.removeAll(listOf(FILTER_SUB, FILTER_AVG, FILTER_PAETH))
+  }
+
+  var previous = ByteArray(rowBytes)
+  val candidate = ByteArray(rowBytes)
+  val best = ByteArray(rowBytes)
+  rows.forEachIndexed { y, row ->
+    var bestFilter = -1
+    var bestSum = Long.MAX_VALUE
+    for (filter in filters) {
+      applyFilter(filter, row, previous, bpp, candidate)
+      var sum = 0L
+      for (value in candidate) {
+        val v = value.toInt() and 0xff
+        sum += if (v < 128) v else 256 - v
+      }
+      if (sum < bestSum) {
+        bestSum = sum
+        bestFilter = filter
+        System.arraycopy(candidate, 0, best, 0, rowBytes)
+      }
+    }
+    val offset = y * (rowBytes + 1)
+    output[offset] = bestFilter.toByte()
+    System.arraycopy(best, 0, output, offset + 1, rowBytes)
+    previous = row
+  }
+  return output
+}
+
+private fun applyFilter(
+  filter: Int,
+  row: ByteArray,
+  previous: ByteArray,
+  bpp: Int,
+  output: ByteArray
+) {
+  for (i in row.indices) {
+    val value = row[i].toInt() and 0xff
+    val left = if (i >= bpp) row[i - bpp].toInt() and 0xff else 0
+    val up = previous[i].toInt() and 0xff
+    val upLeft = if (i >= bpp) previous[i - bpp].toInt() and 0xff else 0
+    output[i] = when (filter) {
+      FILTER_SUB -> value - left
+      FILTER_UP -> value - up
+      FILTER_AVG -> value - ((left + up) shr 1)
+      FILTER_PAETH -> value - paeth(left, up, upLeft)
+      else -> value
+    }.toByte()
+  }
+}
+
+private fun deflate(data: ByteArray, filtered: Boolean): ByteArray {
+  val deflater = Deflater(Deflater.BEST_COMPRESSION)
+  try {
+    deflater.setStrategy(if (filtered) Deflater.FILTERED else Deflater.DEFAULT_STRATEGY)
+    deflater.setInput(data)
+    deflater.finish()
+    val output = ByteArrayOutputStream(maxOf(64, data.size / 2))
+    val buffer = ByteArray(8192)
+    while (!deflater.finished()) {
+      val count = deflater.deflate(buffer)
+      output.write(buffer, 0, count)
+    }
+    return output.toByteArray()
+  } finally {
+    deflater.end()
+  }
+}
+
+/**
+ * Lowers the window size declared in the zlib header of small images, as libpng does, so that
+ * decoders allocate less memory. The stream itself is valid for any window at least as large as
+ * the uncompressed data.
+ */
+private fun optimizeCmf(data: ByteArray, dataSize: Int) {
+  if (data.size < 2 || dataSize > 16384) {
+    return
+  }
+  var cmf = data[0].toInt() and 0xff
+  if ((cmf and 0x0f) != 8 || (cmf and 0xf0) > 0x70) {
+    return
+  }
+  var cinfo = cmf shr 4
+  var halfWindowSize = 1 shl (cinfo + 7)
+  if (dataSize > halfWindowSize) {
+    return
+  }
+  do {
+    halfWindowSize = halfWindowSize shr 1
+    cinfo--
+  } while (cinfo > 0 && dataSize <= halfWindowSize)
+
+  cmf = (cmf and 0x0f) or (cinfo shl 4)
+  data[0] = cmf.toByte()
+  var flags = data[1].toInt() and 0xe0
+  flags += 0x1f - ((cmf shl 8) + flags) % 0x1f
+  data[1] = flags.toByte()
+}
+
+private fun writeChunk(output: ByteArrayOutputStream, type: String, data: ByteArray) {
+  val typeBytes = type.toByteArray(Charsets.US_ASCII)
+  val crc = CRC32()
+  crc.update(typeBytes)
+  crc.update(data)
+  val stream = DataOutputStream(output)
+  stream.writeInt(data.size)
+  stream.write(typeBytes)
+  stream.write(data)
+  stream.writeInt(crc.value.toInt())
+  stream.flush()
+}
@@ -63,8 +63,8 @@ fun canCompileResourceInJvm(file: File, requirePngCrunching: Boolean): Boolean {
             if (pathData.extension == XML_EXTENSION) {
                 return true
             } else if (pathData.extension.endsWith(PNG_EXTENSION)) {
-                // If we don't need to perform patch9 processing or png crunching we can process.
-                return pathData.extension != PATCH_9_EXTENSION && !requirePngCrunching
+                // Patch9 processing and png crunching are both done in the JVM.
+                return true
             }
         }
     }
@@ -348,8 +348,13 @@ private fun compileXml(
  * processing is done to the png file, and if so it will just be written exactly as if it were
  * a raw file.
  *
+ * As in aapt2, a crunched png is only used if it is not larger than the original with its
+ * unneeded chunks removed, while a patch9 file always uses the re-encoded image since its
+ * border has to be stripped.
+ *
  * @param pathData the file to process.
  * @param outputDirectory the directory in which the processed file will be placed.
+ * @throws ResourceCompilationException the png is malformed.
  */
 private fun compilePng(
     pathData: ResourcePathData,
@@ -357,11 +362,50 @@ private fun compilePng(
     options: ResourceCompilerOptions,
     logger: BlameLogger?) {
     logger?.info("Compiling image file ${pathData.file.absolutePath}")
-    if (pathData.extension == PATCH_9_EXTENSION) {
-        error("Patch 9 PNG processing is not supported with the JVM Android resource compiler.")
+    val isPatch9 = pathData.extension == PATCH_9_EXTENSION
+    if (!isPatch9 && !options.requirePngCrunching) {
+        compileFile(pathData, outputDirectory, options, logger)
+        return
+    }
+
+    val content = pathData.file.readBytes()
+    val processed = try {
+        val filtered = filterPngChunks(content)
+        var image = readPng(filtered)
+        var ninePatch: NinePatch? = null
+        if (isPatch9) {
+            ninePatch = try {
+                NinePatch.create(image)
+            } catch (e: IllegalStateException) {
+                error("9-patch malformed: ${e.message}")
+            }
+            image = image.stripBorder()
+        }
+
+        val crunched = writePng(image, ninePatch)
+        if (ninePatch != null || crunched.size <= filtered.size) crunched else filtered
+    } catch (e: Exception) {
+        throw ResourceCompilationException(
+            "Failed to compile png file: " +
+                    logger?.getOutputSource(blameSource(pathData.source)),
+            e
+        )
     }
-    if (options.requirePngCrunching) {
-        error("PNG crunching is not supported with the JVM Android resource compiler.")
+
+    val outputFile = File(outputDirectory, pathData.getIntermediateContainerFilename())
+    logger?.info("Writing compiled image file to $outputFile")
+    val resourceFile = ResourceFile(
+        ResourceName("", resourceTypeFromTag(pathData.resourceDirectory)!!, pathData.name),
+        pathData.config,
+        pathData.source,
+        ResourceFile.Type.Png
+    )
+    outputFile.outputStream().use {
+        Container(it, 1).addFileEntry(processed.inputStream(), resourceFile)
+    }
+
+    if (options.partialRFile != null) {
+        val partialR = "default int ${pathData.type!!.tagName} ${pathData.name}"
+        FileUtils.writeToFile(options.partialRFile, partialR)
     }
-    compileFile(pathData, outputDirectory, options, logger)
 }
\ No newline at end of file
@@ -633,6 +633,10 @@ class DependencyConfigurator(
             if (projectOptions[BooleanOption.ENABLE_DEXING_ARTIFACT_TRANSFORM]) {
                 if (allComponents.isNotEmpty()) {
                     val services = allComponents.first().services
+                    val dexCacheDir =
+                        if (projectOptions[BooleanOption.ENABLE_SHARED_DEX_ARCHIVE_CACHE]) {
+                            project.gradle.gradleUserHomeDir.resolve(DEX_ARCHIVE_CACHE_DIR)
+                        } else null
 
                     for (artifactConfiguration in getDexingArtifactConfigurations(
                         allComponents
@@ -643,6 +647,7 @@ class DependencyConfigurator(
                             bootClasspath,
                             getDesugarLibConfig(services),
                             SyncOptions.getErrorFormatMode(projectOptions),
+                            dexCacheDir
                         )
                     }
                 }
@@ -56,10 +56,14 @@ class WorkerExecutorResourceCompilationService(
         }
         requests.removeAll(jvmRequests)
 
-        // Split all requests into buckets, giving each worker the same number of files to process
+        // Split all requests into buckets, giving each worker the same number of files to process.
+        // Sort them the same way as the AAPT2 requests below, so that the merged values files,
+        // which are by far the most expensive to compile, do not end up in the same bucket.
         var ord = 0
         val jvmBuckets =
-            jvmRequests.groupByTo(HashMap(maxWorkersCount)) { (ord++) % maxWorkersCount }
+            jvmRequests
+                .sortedWith(compareBy({ getExtension(it.inputFile) }, { it.inputFile.length() }))
+                .groupByTo(HashMap(maxWorkersCount)) { (ord++) % maxWorkersCount }
 
         jvmBuckets.values.forEach { bucket ->
             workerExecutor.noIsolation()
@@ -0,0 +1,137 @@
+package com.tyron.builder.gradle.internal.dependency
+
+import com.android.tools.r8.Version
+import com.android.utils.FileUtils
+import com.google.common.hash.Hashing
+import com.google.common.io.Files
+import com.tyron.builder.utils.SynchronizedFile
+import org.gradle.api.logging.Logging
+import java.io.File
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
+
+/**
+ * Dex archives of library jars, shared by every project built on this device.
+ *
+ * Projects commonly depend on the same AndroidX and Kotlin jars, which are dexed to the same
+ * output as long as the dexing parameters are the same. Entries are keyed by the content of the
+ * jar, the parameters that affect the dex output and the D8 version, so an entry never has to be
+ * invalidated. Entries that have not been used for [MAX_UNUSED_DAYS] are deleted.
+ *
+ * Access to an entry is synchronized across processes as several Gradle daemons may build at
+ * the same time.
+ */
+class DexArchiveCache(private val cacheDir: File) {
+
+    init {
+        // the lock files of the entries are created next to them
+        FileUtils.mkdirs(cacheDir)
+    }
+
+    /**
+     * Computes the cache key of a jar dexed with the given parameters. Only the names and sizes
+     * of the boot classpath jars are hashed, they are platform jars that are not edited in place.
+     */
+    fun computeKey(
+        input: File,
+        minSdkVersion: Int,
+        debuggable: Boolean,
+        enableDesugaring: Boolean,
+        libConfiguration: String?,
+        bootClasspath: Collection<File>
+    ): String {
+        val hasher = Hashing.sha256().newHasher()
+        hasher.putInt(CACHE_VERSION)
+        hasher.putUnencodedChars(Version.getVersionString())
+        hasher.putInt(minSdkVersion)
+        hasher.putBoolean(debuggable)
+        hasher.putBoolean(enableDesugaring)
+        hasher.putUnencodedChars(libConfiguration ?: "")
+        bootClasspath.sortedBy { it.name }.forEach {
+            hasher.putUnencodedChars(it.name)
+            hasher.putLong(it.length())
+        }
+        hasher.putBytes(Files.asByteSource(input).hash(Hashing.sha256()).asBytes())
+        return hasher.hash().toString()
+    }
+
+    /**
+     * Copies the dex archive stored for [key] into [outputDir].
+     *
+     * @return whether an entry was found
+     */
+    fun restore(key: String, outputDir: File): Boolean {
+        val entry = cacheDir.resolve(key)
+        return try {
+            SynchronizedFile.getInstanceWithMultiProcessLocking(entry).read {
+                if (!it.isDirectory) {
+                    return@read false
+                }
+                FileUtils.copyDirectoryContentToDirectory(it, outputDir)
+                // the last modified time of an entry records when it was last used
+                it.setLastModified(System.currentTimeMillis())
+                true
+            }
+        } catch (e: Exception) {
+            LOGGER.warn("Failed to restore cached dex archive $key: ${e.message}")
+            FileUtils.deleteRecursivelyIfExists(outputDir)
+            FileUtils.mkdirs(outputDir)
+            false
+        }
+    }
+
+    /**
+     * Stores the contents of [dexOutputDir] for [key], unless another build stored it first.
+     */
+    fun store(key: String, dexOutputDir: File) {
+        try {
+            SynchronizedFile.getInstanceWithMultiProcessLocking(cacheDir.resolve(key))
+                .createIfAbsent { entry ->
+                    // copy to a temporary directory first so that an interrupted copy
+                    // never leaves an incomplete entry behind
+                    val tmp = cacheDir.resolve("$key.tmp")
+                    FileUtils.deleteRecursivelyIfExists(tmp)
+                    FileUtils.mkdirs(tmp)
+                    FileUtils.copyDirectoryContentToDirectory(dexOutputDir, tmp)
+                    FileUtils.renameTo(tmp, entry)
+                }
+        } catch (e: Exception) {
+            LOGGER.warn("Failed to cache dex archive $key: ${e.message}")
+        }
+        if (cleanedUp.compareAndSet(false, true)) {
+            deleteUnusedEntries()
+        }
+    }
+
+    private fun deleteUnusedEntries() {
+        val threshold = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(MAX_UNUSED_DAYS)
+        val entries = cacheDir.listFiles() ?: return
+        for (entry in entries) {
+            if (!entry.isDirectory || entry.lastModified() >= threshold) {
+                continue
+            }
+            try {
+                SynchronizedFile.getInstanceWithMultiProcessLocking(entry).write {
+                    FileUtils.deleteRecursivelyIfExists(it)
+                }
+            } catch (e: Exception) {
+                LOGGER.warn("Failed to delete unused dex archive ${entry.name}: ${e.message}")
+            }
+        }
+    }
+
+    companion object {
+        private val LOGGER = Logging.getLogger(DexArchiveCache::class.java)
+
+        /** Bump when the layout of the cached archives changes. */
+        private const val CACHE_VERSION = 1
+
+        private const val MAX_UNUSED_DAYS = 30L
+
+        /** Unused entries are looked for once per daemon. */
+        private val cleanedUp = AtomicBoolean()
+    }
+}
+
+/** Location of the [DexArchiveCache], relative to the Gradle user home. */
+const val DEX_ARCHIVE_CACHE_DIR = "android/dex-cache"
@@ -25,6 +25,7 @@ import org.gradle.api.artifacts.transform.TransformOutputs
 import org.gradle.api.artifacts.type.ArtifactTypeDefinition
 import org.gradle.api.attributes.Attribute
 import org.gradle.api.file.ConfigurableFileCollection
+import org.gradle.api.file.DirectoryProperty
 import org.gradle.api.file.FileCollection
 import org.gradle.api.file.FileSystemLocation
 import org.gradle.api.logging.Logging
@@ -63,6 +64,9 @@ abstract class BaseDexingTransform<T : BaseDexingTransform.Parameters> : Transfo
         @get:Optional
         @get:Input
         val libConfiguration: Property<String>
+        /** Location of the [DexArchiveCache] shared between projects, not set if disabled. */
+        @get:Internal
+        val dexCacheDir: DirectoryProperty
     }
 
     @get:Inject
@@ -214,6 +218,25 @@ abstract class BaseDexingTransform<T : BaseDexingTransform.Parameters> : Transfo
             MutableDependencyGraph<File>()
         }
 
+        // jars of external libraries are usually shared by many projects. Their dex output
+        // only depends on the jar itself when there is no classpath and no keep rules to output
+        val dexCache = if (!provideIncrementalSupport && keepRulesOutputFile == null) {
+            parameters.dexCacheDir.orNull?.asFile?.let { DexArchiveCache(it) }
+        } else null
+        val cacheKey = if (dexCache != null && computeClasspathFiles().isEmpty()) {
+            dexCache.computeKey(
+                input,
+                parameters.minSdkVersion.get(),
+                parameters.debuggable.get(),
+                parameters.enableDesugaring.get(),
+                parameters.libConfiguration.orNull,
+                parameters.bootClasspath.files
+            )
+        } else null
+        if (cacheKey != null && dexCache!!.restore(cacheKey, dexOutputDir)) {
+            return
+        }
+
         process(
             input,
             { _, _ -> true },
@@ -223,6 +246,10 @@ abstract class BaseDexingTransform<T : BaseDexingTransform.Parameters> : Transfo
             desugarGraph
         )
 
+        if (cacheKey != null) {
+            dexCache!!.store(cacheKey, dexOutputDir)
+        }
+
         // Store the desugaring graph for use in the next build. If dexing failed earlier, it is
         // intended that we will not store the graph as it is only meant to contain info about a
         // previous successful build.
@@ -335,7 +362,8 @@ data class DexingArtifactConfiguration(
         dependencyHandler: DependencyHandler,
         bootClasspath: FileCollection,
         libConfiguration: Provider<String>,
-        errorFormat: SyncOptions.ErrorFormatMode
+        errorFormat: SyncOptions.ErrorFormatMode,
+        dexCacheDir: File?
     ) {
         dependencyHandler.registerTransform(getTransformClass()) { spec ->
             spec.parameters { parameters ->
@@ -351,6 +379,7 @@ data class DexingArtifactConfiguration(
                 if (enableCoreLibraryDesugaring) {
                     parameters.libConfiguration.set(libConfiguration)
                 }
+                dexCacheDir?.let { parameters.dexCacheDir.set(it) }
             }
             // There are 2 transform flows for DEX:
             //   1. (JACOCO_)CLASSES_DIR -> (JACOCO_)CLASSES -> DEX
@@ -5,8 +5,10 @@ import com.android.annotations.concurrency.GuardedBy
 import com.android.utils.ILogger
 import com.google.common.io.Closer
 import com.tyron.builder.gradle.internal.LoggerWrapper
+import com.tyron.builder.gradle.internal.res.LinkApplicationAndroidResourcesTask
 import com.tyron.builder.gradle.internal.workeractions.WorkerActionServiceRegistry
 import com.tyron.builder.gradle.options.ProjectOptions
+import com.tyron.builder.gradle.tasks.MergeResources
 import com.tyron.builder.ide.common.ProcessException
 import com.tyron.builder.internal.aapt.v2.Aapt2
 import com.tyron.builder.internal.aapt.v2.Aapt2DaemonImpl
@@ -17,6 +19,7 @@ import org.gradle.api.InvalidUserDataException
 import org.gradle.api.Project
 import org.gradle.api.file.ConfigurableFileCollection
 import org.gradle.api.provider.Property
+import org.gradle.api.provider.Provider
 import org.gradle.api.services.BuildService
 import org.gradle.api.services.BuildServiceParameters
 import org.gradle.api.tasks.Input
@@ -25,10 +28,12 @@ import java.io.Closeable
 import java.io.IOException
 import java.nio.file.Files
 import java.nio.file.Path
+import java.util.concurrent.ConcurrentHashMap
 import java.util.concurrent.Executors
 import java.util.concurrent.ScheduledExecutorService
 import java.util.concurrent.ScheduledFuture
 import java.util.concurrent.TimeUnit
+import kotlin.concurrent.thread
 
 /**
  * Service registry used to store AAPT2 daemon services so they are accessible from the worker
@@ -68,6 +73,8 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
     private val services = mutableMapOf<Aapt2DaemonServiceKey, Aapt2DaemonManager>()
     private val closer = Closer.create()
     private val logger: ILogger = LoggerWrapper.getLogger(this.javaClass)
+    @GuardedBy("this")
+    private var warmUpStarted = false
 
     fun getLeasingAapt2(aapt2Input: Aapt2Input) : Aapt2 {
         val manager = getManager(Aapt2DaemonServiceKey(aapt2Input.version.get()), getAapt2ExecutablePath(aapt2Input))
@@ -105,8 +112,60 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
                 expiryTime = daemonExpiryTimeSeconds,
                 expiryTimeUnit = TimeUnit.SECONDS,
                 listener = Aapt2DaemonManagerMaintainer()
-            )
-        }.also { closer.register(Closeable { it.shutdown() }) }
+            ).also { manager ->
+                closer.register(Closeable {
+                    recordConcurrency(key, aaptExecutablePath, manager)
+                    manager.shutdown()
+                })
+            }
+        }
+    }
+
+    /**
+     * Starts as many daemons as were leased at the same time by the previous build in this
+     * Gradle daemon, in the background. Does nothing on the first build, as it is not known
+     * which AAPT2 executable the tasks will use yet.
+     */
+    @Synchronized
+    fun warmUp() {
+        if (warmUpStarted) {
+            return
+        }
+        warmUpStarted = true
+        for ((key, observed) in observedConcurrency) {
+            if (!Files.exists(observed.aaptExecutablePath)) {
+                continue
+            }
+            val manager = getManager(key, observed.aaptExecutablePath)
+            val count = minOf(observed.peakBusyCount, parameters.maxAapt2Daemons.get())
+            val warmUpThread = thread(name = "aapt2-daemon-warm-up", isDaemon = true) {
+                manager.warmUp(count)
+            }
+            // Registered after the manager, so it is waited for before the manager shuts down.
+            closer.register(Closeable { warmUpThread.join() })
+        }
+    }
+
+    private fun recordConcurrency(
+        key: Aapt2DaemonServiceKey,
+        aaptExecutablePath: Path,
+        manager: Aapt2DaemonManager
+    ) {
+        val stats = manager.stats()
+        if (stats.leaseCount == 0) {
+            return
+        }
+        observedConcurrency[key] = ObservedConcurrency(aaptExecutablePath, stats.peakBusyCount)
+        logger.info(
+            "AAPT2 daemons: %d leases waited %d ms, %d processes started in %d ms, " +
+                    "peak concurrency %d, utilization %.0f%%",
+            stats.leaseCount,
+            TimeUnit.NANOSECONDS.toMillis(stats.leaseWaitNanoSeconds),
+            stats.processStartCount,
+            TimeUnit.NANOSECONDS.toMillis(stats.processStartNanoSeconds),
+            stats.peakBusyCount,
+            stats.utilization * 100
+        )
     }
 
     fun getAapt2ExecutablePath(aapt2: Aapt2Input): Path {
@@ -126,6 +185,7 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
 
     abstract class Parameters: BuildServiceParameters {
         abstract val errorFormatMode: Property<SyncOptions.ErrorFormatMode>
+        abstract val maxAapt2Daemons: Property<Int>
     }
 
     class RegistrationAction(project: Project, val projectOptions: ProjectOptions) :
@@ -134,12 +194,35 @@ abstract class Aapt2DaemonBuildService : BuildService<Aapt2DaemonBuildService.Pa
             Aapt2DaemonBuildService::class.java,
             computeMaxAapt2Daemons(projectOptions)
         ) {
+        override fun execute(): Provider<Aapt2DaemonBuildService> {
+            val service = super.execute()
+            // Start the daemons as soon as it is known that resources will be processed, rather
+            // than when the first resource task leases one.
+            project.gradle.taskGraph.whenReady { graph ->
+                if (graph.allTasks.any {
+                        it is MergeResources || it is LinkApplicationAndroidResourcesTask
+                    }) {
+                    service.get().warmUp()
+                }
+            }
+            return service
+        }
+
         override fun configure(parameters: Parameters) {
             parameters.errorFormatMode.set(SyncOptions.getErrorFormatMode(projectOptions))
+            parameters.maxAapt2Daemons.set(computeMaxAapt2Daemons(projectOptions))
         }
     }
 }
 
+private data class ObservedConcurrency(val aaptExecutablePath: Path, val peakBusyCount: Int)
+
+/**
+ * The number of daemons that were leased at the same time by the last build using each AAPT2
+ * version. Kept for the lifetime of the Gradle daemon, so the next build can start them ahead.
+ */
+private val observedConcurrency = ConcurrentHashMap<Aapt2DaemonServiceKey, ObservedConcurrency>()
+
 /**
  * An AAPT2 input for use in a task or a transform, for use with [org.gradle.api.tasks.Nested]
  *
@@ -107,6 +107,12 @@ enum class BooleanOption(
     ENABLE_LOCAL_TESTING("android.bundletool.enableLocalTesting", false, FeatureStage.Experimental),
     DISABLE_MINSDKLIBRARY_CHECK("android.unsafe.disable.minSdkLibraryCheck", false, FeatureStage.Experimental),
 
+    /**
+     * When enabled, dex archives of external library jars are stored in the Gradle user home and
+     * reused by every project that depends on the same jar with the same dexing parameters.
+     */
+    ENABLE_SHARED_DEX_ARCHIVE_CACHE("android.experimental.enableSharedDexArchiveCache", true, FeatureStage.Experimental),
+
     /**
      * When enabled, incompatible APKs installed on a testing device will be uninstalled automatically
      * during an instrumentation test run (e.g. When INSTALL_FAILED_UPDATE_INCOMPATIBLE error happens
@@ -79,6 +79,12 @@ abstract class Aapt2Daemon(
      */
     protected abstract fun startProcess()
 
+    /**
+     * Starts the underlying process if it has not been started yet, so that the first request
+     * does not have to wait for it.
+     */
+    fun start() = checkStarted()
+
     override fun compile(request: com.android.ide.common.resources.CompileResourceRequest, logger: ILogger) {
         checkStarted()
         try {
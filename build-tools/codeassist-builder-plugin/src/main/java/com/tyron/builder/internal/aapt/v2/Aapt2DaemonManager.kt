@@ -23,6 +23,9 @@ import javax.annotation.concurrent.ThreadSafe
  * Users of this class are expected to call leaseProcess on a worker thread in a
  * try-with-resources/use block. The operations on the [LeasedAaptDaemon] are then blocking on that
  * thread.
+ *
+ * Daemons can be started ahead of the first request with [warmUp]. The time spent waiting for a
+ * daemon to be ready, starting processes and the utilization of the pool are reported by [stats].
  */
 @ThreadSafe
 class Aapt2DaemonManager(
@@ -41,10 +44,37 @@ class Aapt2DaemonManager(
     @GuardedBy("this")
     private val pool: MutableList<LeasableAaptDaemon> = mutableListOf()
 
+    @GuardedBy("this")
+    private var leaseCount: Int = 0
+    /** The sum of the time between each lease request and its daemon being ready for commands. */
+    @GuardedBy("this")
+    private var leaseWaitNanoSeconds: Long = 0
+    @GuardedBy("this")
+    private var processStartCount: Int = 0
+    @GuardedBy("this")
+    private var processStartNanoSeconds: Long = 0
+    /** The largest number of leased daemons, daemons that are only [warmUp] are not counted. */
+    @GuardedBy("this")
+    private var peakBusyCount: Int = 0
+    /** The sum of the time each lease was held, compared to [poolNanoSeconds] for utilization. */
+    @GuardedBy("this")
+    private var busyNanoSeconds: Long = 0
+    /** The sum of the time each daemon spent in the pool, updated when the pool changes. */
+    @GuardedBy("this")
+    private var poolNanoSeconds: Long = 0
+    @GuardedBy("this")
+    private var lastPoolChangeNanoSeconds: Long = timeSource.read()
+
     internal class LeasableAaptDaemon(
             val daemon: Aapt2Daemon,
             var lastUsedNanoSeconds: Long,
             var busy: Boolean = false) {
+        /** Whether the daemon is being started by [warmUp], it cannot be leased until then. */
+        var starting: Boolean = false
+        var requestedNanoSeconds: Long = 0
+        var leasedNanoSeconds: Long = 0
+        /** Whether the current lease has not yet been counted in [leaseWaitNanoSeconds]. */
+        var waiting: Boolean = false
         fun shutdown() = daemon.shutDown()
     }
 
@@ -54,12 +84,48 @@ class Aapt2DaemonManager(
      *
      * Blocks until the daemon is ready to receive commands.
      */
-    @Synchronized
     fun leaseDaemon(): LeasedAaptDaemon {
-        val daemon =
-                pool.find { !it.busy } ?: newAaptDaemon()
-        daemon.busy = true
-        return LeasedAaptDaemon(daemon, this::returnProcess)
+        val requestedNanoSeconds = timeSource.read()
+        val daemon = synchronized(this) {
+            val daemon = pool.find { !it.busy && !it.starting } ?: newAaptDaemon()
+            daemon.busy = true
+            daemon.requestedNanoSeconds = requestedNanoSeconds
+            daemon.leasedNanoSeconds = timeSource.read()
+            daemon.waiting = true
+            leaseCount++
+            peakBusyCount = maxOf(peakBusyCount, pool.count { it.busy })
+            daemon
+        }
+        return LeasedAaptDaemon(daemon, this::prepareLease, this::releaseLease)
+    }
+
+    /**
+     * Starts daemons until there are at least [count] of them in the pool, so that the first
+     * requests of a build do not pay for the process startup.
+     *
+     * Daemons are started one at a time on the calling thread, each is available to
+     * [leaseDaemon] as soon as it has started.
+     */
+    fun warmUp(count: Int) {
+        while (true) {
+            val daemon = synchronized(this) {
+                if (pool.size >= count) {
+                    return
+                }
+                newAaptDaemon().also { it.starting = true }
+            }
+            try {
+                startProcess(daemon)
+            } catch (e: Exception) {
+                logger.warning("Failed to start AAPT2 daemon ahead of use: %s", e.message)
+                return
+            } finally {
+                synchronized(this) {
+                    daemon.starting = false
+                    returnProcess(daemon)
+                }
+            }
+        }
     }
 
     /**
@@ -74,13 +140,14 @@ class Aapt2DaemonManager(
     /** Shuts down this AAPT process manager. */
     @Synchronized
     fun shutdown() {
-        if (pool.any { it.busy }) {
+        if (pool.any { it.busy || it.starting }) {
             error("AAPT Process manager cannot be shut down while daemons are in use")
         }
         if (!pool.isEmpty()) {
             listener.lastDaemonStopped()
         }
         pool.forEach { it.shutdown() }
+        updatePoolTime()
         pool.clear()
     }
 
@@ -92,16 +159,66 @@ class Aapt2DaemonManager(
         if (pool.isEmpty()) {
             listener.firstDaemonStarted(this)
         }
+        updatePoolTime()
         pool.add(daemon)
         return daemon
     }
 
+    /** Starts the process of a daemon that is not started yet, recording how long it took. */
+    private fun startProcess(key: LeasableAaptDaemon) {
+        if (key.daemon.state != Aapt2Daemon.State.NEW) {
+            return
+        }
+        val startNanoSeconds = timeSource.read()
+        try {
+            key.daemon.start()
+        } finally {
+            val elapsed = timeSource.read() - startNanoSeconds
+            synchronized(this) {
+                processStartCount++
+                processStartNanoSeconds += elapsed
+            }
+        }
+    }
+
+    /**
+     * Starts the daemon of a lease before each command. The lease has waited until the first
+     * call returns, as the process is only started when it is first used.
+     */
+    private fun prepareLease(key: LeasableAaptDaemon) {
+        try {
+            startProcess(key)
+        } finally {
+            recordLeaseWait(key)
+        }
+    }
+
+    @Synchronized
+    private fun recordLeaseWait(key: LeasableAaptDaemon) {
+        if (key.waiting) {
+            key.waiting = false
+            leaseWaitNanoSeconds += timeSource.read() - key.requestedNanoSeconds
+        }
+    }
+
+    @Synchronized
+    private fun releaseLease(key: LeasableAaptDaemon) {
+        if (key.waiting) {
+            // No command was run, the lease only waited for the daemon to be picked.
+            key.waiting = false
+            leaseWaitNanoSeconds += key.leasedNanoSeconds - key.requestedNanoSeconds
+        }
+        busyNanoSeconds += timeSource.read() - key.leasedNanoSeconds
+        returnProcess(key)
+    }
+
     /** Marks the process as returned, and updates when it was last used */
     @Synchronized
     private fun returnProcess(key: LeasableAaptDaemon) {
         if (key.daemon.state != Aapt2Daemon.State.RUNNING) {
             // If the daemon was not started or has stopped there's no point keeping it in the pool.
             // No need to shut it down either, that would have already happened if needed.
+            updatePoolTime()
             pool.remove(key)
             if (pool.isEmpty()) {
                 listener.lastDaemonStopped()
@@ -117,11 +234,13 @@ class Aapt2DaemonManager(
         val expired = mutableListOf<LeasableAaptDaemon>()
         val expireHorizon = timeSource.read() - expiryTimeNanoSeconds
         val oldPool = ArrayList(pool)
+        updatePoolTime()
         pool.clear()
         for (daemon in oldPool) {
             when {
             // Daemons that are in use, or have been used recently are kept
-                daemon.busy || daemon.lastUsedNanoSeconds >= expireHorizon -> pool.add(daemon)
+                daemon.busy || daemon.starting || daemon.lastUsedNanoSeconds >= expireHorizon ->
+                    pool.add(daemon)
                 else -> expired.add(daemon)
             }
         }
@@ -131,6 +250,13 @@ class Aapt2DaemonManager(
         return expired
     }
 
+    @GuardedBy("this")
+    private fun updatePoolTime() {
+        val now = timeSource.read()
+        poolNanoSeconds += pool.size * (now - lastPoolChangeNanoSeconds)
+        lastPoolChangeNanoSeconds = now
+    }
+
     /**
      * A wrapper for an AAPT daemon that can return it to the pool of daemons once the processes
      * are finished.
@@ -142,6 +268,7 @@ class Aapt2DaemonManager(
     @NotThreadSafe
     class LeasedAaptDaemon internal constructor(
             private val leasableDaemon: LeasableAaptDaemon,
+            private val startAction: (LeasableAaptDaemon) -> Unit,
             private val closeAction: (LeasableAaptDaemon) -> Unit) : Aapt2, Closeable {
 
         private var leaseValid = true
@@ -149,18 +276,21 @@ class Aapt2DaemonManager(
         @Throws(Aapt2Exception::class)
         override fun compile(request: CompileResourceRequest, logger: ILogger) {
             Preconditions.checkState(leaseValid, "Leased process is already closed")
+            startAction(leasableDaemon)
             leasableDaemon.daemon.compile(request, logger)
         }
 
         @Throws(Aapt2Exception::class)
         override fun link(request: AaptPackageConfig, logger: ILogger) {
             Preconditions.checkState(leaseValid, "Leased process is already closed")
+            startAction(leasableDaemon)
             leasableDaemon.daemon.link(request, logger)
         }
 
         @Throws(Aapt2Exception::class)
         override fun convert(request: AaptConvertConfig, logger: ILogger) {
             Preconditions.checkState(leaseValid, "Leased process is already closed")
+            startAction(leasableDaemon)
             leasableDaemon.daemon.convert(request, logger)
         }
 
@@ -207,8 +337,36 @@ class Aapt2DaemonManager(
     }
 
     @Synchronized
-    fun stats(): Stats = Stats(poolSize = pool.size, busyCount = pool.count { it.busy })
+    fun stats(): Stats {
+        updatePoolTime()
+        return Stats(
+            poolSize = pool.size,
+            busyCount = pool.count { it.busy },
+            leaseCount = leaseCount,
+            leaseWaitNanoSeconds = leaseWaitNanoSeconds,
+            processStartCount = processStartCount,
+            processStartNanoSeconds = processStartNanoSeconds,
+            peakBusyCount = peakBusyCount,
+            utilization =
+                if (poolNanoSeconds == 0L) 0.0 else busyNanoSeconds.toDouble() / poolNanoSeconds
+        )
+    }
 
-    data class Stats(val poolSize: Int, val busyCount: Int)
+    /**
+     * @property leaseWaitNanoSeconds the time between the lease requests and their daemon being
+     * ready for commands, including the time spent starting the processes that were not started
+     * ahead of use
+     * @property peakBusyCount the largest number of daemons leased at the same time
+     * @property utilization the fraction of the time the daemons in the pool were leased
+     */
+    data class Stats(
+        val poolSize: Int,
+        val busyCount: Int,
+        val leaseCount: Int = 0,
+        val leaseWaitNanoSeconds: Long = 0,
+        val processStartCount: Int = 0,
+        val processStartNanoSeconds: Long = 0,
+        val peakBusyCount: Int = 0,
+        val utilization: Double = 0.0)
 
 }
\ No newline at end of file
@@ -8,29 +8,39 @@ import static java.util.zip.Deflater.DEFAULT_COMPRESSION;
 import com.android.SdkConstants;
 import com.android.annotations.NonNull;
 import com.android.annotations.Nullable;
+import com.tyron.builder.files.DirectoryEntry;
 import com.tyron.builder.files.NativeLibraryAbiPredicate;
 import com.tyron.builder.files.RelativeFile;
 import com.tyron.builder.files.SerializableChange;
+import com.tyron.builder.files.ZipCentralDirectory;
 import com.android.ide.common.resources.FileStatus;
 import com.android.tools.build.apkzlib.zfile.ApkCreator;
 import com.android.tools.build.apkzlib.zfile.ApkCreatorFactory;
 import com.android.zipflinger.ZipArchive;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
+import com.google.common.io.ByteSource;
 import com.google.common.io.Closer;
+import com.google.common.io.Files;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
 import kotlin.text.StringsKt;
 
 /**
@@ -277,12 +287,179 @@ public class IncrementalPackager implements Closeable {
         packagedFileUpdates.addAll(getArtProfileUpdates(mChangedArtProfile));
         packagedFileUpdates.addAll(getArtProfileMetadataUpdates(mChangedArtProfileMetadata));
 
+        List<SerializableChange> changedAssets = mChangedAssets;
+        if (mCreationData.isIncremental() && mCreationData.getApkPath().isFile()) {
+            Map<String, DirectoryEntry> apkEntries =
+                    new ZipCentralDirectory(mCreationData.getApkPath()).getEntries();
+            packagedFileUpdates =
+                    removeUnchangedFiles(
+                            packagedFileUpdates, mCreationData.getApkPath(), apkEntries);
+            changedAssets =
+                    removeUnchangedSingleEntryJars(
+                            changedAssets, mCreationData.getApkPath(), apkEntries);
+        }
+
         // First delete all REMOVED (and maybe CHANGED) files, then add all NEW or CHANGED files.
         deleteFiles(packagedFileUpdates);
-        updateSingleEntryJars(mChangedAssets);
+        updateSingleEntryJars(changedAssets);
         addFiles(packagedFileUpdates);
     }
 
+    /**
+     * Removes the CHANGED updates whose new content is already in the APK, for example a dex file
+     * that was rebuilt without changes. The entries of the APK are only touched for the files that
+     * really changed, and if none did the APK is not opened at all, so it is not signed again.
+     *
+     * @param updates the updates to filter
+     * @param apk the APK
+     * @param apkEntries the entries currently in the APK
+     * @return the updates that need to be applied to the APK
+     */
+    @VisibleForTesting
+    @NonNull
+    static List<PackagedFileUpdate> removeUnchangedFiles(
+            @NonNull List<PackagedFileUpdate> updates,
+            @NonNull File apk,
+            @NonNull Map<String, DirectoryEntry> apkEntries)
+            throws IOException {
+        Map<File, Map<String, DirectoryEntry>> archiveEntries = new HashMap<>();
+        List<PackagedFileUpdate> changedUpdates = new ArrayList<>(updates.size());
+        try (ArchiveContents contents = new ArchiveContents()) {
+            for (PackagedFileUpdate update : updates) {
+                DirectoryEntry apkEntry = apkEntries.get(update.getName());
+                if (update.getStatus() != CHANGED
+                        || apkEntry == null
+                        || !hasContent(
+                                update.getSource(),
+                                contents.entry(apk, apkEntry),
+                                archiveEntries,
+                                contents)) {
+                    changedUpdates.add(update);
+                }
+            }
+        }
+        return changedUpdates;
+    }
+
+    /**
+     * Like {@link #removeUnchangedFiles(List, File, Map)} for the single-entry jars passed to
+     * {@link #updateSingleEntryJars(Collection)}.
+     */
+    @NonNull
+    private static List<SerializableChange> removeUnchangedSingleEntryJars(
+            @NonNull List<SerializableChange> changes,
+            @NonNull File apk,
+            @NonNull Map<String, DirectoryEntry> apkEntries)
+            throws IOException {
+        List<SerializableChange> changedJars = new ArrayList<>(changes.size());
+        try (ArchiveContents contents = new ArchiveContents()) {
+            for (SerializableChange change : changes) {
+                String entryName =
+                        StringsKt.removeSuffix(change.getNormalizedPath(), SdkConstants.DOT_JAR);
+                DirectoryEntry apkEntry = apkEntries.get(entryName);
+                if (change.getFileStatus() != CHANGED || apkEntry == null) {
+                    changedJars.add(change);
+                    continue;
+                }
+                DirectoryEntry jarEntry =
+                        new ZipCentralDirectory(change.getFile()).getEntries().get(entryName);
+                if (jarEntry == null
+                        || !hasContent(
+                                contents.entry(change.getFile(), jarEntry),
+                                contents.entry(apk, apkEntry))) {
+                    changedJars.add(change);
+                }
+            }
+        }
+        return changedJars;
+    }
+
+    /** Checks whether the given source file has the same content as the given APK entry. */
+    private static boolean hasContent(
+            @NonNull RelativeFile source,
+            @NonNull EntryContent apkEntry,
+            @NonNull Map<File, Map<String, DirectoryEntry>> archiveEntries,
+            @NonNull ArchiveContents contents)
+            throws IOException {
+        if (source.getType() == RelativeFile.Type.JAR) {
+            DirectoryEntry entry =
+                    archiveEntries
+                            .computeIfAbsent(
+                                    source.getBase(),
+                                    base -> new ZipCentralDirectory(base).getEntries())
+                            .get(source.getRelativePath());
+            return entry != null && hasContent(contents.entry(source.getBase(), entry), apkEntry);
+        }
+        File file = source.getFile();
+        // Only read the file if it can possibly be the same.
+        if (file.length() != apkEntry.mEntry.getSize()) {
+            return false;
+        }
+        return Files.asByteSource(file).contentEquals(apkEntry.mContent);
+    }
+
+    /**
+     * Checks whether two archive entries have the same content. The sizes and CRC-32s of the
+     * central directories are compared first, the entries are only read if they match since
+     * different contents may still have the same CRC-32.
+     */
+    private static boolean hasContent(
+            @NonNull EntryContent entry, @NonNull EntryContent apkEntry) throws IOException {
+        return entry.mEntry.getSize() == apkEntry.mEntry.getSize()
+                && entry.mEntry.getCrc32() == apkEntry.mEntry.getCrc32()
+                && entry.mContent.contentEquals(apkEntry.mContent);
+    }
+
+    /** An entry of the central directory of an archive along with its uncompressed content. */
+    private static final class EntryContent {
+
+        @NonNull private final DirectoryEntry mEntry;
+        @NonNull private final ByteSource mContent;
+
+        private EntryContent(@NonNull DirectoryEntry entry, @NonNull ByteSource content) {
+            mEntry = entry;
+            mContent = content;
+        }
+    }
+
+    /**
+     * Reads the content of archive entries. An archive is only opened once an entry of it has to
+     * be read, and then it is kept open until this is closed.
+     */
+    private static final class ArchiveContents implements Closeable {
+
+        @NonNull private final Map<File, ZipFile> mArchives = new HashMap<>();
+
+        @NonNull
+        EntryContent entry(@NonNull File archive, @NonNull DirectoryEntry entry) {
+            return new EntryContent(
+                    entry,
+                    new ByteSource() {
+                        @Override
+                        public InputStream openStream() throws IOException {
+                            ZipFile zipFile = mArchives.get(archive);
+                            if (zipFile == null) {
+                                zipFile = new ZipFile(archive);
+                                mArchives.put(archive, zipFile);
+                            }
+                            ZipEntry zipEntry = zipFile.getEntry(entry.getName());
+                            if (zipEntry == null) {
+                                throw new FileNotFoundException(
+                                        entry.getName() + " in " + archive.getAbsolutePath());
+                            }
+                            return zipFile.getInputStream(zipEntry);
+                        }
+                    });
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (Closer closer = Closer.create()) {
+                mArchives.values().forEach(closer::register);
+            }
+        }
+    }
+
     /**
      * Updates files in the archive
      *
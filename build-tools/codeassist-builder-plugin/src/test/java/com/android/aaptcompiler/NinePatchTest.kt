@@ -0,0 +1,253 @@
+package com.android.aaptcompiler
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNotNull
+import org.junit.Assert.assertNull
+import org.junit.Assert.fail
+import org.junit.Test
+import java.nio.ByteBuffer
+import java.nio.ByteOrder
+
+private const val TRANSPARENT = 0x00000000
+private const val BLACK = 0xff000000.toInt()
+private const val RED = 0xffff0000.toInt()
+private const val WHITE = 0xffffffff.toInt()
+private const val BLUE = 0xff0000ff.toInt()
+
+class NinePatchTest {
+
+  /**
+   * Builds a 9-patch image from its rows, where ' ' is transparent, 'B' black, 'R' red, 'W'
+   * white and any other character is opaque blue content.
+   */
+  private fun image(vararg rows: String): Image {
+    val width = rows[0].length
+    val pixels = IntArray(width * rows.size)
+    rows.forEachIndexed { y, row ->
+      check(row.length == width)
+      row.forEachIndexed { x, c ->
+        pixels[y * width + x] = when (c) {
+          ' ' -> TRANSPARENT
+          'B' -> BLACK
+          'R' -> RED
+          'W' -> WHITE
+          else -> BLUE
+        }
+      }
+    }
+    return Image(width, rows.size, pixels)
+  }
+
+  @Test
+  fun stretchRegionsAndPadding() {
+    val ninePatch = NinePatch.create(image(
+      "  BB    ",
+      " ......B",
+      "B......B",
+      "B......B",
+      " ...... ",
+      " ...... ",
+      "  BBB   "))
+
+    assertEquals(listOf(Range(1, 3)), ninePatch.horizontalStretchRegions)
+    assertEquals(listOf(Range(1, 3)), ninePatch.verticalStretchRegions)
+    assertEquals(Bounds(left = 1, top = 0, right = 2, bottom = 2), ninePatch.padding)
+    assertFalse(ninePatch.layoutBounds.nonZero())
+    // 3 columns and 3 rows, all of them filled with the same opaque color
+    assertEquals(List(9) { BLUE }, ninePatch.regionColors)
+  }
+
+  @Test
+  fun paddingDefaultsToStretchRegions() {
+    val ninePatch = NinePatch.create(image(
+      "   B   ",
+      " ..... ",
+      "B..... ",
+      " ..... ",
+      "       "))
+
+    assertEquals(listOf(Range(2, 3)), ninePatch.horizontalStretchRegions)
+    assertEquals(listOf(Range(1, 2)), ninePatch.verticalStretchRegions)
+    assertEquals(Bounds(left = 2, top = 1, right = 2, bottom = 1), ninePatch.padding)
+  }
+
+  @Test
+  fun layoutBounds() {
+    val ninePatch = NinePatch.create(image(
+      "   B    ",
+      " ......R",
+      "B......B",
+      " ......R",
+      " ......R",
+      " RR   R "))
+
+    assertEquals(Bounds(left = 2, top = 1, right = 1, bottom = 2), ninePatch.layoutBounds)
+    assertArrayEquals(intArrayOf(2, 1, 1, 2), readInts(ninePatch.serializeLayoutBounds(), 4))
+  }
+
+  @Test
+  fun whiteBorder() {
+    val ninePatch = NinePatch.create(image(
+      "WWBWW",
+      "W...W",
+      "B...W",
+      "W...W",
+      "WWWWW"))
+
+    assertEquals(listOf(Range(1, 2)), ninePatch.horizontalStretchRegions)
+    assertEquals(listOf(Range(1, 2)), ninePatch.verticalStretchRegions)
+  }
+
+  @Test
+  fun transparentRegions() {
+    val ninePatch = NinePatch.create(image(
+      "  BB  ",
+      " .. . ",
+      "B.    ",
+      " .... ",
+      "      "))
+
+    // a region that is partly transparent has no color
+    assertEquals(
+      listOf(BLUE, 0x00000001, BLUE, BLUE, TRANSPARENT, TRANSPARENT, BLUE, BLUE, BLUE),
+      ninePatch.regionColors)
+  }
+
+  @Test
+  fun outline() {
+    val ninePatch = NinePatch.create(image(
+      "         ",
+      "         ",
+      "  .....  ",
+      "  .....  ",
+      "  .....  ",
+      "         ",
+      "         "))
+
+    assertEquals(Bounds(left = 1, top = 1, right = 1, bottom = 1), ninePatch.outline)
+    assertEquals(0xff, ninePatch.outlineAlpha)
+    assertEquals(0f, ninePatch.outlineRadius)
+  }
+
+  @Test
+  fun malformedBorders() {
+    assertCreateFails(image(
+      "  R  ",
+      " ... ",
+      " ... ",
+      " ... ",
+      "     "))
+    assertCreateFails(image(
+      " B B ",
+      " ... ",
+      " ... ",
+      " ... ",
+      " B B "))
+    assertCreateFails(image(
+      ".    ",
+      " ... ",
+      " ... ",
+      " ... ",
+      "     "))
+    assertCreateFails(image(
+      "  .  ",
+      " ... ",
+      " ... ",
+      " ... ",
+      "     "))
+  }
+
+  @Test
+  fun serializedChunksRoundTrip() {
+    val source = image(
+      "  BB  B ",
+      " ......B",
+      "B......B",
+      "B......B",
+      " ...... ",
+      "B...... ",
+      "  BBB   ")
+    val ninePatch = NinePatch.create(source)
+    val stripped = source.stripBorder()
+    val png = writePng(stripped, ninePatch)
+
+    val decoded = readPng(png)
+    assertEquals(stripped.width, decoded.width)
+    assertEquals(stripped.height, decoded.height)
+    assertArrayEquals(stripped.pixels, decoded.pixels)
+    // a palette would make the framework ignore the 9-patch chunk
+    assertEquals(2, png[25].toInt())
+
+    val chunks = readChunkData(png)
+    assertNull(chunks["npLb"])
+    assertNotNull(chunks["npOl"])
+    val base = ByteBuffer.wrap(chunks.getValue("npTc"))
+    assertEquals(0, base.get().toInt())
+    val numXDivs = base.get().toInt()
+    val numYDivs = base.get().toInt()
+    val numColors = base.get().toInt()
+    assertEquals(4, numXDivs)
+    assertEquals(4, numYDivs)
+    assertEquals(ninePatch.regionColors.size, numColors)
+    base.order(ByteOrder.LITTLE_ENDIAN)
+    assertEquals(32, base.int)
+    assertEquals(32 + numXDivs * 4, base.int)
+    base.order(ByteOrder.BIG_ENDIAN)
+    assertEquals(ninePatch.padding, Bounds(
+      left = base.int, right = base.int, top = base.int, bottom = base.int))
+    base.order(ByteOrder.LITTLE_ENDIAN)
+    assertEquals(32 + (numXDivs + numYDivs) * 4, base.int)
+    base.order(ByteOrder.BIG_ENDIAN)
+    assertArrayEquals(intArrayOf(1, 3, 5, 6), IntArray(numXDivs) { base.int })
+    assertArrayEquals(intArrayOf(1, 3, 4, 5), IntArray(numYDivs) { base.int })
+    assertEquals(ninePatch.regionColors, List(numColors) { base.int })
+    assertFalse(base.hasRemaining())
+  }
+
+  @Test
+  fun layoutBoundsChunkRoundTrip() {
+    val source = image(
+      "   B    ",
+      " ......R",
+      "B......B",
+      " ......R",
+      " ......R",
+      " RR   R ")
+    val ninePatch = NinePatch.create(source)
+    val chunks = readChunkData(writePng(source.stripBorder(), ninePatch))
+
+    assertArrayEquals(intArrayOf(2, 1, 1, 2), readInts(chunks.getValue("npLb"), 4))
+  }
+
+  private fun assertCreateFails(image: Image) {
+    try {
+      NinePatch.create(image)
+      fail("expected the border to be rejected")
+    } catch (expected: IllegalStateException) {
+    }
+  }
+
+  private fun readInts(data: ByteArray, count: Int): IntArray {
+    val buffer = ByteBuffer.wrap(data).order(ByteOrder.LITTLE_ENDIAN)
+    return IntArray(count) { buffer.int }
+  }
+}
+
+/** Returns the data of each chunk of the PNG by its type. */
+internal fun readChunkData(png: ByteArray): Map<String, ByteArray> {
+  val chunks = LinkedHashMap<String, ByteArray>()
+  val buffer = ByteBuffer.wrap(png)
+  buffer.position(8)
+  while (buffer.hasRemaining()) {
+    val length = buffer.int
+    val type = ByteArray(4)
+    buffer.get(type)
+    val data = ByteArray(length)
+    buffer.get(data)
+    buffer.int
+    chunks.merge(String(type, Charsets.US_ASCII), data) { a, b -> a + b }
+  }
+  return chunks
+}
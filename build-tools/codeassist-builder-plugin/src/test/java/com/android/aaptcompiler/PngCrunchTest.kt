@@ -0,0 +1,142 @@
+package com.android.aaptcompiler
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import java.util.Random
+
+private const val COLOR_TYPE_GRAY = 0
+private const val COLOR_TYPE_RGB = 2
+private const val COLOR_TYPE_PALETTE = 3
+private const val COLOR_TYPE_GRAY_ALPHA = 4
+private const val COLOR_TYPE_RGBA = 6
+
+class PngCrunchTest {
+
+  private fun image(width: Int, height: Int, color: (x: Int, y: Int) -> Int): Image {
+    val pixels = IntArray(width * height)
+    for (y in 0 until height) {
+      for (x in 0 until width) {
+        pixels[y * width + x] = color(x, y)
+      }
+    }
+    return Image(width, height, pixels)
+  }
+
+  private fun gray(value: Int, alpha: Int = 0xff) =
+    (alpha shl 24) or (value shl 16) or (value shl 8) or value
+
+  /** Writes the image and checks that it is decoded to the same pixels. */
+  private fun roundTrip(image: Image, expectedColorType: Int): ByteArray {
+    val png = writePng(image, null)
+    assertEquals(expectedColorType, colorType(png))
+
+    val decoded = readPng(png)
+    assertEquals(image.width, decoded.width)
+    assertEquals(image.height, decoded.height)
+    assertArrayEquals(image.pixels, decoded.pixels)
+    return png
+  }
+
+  private fun colorType(png: ByteArray) = png[25].toInt()
+
+  @Test
+  fun opaqueGrayscale() {
+    roundTrip(image(64, 64) { x, y -> gray((x * 4 + y) and 0xff) }, COLOR_TYPE_GRAY)
+  }
+
+  @Test
+  fun grayscaleWithAlpha() {
+    // too small for the palette to be worth its overhead
+    roundTrip(image(16, 16) { x, y -> gray(x * 16, y * 16 + 15) }, COLOR_TYPE_GRAY_ALPHA)
+  }
+
+  @Test
+  fun grayscaleWithAlphaPalette() {
+    val colors = intArrayOf(gray(0x20, 0x80), gray(0x40), gray(0xc0, 0x10))
+    val png = roundTrip(image(128, 128) { x, y -> colors[(x + y) % colors.size] },
+      COLOR_TYPE_PALETTE)
+
+    val chunks = readChunkData(png)
+    assertEquals(colors.size * 3, chunks.getValue("PLTE").size)
+    // the translucent colors come first so that tRNS only covers them
+    assertEquals(2, chunks.getValue("tRNS").size)
+  }
+
+  @Test
+  fun opaquePalette() {
+    val colors = intArrayOf(0xffff0000.toInt(), 0xff00ff00.toInt(), 0xff0000ff.toInt())
+    val png = roundTrip(image(128, 128) { x, y -> colors[(x / 3 + y) % colors.size] },
+      COLOR_TYPE_PALETTE)
+
+    val chunks = readChunkData(png)
+    assertEquals(colors.size * 3, chunks.getValue("PLTE").size)
+    assertFalse(chunks.containsKey("tRNS"))
+  }
+
+  @Test
+  fun translucentPalette() {
+    val colors = intArrayOf(0x80ff0000.toInt(), 0xff00ff00.toInt(), 0x400000ff)
+    val png = roundTrip(image(128, 128) { x, y -> colors[(x + y / 2) % colors.size] },
+      COLOR_TYPE_PALETTE)
+
+    assertEquals(2, readChunkData(png).getValue("tRNS").size)
+  }
+
+  @Test
+  fun smallImageDoesNotUsePalette() {
+    val colors = intArrayOf(0xffff0000.toInt(), 0xff0000ff.toInt())
+    roundTrip(image(8, 8) { x, _ -> colors[x % 2] }, COLOR_TYPE_RGB)
+    roundTrip(image(8, 8) { x, _ -> colors[x % 2] and 0x7fffffff }, COLOR_TYPE_RGBA)
+  }
+
+  @Test
+  fun tooManyColorsForPalette() {
+    val random = Random(42)
+    roundTrip(image(128, 128) { _, _ -> random.nextInt() or 0xff000000.toInt() }, COLOR_TYPE_RGB)
+    roundTrip(image(128, 128) { _, _ -> random.nextInt() or 0x01000000 }, COLOR_TYPE_RGBA)
+  }
+
+  @Test
+  fun transparentPixelsLoseTheirColor() {
+    val source = image(128, 128) { x, _ -> if (x % 2 == 0) 0x00123456 else 0xff654321.toInt() }
+    val png = writePng(source, null)
+    assertEquals(COLOR_TYPE_PALETTE, colorType(png))
+
+    val decoded = readPng(png)
+    for (i in source.pixels.indices) {
+      val expected = if (source.pixels[i] ushr 24 == 0) 0 else source.pixels[i]
+      assertEquals(expected, decoded.pixels[i])
+    }
+    // a fully transparent image is still grayscale
+    roundTrip(image(4, 4) { _, _ -> 0 }, COLOR_TYPE_GRAY_ALPHA)
+  }
+
+  @Test
+  fun filterPngChunksKeepsOnlyRuntimeChunks() {
+    val png = writePng(image(2, 2) { _, _ -> 0xff336699.toInt() }, null)
+    val text = textChunk()
+    // insert a tEXt chunk right after IHDR, which ends 8 + 25 bytes into the file
+    val withText = png.copyOfRange(0, 33) + text + png.copyOfRange(33, png.size)
+
+    val filtered = filterPngChunks(withText)
+    assertArrayEquals(png, filtered)
+    assertTrue(readChunkData(withText).containsKey("tEXt"))
+  }
+
+  private fun textChunk(): ByteArray {
+    val data = "Comment\u0000crunched".toByteArray(Charsets.US_ASCII)
+    val type = "tEXt".toByteArray(Charsets.US_ASCII)
+    val crc = java.util.zip.CRC32()
+    crc.update(type)
+    crc.update(data)
+    val buffer = java.nio.ByteBuffer.allocate(12 + data.size)
+    buffer.putInt(data.size)
+    buffer.put(type)
+    buffer.put(data)
+    buffer.putInt(crc.value.toInt())
+    return buffer.array()
+  }
+}
@@ -0,0 +1,68 @@
+package com.tyron.builder.gradle.internal.dependency
+
+import org.junit.Assert.assertArrayEquals
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class DexArchiveCacheTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun storedArchiveIsRestored() {
+        // the cache directory does not exist until the cache is created
+        val cacheDir = File(temporaryFolder.root, "gradle/$DEX_ARCHIVE_CACHE_DIR")
+        val dexOutput = temporaryFolder.newFolder("dex")
+        File(dexOutput, "classes.dex").writeBytes(byteArrayOf(1, 2, 3))
+        File(dexOutput, "androidx/core").mkdirs()
+        File(dexOutput, "androidx/core/Foo.dex").writeBytes(byteArrayOf(4, 5))
+
+        val cache = DexArchiveCache(cacheDir)
+        cache.store(KEY, dexOutput)
+
+        val restored = temporaryFolder.newFolder("restored")
+        assertTrue(cache.restore(KEY, restored))
+        assertEquals(
+            setOf("classes.dex", "androidx/core/Foo.dex"),
+            restored.walk().filter { it.isFile }
+                .map { it.toRelativeString(restored).replace(File.separatorChar, '/') }
+                .toSet()
+        )
+        assertArrayEquals(byteArrayOf(1, 2, 3), File(restored, "classes.dex").readBytes())
+        assertArrayEquals(byteArrayOf(4, 5), File(restored, "androidx/core/Foo.dex").readBytes())
+    }
+
+    @Test
+    fun storedArchiveIsSharedBetweenInstances() {
+        val cacheDir = File(temporaryFolder.root, "cache")
+        val dexOutput = temporaryFolder.newFolder("dex")
+        File(dexOutput, "classes.dex").writeBytes(byteArrayOf(1, 2, 3))
+        DexArchiveCache(cacheDir).store(KEY, dexOutput)
+
+        // an entry is never replaced once stored
+        File(dexOutput, "classes.dex").writeBytes(byteArrayOf(9))
+        DexArchiveCache(cacheDir).store(KEY, dexOutput)
+
+        val restored = temporaryFolder.newFolder("restored")
+        assertTrue(DexArchiveCache(cacheDir).restore(KEY, restored))
+        assertArrayEquals(byteArrayOf(1, 2, 3), File(restored, "classes.dex").readBytes())
+    }
+
+    @Test
+    fun missingArchiveIsNotRestored() {
+        val cache = DexArchiveCache(File(temporaryFolder.root, "cache"))
+        val restored = temporaryFolder.newFolder("restored")
+        assertFalse(cache.restore(KEY, restored))
+        assertTrue(restored.listFiles()!!.isEmpty())
+    }
+
+    companion object {
+        private const val KEY = "0123456789abcdef"
+    }
+}
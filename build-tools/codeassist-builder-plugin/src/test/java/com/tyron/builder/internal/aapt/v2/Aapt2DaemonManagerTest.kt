@@ -0,0 +1,103 @@
+package com.tyron.builder.internal.aapt.v2
+
+import com.android.ide.common.resources.CompileResourceRequest
+import com.android.utils.ILogger
+import com.android.utils.NullLogger
+import com.google.common.base.Ticker
+import com.tyron.builder.internal.aapt.AaptConvertConfig
+import com.tyron.builder.internal.aapt.AaptPackageConfig
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.File
+import java.util.concurrent.TimeUnit
+
+class Aapt2DaemonManagerTest {
+
+    private val ticker = FakeTicker()
+    private val logger = NullLogger()
+    private val request = CompileResourceRequest(File("res/values/values.xml"), File("out"))
+
+    /** A daemon that takes [START_NANOS] to start and runs every command instantly. */
+    private inner class FakeDaemon(displayId: Int) : Aapt2Daemon("#$displayId", logger) {
+        override fun startProcess() {
+            ticker.advance(START_NANOS)
+        }
+
+        override fun doCompile(request: CompileResourceRequest, logger: ILogger) {}
+        override fun doLink(request: AaptPackageConfig, logger: ILogger) {}
+        override fun doConvert(request: AaptConvertConfig, logger: ILogger) {}
+        override fun stopProcess() {}
+    }
+
+    private fun manager() = Aapt2DaemonManager(
+        logger = logger,
+        daemonFactory = { FakeDaemon(it) },
+        expiryTime = 1,
+        expiryTimeUnit = TimeUnit.MINUTES,
+        timeSource = ticker)
+
+    @Test
+    fun warmUpIsNotCountedAsLeased() {
+        val manager = manager()
+        manager.warmUp(3)
+
+        var stats = manager.stats()
+        assertEquals(3, stats.poolSize)
+        assertEquals(3, stats.processStartCount)
+        assertEquals(0, stats.peakBusyCount)
+
+        manager.leaseDaemon().use { it.compile(request, logger) }
+        stats = manager.stats()
+        assertEquals(3, stats.poolSize)
+        assertEquals(1, stats.peakBusyCount)
+        assertEquals(0L, stats.leaseWaitNanoSeconds)
+
+        // the next build warms up as many daemons as were leased, so the pool does not grow
+        manager.warmUp(stats.peakBusyCount)
+        assertEquals(3, manager.stats().poolSize)
+        manager.shutdown()
+    }
+
+    @Test
+    fun leaseWaitIncludesProcessStart() {
+        val manager = manager()
+        manager.warmUp(1)
+
+        val leases = List(3) { manager.leaseDaemon().also { it.compile(request, logger) } }
+        leases.forEach { it.close() }
+
+        val stats = manager.stats()
+        assertEquals(3, stats.leaseCount)
+        assertEquals(3, stats.peakBusyCount)
+        // two of the leases had to start their daemon
+        assertEquals(2 * START_NANOS, stats.leaseWaitNanoSeconds)
+        assertEquals(3, stats.processStartCount)
+        manager.shutdown()
+    }
+
+    @Test
+    fun leaseWithoutCommandOnlyWaitsForThePool() {
+        val manager = manager()
+        manager.leaseDaemon().close()
+
+        val stats = manager.stats()
+        assertEquals(1, stats.leaseCount)
+        assertEquals(0L, stats.leaseWaitNanoSeconds)
+        // the daemon was never started, so it is not kept in the pool
+        assertEquals(0, stats.poolSize)
+    }
+
+    private class FakeTicker : Ticker() {
+        private var nanos = 0L
+
+        fun advance(delta: Long) {
+            nanos += delta
+        }
+
+        override fun read() = nanos
+    }
+
+    companion object {
+        private val START_NANOS = TimeUnit.MILLISECONDS.toNanos(100)
+    }
+}
@@ -0,0 +1,101 @@
+package com.tyron.builder.internal.packaging
+
+import com.android.ide.common.resources.FileStatus
+import com.tyron.builder.files.RelativeFile
+import com.tyron.builder.files.ZipCentralDirectory
+import org.junit.Assert.assertEquals
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.zip.CRC32
+import java.util.zip.ZipEntry
+import java.util.zip.ZipOutputStream
+
+class IncrementalPackagerTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    @Test
+    fun unchangedFileIsSkipped() {
+        val apk = zip("app.apk", "classes.dex" to "plumless")
+        val update = directoryUpdate("classes.dex", "plumless")
+
+        assertEquals(emptyList<PackagedFileUpdate>(), removeUnchangedFiles(apk, update))
+    }
+
+    @Test
+    fun changedFileIsKept() {
+        val apk = zip("app.apk", "classes.dex" to "plumless")
+        val update = directoryUpdate("classes.dex", "plumless2")
+
+        assertEquals(listOf(update), removeUnchangedFiles(apk, update))
+    }
+
+    @Test
+    fun fileWithSameSizeAndCrcIsKept() {
+        assertEquals(crc32("plumless"), crc32("buckeroo"))
+        val apk = zip("app.apk", "classes.dex" to "plumless")
+        val update = directoryUpdate("classes.dex", "buckeroo")
+
+        assertEquals(listOf(update), removeUnchangedFiles(apk, update))
+    }
+
+    @Test
+    fun jarEntriesAreComparedByContent() {
+        val apk = zip("app.apk", "a.txt" to "plumless", "b.txt" to "plumless")
+        val jar = zip("resources.jar", "a.txt" to "plumless", "b.txt" to "buckeroo")
+        val unchanged = PackagedFileUpdate(RelativeFile(jar, "a.txt"), "a.txt", FileStatus.CHANGED)
+        val changed = PackagedFileUpdate(RelativeFile(jar, "b.txt"), "b.txt", FileStatus.CHANGED)
+
+        assertEquals(listOf(changed), removeUnchangedFiles(apk, unchanged, changed))
+    }
+
+    @Test
+    fun newAndRemovedFilesAreKept() {
+        val apk = zip("app.apk", "classes.dex" to "plumless")
+        val source = File(temporaryFolder.newFolder("dex"), "classes.dex")
+        source.writeText("plumless")
+        val added = PackagedFileUpdate(
+            RelativeFile(source.parentFile, source), "classes.dex", FileStatus.NEW
+        )
+        val removed = PackagedFileUpdate(
+            RelativeFile(source.parentFile, source), "classes.dex", FileStatus.REMOVED
+        )
+
+        assertEquals(listOf(added, removed), removeUnchangedFiles(apk, added, removed))
+    }
+
+    private fun removeUnchangedFiles(
+        apk: File,
+        vararg updates: PackagedFileUpdate
+    ): List<PackagedFileUpdate> {
+        return IncrementalPackager.removeUnchangedFiles(
+            updates.toList(), apk, ZipCentralDirectory(apk).entries
+        )
+    }
+
+    private fun directoryUpdate(name: String, content: String): PackagedFileUpdate {
+        val dir = temporaryFolder.newFolder()
+        val file = File(dir, name)
+        file.writeText(content)
+        return PackagedFileUpdate(RelativeFile(dir, file), name, FileStatus.CHANGED)
+    }
+
+    private fun zip(name: String, vararg entries: Pair<String, String>): File {
+        val file = File(temporaryFolder.root, name)
+        ZipOutputStream(file.outputStream()).use { out ->
+            entries.forEach { (entryName, content) ->
+                out.putNextEntry(ZipEntry(entryName))
+                out.write(content.toByteArray())
+                out.closeEntry()
+            }
+        }
+        return file
+    }
+
+    private fun crc32(content: String): Long {
+        return CRC32().apply { update(content.toByteArray()) }.value
+    }
+}
@@ -1,17 +1,19 @@
 package com.tyron.builder.compiler.manifest;
 
 import com.google.common.base.Optional;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hashing;
 import com.tyron.builder.compiler.manifest.blame.SourceFile;
 import com.tyron.builder.util.PositionXmlParser;
 
 import org.w3c.dom.Document;
 import org.xml.sax.SAXException;
 
-import java.io.BufferedInputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.nio.file.Files;
 
 import org.openjdk.javax.xml.parsers.ParserConfigurationException;
 
@@ -20,6 +22,16 @@ import org.openjdk.javax.xml.parsers.ParserConfigurationException;
  */
 public final class XmlLoader {
 
+    /**
+     * Parsed documents by the hash of the file contents they were parsed from. Library manifests
+     * rarely change between builds, so they are parsed once and copied for every merge since the
+     * merge modifies the documents it is given.
+     */
+    private static final Cache<HashCode, Document> PARSED_DOCUMENTS = CacheBuilder.newBuilder()
+            .maximumSize(1024)
+            .softValues()
+            .build();
+
     private XmlLoader() {}
 
     /**
@@ -37,9 +49,7 @@ public final class XmlLoader {
             XmlDocument.Type type,
             Optional<String> mainManifestPackageName)
             throws IOException, SAXException, ParserConfigurationException {
-        InputStream inputStream = new BufferedInputStream(new FileInputStream(xmlFile));
-
-        Document domDocument = PositionXmlParser.parse(inputStream);
+        Document domDocument = parse(xmlFile);
         return domDocument != null ? new XmlDocument(
                 new SourceFile(xmlFile, displayName),
                 selectors,
@@ -80,4 +90,22 @@ public final class XmlLoader {
                 mainManifestPackageName)
                 : null;
     }
+
+    /**
+     * Parses the given file, reusing the result of a previous parse of the same contents.
+     */
+    private static Document parse(File xmlFile)
+            throws IOException, SAXException, ParserConfigurationException {
+        byte[] contents = Files.readAllBytes(xmlFile.toPath());
+        HashCode hash = Hashing.sha256().hashBytes(contents);
+        Document parsed = PARSED_DOCUMENTS.getIfPresent(hash);
+        if (parsed == null) {
+            parsed = PositionXmlParser.parse(contents);
+            PARSED_DOCUMENTS.put(hash, parsed);
+        }
+        // reading the user data of a DOM node is not thread safe
+        synchronized (parsed) {
+            return PositionXmlParser.copy(parsed);
+        }
+    }
 }
@@ -191,6 +191,40 @@ public class PositionXmlParser {
         return parseInternal(xml, namespaceAware);
     }
 
+    /**
+     * Returns a deep copy of a document created by this parser. Unlike
+     * {@link Node#cloneNode(boolean)}, the copy keeps the position information of the original
+     * nodes, so a parsed document can be kept around and copied instead of parsing it again.
+     *
+     * @param document the document to copy, it is only read
+     * @return a new document with the same content and positions
+     * @throws ParserConfigurationException if a document builder is not available
+     */
+    @NotNull
+    public static Document copy(@NotNull Document document) throws ParserConfigurationException {
+        Document copy = DOCUMENT_BUILDER_FACTORY.newDocumentBuilder().newDocument();
+        copy.setUserData(CONTENT_KEY, document.getUserData(CONTENT_KEY), null);
+        for (Node child = document.getFirstChild(); child != null;
+                child = child.getNextSibling()) {
+            copy.appendChild(copyNode(copy, child));
+        }
+        return copy;
+    }
+
+    private static Node copyNode(@NotNull Document target, @NotNull Node node) {
+        // a shallow import still copies the attributes of elements, their positions are
+        // computed from the element position and the document contents
+        Node copy = target.importNode(node, false);
+        Object position = node.getUserData(POS_KEY);
+        if (position != null) {
+            copy.setUserData(POS_KEY, position, null);
+        }
+        for (Node child = node.getFirstChild(); child != null; child = child.getNextSibling()) {
+            copy.appendChild(copyNode(target, child));
+        }
+        return copy;
+    }
+
     @NotNull
     private static Document parseInternal(@NotNull String xml, boolean namespaceAware)
             throws ParserConfigurationException, SAXException, IOException {
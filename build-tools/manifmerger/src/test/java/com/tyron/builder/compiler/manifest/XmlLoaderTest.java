@@ -0,0 +1,80 @@
+package com.tyron.builder.compiler.manifest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.tyron.builder.log.ILogger;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class XmlLoaderTest {
+
+    private static final String MAIN = "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    package=\"com.example\">\n" +
+            "    <application>\n" +
+            "        <activity android:name=\".MainActivity\" />\n" +
+            "    </application>\n" +
+            "</manifest>\n";
+
+    private static final String LIBRARY = "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    package=\"com.example.library\">\n" +
+            "    <uses-permission android:name=\"android.permission.INTERNET\" />\n" +
+            "    <application>\n" +
+            "        <activity android:name=\"com.example.library.LibraryActivity\" />\n" +
+            "    </application>\n" +
+            "</manifest>\n";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void cachedDocumentIsNotMutatedByMerge() throws Exception {
+        File main = write("main/AndroidManifest.xml", MAIN);
+        File library = write("library/AndroidManifest.xml", LIBRARY);
+
+        Document merged = merge(main, library);
+        assertEquals(2, merged.getElementsByTagName("activity").getLength());
+        assertEquals(1, merged.getElementsByTagName("uses-permission").getLength());
+
+        // the main manifest is loaded from the cache, it must not contain what was merged into it
+        Document mainOnly = merge(main);
+        assertEquals(1, mainOnly.getElementsByTagName("activity").getLength());
+        assertEquals(0, mainOnly.getElementsByTagName("uses-permission").getLength());
+
+        assertEquals(2, merge(main, library).getElementsByTagName("activity").getLength());
+    }
+
+    @Test
+    public void changedFileIsParsedAgain() throws Exception {
+        File main = write("main/AndroidManifest.xml", MAIN);
+        assertFalse(merge(main).getDocumentElement().hasAttribute("android:versionName"));
+
+        write("main/AndroidManifest.xml", MAIN.replace("package=",
+                "android:versionName=\"2.0\" package="));
+        assertTrue(merge(main).getDocumentElement().hasAttribute("android:versionName"));
+    }
+
+    private static Document merge(File main, File... libraries) throws Exception {
+        MergingReport report = ManifestMerger2.newMerger(main, ILogger.EMPTY,
+                ManifestMerger2.MergeType.APPLICATION)
+                .addLibraryManifests(libraries)
+                .merge();
+        assertFalse(report.getReportString(), report.getResult().isError());
+        return report.getMergedDocument().get().getXml();
+    }
+
+    private File write(String path, String contents) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), path);
+        FileUtils.writeStringToFile(file, contents, StandardCharsets.UTF_8);
+        return file;
+    }
+}
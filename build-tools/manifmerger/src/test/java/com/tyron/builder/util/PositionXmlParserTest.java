@@ -0,0 +1,90 @@
+package com.tyron.builder.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+
+import com.tyron.builder.compiler.manifest.blame.SourcePosition;
+
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+public class PositionXmlParserTest {
+
+    private static final String XML = "<?xml version=\"1.0\" encoding=\"utf-8\"?>\n" +
+            "<manifest xmlns:android=\"http://schemas.android.com/apk/res/android\"\n" +
+            "    package=\"com.example\">\n" +
+            "    <!-- the application -->\n" +
+            "    <application android:label=\"Example\">\n" +
+            "        <activity\n" +
+            "            android:name=\".MainActivity\"\n" +
+            "            android:exported=\"true\" />\n" +
+            "    </application>\n" +
+            "</manifest>\n";
+
+    @Test
+    public void copyKeepsPositions() throws Exception {
+        Document document = PositionXmlParser.parse(XML);
+        Document copy = PositionXmlParser.copy(document);
+
+        assertNotSame(document, copy);
+        assertSamePositions(document.getDocumentElement(), copy.getDocumentElement());
+
+        Element activity = (Element) copy.getElementsByTagName("activity").item(0);
+        SourcePosition position = PositionXmlParser.getPosition(activity);
+        assertEquals(5, position.getStartLine());
+        assertEquals(8, position.getStartColumn());
+        assertEquals(XML.indexOf("<activity"), position.getStartOffset());
+        assertEquals(XML.indexOf("/>") + 2, position.getEndOffset());
+
+        Node exported = activity.getAttributeNodeNS(
+                "http://schemas.android.com/apk/res/android", "exported");
+        assertEquals(XML.indexOf("android:exported"),
+                PositionXmlParser.getPosition(exported).getStartOffset());
+    }
+
+    @Test
+    public void copyIsIndependentOfTheOriginal() throws Exception {
+        Document document = PositionXmlParser.parse(XML);
+        Document copy = PositionXmlParser.copy(document);
+
+        Element application = (Element) copy.getElementsByTagName("application").item(0);
+        application.removeChild(application.getElementsByTagName("activity").item(0));
+        application.setAttribute("debuggable", "true");
+
+        Element original = (Element) document.getElementsByTagName("application").item(0);
+        assertEquals(1, original.getElementsByTagName("activity").getLength());
+        assertEquals("", original.getAttribute("debuggable"));
+        assertNotEquals(PositionXmlParser.getPosition(original),
+                PositionXmlParser.getPosition(copy.getDocumentElement()));
+    }
+
+    private static void assertSamePositions(Node expected, Node actual) {
+        assertEquals(expected.getNodeName(), actual.getNodeName());
+        assertEquals(expected.getNodeName(), PositionXmlParser.getPosition(expected),
+                PositionXmlParser.getPosition(actual));
+
+        NamedNodeMap expectedAttributes = expected.getAttributes();
+        NamedNodeMap actualAttributes = actual.getAttributes();
+        if (expectedAttributes != null) {
+            assertEquals(expectedAttributes.getLength(), actualAttributes.getLength());
+            for (int i = 0; i < expectedAttributes.getLength(); i++) {
+                Node attribute = expectedAttributes.item(i);
+                assertEquals(attribute.getNodeName(), PositionXmlParser.getPosition(attribute),
+                        PositionXmlParser.getPosition(
+                                actualAttributes.getNamedItem(attribute.getNodeName())));
+            }
+        }
+
+        Node actualChild = actual.getFirstChild();
+        for (Node child = expected.getFirstChild(); child != null;
+                child = child.getNextSibling()) {
+            assertSamePositions(child, actualChild);
+            actualChild = actualChild.getNextSibling();
+        }
+        assertEquals(null, actualChild);
+    }
+}
@@ -15,6 +15,7 @@ import com.tyron.builder.project.api.ContentRoot;
 import com.tyron.builder.project.api.Module;
 import com.tyron.builder.project.impl.AndroidModuleImpl;
 import com.tyron.builder.project.mock.MockAndroidModule;
+import com.tyron.builder.project.util.ContentRootTrie;
 import com.tyron.code.event.EventManager;
 
 import org.jetbrains.kotlin.com.intellij.util.messages.MessageBusConnection;
@@ -50,6 +51,12 @@ public class Project {
 
     private final EventManager eventManager;
 
+    /**
+     * Source directories of all the modules, built on the first lookup after the
+     * modules have changed
+     */
+    private volatile ContentRootTrie<Module> mContentRootIndex;
+
     public Project(File root) {
         mRoot = root;
         mModules = new LinkedHashMap<>();
@@ -59,6 +66,7 @@ public class Project {
 
     public void clear() {
         mModules.clear();
+        invalidateModuleIndex();
     }
 
     public void addModule(Module module) {
@@ -66,6 +74,23 @@ public class Project {
         module.setProject(this);
 
         mModules.put(module.getName(), module);
+        invalidateModuleIndex();
+    }
+
+    @Nullable
+    public Module removeModule(String name) {
+        Module removed = mModules.remove(name);
+        if (removed != null) {
+            invalidateModuleIndex();
+        }
+        return removed;
+    }
+
+    /**
+     * Must be called when the content roots of a module in this project have changed
+     */
+    public void invalidateModuleIndex() {
+        mContentRootIndex = null;
     }
 
     public boolean isCompiling() {
@@ -115,15 +140,19 @@ public class Project {
     }
 
     public Module getModule(File file) {
-        for (Module value : mModules.values()) {
-            for (ContentRoot contentRoot : value.getContentRoots()) {
-                for (File sourceDirectory : contentRoot.getSourceDirectories()) {
-                    if (directoryContainsFile(sourceDirectory, file)) {
-                        return value;
-                    }
-                }
+        ContentRootTrie<Module> index = getContentRootIndex();
+        Module module = index.find(file.getAbsoluteFile());
+        if (module == null) {
+            // the file may have been opened through a symbolic link
+            try {
+                module = index.find(file.getCanonicalFile());
+            } catch (IOException ignored) {
+                // fall through to the main module
             }
         }
+        if (module != null) {
+            return module;
+        }
         return getMainModule();
     }
 
@@ -131,15 +160,37 @@ public class Project {
         return mModules.get(name);
     }
 
-    private boolean directoryContainsFile(File dir, File file) {
-        try {
-            File rootFile = dir.getCanonicalFile();
-            File absoluteFile = file.getCanonicalFile();
+    private ContentRootTrie<Module> getContentRootIndex() {
+        ContentRootTrie<Module> index = mContentRootIndex;
+        if (index != null) {
+            return index;
+        }
+        synchronized (this) {
+            if (mContentRootIndex == null) {
+                mContentRootIndex = buildContentRootIndex();
+            }
+            return mContentRootIndex;
+        }
+    }
 
-            return absoluteFile.exists() && absoluteFile.getAbsolutePath().startsWith(rootFile.getAbsolutePath());
-        } catch (IOException e) {
-            return false;
+    private ContentRootTrie<Module> buildContentRootIndex() {
+        ContentRootTrie<Module> index = new ContentRootTrie<>();
+        List<Module> modules = new ArrayList<>(mModules.values());
+        // when source directories are shared, the module added first wins
+        Collections.reverse(modules);
+        for (Module module : modules) {
+            for (ContentRoot contentRoot : module.getContentRoots()) {
+                for (File sourceDirectory : contentRoot.getSourceDirectories()) {
+                    index.put(sourceDirectory.getAbsoluteFile(), module);
+                    try {
+                        index.put(sourceDirectory.getCanonicalFile(), module);
+                    } catch (IOException ignored) {
+                        // the absolute path is still indexed
+                    }
+                }
+            }
         }
+        return index;
     }
 
     public List<Module> getDependencies(Module module) {
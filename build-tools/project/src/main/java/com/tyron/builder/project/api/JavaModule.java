@@ -90,4 +90,22 @@ public interface JavaModule extends Module {
     Map<String, File> getInjectedClasses();
 
     void addInjectedClass(@NonNull File file);
+
+    /**
+     * Adds a class that only exists in memory, the file does not have to exist.
+     *
+     * @param file      the file the class would be written to
+     * @param className the fully qualified name of the class
+     * @param contents  the source of the class
+     */
+    void addInjectedClass(@NonNull File file, @NonNull String className, @NonNull String contents);
+
+    void removeInjectedClass(@NonNull String className);
+
+    /**
+     * @return The source of an injected class added with its contents, or null if the class
+     * of this file is not kept in memory
+     */
+    @Nullable
+    String getInjectedClassContents(@NonNull File file);
 }
@@ -254,6 +254,9 @@ public class AndroidModuleImpl extends JavaModuleImpl implements AndroidModule {
     @Override
     public void addContentRoot(ContentRoot contentRoot) {
         contentRoots.add(contentRoot);
+        if (project != null) {
+            project.invalidateModuleIndex();
+        }
     }
 
     @Override
@@ -24,6 +24,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.JarEntry;
 import java.util.jar.JarFile;
 
@@ -34,6 +35,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
     private final Map<String, File> mJavaFiles;
     private final Map<String, CodeAssistLibrary> mLibraryHashMap;
     private final Map<String, File> mInjectedClassesMap;
+    private final Map<File, String> mInjectedClassContents;
     private final Set<File> mLibraries;
 
     // the index of all the class files in this module
@@ -45,6 +47,7 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         mClassFiles = new HashMap<>();
         mLibraries = new HashSet<>();
         mInjectedClassesMap = new HashMap<>();
+        mInjectedClassContents = new ConcurrentHashMap<>();
         mLibraryHashMap = new HashMap<>();
     }
 
@@ -229,6 +232,28 @@ public class JavaModuleImpl extends ModuleImpl implements JavaModule {
         mInjectedClassesMap.put(className, javaFile);
     }
 
+    @Override
+    public void addInjectedClass(@NonNull File file,
+                                 @NonNull String className,
+                                 @NonNull String contents) {
+        mInjectedClassContents.put(file, contents);
+        mInjectedClassesMap.put(className, file);
+    }
+
+    @Override
+    public void removeInjectedClass(@NonNull String className) {
+        File file = mInjectedClassesMap.remove(className);
+        if (file != null) {
+            mInjectedClassContents.remove(file);
+        }
+    }
+
+    @Nullable
+    @Override
+    public String getInjectedClassContents(@NonNull File file) {
+        return mInjectedClassContents.get(file);
+    }
+
     private static String getFullyQualifiedName(@NonNull File javaFile) {
         String packageName = StringSearch.packageName(javaFile);
         String className;
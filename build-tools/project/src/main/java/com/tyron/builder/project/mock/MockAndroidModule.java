@@ -158,4 +158,22 @@ public class MockAndroidModule extends MockJavaModule implements AndroidModule {
     public void addInjectedClass(@NonNull File file) {
 
     }
+
+    @Override
+    public void addInjectedClass(@NonNull File file,
+                                 @NonNull String className,
+                                 @NonNull String contents) {
+
+    }
+
+    @Override
+    public void removeInjectedClass(@NonNull String className) {
+
+    }
+
+    @Nullable
+    @Override
+    public String getInjectedClassContents(@NonNull File file) {
+        return null;
+    }
 }
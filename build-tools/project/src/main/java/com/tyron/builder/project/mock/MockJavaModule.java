@@ -152,6 +152,24 @@ public class MockJavaModule extends ModuleImpl implements JavaModule {
 
     }
 
+    @Override
+    public void addInjectedClass(@NonNull File file,
+                                 @NonNull String className,
+                                 @NonNull String contents) {
+
+    }
+
+    @Override
+    public void removeInjectedClass(@NonNull String className) {
+
+    }
+
+    @Nullable
+    @Override
+    public String getInjectedClassContents(@NonNull File file) {
+        return null;
+    }
+
     public void setBootstrapFile(File file) {
         if (!file.exists()) {
             throw new IllegalArgumentException("Bootstrap jar file does not exist");
@@ -0,0 +1,89 @@
+package com.tyron.builder.project.util;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A trie that maps directories to a value, keyed by the segments of their path.
+ *
+ * Looking up a file walks its path segments from the root and returns the value of the
+ * deepest directory that contains it, so a lookup costs one map access per segment
+ * regardless of how many directories are stored. Since whole segments are compared,
+ * {@code /app/src} does not contain {@code /app/src2/Main.java}.
+ *
+ * @param <T> the type of the value stored for each directory
+ */
+public class ContentRootTrie<T> {
+
+    private final Node<T> mRoot = new Node<>();
+
+    /**
+     * Associate the directory with the value, replacing any previous value.
+     */
+    public void put(@NonNull File directory, @NonNull T value) {
+        Node<T> current = mRoot;
+        for (String part : getParts(directory)) {
+            current = current.getOrCreateChild(part);
+        }
+        current.mValue = value;
+    }
+
+    /**
+     * @return the value of the deepest stored directory containing the file,
+     * or null if none contains it
+     */
+    @Nullable
+    public T find(@NonNull File file) {
+        Node<T> current = mRoot;
+        T found = current.mValue;
+        for (String part : getParts(file)) {
+            current = current.getChild(part);
+            if (current == null) {
+                break;
+            }
+            if (current.mValue != null) {
+                found = current.mValue;
+            }
+        }
+        return found;
+    }
+
+    public void clear() {
+        mRoot.mChildren = null;
+        mRoot.mValue = null;
+    }
+
+    private static String[] getParts(File file) {
+        String path = file.getAbsolutePath();
+        if (File.separatorChar != '/') {
+            path = path.replace(File.separatorChar, '/');
+        }
+        return path.split("/+");
+    }
+
+    private static class Node<T> {
+
+        private Map<String, Node<T>> mChildren;
+
+        private T mValue;
+
+        public Node<T> getOrCreateChild(String part) {
+            if (mChildren == null) {
+                mChildren = new HashMap<>();
+            }
+            return mChildren.computeIfAbsent(part, it -> new Node<>());
+        }
+
+        @Nullable
+        public Node<T> getChild(String part) {
+            if (mChildren == null) {
+                return null;
+            }
+            return mChildren.get(part);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.tyron.builder.project.util;
+
+import org.junit.Test;
+
+import java.io.File;
+
+public class ContentRootTrieTest {
+
+    @Test
+    public void testDeepestDirectoryWins() {
+        ContentRootTrie<String> trie = new ContentRootTrie<>();
+        trie.put(new File("/project/app"), "app");
+        trie.put(new File("/project/app/library/src/main/java"), "library");
+
+        assert "app".equals(trie.find(new File("/project/app/src/main/java/Main.java")));
+        assert "library".equals(trie.find(new File("/project/app/library/src/main/java/a/B.java")));
+        assert trie.find(new File("/project/other/Main.java")) == null;
+    }
+
+    @Test
+    public void testSegmentsAreNotPrefixes() {
+        ContentRootTrie<String> trie = new ContentRootTrie<>();
+        trie.put(new File("/project/src"), "src");
+
+        assert trie.find(new File("/project/src2/Main.java")) == null;
+        assert "src".equals(trie.find(new File("/project/src")));
+    }
+}
@@ -2,47 +2,221 @@ package com.tyron.viewbinding.task
 
 import com.tyron.builder.compiler.viewbinding.GenerateViewBindingTask
 import com.tyron.builder.compiler.viewbinding.GenerateViewBindingTask.Companion.VIEW_BINDING_GEN_DIR
-import com.tyron.builder.log.ILogger
 import com.tyron.builder.model.ModuleSettings
 import com.tyron.builder.model.SourceFileObject
 import com.tyron.builder.project.Project
 import com.tyron.builder.project.api.AndroidModule
-import com.tyron.completion.java.JavaCompilerProvider
+import com.tyron.completion.java.parse.CompilationInfo
+import com.tyron.viewbinding.tool.store.BindingSignatures
+import com.tyron.viewbinding.tool.store.ResourceBundle
+import com.tyron.viewbinding.tool.writer.JavaFileWriter
+import org.jetbrains.kotlin.com.intellij.openapi.util.Key
 import java.io.File
 import java.time.Instant
 
 /**
  * Used to create fake View Binding classes from the project resources for it to
- * show up on code completion. Files generated from this task should not
+ * show up on code completion. Classes generated from this task should not
  * be included in the compilation process as the values of the fields are
  * not accurate from what [viewbinding-lib] generates.
+ *
+ * The classes are generated per layout and kept in memory, they are registered to
+ * the module as injected classes without being written to the disk. A layout is only
+ * generated again if the views it declares have changed.
  */
 class InjectViewBindingTask private constructor(
-    val project: Project,
     val module: AndroidModule,
 ) {
 
-    private fun doInject(consumer: (List<File>) -> Unit) {
-        val genTask = GenerateViewBindingTask(project, module, ILogger.EMPTY, false)
-        val outputDir = File(module.buildDirectory, "injected/${VIEW_BINDING_GEN_DIR}")
+    private val pendingLayouts = HashSet<String>()
+    private var injectAll = true
 
-        try {
-            genTask.prepareWithOutputDir(outputDir)
-            genTask.run()
+    private val signatures = BindingSignatures()
 
-            val sources = outputDir.walkTopDown().filter {
-                it.isFile && it.name.endsWith(".java")
-            }.toList()
+    /**
+     * The binding classes injected for each layout
+     */
+    private val injectedClasses = HashMap<String, Set<String>>()
 
-            // inject classes
-            sources.forEach(module::addInjectedClass)
+    private val outputDir = File(module.buildDirectory, "injected/${VIEW_BINDING_GEN_DIR}")
 
-            consumer.invoke(sources)
-        } catch (ignored: Throwable) {}
+    @Synchronized
+    private fun invalidate(file: File?) {
+        if (file == null) {
+            injectAll = true
+        } else if (isLayoutPath(file)) {
+            pendingLayouts.add(file.nameWithoutExtension)
+        }
+    }
+
+    /**
+     * Generates the bindings of the layouts that have changed and updates the injected
+     * classes of the module.
+     *
+     * @param consumer called with the classes that have been generated and the ones that
+     * have been removed since the last call
+     */
+    @Synchronized
+    private fun doInject(consumer: (List<SourceFileObject>, List<SourceFileObject>) -> Unit) {
+        val layoutDirs = getLayoutDirectories()
+        val layoutNames = if (injectAll) {
+            layoutDirs.flatMap { dir ->
+                dir.listFiles { file -> file.name.endsWith(".xml") }.orEmpty().asList()
+            }.mapTo(HashSet()) { it.nameWithoutExtension }
+        } else {
+            HashSet(pendingLayouts)
+        }
+        if (injectAll) {
+            // layouts deleted while nothing was tracked
+            layoutNames.addAll(injectedClasses.keys)
+        }
+        injectAll = false
+        pendingLayouts.clear()
+
+        val resourceBundle = ResourceBundle(module.packageName, true)
+        val changed = HashSet<String>()
+        val removed = HashSet<String>()
+        val parsed = HashSet<String>()
+        layoutNames.forEach { name ->
+            val bundles = parseLayout(layoutDirs, name)
+            parsed.add(name)
+            if (bundles.isEmpty()) {
+                // the layout has been deleted or renamed
+                signatures.remove(name)
+                injectedClasses.remove(name)?.let(removed::addAll)
+                return@forEach
+            }
+            if (signatures.update(name, bundles)) {
+                changed.add(name)
+            }
+            bundles.forEach { resourceBundle.addLayoutBundle(it, true) }
+        }
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return
+        }
+
+        // the included layouts are needed to resolve the types of their fields
+        resourceBundle.allLayoutFileBundlesInSource
+            .filter { it.fileName in changed }
+            .flatMap { it.bindingTargetBundles }
+            .mapNotNull { it.includedLayout }
+            .filter(parsed::add)
+            .forEach { name ->
+                parseLayout(layoutDirs, name).forEach { resourceBundle.addLayoutBundle(it, true) }
+            }
+
+        val written = LinkedHashMap<String, String>()
+        val writer = object : JavaFileWriter() {
+            override fun writeToFile(canonicalName: String, contents: String) {
+                written[canonicalName] = contents
+            }
+
+            override fun deleteFile(canonicalName: String) {
+                written.remove(canonicalName)
+                removed.add(canonicalName)
+            }
+        }
+
+        if (changed.isNotEmpty()) {
+            try {
+                resourceBundle.validateAndRegisterErrors()
+                GenerateViewBindingTask.writeClasses(resourceBundle, writer, changed)
+            } catch (ignored: Throwable) {
+                // try again on the next change
+                changed.forEach(signatures::remove)
+                changed.clear()
+                written.clear()
+            }
+        }
+
+        // a binding class is renamed if the layout sets a different class name
+        changed.forEach { name ->
+            val classes = resourceBundle.allLayoutFileBundlesInSource
+                .filter { it.fileName == name }
+                .mapTo(HashSet()) { it.fullBindingClass }
+            injectedClasses.put(name, classes)?.let { previous -> removed.addAll(previous - classes) }
+        }
+        removed.removeAll(written.keys)
+
+        val removedSources = removed.map { className ->
+            module.removeInjectedClass(className)
+            SourceFileObject(getFile(className).toPath(), module)
+        }
+        val sources = written.map { (className, contents) ->
+            val file = getFile(className)
+            module.addInjectedClass(file, className, contents)
+            SourceFileObject(file.toPath(), contents, Instant.now())
+        }
+        if (sources.isNotEmpty() || removedSources.isNotEmpty()) {
+            consumer.invoke(sources, removedSources)
+        }
+    }
+
+    private fun getFile(className: String): File {
+        return File(outputDir, className.replace('.', '/') + ".java")
+    }
+
+    private fun getLayoutDirectories(): List<File> {
+        return module.androidResourcesDirectory.listFiles { file ->
+            file.isDirectory && isLayoutDirectory(file)
+        }.orEmpty().sortedBy { it.name }
+    }
+
+    private fun parseLayout(
+        layoutDirs: List<File>,
+        name: String
+    ): List<ResourceBundle.LayoutFileBundle> {
+        return layoutDirs.map { File(it, "$name.xml") }
+            .filter(GenerateViewBindingTask::isLayoutFile)
+            .mapNotNull {
+                try {
+                    GenerateViewBindingTask.parseLayout(module, it)
+                } catch (ignored: Throwable) {
+                    null
+                }
+            }
     }
 
     companion object {
 
+        private val VIEW_BINDING_TASK_KEY = Key.create<InjectViewBindingTask>("injectViewBindingTask")
+
+        private fun isLayoutDirectory(dir: File): Boolean {
+            return dir.name == "layout" || dir.name.startsWith("layout-")
+        }
+
+        private fun isLayoutPath(file: File): Boolean {
+            val parent = file.parentFile ?: return false
+            return file.name.endsWith(".xml") && isLayoutDirectory(parent)
+        }
+
+        private fun get(module: AndroidModule): InjectViewBindingTask {
+            synchronized(VIEW_BINDING_TASK_KEY) {
+                var task = module.getUserData(VIEW_BINDING_TASK_KEY)
+                if (task == null) {
+                    task = InjectViewBindingTask(module)
+                    module.putUserData(VIEW_BINDING_TASK_KEY, task)
+                }
+                return task
+            }
+        }
+
+        /**
+         * Marks the binding of a layout as out of date, the binding is generated
+         * on the next call to [inject].
+         *
+         * @param file the layout file that has changed, or null to check every layout
+         */
+        @JvmStatic
+        fun invalidate(module: AndroidModule, file: File?) {
+            get(module).invalidate(file)
+        }
+
+        /**
+         * Generates the bindings of the layouts that have changed since the last call
+         * and registers them as injected classes of the module. The bindings of deleted
+         * layouts are removed.
+         */
         @JvmOverloads
         @JvmStatic
         fun inject(project: Project, module: AndroidModule = project.mainModule as AndroidModule) {
@@ -50,18 +224,17 @@ class InjectViewBindingTask private constructor(
                 return
             }
 
-            val service = JavaCompilerProvider.get(project, module) ?: return
-
-            val task = InjectViewBindingTask(project, module)
-            task.doInject { files ->
-                if (project.isCompiling || project.isIndexing) {
-                    return@doInject
-                }
+            if (project.isCompiling || project.isIndexing) {
+                return
+            }
 
-                val sources = files.map { file ->
-                    SourceFileObject(file.toPath(), module, Instant.now())
-                }
-                service.compile(sources)
+            get(module).doInject { sources, removed ->
+                // the classes are entered in the compilation of the editor, the compiler
+                // of JavaCompilerProvider is created again the next time it is retrieved
+                // since the injected classes of the module have changed
+                val compilationInfo = CompilationInfo.get(module) ?: return@doInject
+                removed.forEach(compilationInfo::remove)
+                sources.forEach(compilationInfo::updateNow)
             }
         }
     }
@@ -0,0 +1,50 @@
+package com.tyron.viewbinding.tool.store
+
+/**
+ * Tracks what the binding class of each layout is generated from, so that a binding is
+ * only generated again when the views of its layout have changed. Edits that do not affect
+ * the binding class, such as changing the attributes of a view, leave the signature as is.
+ */
+class BindingSignatures {
+
+    private val signatures = HashMap<String, String>()
+
+    /**
+     * Records the bundles of every configuration of a layout.
+     *
+     * @return true if the binding class of the layout has to be generated again
+     */
+    fun update(layoutName: String, bundles: List<ResourceBundle.LayoutFileBundle>): Boolean {
+        val signature = bundles.joinToString("\n", transform = ::getSignature)
+        return signatures.put(layoutName, signature) != signature
+    }
+
+    /**
+     * Forgets a layout, its binding is generated again on its next [update].
+     */
+    fun remove(layoutName: String) {
+        signatures.remove(layoutName)
+    }
+
+    companion object {
+
+        /**
+         * @return A string that only changes if the generated binding class would change
+         */
+        @JvmStatic
+        fun getSignature(bundle: ResourceBundle.LayoutFileBundle): String {
+            return buildString {
+                append(bundle.directory).append(':')
+                append(bundle.fullBindingClass).append(':')
+                append(bundle.isMerge)
+                bundle.bindingTargetBundles.forEach {
+                    append(';')
+                    append(it.id).append(',')
+                    append(it.viewName).append(',')
+                    append(it.includedLayout).append(',')
+                    append(it.interfaceType)
+                }
+            }
+        }
+    }
+}
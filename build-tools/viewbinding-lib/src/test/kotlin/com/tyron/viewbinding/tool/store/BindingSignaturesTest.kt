@@ -0,0 +1,140 @@
+package com.tyron.viewbinding.tool.store
+
+import com.google.common.truth.Truth.assertThat
+import com.tyron.viewbinding.tool.util.RelativizableFile
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class BindingSignaturesTest {
+    @get:Rule val temporaryFolder = TemporaryFolder()
+
+    private val signatures = BindingSignatures()
+
+    @Test fun unchangedLayoutIsNotGeneratedAgain() {
+        write("layout", """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android">
+                <TextView android:id="@+id/name" />
+            </LinearLayout>
+            """.trimIndent())
+
+        assertThat(update()).isTrue()
+        assertThat(update()).isFalse()
+    }
+
+    @Test fun attributeChangeIsNotGeneratedAgain() {
+        write("layout", """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android">
+                <TextView android:id="@+id/name" />
+            </LinearLayout>
+            """.trimIndent())
+        assertThat(update()).isTrue()
+
+        write("layout", """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android"
+                android:orientation="vertical">
+                <TextView android:id="@+id/name" android:text="Name" />
+                <TextView android:text="Without an id" />
+            </LinearLayout>
+            """.trimIndent())
+        assertThat(update()).isFalse()
+    }
+
+    @Test fun addedIdIsGeneratedAgain() {
+        write("layout", """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android">
+                <TextView android:id="@+id/name" />
+            </LinearLayout>
+            """.trimIndent())
+        assertThat(update()).isTrue()
+
+        write("layout", """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android">
+                <TextView android:id="@+id/name" />
+                <TextView android:id="@+id/email" />
+            </LinearLayout>
+            """.trimIndent())
+        assertThat(update()).isTrue()
+    }
+
+    @Test fun changedViewTypeIsGeneratedAgain() {
+        write("layout", """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android">
+                <TextView android:id="@+id/name" />
+            </LinearLayout>
+            """.trimIndent())
+        assertThat(update()).isTrue()
+
+        write("layout", """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android">
+                <EditText android:id="@+id/name" />
+            </LinearLayout>
+            """.trimIndent())
+        assertThat(update()).isTrue()
+    }
+
+    @Test fun addedConfigurationIsGeneratedAgain() {
+        val content = """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android">
+                <TextView android:id="@+id/name" />
+            </LinearLayout>
+            """.trimIndent()
+        write("layout", content)
+        assertThat(update()).isTrue()
+
+        write("layout-land", content)
+        assertThat(update()).isTrue()
+        assertThat(update()).isFalse()
+    }
+
+    @Test fun ignoredLayoutHasNoBundles() {
+        write("layout", """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android"
+                xmlns:tools="http://schemas.android.com/tools"
+                tools:viewBindingIgnore="true">
+                <TextView android:id="@+id/name" />
+            </LinearLayout>
+            """.trimIndent())
+        assertThat(parse()).isEmpty()
+    }
+
+    @Test fun removedLayoutIsGeneratedAgain() {
+        write("layout", """
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android">
+                <TextView android:id="@+id/name" />
+            </LinearLayout>
+            """.trimIndent())
+        assertThat(update()).isTrue()
+
+        signatures.remove(LAYOUT_NAME)
+        assertThat(update()).isTrue()
+    }
+
+    private fun write(folder: String, content: String) {
+        val folderDir = File(temporaryFolder.root, "res/$folder")
+        folderDir.mkdirs()
+        File(folderDir, "$LAYOUT_NAME.xml").writeText(content)
+    }
+
+    private fun parse(): List<ResourceBundle.LayoutFileBundle> {
+        return File(temporaryFolder.root, "res").listFiles().orEmpty()
+            .sortedBy { it.name }
+            .map { File(it, "$LAYOUT_NAME.xml") }
+            .filter { it.isFile }
+            .mapNotNull {
+                LayoutFileParser.parseXml(
+                    RelativizableFile.fromAbsoluteFile(it),
+                    "com.example",
+                    null,
+                    true
+                )
+            }
+    }
+
+    private fun update() = signatures.update(LAYOUT_NAME, parse())
+
+    companion object {
+        private const val LAYOUT_NAME = "example"
+    }
+}
@@ -0,0 +1,102 @@
+package com.tyron.editor.util;
+
+import com.tyron.editor.Content;
+import com.tyron.editor.util.diff.Diff;
+import com.tyron.editor.util.text.LineTokenizer;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Brings a {@link Content} up to date with new text by applying only the lines that changed,
+ * instead of replacing the whole text. This keeps the state that listeners of the content
+ * derive from it, such as highlighting, diagnostics and the undo history, for the parts of the
+ * text that did not change.
+ */
+public class ContentReconciler {
+
+    /**
+     * Applies the difference between the current text of the content and the new text.
+     *
+     * @param content the content to update
+     * @param newText the text the content should have afterwards
+     * @return whether the content has been changed
+     */
+    public static boolean reconcile(@NotNull Content content, @NotNull CharSequence newText) {
+        String oldString = content.toString();
+        String newString = newText.toString();
+        if (oldString.equals(newString)) {
+            return false;
+        }
+
+        String[] oldLines = LineTokenizer.tokenize(oldString, true);
+        String[] newLines = LineTokenizer.tokenize(newString, true);
+        Diff.Change change = Diff.buildChangesLinear(oldLines, newLines);
+        if (change == null) {
+            return false;
+        }
+
+        int[] oldOffsets = getLineOffsets(oldLines);
+        int[] newOffsets = getLineOffsets(newLines);
+
+        // apply from the end so the offsets of the earlier changes stay valid
+        List<Diff.Change> changes = change.toList();
+        for (int i = changes.size() - 1; i >= 0; i--) {
+            Diff.Change current = changes.get(i);
+            int start = oldOffsets[current.line0];
+            int end = oldOffsets[current.line0 + current.deleted];
+            int newStart = newOffsets[current.line1];
+            int newEnd = newOffsets[current.line1 + current.inserted];
+            apply(content, oldString, start, end, newString, newStart, newEnd);
+        }
+        return true;
+    }
+
+    /**
+     * Replaces {@code [start, end)} of the content with {@code [newStart, newEnd)} of the new
+     * text, leaving out the characters that both ranges start or end with.
+     */
+    private static void apply(Content content,
+                              String oldString,
+                              int start,
+                              int end,
+                              String newString,
+                              int newStart,
+                              int newEnd) {
+        while (start < end && newStart < newEnd &&
+               oldString.charAt(start) == newString.charAt(newStart)) {
+            start++;
+            newStart++;
+        }
+        while (start < end && newStart < newEnd &&
+               oldString.charAt(end - 1) == newString.charAt(newEnd - 1)) {
+            end--;
+            newEnd--;
+        }
+
+        if (start == end) {
+            if (newStart != newEnd) {
+                content.insert(start, newString.subSequence(newStart, newEnd));
+            }
+        } else if (newStart == newEnd) {
+            content.delete(start, end);
+        } else {
+            content.replace(start, end, newString.subSequence(newStart, newEnd));
+        }
+    }
+
+    /**
+     * @return the offset of each line followed by the length of the text
+     */
+    private static int[] getLineOffsets(String[] lines) {
+        int[] offsets = new int[lines.length + 1];
+        int offset = 0;
+        for (int i = 0; i < lines.length; i++) {
+            offsets[i] = offset;
+            offset += lines[i].length();
+        }
+        offsets[lines.length] = offset;
+        return offsets;
+    }
+}
@@ -1,6 +1,7 @@
 package com.tyron.editor.util.diff;
 
 import com.tyron.editor.util.Ref;
+import com.tyron.editor.util.text.LineTokenizer;
 
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.NotNull;
@@ -19,8 +20,7 @@ public final class Diff {
   }
 
   public static String @NotNull [] splitLines(@NotNull CharSequence s) {
-//    return s.length() == 0 ? new String[]{""} : LineTokenizer.tokenize(s, false, false);
-    throw new UnsupportedOperationException();
+    return s.length() == 0 ? new String[]{""} : LineTokenizer.tokenize(s, false, false);
   }
 
   @Nullable
@@ -49,6 +49,43 @@ public final class Diff {
     return doBuildChanges(ints1, ints2, new ChangeBuilder(startShift));
   }
 
+  /**
+   * Builds the changes between two sequences without ever giving up on large inputs.
+   * <p/>
+   * Uses linear memory and bounds the running time of the Myers algorithm, if the sequences
+   * differ too much in some region that whole region is reported as changed instead of
+   * throwing {@link FilesTooBigForDiffException}. The result is always a valid, but not
+   * necessarily minimal, list of changes.
+   */
+  @Nullable
+  public static <T> Change buildChangesLinear(T @NotNull [] objects1, T @NotNull [] objects2) {
+    final int startShift = getStartShift(objects1, objects2);
+    final int endCut = getEndCut(objects1, objects2, startShift);
+
+    Ref<Change> changeRef = doBuildChangesFast(objects1.length, objects2.length, startShift, endCut);
+    if (changeRef != null) {
+      return changeRef.get();
+    }
+
+    int trimmedLength = objects1.length + objects2.length - 2 * startShift - 2 * endCut;
+    Enumerator<T> enumerator = new Enumerator<>(trimmedLength);
+    int[] ints1 = enumerator.enumerate(objects1, startShift, endCut);
+    int[] ints2 = enumerator.enumerate(objects2, startShift, endCut);
+
+    ChangeBuilder builder = new ChangeBuilder(startShift);
+    Reindexer reindexer = new Reindexer();
+    int[][] discarded = reindexer.discardUnique(ints1, ints2);
+    if (discarded[0].length == 0 && discarded[1].length == 0) {
+      builder.addChange(ints1.length, ints2.length);
+      return builder.getFirstChange();
+    }
+
+    MyersLCS intLCS = new MyersLCS(discarded[0], discarded[1]);
+    intLCS.executeLinear();
+    reindexer.reindex(intLCS.getChanges(), builder);
+    return builder.getFirstChange();
+  }
+
   @Nullable
   public static Change buildChanges(int @NotNull [] array1, int @NotNull [] array2) throws FilesTooBigForDiffException {
     final int startShift = getStartShift(array1, array2);
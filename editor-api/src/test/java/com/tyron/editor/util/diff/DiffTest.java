@@ -0,0 +1,106 @@
+package com.tyron.editor.util.diff;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+public class DiffTest {
+
+    private final Random random = new Random(42);
+
+    @Test
+    public void linearMatchesQuadraticOnRandomEdits() throws FilesTooBigForDiffException {
+        for (int round = 0; round < 500; round++) {
+            String[] before = randomLines(random.nextInt(200), 8);
+            String[] after = edit(before, 1 + random.nextInt(10));
+
+            Diff.Change linear = Diff.buildChangesLinear(before, after);
+            Diff.Change quadratic = Diff.buildChanges(before, after);
+            assertEquals(describe(quadratic), describe(linear));
+            assertEquals(Arrays.asList(after), apply(before, after, linear));
+        }
+    }
+
+    @Test
+    public void identicalInputsHaveNoChanges() {
+        String[] lines = randomLines(100, 8);
+        assertNull(Diff.buildChangesLinear(lines, lines.clone()));
+    }
+
+    @Test
+    public void prefixAndSuffixOnlyChanges() {
+        String[] before = {"a", "b", "c"};
+
+        Diff.Change inserted = Diff.buildChangesLinear(before, new String[]{"a", "b", "x", "c"});
+        assertEquals("[change[inserted=1, deleted=0, line0=2, line1=2]]", describe(inserted));
+
+        Diff.Change deleted = Diff.buildChangesLinear(before, new String[]{"a", "c"});
+        assertEquals("[change[inserted=0, deleted=1, line0=1, line1=1]]", describe(deleted));
+    }
+
+    @Test
+    public void linearDiffOfVeryDifferentInputsIsStillValid() {
+        // far past the threshold at which the quadratic diff gives up
+        String[] before = randomLines(30_000, 2);
+        String[] after = randomLines(30_000, 2);
+
+        Diff.Change linear = Diff.buildChangesLinear(before, after);
+        assertEquals(Arrays.asList(after), apply(before, after, linear));
+    }
+
+    private String[] randomLines(int count, int distinct) {
+        String[] lines = new String[count];
+        for (int i = 0; i < count; i++) {
+            lines[i] = "line " + random.nextInt(distinct);
+        }
+        return lines;
+    }
+
+    private String[] edit(String[] lines, int edits) {
+        List<String> result = new ArrayList<>(Arrays.asList(lines));
+        for (int i = 0; i < edits; i++) {
+            int index = random.nextInt(result.size() + 1);
+            switch (random.nextInt(3)) {
+                case 0:
+                    result.add(index, "inserted " + random.nextInt(4));
+                    break;
+                case 1:
+                    if (index < result.size()) {
+                        result.remove(index);
+                    }
+                    break;
+                default:
+                    if (index < result.size()) {
+                        result.set(index, "changed " + random.nextInt(4));
+                    }
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    /**
+     * Replaces the lines deleted by each change with the lines it inserts
+     */
+    private static List<String> apply(String[] before, String[] after, Diff.Change change) {
+        List<String> result = new ArrayList<>();
+        int index = 0;
+        for (Diff.Change current = change; current != null; current = current.link) {
+            assertEquals(current.line0 - index, current.line1 - result.size());
+            result.addAll(Arrays.asList(before).subList(index, current.line0));
+            result.addAll(Arrays.asList(after).subList(current.line1, current.line1 + current.inserted));
+            index = current.line0 + current.deleted;
+        }
+        result.addAll(Arrays.asList(before).subList(index, before.length));
+        return result;
+    }
+
+    private static String describe(Diff.Change change) {
+        return change == null ? "[]" : change.toList().toString();
+    }
+}
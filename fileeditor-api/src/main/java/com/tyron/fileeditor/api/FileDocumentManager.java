@@ -54,4 +54,10 @@ public abstract class FileDocumentManager {
     public abstract void saveContent(@NotNull Content content);
 
     public abstract boolean isContentUnsaved(@NotNull Content content);
+
+    /**
+     * @return the documents that have been modified since they were last saved
+     */
+    @NotNull
+    public abstract Content[] getUnsavedContents();
 }
@@ -176,4 +176,9 @@ public class FileDocumentManagerImpl extends FileDocumentManagerBase {
     public boolean isContentUnsaved(@NotNull Content content) {
         return unsavedContents.contains(content);
     }
+
+    @Override
+    public @NotNull Content[] getUnsavedContents() {
+        return unsavedContents.toArray(new Content[0]);
+    }
 }
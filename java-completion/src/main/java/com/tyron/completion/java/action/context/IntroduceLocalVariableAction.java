@@ -12,11 +12,13 @@ import com.sun.tools.javac.api.JavacTaskImpl;
 import com.sun.tools.javac.code.Type;
 import com.sun.tools.javac.tree.JCTree;
 import com.tyron.actions.ActionPlaces;
+import com.tyron.actions.ActionUpdateThread;
 import com.tyron.actions.AnAction;
 import com.tyron.actions.AnActionEvent;
 import com.tyron.actions.CommonDataKeys;
 import com.tyron.actions.Presentation;
 import com.tyron.completion.java.R;
+import com.tyron.completion.java.action.CommonJavaContextKeys;
 import com.tyron.completion.java.action.FindCurrentPath;
 import com.tyron.completion.java.parse.CompilationInfo;
 import com.tyron.completion.java.provider.DefaultJavacUtilitiesProvider;
@@ -41,6 +43,12 @@ public class IntroduceLocalVariableAction extends AnAction {
 
     public static final String ID = "javaIntroduceLocalVariableAction";
 
+    @NonNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
     @Override
     public void update(@NonNull AnActionEvent event) {
         Presentation presentation = event.getPresentation();
@@ -65,16 +73,11 @@ public class IntroduceLocalVariableAction extends AnAction {
             return;
         }
 
-        JCTree.JCCompilationUnit unit = compilationInfo.getCompilationUnit(file.toURI());
-        if (unit == null) {
+        TreePath currentPath = event.getData(CommonJavaContextKeys.CURRENT_PATH);
+        if (currentPath == null) {
             return;
         }
 
-        int left = editor.getCaret().getStart();
-        int right = editor.getCaret().getEnd();
-        JavacTaskImpl javacTask = compilationInfo.impl.getJavacTask();
-        TreePath currentPath = new FindCurrentPath(javacTask).scan(unit, left, right);
-
         if (ActionUtil.canIntroduceLocalVariable(currentPath) == null) {
             return;
         }
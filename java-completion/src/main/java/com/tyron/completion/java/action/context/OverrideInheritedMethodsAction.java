@@ -21,6 +21,7 @@ import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.tyron.actions.ActionPlaces;
+import com.tyron.actions.ActionUpdateThread;
 import com.tyron.actions.AnAction;
 import com.tyron.actions.AnActionEvent;
 import com.tyron.actions.CommonDataKeys;
@@ -75,6 +76,12 @@ public class OverrideInheritedMethodsAction extends AnAction {
 
     public static final String ID = "javaOverrideInheritedMethodsAction";
 
+    @NonNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
     @Override
     public void update(@NonNull AnActionEvent event) {
         Presentation presentation = event.getPresentation();
@@ -5,6 +5,7 @@ import android.app.AlertDialog;
 import androidx.annotation.NonNull;
 
 import com.tyron.actions.ActionPlaces;
+import com.tyron.actions.ActionUpdateThread;
 import com.tyron.actions.AnAction;
 import com.tyron.actions.AnActionEvent;
 import com.tyron.actions.CommonDataKeys;
@@ -22,6 +23,12 @@ import java.util.List;
 
 public class ViewJavaDocAction extends AnAction {
 
+    @NonNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
     @Override
     public void update(@NonNull AnActionEvent event) {
         Presentation presentation = event.getPresentation();
@@ -51,6 +58,7 @@ public class ViewJavaDocAction extends AnAction {
             return;
         }
 
+        event.checkCanceled();
         HoverProvider hoverProvider = new HoverProvider(compiler);
         List<String> strings = hoverProvider.hover(file.toPath().getFileName(),
                 editor.getCaret().getStart());
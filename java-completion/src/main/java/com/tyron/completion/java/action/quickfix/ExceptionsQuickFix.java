@@ -3,6 +3,7 @@ package com.tyron.completion.java.action.quickfix;
 import androidx.annotation.NonNull;
 
 import com.tyron.actions.ActionPlaces;
+import com.tyron.actions.ActionUpdateThread;
 import com.tyron.actions.AnAction;
 import com.tyron.actions.AnActionEvent;
 import com.tyron.actions.CommonDataKeys;
@@ -18,6 +19,12 @@ public abstract class ExceptionsQuickFix extends AnAction {
     public static final String ERROR_CODE = "compiler.err.unreported.exception.need.to.catch.or" +
             ".throw";
 
+    @NonNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
     @Override
     public void update(@NonNull AnActionEvent event) {
         event.getPresentation().setVisible(false);
@@ -45,6 +52,11 @@ public abstract class ExceptionsQuickFix extends AnAction {
             return;
         }
 
+        // the fixes are performed with the compiler
+        if (event.getData(CommonJavaContextKeys.COMPILER) == null) {
+            return;
+        }
+
         event.getPresentation().setVisible(true);
     }
 
@@ -3,6 +3,7 @@ package com.tyron.completion.java.action.quickfix;
 import androidx.annotation.NonNull;
 
 import com.tyron.actions.ActionPlaces;
+import com.tyron.actions.ActionUpdateThread;
 import com.tyron.actions.AnAction;
 import com.tyron.actions.AnActionEvent;
 import com.tyron.actions.CommonDataKeys;
@@ -28,6 +29,12 @@ public class ImplementAbstractMethodsFix extends AnAction {
 
     public static final String ERROR_CODE = "compiler.err.does.not.override.abstract";
 
+    @NonNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
     @Override
     public void update(@NonNull AnActionEvent event) {
         Presentation presentation = event.getPresentation();
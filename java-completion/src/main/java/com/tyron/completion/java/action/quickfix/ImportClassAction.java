@@ -5,6 +5,7 @@ import android.app.AlertDialog;
 import androidx.annotation.NonNull;
 
 import com.tyron.actions.ActionPlaces;
+import com.tyron.actions.ActionUpdateThread;
 import com.tyron.actions.AnAction;
 import com.tyron.actions.AnActionEvent;
 import com.tyron.actions.CommonDataKeys;
@@ -37,6 +38,12 @@ public class ImportClassAction extends AnAction {
     public static final String ERROR_CODE = "compiler.err.cant.resolve.location";
     public static final String ERROR_CODE_RETURN_TYPE = "compiler.err.cant.resolve";
 
+    @NonNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
     @Override
     public void update(@NonNull AnActionEvent event) {
         Presentation presentation = event.getPresentation();
@@ -70,6 +77,7 @@ public class ImportClassAction extends AnAction {
         String simpleName = String.valueOf(diagnosticSourceUnwrapper.d.getArgs()[1]);
         List<String> classNames = new ArrayList<>();
         for (String qualifiedName : compiler.publicTopLevelTypes()) {
+            event.checkCanceled();
             if (qualifiedName.endsWith("." + simpleName)) {
                 classNames.add(qualifiedName);
             }
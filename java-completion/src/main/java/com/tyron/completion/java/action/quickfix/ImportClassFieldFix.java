@@ -5,6 +5,7 @@ import android.app.AlertDialog;
 import androidx.annotation.NonNull;
 
 import com.tyron.actions.ActionPlaces;
+import com.tyron.actions.ActionUpdateThread;
 import com.tyron.actions.AnAction;
 import com.tyron.actions.AnActionEvent;
 import com.tyron.actions.CommonDataKeys;
@@ -36,6 +37,12 @@ public class ImportClassFieldFix extends AnAction {
 
     public static final String ERROR_CODE = "compiler.err.doesnt.exist";
 
+    @NonNull
+    @Override
+    public ActionUpdateThread getActionUpdateThread() {
+        return ActionUpdateThread.BGT;
+    }
+
     @Override
     public void update(@NonNull AnActionEvent event) {
         Presentation presentation = event.getPresentation();
@@ -68,6 +75,7 @@ public class ImportClassFieldFix extends AnAction {
         String simpleName = String.valueOf(diagnosticSourceUnwrapper.d.getArgs()[0]);
         List<String> classNames = new ArrayList<>();
         for (String qualifiedName : compiler.publicTopLevelTypes()) {
+            event.checkCanceled();
             if (qualifiedName.endsWith("." + simpleName)) {
                 classNames.add(qualifiedName);
             }
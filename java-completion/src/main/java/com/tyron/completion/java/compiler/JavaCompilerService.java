@@ -68,6 +68,7 @@ public class JavaCompilerService implements CompilerProvider {
     private final CompilerContainer mContainer = new CompilerContainer();
     private CompileBatch cachedCompile;
     private final Map<JavaFileObject, Long> cachedModified = new HashMap<>();
+    private List<JavaFileObject> cachedSources = Collections.emptyList();
 
     public final ReentrantLock mLock = new ReentrantLock();
 
@@ -125,12 +126,21 @@ public class JavaCompilerService implements CompilerProvider {
             cachedCompile.borrow.close();
         }
         cachedCompile = doCompile(sources);
+        cachedSources = new ArrayList<>(sources);
         cachedModified.clear();
         for (JavaFileObject f : sources) {
             cachedModified.put(f, f.getLastModified());
         }
     }
 
+    /**
+     * @return The sources that were requested for the cached compilation, empty if nothing has
+     * been compiled yet
+     */
+    public synchronized List<JavaFileObject> getCachedSources() {
+        return cachedSources;
+    }
+
     public void invalidate(Path source) {
         invalidate(Collections.singletonList(new SourceFileObject(source)));
     }
@@ -545,6 +555,7 @@ public class JavaCompilerService implements CompilerProvider {
             }
             cachedCompile = null;
             cachedModified.clear();
+            cachedSources = Collections.emptyList();
             compiler = new ReusableCompiler();
         });
     }
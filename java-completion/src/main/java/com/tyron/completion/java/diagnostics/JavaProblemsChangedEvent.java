@@ -0,0 +1,29 @@
+package com.tyron.completion.java.diagnostics;
+
+import androidx.annotation.NonNull;
+
+import com.tyron.code.event.Event;
+
+import java.io.File;
+import java.util.Set;
+
+/**
+ * Dispatched to the event manager of the project when the problems found by
+ * {@link JavaProblemsService} have changed for some files.
+ */
+public class JavaProblemsChangedEvent extends Event {
+
+    private final Set<File> mFiles;
+
+    public JavaProblemsChangedEvent(@NonNull Set<File> files) {
+        mFiles = files;
+    }
+
+    /**
+     * @return The files whose problems have changed
+     */
+    @NonNull
+    public Set<File> getFiles() {
+        return mFiles;
+    }
+}
@@ -0,0 +1,468 @@
+package com.tyron.completion.java.diagnostics;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ModifiersTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.TreePathScanner;
+import com.tyron.builder.model.DiagnosticWrapper;
+import com.tyron.builder.model.SourceFileObject;
+import com.tyron.builder.project.Project;
+import com.tyron.builder.project.api.JavaModule;
+import com.tyron.builder.project.api.Module;
+import com.tyron.completion.java.JavaCompilerProvider;
+import com.tyron.completion.java.compiler.JavaCompilerService;
+import com.tyron.completion.java.compiler.ParseTask;
+import com.tyron.completion.progress.ProcessCanceledException;
+
+import org.jetbrains.kotlin.com.intellij.openapi.util.Key;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.lang.model.element.Modifier;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Keeps the compile errors of every java file of a module up to date in the background, so
+ * that errors caused by an edit in another file are found without building the project.
+ *
+ * All the files are checked once when {@link #checkAll()} is called. After that, an edit only
+ * causes the edited file to be checked again, along with the files that reference one of its
+ * types if its declarations have changed. The files are compiled in small batches through the
+ * {@link JavaCompilerService} of the module on a low priority thread. A batch is only started
+ * once the user has stopped editing for a while and the compiler is not in use, so it does not
+ * compete with completions. Since a batch replaces the compilation the compiler caches for
+ * hover and quick fixes, the sources of that compilation are compiled again afterwards.
+ *
+ * Listeners are notified through a {@link JavaProblemsChangedEvent} dispatched to the event
+ * manager of the project.
+ */
+public class JavaProblemsService {
+
+    private static final String TAG = "JavaProblemsService";
+
+    private static final Key<JavaProblemsService> PROBLEMS_SERVICE_KEY =
+            Key.create("javaProblemsService");
+
+    /**
+     * Time in milliseconds without edits before a batch is compiled
+     */
+    private static final long IDLE_DELAY = 1500;
+
+    /**
+     * Time in milliseconds between two batches
+     */
+    private static final long BATCH_DELAY = 200;
+
+    private static final int BATCH_SIZE = 16;
+
+    @Nullable
+    public static JavaProblemsService get(@NonNull Project project, @Nullable Module module) {
+        if (!(module instanceof JavaModule)) {
+            return null;
+        }
+        synchronized (PROBLEMS_SERVICE_KEY) {
+            JavaProblemsService service = module.getUserData(PROBLEMS_SERVICE_KEY);
+            if (service == null) {
+                service = new JavaProblemsService(project, (JavaModule) module);
+                module.putUserData(PROBLEMS_SERVICE_KEY, service);
+            }
+            return service;
+        }
+    }
+
+    private final Project mProject;
+    private final JavaModule mModule;
+    private final ScheduledThreadPoolExecutor mExecutor;
+
+    private final Map<File, List<DiagnosticWrapper>> mProblems = new ConcurrentHashMap<>();
+    private volatile long mLastEdit;
+
+    // the fields below are only accessed from the executor
+    private final Map<File, FileInfo> mIndex = new HashMap<>();
+    private final Set<File> mPending = new LinkedHashSet<>();
+    private ScheduledFuture<?> mScheduled;
+
+    private JavaProblemsService(Project project, JavaModule module) {
+        mProject = project;
+        mModule = module;
+        mExecutor = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, TAG);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        mExecutor.setKeepAliveTime(30, TimeUnit.SECONDS);
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Indexes and checks every java file of the module.
+     */
+    public void checkAll() {
+        mExecutor.execute(() -> {
+            List<File> files = new ArrayList<>(mModule.getJavaFiles().values());
+            JavaCompilerService compiler = getCompiler();
+            if (compiler == null) {
+                return;
+            }
+            for (File file : files) {
+                if (!mIndex.containsKey(file)) {
+                    try {
+                        ParseTask parseTask = compiler.parse(file.toPath());
+                        mIndex.put(file, FileInfo.create(parseTask.root));
+                    } catch (Throwable t) {
+                        Log.w(TAG, "Failed to index " + file, t);
+                    }
+                }
+            }
+            mPending.addAll(files);
+            schedule(IDLE_DELAY);
+        });
+    }
+
+    /**
+     * Called after a file has been edited and parsed again. The file is checked again along
+     * with the files that depend on its declarations if they have changed.
+     *
+     * @param file the file that was edited
+     * @param unit the new compilation unit of the file, it is only read during this call
+     */
+    public void fileChanged(@NonNull File file, @NonNull CompilationUnitTree unit) {
+        mLastEdit = System.currentTimeMillis();
+        FileInfo info = FileInfo.create(unit);
+        mExecutor.execute(() -> {
+            FileInfo previous = mIndex.put(file, info);
+            mPending.add(file);
+            mPending.addAll(findDependents(mIndex, previous, info));
+            schedule(IDLE_DELAY);
+        });
+    }
+
+    /**
+     * @param index    what every indexed file declares and references
+     * @param previous the index entry of the edited file before the edit, null if it was not
+     *                 indexed
+     * @param current  the index entry of the edited file after the edit
+     * @return The files that have to be checked again because the non-private declarations
+     * of the edited file have changed, empty if only private declarations or bodies changed
+     */
+    @VisibleForTesting
+    static Set<File> findDependents(Map<File, FileInfo> index,
+                                    @Nullable FileInfo previous,
+                                    FileInfo current) {
+        if (previous != null && previous.signature.equals(current.signature)) {
+            return Collections.emptySet();
+        }
+        Set<String> changedTypes = new HashSet<>(current.declaredTypes);
+        if (previous != null) {
+            changedTypes.addAll(previous.declaredTypes);
+        }
+        Set<File> dependents = new LinkedHashSet<>();
+        for (Map.Entry<File, FileInfo> entry : index.entrySet()) {
+            if (!Collections.disjoint(entry.getValue().references, changedTypes)) {
+                dependents.add(entry.getKey());
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * @return The problems found in the file in its last check, empty if the file has not
+     * been checked yet
+     */
+    @NonNull
+    public List<DiagnosticWrapper> getProblems(@NonNull File file) {
+        List<DiagnosticWrapper> problems = mProblems.get(file);
+        return problems == null ? Collections.emptyList() : problems;
+    }
+
+    /**
+     * @return The problems of every file that has been checked and has problems
+     */
+    @NonNull
+    public Map<File, List<DiagnosticWrapper>> getProblems() {
+        Map<File, List<DiagnosticWrapper>> problems = new HashMap<>();
+        mProblems.forEach((file, list) -> {
+            if (!list.isEmpty()) {
+                problems.put(file, list);
+            }
+        });
+        return problems;
+    }
+
+    public boolean hasErrors(@NonNull File file) {
+        for (DiagnosticWrapper problem : getProblems(file)) {
+            if (problem.getKind() == Diagnostic.Kind.ERROR) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether a file inside the given directory has errors
+     */
+    public boolean hasErrorsIn(@NonNull File directory) {
+        String prefix = directory.getAbsolutePath() + File.separator;
+        for (File file : mProblems.keySet()) {
+            if (file.getAbsolutePath().startsWith(prefix) && hasErrors(file)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void schedule(long delay) {
+        if (mScheduled != null && !mScheduled.isDone()) {
+            return;
+        }
+        mScheduled = mExecutor.schedule(this::runBatch, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private void runBatch() {
+        mScheduled = null;
+        if (mPending.isEmpty()) {
+            return;
+        }
+        JavaCompilerService compiler = getCompiler();
+        if (compiler == null) {
+            return;
+        }
+
+        // yield to the user while they are typing or when the compiler is in use
+        long idle = System.currentTimeMillis() - mLastEdit;
+        if (idle < IDLE_DELAY) {
+            schedule(IDLE_DELAY - idle);
+            return;
+        }
+        if (compiler.getCachedContainer().isWriting()) {
+            schedule(IDLE_DELAY);
+            return;
+        }
+
+        List<File> batch = new ArrayList<>(BATCH_SIZE);
+        Set<File> changed = new HashSet<>();
+        Iterator<File> iterator = mPending.iterator();
+        while (iterator.hasNext() && batch.size() < BATCH_SIZE) {
+            File file = iterator.next();
+            iterator.remove();
+            if (file.exists()) {
+                batch.add(file);
+            } else {
+                mIndex.remove(file);
+                if (mProblems.remove(file) != null) {
+                    changed.add(file);
+                }
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            try {
+                changed.addAll(check(compiler, batch));
+            } catch (ProcessCanceledException e) {
+                mPending.addAll(batch);
+            } catch (Throwable t) {
+                Log.w(TAG, "Failed to check " + batch, t);
+            }
+        }
+
+        if (!changed.isEmpty()) {
+            mProject.getEventManager().dispatchEvent(new JavaProblemsChangedEvent(changed));
+        }
+        if (!mPending.isEmpty()) {
+            schedule(BATCH_DELAY);
+        }
+    }
+
+    /**
+     * Compiles the files and stores their problems.
+     *
+     * @return The files whose problems have changed
+     */
+    private Set<File> check(JavaCompilerService compiler, List<File> files) {
+        List<JavaFileObject> sources = new ArrayList<>(files.size());
+        Map<File, List<DiagnosticWrapper>> results = new HashMap<>();
+        for (File file : files) {
+            sources.add(new SourceFileObject(file.toPath(), mModule));
+            results.put(file, new ArrayList<>());
+        }
+
+        // the compilation used by hover and quick fixes is replaced by this one
+        List<JavaFileObject> cachedSources = compiler.getCachedSources();
+        try {
+            compiler.compile(sources).run(task -> {
+                for (Diagnostic<? extends JavaFileObject> diagnostic : task.diagnostics) {
+                    JavaFileObject source = diagnostic.getSource();
+                    if (source == null || !"file".equals(source.toUri().getScheme())) {
+                        continue;
+                    }
+                    List<DiagnosticWrapper> list = results.get(new File(source.toUri()));
+                    if (list != null) {
+                        DiagnosticWrapper wrapper = new DiagnosticWrapper(diagnostic);
+                        // don't keep the compilation alive
+                        wrapper.setExtra(null);
+                        list.add(wrapper);
+                    }
+                }
+            });
+        } finally {
+            restoreCompilation(compiler, cachedSources, sources);
+        }
+
+        Set<File> changed = new HashSet<>();
+        results.forEach((file, problems) -> {
+            List<DiagnosticWrapper> previous = mProblems.put(file, problems);
+            if (previous == null ? !problems.isEmpty() : !previous.equals(problems)) {
+                changed.add(file);
+            }
+        });
+        return changed;
+    }
+
+    /**
+     * Compiles the sources that were cached before a check again, so hover and quick fixes
+     * find their compilation when they are used next.
+     */
+    private static void restoreCompilation(JavaCompilerService compiler,
+                                           List<JavaFileObject> cachedSources,
+                                           List<JavaFileObject> checkedSources) {
+        if (cachedSources.isEmpty() || cachedSources.equals(checkedSources)) {
+            return;
+        }
+        try {
+            compiler.compile(cachedSources).run(task -> {
+            });
+        } catch (Throwable t) {
+            Log.w(TAG, "Failed to restore the compilation of " + cachedSources, t);
+        }
+    }
+
+    @Nullable
+    private JavaCompilerService getCompiler() {
+        return JavaCompilerProvider.get(mProject, mModule);
+    }
+
+    /**
+     * What a file declares and references, used to find the files affected by an edit
+     */
+    @VisibleForTesting
+    static class FileInfo {
+
+        /**
+         * Simple names of the types declared in the file
+         */
+        final Set<String> declaredTypes = new HashSet<>();
+
+        /**
+         * Simple names of every identifier used in the file
+         */
+        final Set<String> references = new HashSet<>();
+
+        /**
+         * The non-private declarations of the file, if it doesn't change other files are
+         * not affected by an edit
+         */
+        String signature;
+
+        static FileInfo create(CompilationUnitTree unit) {
+            FileInfo info = new FileInfo();
+            StringBuilder signature = new StringBuilder();
+            signature.append(unit.getPackageName()).append(';');
+
+            new TreePathScanner<Void, Void>() {
+                @Override
+                public Void visitClass(ClassTree tree, Void unused) {
+                    info.declaredTypes.add(tree.getSimpleName().toString());
+                    if (isVisible(tree.getModifiers())) {
+                        signature.append(tree.getModifiers().getFlags())
+                                .append(tree.getKind())
+                                .append(tree.getSimpleName())
+                                .append(tree.getTypeParameters())
+                                .append(tree.getExtendsClause())
+                                .append(tree.getImplementsClause())
+                                .append('{');
+                    }
+                    super.visitClass(tree, unused);
+                    signature.append('}');
+                    return null;
+                }
+
+                @Override
+                public Void visitMethod(MethodTree tree, Void unused) {
+                    if (isVisible(tree.getModifiers())) {
+                        signature.append(tree.getModifiers().getFlags())
+                                .append(tree.getTypeParameters())
+                                .append(tree.getReturnType())
+                                .append(' ')
+                                .append(tree.getName())
+                                .append('(');
+                        for (VariableTree parameter : tree.getParameters()) {
+                            signature.append(parameter.getType()).append(',');
+                        }
+                        signature.append(')')
+                                .append(tree.getThrows())
+                                .append(';');
+                    }
+                    return super.visitMethod(tree, unused);
+                }
+
+                @Override
+                public Void visitVariable(VariableTree tree, Void unused) {
+                    Tree parent = getCurrentPath().getParentPath().getLeaf();
+                    if (parent instanceof ClassTree && isVisible(tree.getModifiers())) {
+                        signature.append(tree.getModifiers().getFlags())
+                                .append(tree.getType())
+                                .append(' ')
+                                .append(tree.getName())
+                                .append(';');
+                    }
+                    return super.visitVariable(tree, unused);
+                }
+
+                @Override
+                public Void visitIdentifier(IdentifierTree tree, Void unused) {
+                    info.references.add(tree.getName().toString());
+                    return super.visitIdentifier(tree, unused);
+                }
+
+                @Override
+                public Void visitMemberSelect(MemberSelectTree tree, Void unused) {
+                    info.references.add(tree.getIdentifier().toString());
+                    return super.visitMemberSelect(tree, unused);
+                }
+            }.scan(unit, null);
+
+            info.signature = signature.toString();
+            return info;
+        }
+
+        private static boolean isVisible(ModifiersTree modifiers) {
+            return !modifiers.getFlags().contains(Modifier.PRIVATE);
+        }
+    }
+}
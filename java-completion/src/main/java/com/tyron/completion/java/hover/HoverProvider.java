@@ -1,22 +1,13 @@
 package com.tyron.completion.java.hover;
 
-import com.sun.source.doctree.DocCommentTree;
-import com.sun.source.tree.Tree;
-import com.sun.source.util.DocTrees;
-import com.sun.source.util.TreePath;
-import com.sun.source.util.Trees;
-
 import com.tyron.completion.java.compiler.CompileTask;
 import com.tyron.completion.java.compiler.CompilerContainer;
 import com.tyron.completion.java.CompilerProvider;
-import com.tyron.completion.java.provider.FindHelper;
-import com.tyron.completion.java.compiler.ParseTask;
 
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
-import java.util.Optional;
 import java.util.StringJoiner;
 
 import javax.lang.model.element.Element;
@@ -24,7 +15,6 @@ import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
-import javax.tools.JavaFileObject;
 
 public class HoverProvider {
 
@@ -56,50 +46,53 @@ public class HoverProvider {
 
 
     public String docs(CompileTask task, Element element) {
+        JavadocIndex.MemberDocs docs = findDocs(element);
+        return docs == null ? "" : docs.getDocs();
+    }
+
+    /**
+     * Looks up the documentation of the element in the {@link JavadocIndex}, which parses the
+     * declaring source file only the first time one of its members is looked up.
+     */
+    private JavadocIndex.MemberDocs findDocs(Element element) {
+        TypeElement type;
+        String key;
         if (element instanceof TypeElement) {
-            TypeElement type = (TypeElement) element;
-            String className = type.getQualifiedName().toString();
-            Optional<JavaFileObject> file = compiler.findAnywhere(className);
-            if (!file.isPresent()) return "";
-            ParseTask parse = compiler.parse(file.get());
-            Tree tree = FindHelper.findType(parse, className);
-            return docs(parse, tree);
+            type = (TypeElement) element;
+            key = JavadocIndex.typeKey(type.getQualifiedName().toString());
         } else if (element.getKind() == ElementKind.FIELD) {
-            VariableElement field = (VariableElement) element;
-            TypeElement type = (TypeElement) field.getEnclosingElement();
-            String className = type.getQualifiedName().toString();
-            Optional<JavaFileObject> file = compiler.findAnywhere(className);
-            if (!file.isPresent()) return "";
-            ParseTask parse = compiler.parse(file.get());
-            Tree tree = FindHelper.findType(parse, className);
-            return docs(parse, tree);
+            type = (TypeElement) element.getEnclosingElement();
+            key = JavadocIndex.fieldKey(type.getQualifiedName().toString(),
+                    element.getSimpleName().toString());
         } else if (element instanceof ExecutableElement) {
-            ExecutableElement method = (ExecutableElement) element;
-            TypeElement type = (TypeElement) method.getEnclosingElement();
-            String className = type.getQualifiedName().toString();
-            String methodName = method.getSimpleName().toString();
-            String[] erasedParameterTypes = FindHelper.erasedParameterTypes(task, method);
-            Optional<JavaFileObject> file = compiler.findAnywhere(className);
-            if (!file.isPresent()) return "";
-            ParseTask parse = compiler.parse(file.get());
-            Tree tree = FindHelper.findMethod(parse, className, methodName, erasedParameterTypes);
-            return docs(parse, tree);
+            type = (TypeElement) element.getEnclosingElement();
+            key = JavadocIndex.methodKey(type.getQualifiedName().toString(),
+                    (ExecutableElement) element);
         } else {
-            return "";
+            return null;
         }
+        return JavadocIndex.getInstance().get(compiler, topLevelName(type), key);
     }
 
-    private String docs(ParseTask task, Tree tree) {
-        TreePath path = Trees.instance(task.task).getPath(task.root, tree);
-        DocCommentTree docTree = DocTrees.instance(task.task).getDocCommentTree(path);
-        if (docTree == null) return "";
-        //TODO: format this
-        return docTree.toString();
+    private static String topLevelName(TypeElement type) {
+        Element outermost = type;
+        while (outermost.getEnclosingElement() instanceof TypeElement) {
+            outermost = outermost.getEnclosingElement();
+        }
+        return ((TypeElement) outermost).getQualifiedName().toString();
     }
 
     private String printType(Element e) {
         if (e instanceof ExecutableElement) {
             ExecutableElement m = (ExecutableElement) e;
+            if (ShortTypePrinter.missingParamNames(m) && !m.getParameters().isEmpty()) {
+                // methods from class files do not have parameter names
+                JavadocIndex.MemberDocs docs = findDocs(m);
+                if (docs != null
+                        && docs.getParameterNames().size() == m.getParameters().size()) {
+                    return ShortTypePrinter.DEFAULT.printMethod(m, docs.getParameterNames());
+                }
+            }
             return ShortTypePrinter.DEFAULT.printMethod(m);
         } else if (e instanceof VariableElement) {
             VariableElement v = (VariableElement) e;
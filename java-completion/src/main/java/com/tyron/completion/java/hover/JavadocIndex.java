@@ -0,0 +1,425 @@
+package com.tyron.completion.java.hover;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.common.hash.Hashing;
+import com.sun.source.doctree.DocCommentTree;
+import com.sun.source.tree.AnnotatedTypeTree;
+import com.sun.source.tree.ArrayTypeTree;
+import com.sun.source.tree.BlockTree;
+import com.sun.source.tree.ClassTree;
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.tree.IdentifierTree;
+import com.sun.source.tree.MemberSelectTree;
+import com.sun.source.tree.MethodTree;
+import com.sun.source.tree.ParameterizedTypeTree;
+import com.sun.source.tree.Tree;
+import com.sun.source.tree.VariableTree;
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.TreePath;
+import com.sun.source.util.TreePathScanner;
+import com.tyron.completion.java.CompilerProvider;
+import com.tyron.completion.java.CompletionModule;
+import com.tyron.completion.java.compiler.ParseTask;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.tools.JavaFileObject;
+
+/**
+ * Index of the javadoc and parameter names of the types and members declared in source files,
+ * such as the android sources and the sources jars of libraries.
+ *
+ * <p>The index is keyed by the name of the top level class of a source file. The file is
+ * parsed the first time one of its members is looked up, then the docs of all of its members
+ * are kept in memory and in a file of the index directory. Entries are validated against the
+ * modification time of the source, which is the entry time for files from archives and the
+ * snapshot time for project sources opened in the editor, so an edited source file is indexed
+ * again and looking up an indexed class does not need to search for its file.
+ */
+public class JavadocIndex {
+
+    private static final String TAG = "JavadocIndex";
+    private static final int VERSION = 2;
+    private static final int MAX_LOADED_FILES = 64;
+
+    private static JavadocIndex sInstance;
+
+    public static synchronized JavadocIndex getInstance() {
+        if (sInstance == null) {
+            Context context = CompletionModule.getContext();
+            File directory = context == null
+                    ? null
+                    : new File(context.getCacheDir(), "javadoc-index");
+            sInstance = new JavadocIndex(directory);
+        }
+        return sInstance;
+    }
+
+    /**
+     * The documentation of a type or member.
+     */
+    public static class MemberDocs {
+
+        private final String mDocs;
+        private final List<String> mParameterNames;
+
+        MemberDocs(String docs, List<String> parameterNames) {
+            mDocs = docs;
+            mParameterNames = parameterNames;
+        }
+
+        /**
+         * @return the doc comment of the member, empty if it has none
+         */
+        @NonNull
+        public String getDocs() {
+            return mDocs;
+        }
+
+        /**
+         * @return the parameter names of a method as declared in the source, empty for other
+         * members
+         */
+        @NonNull
+        public List<String> getParameterNames() {
+            return mParameterNames;
+        }
+    }
+
+    private static class FileDocs {
+        final JavaFileObject file;
+        final long stamp;
+        final Map<String, MemberDocs> members;
+
+        FileDocs(JavaFileObject file, long stamp, Map<String, MemberDocs> members) {
+            this.file = file;
+            this.stamp = stamp;
+            this.members = members;
+        }
+
+        boolean isUpToDate() {
+            return file.getLastModified() == stamp;
+        }
+    }
+
+    @Nullable
+    private final File mDirectory;
+    private final Map<String, FileDocs> mLoaded =
+            new LinkedHashMap<String, FileDocs>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, FileDocs> eldest) {
+                    return size() > MAX_LOADED_FILES;
+                }
+            };
+
+    /**
+     * @param directory the directory to store the index in, or null to only keep it in memory
+     */
+    public JavadocIndex(@Nullable File directory) {
+        mDirectory = directory;
+    }
+
+    /**
+     * Returns the documentation of a type or member declared in the source file of the given
+     * top level class.
+     *
+     * @param compiler the compiler used to find and parse the source file if it has not been
+     * indexed yet
+     * @param className the fully qualified name of the top level class declaring the member
+     * @param key the key of the member, see {@link #typeKey}, {@link #fieldKey} and
+     * {@link #methodKey}
+     * @return the documentation or null if the source or the member cannot be found
+     */
+    @Nullable
+    public MemberDocs get(CompilerProvider compiler, String className, String key) {
+        FileDocs docs;
+        synchronized (mLoaded) {
+            docs = mLoaded.get(className);
+        }
+        if (docs == null || !docs.isUpToDate()) {
+            docs = load(compiler, className);
+            if (docs == null) {
+                return null;
+            }
+        }
+        return docs.members.get(key);
+    }
+
+    public static String typeKey(String className) {
+        return className;
+    }
+
+    public static String fieldKey(String className, String fieldName) {
+        return className + "#" + fieldName;
+    }
+
+    /**
+     * Returns the key of a method. Parameter types are identified by their simple names since
+     * they cannot be resolved when indexing the source file without compiling it.
+     */
+    public static String methodKey(String className, ExecutableElement method) {
+        List<String> parameterTypes = new ArrayList<>();
+        for (VariableElement parameter : method.getParameters()) {
+            parameterTypes.add(simpleName(parameter.asType()));
+        }
+        return methodKey(className, method.getSimpleName().toString(), parameterTypes);
+    }
+
+    private static String methodKey(String className, String methodName,
+                                    List<String> parameterTypes) {
+        return className + "#" + methodName + "(" + String.join(",", parameterTypes) + ")";
+    }
+
+    private static String simpleName(TypeMirror type) {
+        if (type.getKind().isPrimitive()) {
+            return type.getKind().name().toLowerCase();
+        }
+        switch (type.getKind()) {
+            case ARRAY:
+                return simpleName(((ArrayType) type).getComponentType()) + "[]";
+            case DECLARED:
+                return ((DeclaredType) type).asElement().getSimpleName().toString();
+            case TYPEVAR:
+                return ((TypeVariable) type).asElement().getSimpleName().toString();
+            default:
+                return type.toString();
+        }
+    }
+
+    private static String simpleName(Tree type) {
+        if (type instanceof ParameterizedTypeTree) {
+            return simpleName(((ParameterizedTypeTree) type).getType());
+        }
+        if (type instanceof AnnotatedTypeTree) {
+            return simpleName(((AnnotatedTypeTree) type).getUnderlyingType());
+        }
+        if (type instanceof ArrayTypeTree) {
+            return simpleName(((ArrayTypeTree) type).getType()) + "[]";
+        }
+        if (type instanceof MemberSelectTree) {
+            return ((MemberSelectTree) type).getIdentifier().toString();
+        }
+        if (type instanceof IdentifierTree) {
+            return ((IdentifierTree) type).getName().toString();
+        }
+        return type.toString();
+    }
+
+    @Nullable
+    private FileDocs load(CompilerProvider compiler, String className) {
+        Optional<JavaFileObject> found = compiler.findAnywhere(className);
+        if (!found.isPresent()) {
+            synchronized (mLoaded) {
+                mLoaded.remove(className);
+            }
+            return null;
+        }
+        JavaFileObject file = found.get();
+        long stamp = file.getLastModified();
+        FileDocs docs = read(className, file, stamp);
+        if (docs == null) {
+            docs = new FileDocs(file, stamp, index(compiler.parse(file)));
+            write(className, docs);
+        }
+        synchronized (mLoaded) {
+            mLoaded.put(className, docs);
+        }
+        return docs;
+    }
+
+    private static Map<String, MemberDocs> index(ParseTask parse) {
+        Map<String, MemberDocs> members = new HashMap<>();
+        DocTrees docTrees = DocTrees.instance(parse.task);
+        new TreePathScanner<Void, Void>() {
+
+            private final Deque<String> mClassNames = new ArrayDeque<>();
+
+            @Override
+            public Void visitCompilationUnit(CompilationUnitTree tree, Void unused) {
+                mClassNames.push(tree.getPackageName() == null
+                        ? ""
+                        : tree.getPackageName().toString());
+                return super.visitCompilationUnit(tree, unused);
+            }
+
+            @Override
+            public Void visitClass(ClassTree tree, Void unused) {
+                if (tree.getSimpleName().length() == 0) {
+                    // anonymous classes cannot be looked up
+                    return null;
+                }
+                String outer = mClassNames.peek();
+                String className = outer == null || outer.isEmpty()
+                        ? tree.getSimpleName().toString()
+                        : outer + "." + tree.getSimpleName();
+                put(typeKey(className), Collections.emptyList());
+
+                mClassNames.push(className);
+                try {
+                    return super.visitClass(tree, unused);
+                } finally {
+                    mClassNames.pop();
+                }
+            }
+
+            @Override
+            public Void visitMethod(MethodTree tree, Void unused) {
+                List<String> parameterTypes = new ArrayList<>();
+                List<String> parameterNames = new ArrayList<>();
+                for (VariableTree parameter : tree.getParameters()) {
+                    parameterTypes.add(simpleName(parameter.getType()));
+                    parameterNames.add(parameter.getName().toString());
+                }
+                put(methodKey(mClassNames.peek(), tree.getName().toString(), parameterTypes),
+                        parameterNames);
+                // local declarations are not looked up
+                return null;
+            }
+
+            @Override
+            public Void visitVariable(VariableTree tree, Void unused) {
+                put(fieldKey(mClassNames.peek(), tree.getName().toString()),
+                        Collections.emptyList());
+                return null;
+            }
+
+            @Override
+            public Void visitBlock(BlockTree tree, Void unused) {
+                return null;
+            }
+
+            private void put(String key, List<String> parameterNames) {
+                TreePath path = getCurrentPath();
+                DocCommentTree docTree = docTrees.getDocCommentTree(path);
+                String docs = docTree == null ? "" : docTree.toString();
+                members.put(key, new MemberDocs(docs, parameterNames));
+            }
+        }.scan(parse.root, null);
+        return members;
+    }
+
+    private File getIndexFile(String className) {
+        String name = Hashing.sha256().hashString(className, StandardCharsets.UTF_8).toString();
+        return new File(mDirectory, name);
+    }
+
+    @Nullable
+    private FileDocs read(String className, JavaFileObject source, long stamp) {
+        if (mDirectory == null) {
+            return null;
+        }
+        File file = getIndexFile(className);
+        if (!file.exists()) {
+            return null;
+        }
+        URI uri = source.toUri();
+        try (DataInputStream input = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file)))) {
+            if (input.readInt() != VERSION
+                    || !input.readUTF().equals(className)
+                    || !input.readUTF().equals(uri.toString())
+                    || input.readLong() != stamp) {
+                return null;
+            }
+            int count = input.readInt();
+            Map<String, MemberDocs> members = new HashMap<>(count);
+            for (int i = 0; i < count; i++) {
+                String key = input.readUTF();
+                String docs = readString(input);
+                int parameterCount = input.readInt();
+                List<String> parameterNames = parameterCount == 0
+                        ? Collections.emptyList()
+                        : new ArrayList<>(parameterCount);
+                for (int j = 0; j < parameterCount; j++) {
+                    parameterNames.add(input.readUTF());
+                }
+                members.put(key, new MemberDocs(docs, parameterNames));
+            }
+            return new FileDocs(source, stamp, members);
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read the javadoc index of " + uri, e);
+            return null;
+        }
+    }
+
+    private void write(String className, FileDocs docs) {
+        if (mDirectory == null) {
+            return;
+        }
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Unable to create the javadoc index directory " + mDirectory);
+            return;
+        }
+        URI uri = docs.file.toUri();
+        File file = getIndexFile(className);
+        File temp = new File(mDirectory, file.getName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(
+                new BufferedOutputStream(new FileOutputStream(temp)))) {
+            output.writeInt(VERSION);
+            output.writeUTF(className);
+            output.writeUTF(uri.toString());
+            output.writeLong(docs.stamp);
+            output.writeInt(docs.members.size());
+            for (Map.Entry<String, MemberDocs> entry : docs.members.entrySet()) {
+                output.writeUTF(entry.getKey());
+                writeString(output, entry.getValue().getDocs());
+                List<String> parameterNames = entry.getValue().getParameterNames();
+                output.writeInt(parameterNames.size());
+                for (String parameterName : parameterNames) {
+                    output.writeUTF(parameterName);
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write the javadoc index of " + uri, e);
+            temp.delete();
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            temp.delete();
+        }
+    }
+
+    /**
+     * Doc comments can be longer than {@link DataOutputStream#writeUTF} allows.
+     */
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
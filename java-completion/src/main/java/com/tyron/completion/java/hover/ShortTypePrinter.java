@@ -1,5 +1,7 @@
 package com.tyron.completion.java.hover;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringJoiner;
 import java.util.stream.Collectors;
 import javax.lang.model.element.ExecutableElement;
@@ -108,13 +110,23 @@ public class ShortTypePrinter extends AbstractTypeVisitor8<String, Void> {
     }
 
     private String printArguments(ExecutableElement e) {
-        StringJoiner result = new StringJoiner(", ");
-        boolean missingParamNames = missingParamNames(e);
+        if (missingParamNames(e)) {
+            return printArguments(e, null);
+        }
+        List<String> names = new ArrayList<>();
         for (VariableElement p : e.getParameters()) {
+            names.add(p.getSimpleName().toString());
+        }
+        return printArguments(e, names);
+    }
+
+    private String printArguments(ExecutableElement e, List<String> names) {
+        StringJoiner result = new StringJoiner(", ");
+        for (int i = 0; i < e.getParameters().size(); i++) {
             StringBuilder s = new StringBuilder();
-            s.append(print(p.asType()));
-            if (!missingParamNames) {
-                s.append(" ").append(p.getSimpleName());
+            s.append(print(e.getParameters().get(i).asType()));
+            if (names != null) {
+                s.append(" ").append(names.get(i));
             }
             result.add(s);
         }
@@ -122,8 +134,20 @@ public class ShortTypePrinter extends AbstractTypeVisitor8<String, Void> {
     }
 
     String printMethod(ExecutableElement m) {
+        return printMethodWithArguments(m, printArguments(m));
+    }
+
+    /**
+     * Prints the method with the given parameter names, for methods loaded from class files
+     * whose parameter names are known from their sources.
+     */
+    String printMethod(ExecutableElement m, List<String> parameterNames) {
+        return printMethodWithArguments(m, printArguments(m, parameterNames));
+    }
+
+    private String printMethodWithArguments(ExecutableElement m, String arguments) {
         if (m.getSimpleName().contentEquals("<init>")) {
-            return m.getEnclosingElement().getSimpleName() + "(" + printArguments(m) + ")";
+            return m.getEnclosingElement().getSimpleName() + "(" + arguments + ")";
         } else {
             StringBuilder result = new StringBuilder();
             // static void foo
@@ -131,7 +155,7 @@ public class ShortTypePrinter extends AbstractTypeVisitor8<String, Void> {
             result.append(print(m.getReturnType())).append(" ");
             result.append(m.getSimpleName());
             // (int arg, String other)
-            result.append("(").append(printArguments(m)).append(")");
+            result.append("(").append(arguments).append(")");
             // throws Foo, Bar
             if (!m.getThrownTypes().isEmpty()) {
                 result.append(" throws ");
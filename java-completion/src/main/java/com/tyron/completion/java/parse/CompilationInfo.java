@@ -1,5 +1,7 @@
 package com.tyron.completion.java.parse;
 
+import android.util.Log;
+
 import androidx.annotation.NonNull;
 
 import com.sun.source.tree.CompilationUnitTree;
@@ -45,6 +47,8 @@ import javax.tools.JavaFileObject;
 
 public class CompilationInfo {
 
+    private static final String TAG = "CompilationInfo";
+
     public static final Key<CompilationInfo> COMPILATION_INFO_KEY = Key.create("compilationInfo");
 
     public static CompilationInfo get(Module module) {
@@ -118,59 +122,101 @@ public class CompilationInfo {
                                     Consumer<JCCompilationUnit> treeConsumer) {
         debouncerStore.registerOrGetDebouncer("update").debounce(delay, () -> {
             synchronized (parseLock) {
-                try {
-                    JavacTaskImpl javacTask = impl.getJavacTask();
-
-                    NBLog log = NBLog.instance(javacTask.getContext());
-                    log.useSource(fileObject);
-
-                    Set<Pair<JavaFileObject, Integer>> toRemove = new HashSet<>();
-                    for (Pair<JavaFileObject, Integer> pair : log.getRecorded()) {
-                        if (pair.fst.toUri().equals(fileObject.toUri())) {
-                            toRemove.add(pair);
-                        }
-                    }
-                    log.getRecorded().removeAll(toRemove);
-                    log.removeDiagnostics(fileObject.toUri());
-                    log.removeFileObject(fileObject);
-
-
-                    JCCompilationUnit previous = compiledMap.get(fileObject.toUri());
-                    if (previous != null) {
-                        NBEnter enter = (NBEnter) NBEnter.instance(javacTask.getContext());
-                        enter.unenter(previous, previous);
-                        enter.removeCompilationUnit(fileObject);
-                    }
-
-                    // reparse the whole file
-                    JCCompilationUnit unit;
-                    try {
-                        JavaCompiler compiler = JavaCompiler.instance(javacTask.getContext());
-                        unit = compiler.parse(fileObject);
-                    } catch (Exception e) {
-                        throw new RuntimeException(e);
-                    }
-
-                    Iterable<? extends Element> enter = javacTask.enter(List.of(unit));
-
-                    if (previous != null) {
-                        unit.packge = previous.packge;
-                    }
-
-                    Iterable<? extends Element> analyze = javacTask.analyze(enter);
-
-                    JCCompilationUnit newUnit = unit;
-                    compiledMap.put(fileObject.toUri(), newUnit);
-
-                    treeConsumer.accept(unit);
-                } catch (Throwable t) {
-                    System.out.println(t);
-                    treeConsumer.accept(null);
-                }
+                treeConsumer.accept(doUpdate(fileObject));
             }
         });
     }
 
+    /**
+     * Updates the file on the calling thread without going through the debouncer, so that
+     * updating several files in a row does not cancel the previous ones.
+     *
+     * @return The new compilation unit, or null if it failed
+     */
+    public JCCompilationUnit updateNow(JavaFileObject fileObject) {
+        synchronized (parseLock) {
+            return doUpdate(fileObject);
+        }
+    }
+
+    private JCCompilationUnit doUpdate(JavaFileObject fileObject) {
+        try {
+            JavacTaskImpl javacTask = impl.getJavacTask();
+
+            NBLog log = NBLog.instance(javacTask.getContext());
+            log.useSource(fileObject);
+
+            Set<Pair<JavaFileObject, Integer>> toRemove = new HashSet<>();
+            for (Pair<JavaFileObject, Integer> pair : log.getRecorded()) {
+                if (pair.fst.toUri().equals(fileObject.toUri())) {
+                    toRemove.add(pair);
+                }
+            }
+            log.getRecorded().removeAll(toRemove);
+            log.removeDiagnostics(fileObject.toUri());
+            log.removeFileObject(fileObject);
+
+
+            JCCompilationUnit previous = compiledMap.get(fileObject.toUri());
+            if (previous != null) {
+                NBEnter enter = (NBEnter) NBEnter.instance(javacTask.getContext());
+                enter.unenter(previous, previous);
+                enter.removeCompilationUnit(fileObject);
+            }
+
+            // reparse the whole file
+            JCCompilationUnit unit;
+            try {
+                JavaCompiler compiler = JavaCompiler.instance(javacTask.getContext());
+                unit = compiler.parse(fileObject);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+
+            Iterable<? extends Element> enter = javacTask.enter(List.of(unit));
+
+            if (previous != null) {
+                unit.packge = previous.packge;
+            }
+
+            Iterable<? extends Element> analyze = javacTask.analyze(enter);
+
+            JCCompilationUnit newUnit = unit;
+            compiledMap.put(fileObject.toUri(), newUnit);
+
+            return unit;
+        } catch (Throwable t) {
+            System.out.println(t);
+            return null;
+        }
+    }
+
+    /**
+     * Removes the compilation unit of a file that no longer exists, so that the classes it
+     * declared can no longer be resolved.
+     */
+    public void remove(JavaFileObject fileObject) {
+        synchronized (parseLock) {
+            JCCompilationUnit previous = compiledMap.remove(fileObject.toUri());
+            if (previous == null) {
+                return;
+            }
+            try {
+                JavacTaskImpl javacTask = impl.getJavacTask();
+
+                NBLog log = NBLog.instance(javacTask.getContext());
+                log.removeDiagnostics(fileObject.toUri());
+                log.removeFileObject(fileObject);
+
+                NBEnter enter = (NBEnter) NBEnter.instance(javacTask.getContext());
+                enter.unenter(previous, previous);
+                enter.removeCompilationUnit(fileObject);
+            } catch (Throwable t) {
+                Log.w(TAG, "Failed to remove " + fileObject.toUri(), t);
+            }
+        }
+    }
+
     public JCCompilationUnit getCompilationUnit(JavaFileObject fileObject) {
         return getCompilationUnit(fileObject.toUri());
     }
@@ -3,6 +3,8 @@ package com.tyron.completion.java.util;
 import android.content.SharedPreferences;
 import android.preference.PreferenceManager;
 
+import com.sun.source.util.TreePath;
+import com.sun.tools.javac.tree.JCTree;
 import com.sun.tools.javac.util.JCDiagnostic;
 import com.tyron.actions.CommonDataKeys;
 import com.tyron.actions.DataContext;
@@ -10,6 +12,8 @@ import com.tyron.builder.model.DiagnosticWrapper;
 import com.tyron.builder.project.Project;
 import com.tyron.common.SharedPreferenceKeys;
 
+import com.tyron.completion.java.action.CommonJavaContextKeys;
+import com.tyron.completion.java.action.FindCurrentPath;
 import com.tyron.completion.java.compiler.services.NBLog;
 import com.tyron.completion.java.parse.CompilationInfo;
 
@@ -22,23 +26,54 @@ import javax.tools.JavaFileObject;
 public class JavaDataContextUtil {
 
     public static void addEditorKeys(DataContext context, Project project, File file, int cursor) {
+        addEditorKeys(context, project, file, cursor, cursor);
+    }
+
+    /**
+     * Adds the Java specific keys of an editor to the data context. The current path and the
+     * diagnostic at the cursor are computed on first use and then shared by all the actions
+     * updated with this context, since updating them requires scanning the compilation unit.
+     *
+     * @param start the start of the selection in the editor
+     * @param end the end of the selection in the editor
+     */
+    public static void addEditorKeys(DataContext context, Project project, File file, int start,
+                                     int end) {
         SharedPreferences preferences = PreferenceManager.getDefaultSharedPreferences(context);
         if (project != null && preferences.getBoolean(SharedPreferenceKeys.JAVA_ERROR_HIGHLIGHTING, true)) {
             CompilationInfo compilationInfo = CompilationInfo.get(project, file);
             if (compilationInfo != null) {
                 context.putData(CompilationInfo.COMPILATION_INFO_KEY, compilationInfo);
-
-                List<JCDiagnostic> diagnostics =
-                        NBLog.instance(compilationInfo.impl.getJavacTask().getContext())
-                                .getDiagnostics(file.toURI());
-                if (!diagnostics.isEmpty()) {
-                    Diagnostic<? extends JavaFileObject> diagnostic =
-                            DiagnosticUtil.getJCDiagnostic(diagnostics, cursor);
-                    if (diagnostic != null) {
-                        context.putData(CommonDataKeys.DIAGNOSTIC, new DiagnosticWrapper(diagnostic));
-                    }
-                }
+                context.putLazyData(CommonJavaContextKeys.CURRENT_PATH,
+                        () -> findCurrentPath(compilationInfo, file, start, end));
+                context.putLazyData(CommonDataKeys.DIAGNOSTIC,
+                        () -> findDiagnostic(compilationInfo, file, start));
             }
         }
     }
+
+    private static TreePath findCurrentPath(CompilationInfo compilationInfo, File file, int start,
+                                            int end) {
+        JCTree.JCCompilationUnit unit = compilationInfo.getCompilationUnit(file.toURI());
+        if (unit == null) {
+            return null;
+        }
+        return new FindCurrentPath(compilationInfo.impl.getJavacTask()).scan(unit, start, end);
+    }
+
+    private static DiagnosticWrapper findDiagnostic(CompilationInfo compilationInfo, File file,
+                                                    int cursor) {
+        List<JCDiagnostic> diagnostics =
+                NBLog.instance(compilationInfo.impl.getJavacTask().getContext())
+                        .getDiagnostics(file.toURI());
+        if (diagnostics.isEmpty()) {
+            return null;
+        }
+        Diagnostic<? extends JavaFileObject> diagnostic =
+                DiagnosticUtil.getJCDiagnostic(diagnostics, cursor);
+        if (diagnostic == null) {
+            return null;
+        }
+        return new DiagnosticWrapper(diagnostic);
+    }
 }
@@ -0,0 +1,116 @@
+package com.tyron.completion.java.diagnostics;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.api.JavacTool;
+import com.tyron.completion.java.diagnostics.JavaProblemsService.FileInfo;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.SimpleJavaFileObject;
+
+public class JavaProblemsServiceTest {
+
+    private static final File MAIN = new File("/project/src/Main.java");
+    private static final File USER = new File("/project/src/User.java");
+    private static final File OTHER = new File("/project/src/Other.java");
+
+    private static final String MAIN_SOURCE = "package test;\n" +
+            "public class Main {\n" +
+            "    private int count;\n" +
+            "    public int value() {\n" +
+            "        return 1;\n" +
+            "    }\n" +
+            "}\n";
+
+    private final Map<File, FileInfo> mIndex = new LinkedHashMap<>();
+
+    @Before
+    public void setUp() {
+        mIndex.put(MAIN, info(MAIN_SOURCE));
+        mIndex.put(USER, info("package test;\n" +
+                "class User {\n" +
+                "    int run(Main main) {\n" +
+                "        return main.value();\n" +
+                "    }\n" +
+                "}\n"));
+        mIndex.put(OTHER, info("package test;\n" +
+                "class Other {\n" +
+                "    void run() {}\n" +
+                "}\n"));
+    }
+
+    @Test
+    public void testBodyEditDoesNotQueueDependents() {
+        assertThat(edit(MAIN_SOURCE.replace("return 1;", "return count + 2;"))).isEmpty();
+    }
+
+    @Test
+    public void testPrivateMemberEditDoesNotQueueDependents() {
+        assertThat(edit(MAIN_SOURCE.replace("private int count;", "private long total;")))
+                .isEmpty();
+    }
+
+    @Test
+    public void testPublicSignatureChangeQueuesDependents() {
+        assertThat(edit(MAIN_SOURCE.replace("public int value()", "public long value()")))
+                .containsExactly(USER);
+        assertThat(edit(MAIN_SOURCE.replace("private int count;", "public int count;")))
+                .containsExactly(USER);
+    }
+
+    @Test
+    public void testRenamedTypeQueuesFilesReferencingTheOldName() {
+        assertThat(edit(MAIN_SOURCE.replace("class Main", "class Renamed")))
+                .containsExactly(USER);
+    }
+
+    @Test
+    public void testNewFileQueuesDependents() {
+        mIndex.remove(MAIN);
+        FileInfo info = info(MAIN_SOURCE);
+        mIndex.put(MAIN, info);
+        assertThat(JavaProblemsService.findDependents(mIndex, null, info)).containsExactly(USER);
+    }
+
+    /**
+     * Updates the index the way the service does after an edit of the main file
+     *
+     * @return The files queued because of the edit, besides the main file itself
+     */
+    private Set<File> edit(String contents) {
+        FileInfo info = info(contents);
+        FileInfo previous = mIndex.put(MAIN, info);
+        return JavaProblemsService.findDependents(mIndex, previous, info);
+    }
+
+    private static FileInfo info(String contents) {
+        SimpleJavaFileObject file =
+                new SimpleJavaFileObject(URI.create("mem:///test/Source.java"),
+                        SimpleJavaFileObject.Kind.SOURCE) {
+                    @Override
+                    public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                        return contents;
+                    }
+                };
+        JavacTask task = JavacTool.create().getTask(null, null, null, Collections.emptyList(),
+                null, Collections.singletonList(file));
+        try {
+            CompilationUnitTree unit = task.parse().iterator().next();
+            return FileInfo.create(unit);
+        } catch (IOException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
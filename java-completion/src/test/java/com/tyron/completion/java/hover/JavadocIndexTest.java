@@ -0,0 +1,230 @@
+package com.tyron.completion.java.hover;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.sun.source.tree.CompilationUnitTree;
+import com.sun.source.util.JavacTask;
+import com.sun.tools.javac.api.JavacTool;
+import com.tyron.completion.java.CompilerProvider;
+import com.tyron.completion.java.compiler.CompilerContainer;
+import com.tyron.completion.java.compiler.ParseTask;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+public class JavadocIndexTest {
+
+    private static final String SOURCE = "package test;\n" +
+            "/** The main class. */\n" +
+            "public class Main {\n" +
+            "    /** A field. */\n" +
+            "    public int field;\n" +
+            "    /** Does something. */\n" +
+            "    public void run(String name, int count) {}\n" +
+            "    /** A nested class. */\n" +
+            "    public static class Nested {\n" +
+            "        /** A nested field. */\n" +
+            "        public String value;\n" +
+            "    }\n" +
+            "}\n";
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void testIndexedClassIsNotSearchedAgain() {
+        FakeSource source = new FakeSource("test/Main.java", SOURCE, 1);
+        FakeCompiler compiler = new FakeCompiler(source);
+        JavadocIndex index = new JavadocIndex(null);
+
+        assertThat(docs(index, compiler, JavadocIndex.typeKey("test.Main")))
+                .isEqualTo("The main class.");
+        assertThat(docs(index, compiler, JavadocIndex.fieldKey("test.Main", "field")))
+                .isEqualTo("A field.");
+        assertThat(docs(index, compiler, "test.Main#run(String,int)"))
+                .isEqualTo("Does something.");
+        assertThat(docs(index, compiler, JavadocIndex.fieldKey("test.Main.Nested", "value")))
+                .isEqualTo("A nested field.");
+        assertThat(index.get(compiler, "test.Main", "test.Main#run(String)")).isNull();
+
+        JavadocIndex.MemberDocs method = index.get(compiler, "test.Main", "test.Main#run(String,int)");
+        assertThat(method.getParameterNames()).containsExactly("name", "count").inOrder();
+
+        assertThat(compiler.mFindCount).isEqualTo(1);
+        assertThat(compiler.mParseCount).isEqualTo(1);
+    }
+
+    @Test
+    public void testModifiedSourceIsIndexedAgain() {
+        FakeSource source = new FakeSource("test/Main.java", SOURCE, 1);
+        FakeCompiler compiler = new FakeCompiler(source);
+        JavadocIndex index = new JavadocIndex(null);
+
+        assertThat(docs(index, compiler, JavadocIndex.typeKey("test.Main")))
+                .isEqualTo("The main class.");
+
+        source.mContents = SOURCE.replace("The main class.", "The edited class.");
+        source.mLastModified = 2;
+        assertThat(docs(index, compiler, JavadocIndex.typeKey("test.Main")))
+                .isEqualTo("The edited class.");
+        assertThat(docs(index, compiler, JavadocIndex.typeKey("test.Main")))
+                .isEqualTo("The edited class.");
+
+        assertThat(compiler.mFindCount).isEqualTo(2);
+        assertThat(compiler.mParseCount).isEqualTo(2);
+    }
+
+    @Test
+    public void testIndexIsReadFromDisk() throws IOException {
+        FakeSource source = new FakeSource("test/Main.java", SOURCE, 1);
+        FakeCompiler compiler = new FakeCompiler(source);
+        File directory = mFolder.newFolder("index");
+
+        assertThat(docs(new JavadocIndex(directory), compiler, JavadocIndex.typeKey("test.Main")))
+                .isEqualTo("The main class.");
+        assertThat(compiler.mParseCount).isEqualTo(1);
+
+        // a new instance, as after a restart, reads the docs the first one wrote
+        assertThat(docs(new JavadocIndex(directory), compiler,
+                JavadocIndex.fieldKey("test.Main", "field"))).isEqualTo("A field.");
+        assertThat(compiler.mParseCount).isEqualTo(1);
+
+        // unless the source changed since
+        source.mContents = SOURCE.replace("A field.", "An edited field.");
+        source.mLastModified = 2;
+        assertThat(docs(new JavadocIndex(directory), compiler,
+                JavadocIndex.fieldKey("test.Main", "field"))).isEqualTo("An edited field.");
+        assertThat(compiler.mParseCount).isEqualTo(2);
+    }
+
+    @Test
+    public void testMissingSource() {
+        FakeCompiler compiler = new FakeCompiler(null);
+        JavadocIndex index = new JavadocIndex(null);
+
+        assertThat(index.get(compiler, "test.Main", JavadocIndex.typeKey("test.Main"))).isNull();
+        assertThat(compiler.mParseCount).isEqualTo(0);
+    }
+
+    private static String docs(JavadocIndex index, CompilerProvider compiler, String key) {
+        JavadocIndex.MemberDocs docs = index.get(compiler, "test.Main", key);
+        assertThat(docs).isNotNull();
+        return docs.getDocs();
+    }
+
+    private static class FakeSource extends SimpleJavaFileObject {
+
+        private String mContents;
+        private long mLastModified;
+
+        FakeSource(String path, String contents, long lastModified) {
+            super(URI.create("mem:///" + path), Kind.SOURCE);
+            mContents = contents;
+            mLastModified = lastModified;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return mContents;
+        }
+
+        @Override
+        public long getLastModified() {
+            return mLastModified;
+        }
+    }
+
+    private static class FakeCompiler implements CompilerProvider {
+
+        private final JavaFileObject mSource;
+        private int mFindCount;
+        private int mParseCount;
+
+        FakeCompiler(JavaFileObject source) {
+            mSource = source;
+        }
+
+        @Override
+        public Optional<JavaFileObject> findAnywhere(String className) {
+            mFindCount++;
+            return Optional.ofNullable(mSource);
+        }
+
+        @Override
+        public ParseTask parse(JavaFileObject file) {
+            mParseCount++;
+            JavacTask task = JavacTool.create().getTask(null, null, null,
+                    Collections.emptyList(), null, Collections.singletonList(file));
+            try {
+                CompilationUnitTree root = task.parse().iterator().next();
+                return new ParseTask(task, root);
+            } catch (IOException e) {
+                throw new AssertionError(e);
+            }
+        }
+
+        @Override
+        public Set<String> imports() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Set<String> publicTopLevelTypes() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public List<String> packagePrivateTopLevelTypes(String packageName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Iterable<Path> search(String query) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Path findTypeDeclaration(String className) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Path[] findTypeReferences(String className) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Path[] findMemberReferences(String className, String memberName) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public ParseTask parse(Path file) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompilerContainer compile(Path... files) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompilerContainer compile(Collection<? extends JavaFileObject> sources) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
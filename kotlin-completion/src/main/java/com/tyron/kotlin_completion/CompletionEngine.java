@@ -78,8 +78,8 @@ public class CompletionEngine {
         return sp;
     }
 
-    public synchronized Pair<CompiledFile, Integer> recover(File file, String contents,
-                                                            Recompile recompile, int offset) {
+    public Pair<CompiledFile, Integer> recover(File file, String contents,
+                                             Recompile recompile, int offset) {
         boolean shouldRecompile = true;
         switch (recompile) {
             case NEVER:
@@ -2,6 +2,9 @@ package com.tyron.kotlin_completion;
 
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
 import com.tyron.kotlin_completion.compiler.CompletionKind;
 import com.tyron.kotlin_completion.index.SymbolIndex;
 import com.tyron.kotlin_completion.util.AsyncExecutor;
@@ -14,6 +17,8 @@ import org.jetbrains.kotlin.com.intellij.psi.PsiFile;
 import org.jetbrains.kotlin.container.ComponentProvider;
 import org.jetbrains.kotlin.descriptors.ModuleDescriptor;
 import org.jetbrains.kotlin.idea.KotlinLanguage;
+import org.jetbrains.kotlin.progress.CompilationCanceledException;
+import org.jetbrains.kotlin.progress.CompilationCanceledStatus;
 import org.jetbrains.kotlin.psi.KtFile;
 import org.jetbrains.kotlin.resolve.BindingContext;
 import org.slf4j.Logger;
@@ -26,13 +31,14 @@ import java.nio.charset.Charset;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
 
-import kotlin.collections.CollectionsKt;
 import kotlin.sequences.Sequence;
 import kotlin.sequences.SequencesKt;
 import kotlin.Pair;
@@ -42,23 +48,52 @@ public class SourcePath {
     private static final String TAG = "SourcePath";
     private static final Logger LOG = LoggerFactory.getLogger(SourcePath.class);
 
-    private final CompilerClassPath cp;
-    private final Map<URI, SourceFile> files = new HashMap<>();
-    private final FakeLock parsedDataWriteLock = new FakeLock();
+    /**
+     * Parses and compiles the source files, the compiler of the class path is replaced
+     * when the class path changes so it is always looked up.
+     */
+    @VisibleForTesting
+    interface KtCompiler {
+
+        KtFile createKtFile(String content, Path file, CompletionKind kind);
 
-    public static class FakeLock {
-        public void lock() {}
-        public void unlock() {}
+        Pair<BindingContext, ComponentProvider> compileKtFiles(Collection<? extends KtFile> files, Collection<KtFile> sourcePath, CompletionKind kind, @Nullable CompilationCanceledStatus cancelStatus);
     }
 
+    private final CompilerClassPath cp;
+    private final KtCompiler compiler;
+    private final Map<URI, SourceFile> files = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the compiled data of the source files. Completions and diagnostics only read the
+     * last compiled version so they can run concurrently while a newer version is compiled.
+     */
+    private final ReentrantReadWriteLock parsedDataLock = new ReentrantReadWriteLock();
+
     private final AsyncExecutor indexAsync = new AsyncExecutor();
     private final SymbolIndex index = new SymbolIndex();
     private boolean indexEnabled = false;
-    private boolean indexInitialized;
+    private volatile boolean indexInitialized;
 
 
     public SourcePath(CompilerClassPath classPath) {
+        this(classPath, new KtCompiler() {
+            @Override
+            public KtFile createKtFile(String content, Path file, CompletionKind kind) {
+                return classPath.getCompiler().createKtFile(content, file, kind);
+            }
+
+            @Override
+            public Pair<BindingContext, ComponentProvider> compileKtFiles(Collection<? extends KtFile> files, Collection<KtFile> sourcePath, CompletionKind kind, @Nullable CompilationCanceledStatus cancelStatus) {
+                return classPath.getCompiler().compileKtFiles(files, sourcePath, kind, cancelStatus);
+            }
+        });
+    }
+
+    @VisibleForTesting
+    SourcePath(CompilerClassPath classPath, KtCompiler compiler) {
         cp = classPath;
+        this.compiler = compiler;
     }
 
     public CompilerClassPath getCompilerClassPath() {
@@ -72,99 +107,177 @@ public class SourcePath {
     public class SourceFile {
 
         private final URI uri;
-        private String content;
         private final Path path;
-        private KtFile parsed;
-        private KtFile compiledFile;
-        public BindingContext compiledContext;
-        private ComponentProvider compiledcontainer;
         private final Language language;
         private final boolean isTemporary;
 
         private final String extension;
         private final CompletionKind kind = CompletionKind.DEFAULT;
 
+        // guarded by this
+        private String content;
+        private long version;
+        private KtFile parsed;
+        private long parsedVersion = -1;
+
+        // guarded by parsedDataLock
+        private KtFile compiledFile;
+        private long compiledVersion = -1;
+        private BindingContext compiledContext;
+        private ComponentProvider compiledcontainer;
+
         public SourceFile(URI uri, String content, Language language, boolean isTemporary) {
-            this(uri, content, Paths.get(uri), null, null, null, null, language, isTemporary);
+            this(uri, content, Paths.get(uri), language, isTemporary);
         }
         public SourceFile(URI uri, String content, Language language) {
-            this(uri, content, Paths.get(uri), null, null, null, null, language, false);
+            this(uri, content, Paths.get(uri), language, false);
         }
 
-        private SourceFile(URI uri, String content, Path path, KtFile parsed, KtFile compiledFile, BindingContext compiledContext, ComponentProvider compiledcontainer, Language language, boolean isTemporary) {
+        private SourceFile(URI uri, String content, Path path, Language language, boolean isTemporary) {
             this.uri = uri;
             this.content = content;
             this.path = path;
-            this.parsed = parsed;
-            this.compiledFile = compiledFile;
-            this.compiledContext = compiledContext;
-            this.compiledcontainer = compiledcontainer;
             this.language = language;
             this.isTemporary = isTemporary;
 
             extension = ".kt";
         }
 
-        public void put(String newContent) {
-            content = newContent;
+        /**
+         * Updates the contents of this file. A compilation of an older version of this file
+         * that is still running is cancelled.
+         */
+        public synchronized void put(String newContent) {
+            if (!newContent.equals(content)) {
+                content = newContent;
+                version++;
+            }
+        }
+
+        public synchronized long getVersion() {
+            return version;
+        }
+
+        public BindingContext getCompiledContext() {
+            parsedDataLock.readLock().lock();
+            try {
+                return compiledContext;
+            } finally {
+                parsedDataLock.readLock().unlock();
+            }
+        }
+
+        /**
+         * @return whether the last compiled version of this file is its current version
+         */
+        public boolean isCompiledUpToDate() {
+            long current = getVersion();
+            parsedDataLock.readLock().lock();
+            try {
+                return compiledFile != null && compiledVersion == current;
+            } finally {
+                parsedDataLock.readLock().unlock();
+            }
         }
 
         public void clean() {
-            parsed = null;
-            compiledFile = null;
-            compiledContext = null;
-            compiledcontainer = null;
+            synchronized (this) {
+                parsed = null;
+                parsedVersion = -1;
+            }
+            parsedDataLock.writeLock().lock();
+            try {
+                compiledFile = null;
+                compiledVersion = -1;
+                compiledContext = null;
+                compiledcontainer = null;
+            } finally {
+                parsedDataLock.writeLock().unlock();
+            }
         }
 
-        public void parse() {
+        public synchronized void parse() {
             LOG.debug("Parsing file " + path);
-            parsed = cp.getCompiler().createKtFile(content, (path == null ? Paths.get("sourceFile.virtual" + extension) : path), kind);
+            parsed = compiler.createKtFile(content, (path == null ? Paths.get("sourceFile.virtual" + extension) : path), kind);
+            parsedVersion = version;
         }
 
-        public void parseIfChanged() {
-            if (parsed == null || !content.equals(parsed.getText())) {
+        public synchronized void parseIfChanged() {
+            if (parsed == null || parsedVersion != version) {
                 LOG.debug("Parse has changed, parsing.");
                 parse();
             }
         }
 
-        public void compileIfNull() {
-            if (compiledFile == null) {
-                parseIfChanged();
-                doCompileIfChanged();
-            }
+        private synchronized KtFile getParsed() {
+            parseIfChanged();
+            return parsed;
         }
 
-        private void compile() {
-            parse();
-            doCompile();
+        public void compileIfNull() {
+            boolean compiled;
+            parsedDataLock.readLock().lock();
+            try {
+                compiled = compiledFile != null;
+            } finally {
+                parsedDataLock.readLock().unlock();
+            }
+            if (!compiled) {
+                // there is no previous version to fall back to, this compilation
+                // can't be cancelled
+                doCompile(false);
+            }
         }
 
         private void compileIfChanged() {
-            parseIfChanged();
-            doCompileIfChanged();
+            if (!isCompiledUpToDate()) {
+                doCompile(true);
+            }
         }
 
-        private void doCompileIfChanged() {
-            if (parsed == null || compiledFile == null || !parsed.getText().equals(compiledFile.getText())) {
-                doCompile();;
+        private void doCompile(boolean cancellable) {
+            if (!this.path.toFile().getName().endsWith(".kt")) {
+                return;
+            }
+            KtFile file;
+            long fileVersion;
+            synchronized (this) {
+                parseIfChanged();
+                file = parsed;
+                fileVersion = parsedVersion;
             }
+
+            Pair<BindingContext, ComponentProvider> pair;
+            try {
+                pair = compiler.compileKtFiles(Collections.singletonList(file),
+                        allIncludingThis(), CompletionKind.DEFAULT,
+                        cancellable ? cancelIfChanged(Collections.singletonMap(this, fileVersion)) : null);
+            } catch (CompilationCanceledException e) {
+                LOG.debug("Compilation of " + path + " was cancelled by a newer version");
+                return;
+            }
+            update(file, fileVersion, pair);
+            initializeIndexAsyncIfNeeded(pair.getSecond());
         }
 
-        private void doCompile() {
-            if (this.path.toFile().getName().endsWith(".kt")) {
-                Pair<BindingContext, ComponentProvider> pair = cp.getCompiler().compileKtFile(parsed, allIncludingThis());
-                parsedDataWriteLock.lock();
-                try {
+        /**
+         * Publishes the result of a compilation unless a newer version of this file has
+         * already been compiled.
+         */
+        private void update(KtFile file, long fileVersion, Pair<BindingContext, ComponentProvider> pair) {
+            parsedDataLock.writeLock().lock();
+            try {
+                if (fileVersion > compiledVersion) {
                     compiledContext = pair.getFirst();
                     compiledcontainer = pair.getSecond();
-                    compiledFile = parsed;
-                } finally {
-                    parsedDataWriteLock.unlock();
+                    compiledFile = file;
+                    compiledVersion = fileVersion;
                 }
+            } finally {
+                parsedDataLock.writeLock().unlock();
             }
-            initializeIndexAsyncIfNeeded(compiledcontainer);
         }
+
         public CompiledFile prepareCompiledFile() {
             parseIfChanged();
             compileIfNull();
@@ -172,14 +285,24 @@ public class SourcePath {
         }
 
         public CompiledFile doPrepareCompiledFile() {
-            return new CompiledFile(content, compiledFile, compiledContext, compiledcontainer, allIncludingThis(), cp);
+            String currentContent;
+            synchronized (this) {
+                currentContent = content;
+            }
+            Collection<KtFile> sourcePath = allIncludingThis();
+            parsedDataLock.readLock().lock();
+            try {
+                return new CompiledFile(currentContent, compiledFile, compiledContext, compiledcontainer, sourcePath, cp);
+            } finally {
+                parsedDataLock.readLock().unlock();
+            }
         }
 
         private Collection<KtFile> allIncludingThis() {
-            parseIfChanged();
+            KtFile file = getParsed();
             if (isTemporary) {
                 Set<KtFile> all = all(false);
-                Sequence<KtFile> plus = SequencesKt.plus(SequencesKt.asSequence(all.iterator()), SequencesKt.sequenceOf(parsed));
+                Sequence<KtFile> plus = SequencesKt.plus(SequencesKt.asSequence(all.iterator()), SequencesKt.sequenceOf(file));
                 return SequencesKt.toList(plus);
             } else {
                 return all(false);
@@ -188,6 +311,20 @@ public class SourcePath {
 
     }
 
+    /**
+     * @return A status that cancels the compilation once any of the given files has been
+     * changed after the given version was parsed
+     */
+    private static CompilationCanceledStatus cancelIfChanged(Map<SourceFile, Long> versions) {
+        return () -> {
+            for (Map.Entry<SourceFile, Long> entry : versions.entrySet()) {
+                if (entry.getKey().getVersion() != entry.getValue()) {
+                    throw new CompilationCanceledException();
+                }
+            }
+        };
+    }
+
     public void put(File file, String content, boolean temp) {
         assert !content.contains("\r");
 
@@ -196,11 +333,13 @@ public class SourcePath {
             LOG.debug("Adding temporary file");
         }
 
-        if (files.containsKey(file.toURI())) {
-            sourceFile(file).put(content);
-        } else {
-            files.put(file.toURI(), new SourceFile(file.toURI(), content, KotlinLanguage.INSTANCE, temp));
-        }
+        files.compute(file.toURI(), (uri, existing) -> {
+            if (existing == null) {
+                return new SourceFile(uri, content, KotlinLanguage.INSTANCE, temp);
+            }
+            existing.put(content);
+            return existing;
+        });
     }
 
     public boolean deleteIfTemporary(File uri) {
@@ -216,16 +355,20 @@ public class SourcePath {
         files.remove(file.toURI());
     }
 
+    /**
+     * Compiles the files that have changed since they were last compiled. If one of them is
+     * changed again during the compilation, the compilation is cancelled and the last compiled
+     * versions of the files are used instead.
+     */
     public BindingContext compileFiles(Collection<File> all) {
-        Set<SourceFile> sources = all.stream().map(o -> files.get(o.toURI())).collect(Collectors.toSet());
-        Set<SourceFile> allChanged = sources.stream().filter(it -> {
-            if (it.compiledFile == null) {
-                return true;
-            }
-            return !it.content.equals(it.compiledFile.getText());
-        })
+        Set<SourceFile> sources = all.stream().map(this::sourceFile).collect(Collectors.toSet());
+        Set<SourceFile> allChanged = sources.stream()
+                .filter(it -> !it.isCompiledUpToDate())
                 .collect(Collectors.toSet());
         BindingContext sourcesContext = compileAndUpdate(allChanged);
+        if (sourcesContext == null) {
+            allChanged = Collections.emptySet();
+        }
         return UtilKt.util(sourcesContext, sources, allChanged);
     }
 
@@ -242,26 +385,25 @@ public class SourcePath {
 
     private BindingContext compileAndUpdate(Set<SourceFile> changed) {
         if (changed.isEmpty()) return null;
-        Map<SourceFile, KtFile> parse = CollectionsKt.associateWith(changed, sourceFile -> {
-            sourceFile.parseIfChanged();
-            return sourceFile.parsed;
-        });
+        Map<SourceFile, KtFile> parse = new HashMap<>();
+        Map<SourceFile, Long> versions = new HashMap<>();
+        for (SourceFile sourceFile : changed) {
+            synchronized (sourceFile) {
+                parse.put(sourceFile, sourceFile.getParsed());
+                versions.put(sourceFile, sourceFile.parsedVersion);
+            }
+        }
         Set<KtFile> all = all(false);
-        Pair<BindingContext, ComponentProvider> pair = cp.getCompiler()
-                .compileKtFiles(parse.values(), all, CompletionKind.DEFAULT);
+        Pair<BindingContext, ComponentProvider> pair;
+        try {
+            pair = compiler.compileKtFiles(parse.values(), all, CompletionKind.DEFAULT,
+                    cancelIfChanged(versions));
+        } catch (CompilationCanceledException e) {
+            LOG.debug("Compilation of " + changed.size() + " files was cancelled by a newer version");
+            return null;
+        }
 
-        parse.forEach((f, parsed) -> {
-            parsedDataWriteLock.lock();
-            try {
-                if (f.parsed.equals(parsed)) {
-                    f.compiledFile = parsed;
-                    f.compiledContext = pair.getFirst();
-                    f.compiledcontainer = pair.getSecond();
-                }
-            } finally {
-                parsedDataWriteLock.unlock();
-            }
-        });
+        parse.forEach((f, parsed) -> f.update(parsed, versions.get(f), pair));
 
         initializeIndexAsyncIfNeeded(pair.getSecond());
         return pair.getFirst();
@@ -279,24 +421,25 @@ public class SourcePath {
     }
 
     private SourceFile sourceFile(File file) {
-        if (!files.containsKey(file.toURI())) {
-            String string;
-            try {
-                string = FileUtils.readFileToString(file, Charset.defaultCharset());
-            } catch (IOException e) {
-                string = "";
-            }
-            put(file, string, true);
+        SourceFile sourceFile = files.get(file.toURI());
+        if (sourceFile != null) {
+            return sourceFile;
         }
-        return files.get(file.toURI());
+        String string;
+        try {
+            string = FileUtils.readFileToString(file, Charset.defaultCharset());
+        } catch (IOException e) {
+            string = "";
+        }
+        String content = string;
+        return files.computeIfAbsent(file.toURI(),
+                uri -> new SourceFile(uri, content, KotlinLanguage.INSTANCE, true));
     }
     private Set<KtFile> all(boolean includeHidden) {
         return files.values().stream()
                 .filter(it -> includeHidden || !it.isTemporary)
-                .map(it -> {
-                    it.parseIfChanged();
-                    return it.parsed;
-                }).collect(Collectors.toSet());
+                .map(SourceFile::getParsed)
+                .collect(Collectors.toSet());
     }
 
 }
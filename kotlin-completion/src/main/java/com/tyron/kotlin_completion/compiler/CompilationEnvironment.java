@@ -45,6 +45,7 @@ import java.nio.file.Path;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -109,8 +110,11 @@ public class CompilationEnvironment implements Closeable {
         return createContainer(Collections.emptyList(), sourcePath);
     }
 
-    public Pair<ComponentProvider, BindingTraceContext> createContainer(Collection<KtFile> filesToAnalyze, Collection<KtFile> sourcePath) {
-        throw new UnsupportedOperationException();
+    public Pair<ComponentProvider, BindingTraceContext> createContainer(Collection<? extends KtFile> filesToAnalyze, Collection<KtFile> sourcePath) {
+        // the files to analyze may not be part of the source path, like temporary files
+        Set<KtFile> files = new LinkedHashSet<>(sourcePath);
+        files.addAll(filesToAnalyze);
+        return CompilerKt.createContainer(mEnvironment, files);
     }
 
     public void updateConfiguration(CompilerConfiguration config) {
@@ -2,6 +2,8 @@ package com.tyron.kotlin_completion.compiler;
 
 import android.util.Log;
 
+import androidx.annotation.Nullable;
+
 import com.tyron.builder.project.api.KotlinModule;
 
 import org.jetbrains.kotlin.cli.common.environment.UtilKt;
@@ -16,6 +18,9 @@ import org.jetbrains.kotlin.com.intellij.psi.PsiJavaFile;
 import org.jetbrains.kotlin.config.CompilerConfiguration;
 import org.jetbrains.kotlin.container.ComponentProvider;
 import org.jetbrains.kotlin.idea.KotlinLanguage;
+import org.jetbrains.kotlin.progress.CompilationCanceledException;
+import org.jetbrains.kotlin.progress.CompilationCanceledStatus;
+import org.jetbrains.kotlin.progress.ProgressIndicatorAndCompilationCanceledStatus;
 import org.jetbrains.kotlin.psi.KtExpression;
 import org.jetbrains.kotlin.psi.KtFile;
 import org.jetbrains.kotlin.resolve.BindingContext;
@@ -88,8 +93,33 @@ public class Compiler implements Closeable {
     public Pair<BindingContext, ComponentProvider> compileKtFiles(Collection<? extends KtFile> files, Collection<KtFile> sourcePath, CompletionKind kind) {
         mCompileLock.lock();
         try {
-            throw new UnsupportedOperationException();
+            Pair<ComponentProvider, BindingTraceContext> pair = mDefaultCompileEnvironment.createContainer(files, sourcePath);
+            ((LazyTopDownAnalyzer) pair.getFirst().resolve(LazyTopDownAnalyzer.class).getValue())
+                    .analyzeDeclarations(TopDownAnalysisMode.TopLevelDeclarations,
+                            files, DataFlowInfo.Companion.getEMPTY(), null);
+            return new Pair<>(pair.getSecond().getBindingContext(), pair.getFirst());
+        } finally {
+            mCompileLock.unlock();
+        }
+    }
+
+    /**
+     * Compiles the files while the given status is checked by the compiler, the compilation
+     * stops with a {@link CompilationCanceledException} once the status throws it.
+     *
+     * @param cancelStatus the status to check, or null if the compilation can't be cancelled
+     */
+    public Pair<BindingContext, ComponentProvider> compileKtFiles(Collection<? extends KtFile> files, Collection<KtFile> sourcePath, CompletionKind kind, @Nullable CompilationCanceledStatus cancelStatus) {
+        mCompileLock.lock();
+        try {
+            // the status is global to the compiler, it is only set while holding the lock
+            ProgressIndicatorAndCompilationCanceledStatus.setCompilationCanceledStatus(cancelStatus);
+            if (cancelStatus != null) {
+                cancelStatus.checkCanceled();
+            }
+            return compileKtFiles(files, sourcePath, kind);
         } finally {
+            ProgressIndicatorAndCompilationCanceledStatus.setCompilationCanceledStatus(null);
             mCompileLock.unlock();
         }
     }
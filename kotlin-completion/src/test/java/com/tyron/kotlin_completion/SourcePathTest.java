@@ -0,0 +1,190 @@
+package com.tyron.kotlin_completion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import com.tyron.kotlin_completion.compiler.CompletionKind;
+
+import org.jetbrains.kotlin.cli.common.CLIConfigurationKeys;
+import org.jetbrains.kotlin.cli.common.environment.UtilKt;
+import org.jetbrains.kotlin.cli.common.messages.MessageCollector;
+import org.jetbrains.kotlin.cli.jvm.compiler.EnvironmentConfigFiles;
+import org.jetbrains.kotlin.cli.jvm.compiler.KotlinCoreEnvironment;
+import org.jetbrains.kotlin.com.intellij.openapi.Disposable;
+import org.jetbrains.kotlin.com.intellij.openapi.util.Disposer;
+import org.jetbrains.kotlin.config.CommonConfigurationKeys;
+import org.jetbrains.kotlin.config.CompilerConfiguration;
+import org.jetbrains.kotlin.container.ComponentProvider;
+import org.jetbrains.kotlin.progress.CompilationCanceledStatus;
+import org.jetbrains.kotlin.psi.KtFile;
+import org.jetbrains.kotlin.psi.KtPsiFactory;
+import org.jetbrains.kotlin.resolve.BindingContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.reflect.Proxy;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.function.BiConsumer;
+
+import kotlin.Pair;
+
+public class SourcePathTest {
+
+    private final Disposable mDisposable = Disposer.newDisposable();
+    private final File mFile = new File("Main.kt").getAbsoluteFile();
+
+    private FakeCompiler mCompiler;
+    private SourcePath mSourcePath;
+
+    @Before
+    public void setup() {
+        UtilKt.setIdeaIoUseFallback();
+        CompilerConfiguration configuration = new CompilerConfiguration();
+        configuration.put(CommonConfigurationKeys.MODULE_NAME, "test");
+        configuration.put(CLIConfigurationKeys.MESSAGE_COLLECTOR_KEY,
+                MessageCollector.Companion.getNONE());
+        KotlinCoreEnvironment environment = KotlinCoreEnvironment.createForProduction(
+                mDisposable, configuration, EnvironmentConfigFiles.JVM_CONFIG_FILES);
+
+        mCompiler = new FakeCompiler(new KtPsiFactory(environment.getProject()));
+        mSourcePath = new SourcePath(null, mCompiler);
+    }
+
+    @After
+    public void tearDown() {
+        Disposer.dispose(mDisposable);
+    }
+
+    @Test
+    public void testFileIsOnlyCompiledWhenItsContentChanges() {
+        mSourcePath.put(mFile, "class A", false);
+        assertSame(mCompiler.context("class A"), compile());
+        assertSame(mCompiler.context("class A"), compile());
+
+        mSourcePath.put(mFile, "class A", false);
+        assertSame(mCompiler.context("class A"), compile());
+        assertEquals(Collections.singletonList("class A"), mCompiler.mCompiled);
+
+        mSourcePath.put(mFile, "class B", false);
+        assertSame(mCompiler.context("class B"), compile());
+        assertEquals(Arrays.asList("class A", "class B"), mCompiler.mCompiled);
+    }
+
+    @Test
+    public void testCompileIsCancelledByNewerVersion() {
+        mSourcePath.put(mFile, "class A", false);
+        compile();
+
+        mSourcePath.put(mFile, "class B", false);
+        mCompiler.mOnCompile = (content, status) -> {
+            if (content.equals("class B")) {
+                mSourcePath.put(mFile, "class C", false);
+                status.checkCanceled();
+            }
+        };
+        // the last compiled version is used while the newer one isn't compiled
+        assertSame(mCompiler.context("class A"), compile());
+
+        mCompiler.mOnCompile = null;
+        assertSame(mCompiler.context("class C"), compile());
+        assertEquals(Arrays.asList("class A", "class B", "class C"), mCompiler.mCompiled);
+    }
+
+    @Test
+    public void testOlderCompileIsNotPublished() throws InterruptedException {
+        mSourcePath.put(mFile, "class A", false);
+        compile();
+
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        mCompiler.mOnCompile = (content, status) -> {
+            // the compilation of the older version finishes after the newer one,
+            // without checking whether it has been cancelled
+            if (content.equals("class B")) {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+        mSourcePath.put(mFile, "class B", false);
+        Thread thread = new Thread(this::compile);
+        thread.start();
+        started.await();
+
+        mSourcePath.put(mFile, "class C", false);
+        assertSame(mCompiler.context("class C"), compile());
+
+        release.countDown();
+        thread.join();
+
+        assertSame(mCompiler.context("class C"), compile());
+        assertEquals(Arrays.asList("class A", "class B", "class C"), mCompiler.mCompiled);
+    }
+
+    private BindingContext compile() {
+        return mSourcePath.compileFiles(Collections.singletonList(mFile));
+    }
+
+    private static class FakeCompiler implements SourcePath.KtCompiler {
+
+        private final KtPsiFactory mFactory;
+        private final Map<String, BindingContext> mContexts = new ConcurrentHashMap<>();
+        private final List<String> mCompiled = new CopyOnWriteArrayList<>();
+
+        private volatile BiConsumer<String, CompilationCanceledStatus> mOnCompile;
+
+        private FakeCompiler(KtPsiFactory factory) {
+            mFactory = factory;
+        }
+
+        @Override
+        public KtFile createKtFile(String content, Path file, CompletionKind kind) {
+            return mFactory.createFile(file.getFileName().toString(), content);
+        }
+
+        @Override
+        public Pair<BindingContext, ComponentProvider> compileKtFiles(Collection<? extends KtFile> files, Collection<KtFile> sourcePath, CompletionKind kind, CompilationCanceledStatus cancelStatus) {
+            String content = files.iterator().next().getText();
+            mCompiled.add(content);
+            BiConsumer<String, CompilationCanceledStatus> onCompile = mOnCompile;
+            if (onCompile != null) {
+                onCompile.accept(content, cancelStatus);
+            }
+            return new Pair<>(context(content), null);
+        }
+
+        /**
+         * @return The binding context of the compilation of the given content, the contexts
+         * only differ by their identity
+         */
+        private BindingContext context(String content) {
+            return mContexts.computeIfAbsent(content, it -> (BindingContext) Proxy.newProxyInstance(
+                    BindingContext.class.getClassLoader(), new Class<?>[]{BindingContext.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "equals":
+                                return proxy == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(proxy);
+                            case "toString":
+                                return it;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    }));
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.tyron.completion.xml.v2.events;
+
+import com.android.resources.ResourceType;
+import com.google.common.collect.HashMultiset;
+import com.google.common.collect.Multiset;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The resources of a single file that have been added, removed or changed by a rescan.
+ *
+ * The delta is computed from the signatures of the resources of the file before and after the
+ * scan. A signature is the name of a resource followed by a {@code '\0'} and what the resource
+ * declares, so a resource is changed when it is still present with a different declaration.
+ */
+public class ResourceDelta {
+
+    private static final ResourceDelta EMPTY = new ResourceDelta(
+            Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+    /**
+     * Compares the signatures of a file before and after it has been scanned.
+     *
+     * @param before the signatures of the previous scan, grouped by type
+     * @param after  the signatures of the new scan, grouped by type
+     */
+    @NotNull
+    public static ResourceDelta compute(@NotNull Map<ResourceType, Multiset<String>> before,
+                                        @NotNull Map<ResourceType, Multiset<String>> after) {
+        Map<ResourceType, Set<String>> added = new EnumMap<>(ResourceType.class);
+        Map<ResourceType, Set<String>> removed = new EnumMap<>(ResourceType.class);
+        Map<ResourceType, Set<String>> changed = new EnumMap<>(ResourceType.class);
+
+        Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+        types.addAll(before.keySet());
+        types.addAll(after.keySet());
+        for (ResourceType type : types) {
+            Multiset<String> previous = before.get(type);
+            Multiset<String> current = after.get(type);
+            if (previous != null && previous.equals(current)) {
+                continue;
+            }
+
+            Map<String, Multiset<String>> previousByName = groupByName(previous);
+            Map<String, Multiset<String>> currentByName = groupByName(current);
+            for (Map.Entry<String, Multiset<String>> entry : currentByName.entrySet()) {
+                Multiset<String> declarations = previousByName.get(entry.getKey());
+                if (declarations == null) {
+                    added.computeIfAbsent(type, t -> new HashSet<>()).add(entry.getKey());
+                } else if (!declarations.equals(entry.getValue())) {
+                    changed.computeIfAbsent(type, t -> new HashSet<>()).add(entry.getKey());
+                }
+            }
+            for (String name : previousByName.keySet()) {
+                if (!currentByName.containsKey(name)) {
+                    removed.computeIfAbsent(type, t -> new HashSet<>()).add(name);
+                }
+            }
+        }
+
+        if (added.isEmpty() && removed.isEmpty() && changed.isEmpty()) {
+            return EMPTY;
+        }
+        return new ResourceDelta(added, removed, changed);
+    }
+
+    private static Map<String, Multiset<String>> groupByName(@Nullable Multiset<String> signatures) {
+        if (signatures == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, Multiset<String>> byName = new HashMap<>();
+        for (String signature : signatures) {
+            int index = signature.indexOf('\0');
+            String name = index == -1 ? signature : signature.substring(0, index);
+            byName.computeIfAbsent(name, n -> HashMultiset.create()).add(signature);
+        }
+        return byName;
+    }
+
+    private final Map<ResourceType, Set<String>> mAdded;
+    private final Map<ResourceType, Set<String>> mRemoved;
+    private final Map<ResourceType, Set<String>> mChanged;
+
+    private ResourceDelta(Map<ResourceType, Set<String>> added,
+                          Map<ResourceType, Set<String>> removed,
+                          Map<ResourceType, Set<String>> changed) {
+        mAdded = added;
+        mRemoved = removed;
+        mChanged = changed;
+    }
+
+    public boolean isEmpty() {
+        return mAdded.isEmpty() && mRemoved.isEmpty() && mChanged.isEmpty();
+    }
+
+    /**
+     * @return Whether resources have been added or removed, as opposed to only being changed
+     */
+    public boolean hasAddedOrRemoved() {
+        return !mAdded.isEmpty() || !mRemoved.isEmpty();
+    }
+
+    /**
+     * @return Whether the fields of the R class are affected. The R class only holds the names
+     * of the resources and the attributes of the styleables, changing the value of a resource
+     * does not change it.
+     */
+    public boolean affectsRClass() {
+        return hasAddedOrRemoved() || mChanged.containsKey(ResourceType.STYLEABLE);
+    }
+
+    /**
+     * @return Whether an id or the root tag of a layout has been added, removed or changed
+     */
+    public boolean affectsIdsOrLayouts() {
+        Set<ResourceType> types = getTypes();
+        return types.contains(ResourceType.ID) || types.contains(ResourceType.LAYOUT);
+    }
+
+    /**
+     * @return The types that have at least one added, removed or changed resource
+     */
+    @NotNull
+    public Set<ResourceType> getTypes() {
+        Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+        types.addAll(mAdded.keySet());
+        types.addAll(mRemoved.keySet());
+        types.addAll(mChanged.keySet());
+        return types;
+    }
+
+    @NotNull
+    public Set<String> getAdded(@NotNull ResourceType type) {
+        return mAdded.getOrDefault(type, Collections.emptySet());
+    }
+
+    @NotNull
+    public Set<String> getRemoved(@NotNull ResourceType type) {
+        return mRemoved.getOrDefault(type, Collections.emptySet());
+    }
+
+    @NotNull
+    public Set<String> getChanged(@NotNull ResourceType type) {
+        return mChanged.getOrDefault(type, Collections.emptySet());
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceDelta{" +
+               "added=" + mAdded +
+               ", removed=" + mRemoved +
+               ", changed=" + mChanged +
+               '}';
+    }
+}
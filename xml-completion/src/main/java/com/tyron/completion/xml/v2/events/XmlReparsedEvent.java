@@ -2,17 +2,34 @@ package com.tyron.completion.xml.v2.events;
 
 import com.tyron.code.event.Event;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.io.File;
 
 public class XmlReparsedEvent extends Event {
 
     private final File file;
+    private final ResourceDelta delta;
 
     public XmlReparsedEvent(File file) {
+        this(file, null);
+    }
+
+    public XmlReparsedEvent(File file, @Nullable ResourceDelta delta) {
         this.file = file;
+        this.delta = delta;
     }
 
     public File getFile() {
         return file;
     }
+
+    /**
+     * @return The resources of the file that have changed, or null if it is not known and
+     * every resource should be considered changed
+     */
+    @Nullable
+    public ResourceDelta getDelta() {
+        return delta;
+    }
 }
@@ -2,7 +2,10 @@ package com.tyron.completion.xml.v2.project;
 
 import static com.android.SdkConstants.ANDROID_NS_NAME_PREFIX;
 import static com.android.SdkConstants.ATTR_FORMAT;
+import static com.android.SdkConstants.ATTR_LAYOUT;
 import static com.android.SdkConstants.ATTR_NAME;
+import static com.android.SdkConstants.ATTR_VIEW_BINDING_IGNORE;
+import static com.android.SdkConstants.ATTR_VIEW_BINDING_TYPE;
 import static com.android.SdkConstants.DOT_9PNG;
 import static com.android.SdkConstants.NEW_ID_PREFIX;
 import static com.android.SdkConstants.TAG_RESOURCES;
@@ -29,8 +32,10 @@ import com.android.resources.ResourceFolderType;
 import com.android.resources.ResourceType;
 import com.android.resources.ResourceVisibility;
 import com.android.utils.SdkUtils;
+import com.google.common.collect.HashMultiset;
 import com.google.common.collect.LinkedListMultimap;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multiset;
 import com.tyron.builder.project.api.AndroidModule;
 import com.tyron.completion.progress.ProcessCanceledException;
 import com.tyron.completion.progress.ProgressManager;
@@ -41,6 +46,7 @@ import com.tyron.completion.xml.v2.base.LoadableResourceRepository;
 import com.tyron.completion.xml.v2.base.RepositoryConfiguration;
 import com.tyron.completion.xml.v2.base.RepositoryLoader;
 import com.tyron.completion.xml.v2.base.ResourceSourceFile;
+import com.tyron.completion.xml.v2.events.ResourceDelta;
 import com.tyron.completion.xml.v2.events.XmlReparsedEvent;
 import com.tyron.completion.xml.v2.events.XmlResourceChangeEvent;
 import com.tyron.xml.completion.util.DOMUtils;
@@ -66,6 +72,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -75,6 +82,12 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.lang.model.SourceVersion;
 
@@ -83,8 +96,41 @@ import kotlin.io.FilesKt;
 
 public final class ResourceFolderRepository extends LocalResourceRepository implements LoadableResourceRepository {
 
+    private static final Logger LOG = Logger.getInstance(ResourceFolderRepository.class);
+
+    /**
+     * Delay after the last change to a file before it is rescanned, edits made while typing
+     * are coalesced into a single scan.
+     */
+    private static final long SCAN_DELAY_MS = 300;
+
+    /**
+     * Runs the rescans of every repository, one at a time and off the thread that dispatched
+     * the change.
+     */
+    private static final ScheduledExecutorService ourScanExecutor =
+            Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ResourceFolderRepository-scan");
+                thread.setDaemon(true);
+                return thread;
+            });
+
     @NotNull
     private final ConcurrentMap<File, ResourceItemSource<?>> mySources = new ConcurrentHashMap<>();
+
+    /**
+     * The scans waiting for their delay to expire, keyed by file.
+     */
+    @GuardedBy("myPendingScans")
+    private final Map<File, ScheduledFuture<?>> myPendingScans = new HashMap<>();
+
+    /**
+     * The signatures of the resources declared by each file when it was last scanned, grouped
+     * by type. Comparing them with the ones of a rescan tells which resources actually changed,
+     * see {@link ResourceDelta}.
+     */
+    private final ConcurrentMap<File, Map<ResourceType, Multiset<String>>> mySignatures =
+            new ConcurrentHashMap<>();
     @SuppressWarnings("InstanceGuardedByStatic")
     @GuardedBy("ITEM_MAP_LOCK")
     @NotNull
@@ -139,10 +185,62 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         facet.getProject()
                 .getEventManager()
                 .subscribeEvent(XmlResourceChangeEvent.class, (event, unsubscribe) -> {
-                    scan(event.getFile(), event.getNewContent());
+                    File file = event.getFile();
+                    if (file == null || !isResourceFile(file)) {
+                        return;
+                    }
+                    // the editor content keeps changing, take a snapshot of the text now
+                    CharSequence content = event.getNewContent() == null
+                            ? null
+                            : event.getNewContent().toString();
+                    scheduleScan(file, content);
                 });
     }
 
+    /**
+     * Schedules a rescan of the given file, replacing the previously scheduled scan of the
+     * same file if it has not started yet.
+     */
+    private void scheduleScan(@NotNull File file, @Nullable CharSequence content) {
+        synchronized (myPendingScans) {
+            ScheduledFuture<?> previous = myPendingScans.get(file);
+            if (previous != null) {
+                previous.cancel(false);
+            }
+            AtomicReference<ScheduledFuture<?>> self = new AtomicReference<>();
+            ScheduledFuture<?> future = ourScanExecutor.schedule(() -> {
+                synchronized (myPendingScans) {
+                    myPendingScans.remove(file, self.get());
+                }
+                try {
+                    scan(file, content);
+                } catch (ProcessCanceledException ignored) {
+                    // a newer change will schedule another scan
+                } catch (Throwable t) {
+                    LOG.warn("Failed to scan " + file, t);
+                }
+            }, SCAN_DELAY_MS, TimeUnit.MILLISECONDS);
+            self.set(future);
+            myPendingScans.put(file, future);
+        }
+    }
+
+    @Override
+    public void invokeAfterPendingUpdatesFinish(@NotNull Executor executor,
+                                                @NotNull Runnable callback) {
+        boolean pending;
+        synchronized (myPendingScans) {
+            pending = !myPendingScans.isEmpty();
+        }
+        if (!pending) {
+            executor.execute(callback);
+            return;
+        }
+        // scans run in order on a single thread, this runs after every scan scheduled so far
+        ourScanExecutor.schedule(() -> executor.execute(callback), SCAN_DELAY_MS,
+                TimeUnit.MILLISECONDS);
+    }
+
     private static void addToResult(@NotNull ResourceItem item,
                                     @NotNull Map<ResourceType,
                                             ListMultimap<String, ResourceItem>> result) {
@@ -330,10 +428,16 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                                        ".onSourceRemoved " +
                                        pathForLogging(file));
 
+        Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+        for (ResourceItem item : source) {
+            types.add(item.getType());
+        }
+        mySignatures.remove(file);
+
         boolean removed = removeItemsFromSource(source);
         if (removed) {
             setModificationCount(ourModificationCounter.incrementAndGet());
-            invalidateParentCaches(this, ResourceType.values());
+            invalidateParentCaches(types);
         }
 
         ResourceFolderType folderType = IdeResourcesUtil.getFolderType(file);
@@ -346,16 +450,125 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
     }
 
+    /**
+     * Keeps the items of the previous scan of a values file for the types whose declarations
+     * have not changed, so that the items cached by the parent repositories for those types stay
+     * the ones in this repository. The previous items of the changed types are removed and the
+     * new items of the unchanged types are dropped from the result.
+     */
+    private void keepUnchangedItems(@NotNull File file,
+                                    @NotNull ResourceItemSource<?> previousSource,
+                                    @NotNull Set<ResourceType> changedTypes,
+                                    @NotNull Map<ResourceType,
+                                            ListMultimap<String, ResourceItem>> result) {
+        List<ResourceItem> removed = new ArrayList<>();
+        List<DomResourceItem> kept = new ArrayList<>();
+        for (ResourceItem item : previousSource) {
+            if (changedTypes.contains(item.getType())) {
+                removed.add(item);
+            } else if (item instanceof DomResourceItem) {
+                kept.add((DomResourceItem) item);
+            }
+        }
+        removeItems(removed);
+        result.keySet().retainAll(changedTypes);
+
+        if (kept.isEmpty()) {
+            return;
+        }
+        ResourceItemSource<?> source = mySources.get(file);
+        if (!(source instanceof DomResourceFile)) {
+            return;
+        }
+        DomResourceFile resourceFile = (DomResourceFile) source;
+        List<DomResourceItem> replaced = new ArrayList<>();
+        for (DomResourceItem item : resourceFile) {
+            if (!changedTypes.contains(item.getType())) {
+                replaced.add(item);
+            }
+        }
+        for (DomResourceItem item : replaced) {
+            resourceFile.removeItem(item);
+        }
+        for (DomResourceItem item : kept) {
+            resourceFile.addItem(item);
+        }
+    }
+
+    /**
+     * Replaces the id items of a layout file with the items of a new scan.
+     */
+    private void replaceIds(@NotNull DomResourceFile domResourceFile,
+                            @NotNull List<DomResourceItem> idItems) {
+        Set<String> idsBefore = new HashSet<>();
+        synchronized (ITEM_MAP_LOCK) {
+            ListMultimap<String, ResourceItem> idMultimap =
+                    myResourceTable.get(ResourceType.ID);
+            if (idMultimap != null) {
+                List<DomResourceItem> previousItems = new ArrayList<>();
+                for (DomResourceItem item : domResourceFile) {
+                    if (item.getType() == ResourceType.ID) {
+                        idsBefore.add(item.getName());
+                        previousItems.add(item);
+                    }
+                }
+                for (String id : idsBefore) {
+                    // TODO(sprigogin): Simplify this code since the following
+                    //  comment is out of date.
+                    //  Note that ResourceFile has a flat map (not a multimap) so it
+                    //  doesn't
+                    //  record all items (unlike the myItems map) so we need to
+                    //  remove the map
+                    //  items manually, can't just do map.remove(item.getName(), item)
+                    List<ResourceItem> mapItems = idMultimap.get(id);
+                    if (!mapItems.isEmpty()) {
+                        List<ResourceItem> toDelete = new ArrayList<>(mapItems.size());
+                        for (ResourceItem mapItem : mapItems) {
+                            if (mapItem instanceof DomResourceItem &&
+                                ((DomResourceItem) mapItem).getSourceFile() ==
+                                domResourceFile) {
+                                toDelete.add(mapItem);
+                            }
+                        }
+                        for (ResourceItem item : toDelete) {
+                            idMultimap.remove(item.getName(), item);
+                        }
+                    }
+                }
+                for (DomResourceItem item : previousItems) {
+                    domResourceFile.removeItem(item);
+                }
+            }
+        }
+
+        for (DomResourceItem item : idItems) {
+            domResourceFile.addItem(item);
+        }
+    }
+
     /**
      * Removes all resource items associated the given source file.
      *
      * @return true if any resource items were removed from the repository
      */
     private boolean removeItemsFromSource(@NotNull ResourceItemSource<?> source) {
+        List<ResourceItem> items = new ArrayList<>();
+        for (ResourceItem item : source) {
+            items.add(item);
+        }
+        return removeItems(items);
+    }
+
+    /**
+     * Removes the given resource items from this repository.
+     *
+     * @return true if any resource items were removed from the repository
+     */
+    private boolean removeItems(@NotNull Iterable<? extends ResourceItem> itemsToRemove) {
         boolean changed = false;
 
         synchronized (ITEM_MAP_LOCK) {
-            for (ResourceItem item : source) {
+            for (ResourceItem item : itemsToRemove) {
                 ListMultimap<String, ResourceItem> map = myResourceTable.get(item.getType());
                 if (map == null) {
                     continue;
@@ -388,29 +601,53 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
 
         System.out.println("Scanning " + file.getName());
 
+        Set<ResourceType> changedTypes = EnumSet.noneOf(ResourceType.class);
+
+        Map<ResourceType, Multiset<String>> previousSignatures = mySignatures.remove(file);
+        Map<ResourceType, Multiset<String>> signatures = new EnumMap<>(ResourceType.class);
+        // loaded from disk or the cache, only the names of the previous resources are known
+        Map<ResourceType, Multiset<String>> previousNames = previousSignatures == null
+                ? getNameSignatures(mySources.get(file))
+                : previousSignatures;
+
         if (folderType == VALUES) {
 
-            // First delete out the previous items.
             ResourceItemSource<?> source = mySources.remove(file);
-            boolean removed = false;
-            if (source != null) {
-                removed = removeItemsFromSource(source);
-            }
 
-            boolean added = false;
             File parentFile = file.getParentFile();
             assert parentFile != null;
             FolderConfiguration folderConfiguration =
                     FolderConfiguration.getConfigForFolder(parentFile.getName());
             if (folderConfiguration != null) {
-                added = scanValueFileAsPsi(result, file, content, folderConfiguration);
+                scanValueFileAsPsi(result, file, content, folderConfiguration, signatures);
+            }
+
+            // Only the types whose declarations differ need to be reconciled by the parents.
+            if (previousSignatures == null) {
+                // there is nothing to compare against
+                if (source != null) {
+                    for (ResourceItem item : source) {
+                        changedTypes.add(item.getType());
+                    }
+                }
+                changedTypes.addAll(signatures.keySet());
+            } else {
+                Set<ResourceType> types = EnumSet.noneOf(ResourceType.class);
+                types.addAll(previousSignatures.keySet());
+                types.addAll(signatures.keySet());
+                for (ResourceType type : types) {
+                    if (!Objects.equals(previousSignatures.get(type), signatures.get(type))) {
+                        changedTypes.add(type);
+                    }
+                }
             }
 
-            if (added || removed) {
-                // TODO: Consider doing a deeper diff of the changes to the resource items
-                //       to determine if the removed and added items actually differ.
-                setModificationCount(ourModificationCounter.incrementAndGet());
-                invalidateParentCaches(this, ResourceType.values());
+            if (source != null) {
+                if (previousSignatures == null) {
+                    removeItemsFromSource(source);
+                } else {
+                    keepUnchangedItems(file, source, changedTypes, result);
+                }
             }
         } else if (checkResourceFilename(toPathString(file), folderType)) {
             ResourceItemSource<?> source = mySources.get(file);
@@ -426,61 +663,24 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                     // We've already seen this resource, so no change in the ResourceItem for the
                     // file itself (e.g. @layout/foo from layout-land/foo.xml). However, we may have
                     // to update the id's:
-                    Set<String> idsBefore = new HashSet<>();
-                    synchronized (ITEM_MAP_LOCK) {
-                        ListMultimap<String, ResourceItem> idMultimap =
-                                myResourceTable.get(ResourceType.ID);
-                        if (idMultimap != null) {
-                            List<DomResourceItem> idItems = new ArrayList<>();
-                            for (DomResourceItem item : domResourceFile) {
-                                if (item.getType() == ResourceType.ID) {
-                                    idsBefore.add(item.getName());
-                                    idItems.add(item);
-                                }
-                            }
-                            for (String id : idsBefore) {
-                                // TODO(sprigogin): Simplify this code since the following
-                                //  comment is out of date.
-                                //  Note that ResourceFile has a flat map (not a multimap) so it
-                                //  doesn't
-                                //  record all items (unlike the myItems map) so we need to
-                                //  remove the map
-                                //  items manually, can't just do map.remove(item.getName(), item)
-                                List<ResourceItem> mapItems = idMultimap.get(id);
-                                if (!mapItems.isEmpty()) {
-                                    List<ResourceItem> toDelete = new ArrayList<>(mapItems.size());
-                                    for (ResourceItem mapItem : mapItems) {
-                                        if (mapItem instanceof DomResourceItem &&
-                                            ((DomResourceItem) mapItem).getSourceFile() ==
-                                            domResourceFile) {
-                                            toDelete.add(mapItem);
-                                        }
-                                    }
-                                    for (ResourceItem item : toDelete) {
-                                        idMultimap.remove(item.getName(), item);
-                                    }
-                                }
-                            }
-                            for (DomResourceItem item : idItems) {
-                                domResourceFile.removeItem(item);
-                            }
-                        }
-                    }
-
-                    // Add items for this file.
                     List<DomResourceItem> idItems = new ArrayList<>();
                     ProgressManager.checkCanceled();
-                    addIds(file, content, idItems, result);
-
-                    if (!idItems.isEmpty()) {
-                        for (DomResourceItem item : idItems) {
-                            domResourceFile.addItem(item);
-                        }
+                    String rootTag = addIds(file, content, idItems, result, signatures);
+                    addFileSignature(signatures, file, folderType, rootTag);
+
+                    if (previousSignatures != null && Objects.equals(
+                            previousSignatures.get(ResourceType.ID),
+                            signatures.get(ResourceType.ID))) {
+                        // The ids are declared the same way, keep the previous items so that
+                        // the items cached by the parents for this type stay the ones in this
+                        // repository.
+                        result.remove(ResourceType.ID);
+                    } else {
+                        replaceIds(domResourceFile, idItems);
+                        changedTypes.add(ResourceType.ID);
                     }
-
-                    // Identities may have changed even if the ids are the same, so update maps.
-                    setModificationCount(ourModificationCounter.incrementAndGet());
-                    invalidateParentCaches(this, ResourceType.ID);
+                } else {
+                    addFileSignature(signatures, file, folderType, null);
                 }
             } else {
                 // Either we're switching to PSI or the file is not XML (image or font), which is
@@ -489,12 +689,19 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                 // different multimap list order.
 
                 if (source != null) {
+                    for (ResourceItem item : source) {
+                        changedTypes.add(item.getType());
+                    }
                     removeItemsFromSource(source);
                 }
 
                 ResourceType type = FolderTypeRelationship.getNonIdRelatedResourceType(folderType);
                 boolean idGeneratingFolder =
                         FolderTypeRelationship.isIdGeneratingFolderType(folderType);
+                changedTypes.add(type);
+                if (idGeneratingFolder) {
+                    changedTypes.add(ResourceType.ID);
+                }
 
                 ProgressManager.checkCanceled();
                 clearLayoutlibCaches(file, folderType);
@@ -511,16 +718,49 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                                 folderConfiguration,
                                 type,
                                 idGeneratingFolder,
-                                result);
+                                result,
+                                signatures);
                     }
                 }
-                setModificationCount(ourModificationCounter.incrementAndGet());
-                invalidateParentCaches(this, ResourceType.values());
             }
         }
 
-        myFacet.getProject().getEventManager().dispatchEvent(new XmlReparsedEvent(file));
         commitToRepository(result);
+        mySignatures.put(file, signatures);
+
+        ResourceDelta delta = ResourceDelta.compute(previousNames, signatures);
+        if (!changedTypes.isEmpty()) {
+            setModificationCount(ourModificationCounter.incrementAndGet());
+            invalidateParentCaches(changedTypes);
+        }
+        if (!changedTypes.isEmpty() || !delta.isEmpty()) {
+            myFacet.getProject()
+                    .getEventManager()
+                    .dispatchEvent(new XmlReparsedEvent(file, delta));
+        }
+    }
+
+    /**
+     * @return Signatures that only contain the names of the resources of the source, so that
+     * every resource that is still declared after a scan is considered changed
+     */
+    @NotNull
+    private static Map<ResourceType, Multiset<String>> getNameSignatures(
+            @Nullable ResourceItemSource<?> source) {
+        Map<ResourceType, Multiset<String>> signatures = new EnumMap<>(ResourceType.class);
+        if (source != null) {
+            for (ResourceItem item : source) {
+                signatures.computeIfAbsent(item.getType(), t -> HashMultiset.create())
+                        .add(item.getName());
+            }
+        }
+        return signatures;
+    }
+
+    private void invalidateParentCaches(@NotNull Set<ResourceType> types) {
+        synchronized (ITEM_MAP_LOCK) {
+            invalidateParentCaches(this, types.toArray(new ResourceType[0]));
+        }
     }
 
 
@@ -531,7 +771,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                                            @NotNull ResourceType type,
                                            boolean idGenerating,
                                            @NotNull Map<ResourceType, ListMultimap<String,
-                                                   ResourceItem>> result) {
+                                                   ResourceItem>> result,
+                                           @NotNull Map<ResourceType, Multiset<String>> signatures) {
         // XML or image.
         String resourceName = SdkUtils.fileNameToResourceName(file.getName());
         if (!checkResourceFilename(toPathString(file), folderType)
@@ -549,7 +790,8 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
             List<DomResourceItem> items = new ArrayList<>();
             items.add(item);
             addToResult(item, result);
-            addIds(file, content, items, result);
+            String rootTag = addIds(file, content, items, result, signatures);
+            addFileSignature(signatures, file, folderType, rootTag);
 
             DomResourceFile resourceFile =
                     new DomResourceFile(file, items, folderType, configuration);
@@ -561,6 +803,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                     configuration);
             mySources.put(file, resourceFile);
             addToResult(item, result);
+            addFileSignature(signatures, file, folderType, null);
         }
     }
 
@@ -568,9 +811,11 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
             ResourceItem>> result,
                                        @NotNull File file,
                                        CharSequence content,
-                                       @NotNull FolderConfiguration folderConfiguration) {
+                                       @NotNull FolderConfiguration folderConfiguration,
+                                       @NotNull Map<ResourceType, Multiset<String>> signatures) {
         boolean added = false;
-        DOMDocument domDocument = DOMParser.getInstance().parse(content.toString(), "", null);
+        String text = content.toString();
+        DOMDocument domDocument = DOMParser.getInstance().parse(text, "", null);
 
         System.out.println("Parsed XML File: " + file.getName());
 
@@ -589,6 +834,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
             if (type != null && isValidValueResourceName(name)) {
                 DomResourceItem item = DomResourceItem.forXmlTag(name, type, this, tag, file);
                 addToResult(item, result);
+                addSignature(signatures, type, name, tag, text);
                 items.add(item);
                 added = true;
 
@@ -612,6 +858,7 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
                                     file);
                             items.add(attrItem);
                             addToResult(attrItem, result);
+                            addSignature(signatures, ResourceType.ATTR, attrName, child, text);
                         }
                     }
                 }
@@ -626,22 +873,90 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         return added;
     }
 
-    private void addIds(@NotNull File file,
-                        @NotNull CharSequence content,
-                        @NotNull List<DomResourceItem> items,
-                        @NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> result) {
+    /**
+     * Records the name and the declaring XML of a value resource, two scans that record the
+     * same signatures for a type declare the same resources of that type.
+     */
+    private static void addSignature(@NotNull Map<ResourceType, Multiset<String>> signatures,
+                                     @NotNull ResourceType type,
+                                     @NotNull String name,
+                                     @NotNull DOMElement tag,
+                                     @NotNull String text) {
+        int start = Math.max(0, tag.getStart());
+        int end = Math.min(text.length(), tag.getEnd());
+        String declaration = start < end ? text.substring(start, end) : "";
+        signatures.computeIfAbsent(type, t -> HashMultiset.create())
+                .add(name + '\0' + declaration);
+    }
+
+    /**
+     * Adds the ids declared in the file along with their signatures, the signature of an id is
+     * the tag that declares it, the layout it includes if any and the tools attributes that
+     * change how it is exposed by view binding.
+     *
+     * @return The name of the root tag of the file
+     */
+    @Nullable
+    private String addIds(@NotNull File file,
+                          @NotNull CharSequence content,
+                          @NotNull List<DomResourceItem> items,
+                          @NotNull Map<ResourceType, ListMultimap<String, ResourceItem>> result,
+                          @NotNull Map<ResourceType, Multiset<String>> signatures) {
         DOMDocument element = DOMParser.getInstance().parse(content.toString(), "", null);
 //        if (element instanceof DOMElement) {
 //            addIds((DOMElement)element, items, result);
 //        }
 
+        DOMElement rootElement = DOMUtils.getRootElement(element);
+        // ignoring the layout removes its binding along with every field
+        String ignored = StringUtil.notNullize(
+                getToolsAttribute(rootElement, ATTR_VIEW_BINDING_IGNORE));
+
         List<DOMElement> tags = DOMUtils.findChildrenOfType(element, DOMElement.class);
         for (DOMElement tag : tags) {
             if (tag == null) {
                 continue;
             }
+            int start = items.size();
             addIds(file, tag, items, result);
+            for (int i = start; i < items.size(); i++) {
+                signatures.computeIfAbsent(ResourceType.ID, t -> HashMultiset.create())
+                        .add(items.get(i).getName() + '\0' + tag.getTagName() + '\0' +
+                             StringUtil.notNullize(tag.getAttribute(ATTR_LAYOUT)) + '\0' +
+                             StringUtil.notNullize(getToolsAttribute(tag, ATTR_VIEW_BINDING_TYPE)) +
+                             '\0' + ignored);
+            }
+        }
+
+        return rootElement == null ? null : rootElement.getTagName();
+    }
+
+    /**
+     * @return The value of an attribute of the tools namespace, whatever prefix it is bound to
+     */
+    @Nullable
+    private static String getToolsAttribute(@Nullable DOMElement tag, @NotNull String localName) {
+        if (tag == null || tag.getAttributeNodes() == null) {
+            return null;
         }
+        for (DOMAttr attribute : tag.getAttributeNodes()) {
+            String name = attribute.getName();
+            if (name.endsWith(':' + localName) &&
+                TOOLS_URI.equals(DOMUtils.getNamespace(attribute))) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static void addFileSignature(@NotNull Map<ResourceType, Multiset<String>> signatures,
+                                         @NotNull File file,
+                                         @NotNull ResourceFolderType folderType,
+                                         @Nullable String rootTag) {
+        ResourceType type = FolderTypeRelationship.getNonIdRelatedResourceType(folderType);
+        String name = SdkUtils.fileNameToResourceName(file.getName());
+        signatures.computeIfAbsent(type, t -> HashMultiset.create())
+                .add(name + '\0' + StringUtil.notNullize(rootTag));
     }
 
     /**
@@ -732,7 +1047,6 @@ public final class ResourceFolderRepository extends LocalResourceRepository impl
         private PathString myLastPathString;
 
         @NotNull Set<File> myFilesToReparseAsPsi = new HashSet<>();
-        private static final Logger LOG = Logger.getInstance(ResourceFolderRepository.class);
 
         Loader(@NotNull ResourceFolderRepository repository,
                @Nullable ResourceFolderRepositoryCachingData cachingData) {
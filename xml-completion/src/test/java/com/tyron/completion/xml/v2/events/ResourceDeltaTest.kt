@@ -0,0 +1,158 @@
+package com.tyron.completion.xml.v2.events
+
+import com.android.resources.ResourceType
+import com.google.common.collect.HashMultiset
+import com.google.common.collect.Multiset
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class ResourceDeltaTest {
+
+    @Test
+    fun `test identical signatures are empty`() {
+        val signatures = signatures(
+            ResourceType.STRING to listOf(declared("app_name", "<string>App</string>"))
+        )
+        val delta = ResourceDelta.compute(signatures, signatures(
+            ResourceType.STRING to listOf(declared("app_name", "<string>App</string>"))
+        ))
+        assertTrue(delta.isEmpty)
+        assertFalse(delta.hasAddedOrRemoved())
+        assertFalse(delta.affectsRClass())
+        assertTrue(delta.types.isEmpty())
+        assertSame(delta, ResourceDelta.compute(emptyMap(), emptyMap()))
+    }
+
+    @Test
+    fun `test added removed and changed resources`() {
+        val before = signatures(
+            ResourceType.STRING to listOf(
+                declared("app_name", "<string>App</string>"),
+                declared("title", "<string>Title</string>"),
+                declared("removed", "<string>Removed</string>")
+            )
+        )
+        val after = signatures(
+            ResourceType.STRING to listOf(
+                declared("app_name", "<string>App</string>"),
+                declared("title", "<string>Edited</string>"),
+                declared("added", "<string>Added</string>")
+            )
+        )
+        val delta = ResourceDelta.compute(before, after)
+        assertEquals(setOf("added"), delta.getAdded(ResourceType.STRING))
+        assertEquals(setOf("removed"), delta.getRemoved(ResourceType.STRING))
+        assertEquals(setOf("title"), delta.getChanged(ResourceType.STRING))
+        assertEquals(setOf(ResourceType.STRING), delta.types)
+        assertTrue(delta.hasAddedOrRemoved())
+        assertTrue(delta.affectsRClass())
+        assertFalse(delta.affectsIdsOrLayouts())
+    }
+
+    @Test
+    fun `test changed value does not affect the R class`() {
+        val delta = ResourceDelta.compute(
+            signatures(ResourceType.STRING to listOf(declared("title", "<string>Title</string>"))),
+            signatures(ResourceType.STRING to listOf(declared("title", "<string>Edited</string>")))
+        )
+        assertFalse(delta.isEmpty)
+        assertFalse(delta.hasAddedOrRemoved())
+        assertFalse(delta.affectsRClass())
+        assertTrue(delta.getAdded(ResourceType.STRING).isEmpty())
+        assertTrue(delta.getRemoved(ResourceType.STRING).isEmpty())
+    }
+
+    @Test
+    fun `test changed styleable affects the R class`() {
+        val delta = ResourceDelta.compute(
+            signatures(ResourceType.STYLEABLE to listOf(
+                declared("MyView", "<declare-styleable><attr name=\"a\"/></declare-styleable>")
+            )),
+            signatures(ResourceType.STYLEABLE to listOf(
+                declared("MyView", "<declare-styleable><attr name=\"b\"/></declare-styleable>")
+            ))
+        )
+        assertEquals(setOf("MyView"), delta.getChanged(ResourceType.STYLEABLE))
+        assertFalse(delta.hasAddedOrRemoved())
+        assertTrue(delta.affectsRClass())
+    }
+
+    @Test
+    fun `test changed ids and layouts`() {
+        val before = signatures(
+            ResourceType.ID to listOf(declared("name", "TextView")),
+            ResourceType.LAYOUT to listOf(declared("main", "LinearLayout"))
+        )
+        val idChanged = ResourceDelta.compute(before, signatures(
+            ResourceType.ID to listOf(declared("name", "EditText")),
+            ResourceType.LAYOUT to listOf(declared("main", "LinearLayout"))
+        ))
+        assertEquals(setOf("name"), idChanged.getChanged(ResourceType.ID))
+        assertTrue(idChanged.affectsIdsOrLayouts())
+        assertFalse(idChanged.affectsRClass())
+
+        val layoutChanged = ResourceDelta.compute(before, signatures(
+            ResourceType.ID to listOf(declared("name", "TextView")),
+            ResourceType.LAYOUT to listOf(declared("main", "FrameLayout"))
+        ))
+        assertEquals(setOf("main"), layoutChanged.getChanged(ResourceType.LAYOUT))
+        assertTrue(layoutChanged.getChanged(ResourceType.ID).isEmpty())
+        assertTrue(layoutChanged.affectsIdsOrLayouts())
+    }
+
+    @Test
+    fun `test duplicate declarations`() {
+        // an id declared twice in a layout is the same resource
+        val before = signatures(ResourceType.ID to listOf(
+            declared("name", "TextView"),
+            declared("name", "TextView")
+        ))
+        val delta = ResourceDelta.compute(before, signatures(ResourceType.ID to listOf(
+            declared("name", "TextView")
+        )))
+        assertEquals(setOf("name"), delta.getChanged(ResourceType.ID))
+        assertFalse(delta.hasAddedOrRemoved())
+    }
+
+    @Test
+    fun `test name only signatures`() {
+        // signatures of a file loaded from the cache only contain the names of the resources
+        val before = signatures(ResourceType.STRING to listOf("app_name", "removed"))
+        val after = signatures(ResourceType.STRING to listOf(
+            declared("app_name", "<string>App</string>"),
+            declared("added", "<string>Added</string>")
+        ))
+        val delta = ResourceDelta.compute(before, after)
+        assertEquals(setOf("app_name"), delta.getChanged(ResourceType.STRING))
+        assertEquals(setOf("added"), delta.getAdded(ResourceType.STRING))
+        assertEquals(setOf("removed"), delta.getRemoved(ResourceType.STRING))
+    }
+
+    @Test
+    fun `test removed type`() {
+        val delta = ResourceDelta.compute(
+            signatures(
+                ResourceType.ID to listOf(declared("name", "TextView")),
+                ResourceType.LAYOUT to listOf(declared("main", "LinearLayout"))
+            ),
+            emptyMap()
+        )
+        assertEquals(setOf("name"), delta.getRemoved(ResourceType.ID))
+        assertEquals(setOf("main"), delta.getRemoved(ResourceType.LAYOUT))
+        assertEquals(setOf(ResourceType.ID, ResourceType.LAYOUT), delta.types)
+        assertTrue(delta.affectsRClass())
+    }
+
+    private fun declared(name: String, declaration: String) = name + '\u0000' + declaration
+
+    private fun signatures(
+        vararg entries: Pair<ResourceType, List<String>>
+    ): Map<ResourceType, Multiset<String>> {
+        return entries.associate { (type, signatures) ->
+            type to HashMultiset.create<String>(signatures)
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.tyron.completion.xml.v2.project
+
+import com.android.ide.common.rendering.api.ResourceNamespace
+import com.android.ide.common.resources.ResourceItem
+import com.android.resources.ResourceType
+import com.tyron.builder.project.Project
+import com.tyron.builder.project.mock.MockAndroidModule
+import com.tyron.completion.xml.v2.events.XmlResourceChangeEvent
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertNotSame
+import org.junit.Assert.assertSame
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class ResourceFolderRepositoryTest {
+
+    @get:Rule
+    val temporaryFolder = TemporaryFolder()
+
+    private lateinit var project: Project
+    private lateinit var layoutFile: File
+    private lateinit var repository: ResourceFolderRepository
+    private lateinit var parent: MultiResourceRepository
+
+    @Before
+    fun setup() {
+        val root = temporaryFolder.newFolder("app")
+        project = Project(root)
+        val module = object : MockAndroidModule(root, null) {
+            override fun getProject() = this@ResourceFolderRepositoryTest.project
+        }
+
+        val resDir = File(root, "src/main/res")
+        layoutFile = File(resDir, "layout/main.xml")
+        writeLayout("TextView")
+        val otherResDir = File(root, "src/debug/res")
+        File(otherResDir, "values").mkdirs()
+        File(otherResDir, "values/ids.xml")
+            .writeText("<resources><item name=\"other\" type=\"id\"/></resources>")
+
+        repository = ResourceFolderRepository.create(module, resDir, ResourceNamespace.RES_AUTO, null)
+        val otherRepository =
+            ResourceFolderRepository.create(module, otherResDir, ResourceNamespace.RES_AUTO, null)
+        // with more than one leaf, the parent caches the merged items of each type
+        parent = object : MultiResourceRepository("app") {
+            init {
+                setChildren(listOf(repository, otherRepository), emptyList(), emptyList())
+            }
+        }
+
+        // the first rescan replaces the items loaded from the disk with DOM items
+        rescan()
+    }
+
+    @Test
+    fun `test rescan with the same ids keeps the parent items`() {
+        val before = parentItem("name")
+        assertSame(repositoryItem("name"), before)
+
+        writeLayout("TextView", "android:text=\"Edited\"")
+        rescan()
+
+        assertSame(repositoryItem("name"), parentItem("name"))
+        assertSame(before, parentItem("name"))
+        assertEquals(1, parent.getResources(ResourceNamespace.RES_AUTO, ResourceType.ID, "email").size)
+    }
+
+    @Test
+    fun `test rescan with changed ids updates the parent items`() {
+        val before = parentItem("name")
+
+        writeLayout("EditText")
+        rescan()
+
+        val after = parentItem("name")
+        assertNotSame(before, after)
+        assertSame(repositoryItem("name"), after)
+        assertTrue(parent.getResources(ResourceNamespace.RES_AUTO, ResourceType.ID, "name")
+            .none { it === before })
+    }
+
+    private fun writeLayout(nameTag: String, attributes: String = "") {
+        layoutFile.parentFile!!.mkdirs()
+        layoutFile.writeText("""
+            <LinearLayout xmlns:android="http://schemas.android.com/apk/res/android">
+                <$nameTag android:id="@+id/name" $attributes/>
+                <TextView android:id="@+id/email"/>
+            </LinearLayout>
+            """.trimIndent())
+    }
+
+    private fun rescan() {
+        project.eventManager.dispatchEvent(XmlResourceChangeEvent(layoutFile, null))
+        val latch = CountDownLatch(1)
+        repository.invokeAfterPendingUpdatesFinish(Runnable::run) { latch.countDown() }
+        assertTrue(latch.await(10, TimeUnit.SECONDS))
+    }
+
+    private fun repositoryItem(name: String): ResourceItem {
+        return repository.getResources(ResourceNamespace.RES_AUTO, ResourceType.ID, name).single()
+    }
+
+    private fun parentItem(name: String): ResourceItem {
+        return parent.getResources(ResourceNamespace.RES_AUTO, ResourceType.ID, name).single()
+    }
+}